@@ -0,0 +1,68 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.benchmarks;
+
+import br.com.ufcg.splab.recsys.ontorec.synthetic.SyntheticOntology;
+import br.com.ufcg.splab.recsys.ontorec.synthetic.SyntheticOntologyGenerator;
+import br.com.ufcg.splab.recsys.ontorec.weighting.BFSPathNodeWeightingApproach;
+import br.com.ufcg.splab.recsys.ontorec.weighting.NodeWeightingApproach;
+import br.com.ufcg.splab.recsys.ontorec.weighting.TaunthAncestorNodeWeightingApproach;
+
+/**
+ * The shared settings of the benchmarks data. All the ontologies and
+ * workloads are generated from {@link #SEED}, so the results of different
+ * runs are comparable.
+ *
+ * @author Saulo Toledo
+ */
+final class BenchmarkGraphs
+{
+    /**
+     * The seed of all the generated data.
+     */
+    static final long SEED = 42L;
+
+    private BenchmarkGraphs()
+    {
+    }
+
+    /**
+     * Returns a node weighting approach by its name.
+     *
+     * @param name "BFS" or "TAUNTH".
+     * @return The approach.
+     */
+    static NodeWeightingApproach<String> approach(String name)
+    {
+        if ("BFS".equals(name)) {
+            return new BFSPathNodeWeightingApproach<String>();
+        }
+        if ("TAUNTH".equals(name)) {
+            return new TaunthAncestorNodeWeightingApproach<String>();
+        }
+        throw new IllegalArgumentException("Unknown approach: " + name);
+    }
+
+    /**
+     * Generates an ontology with the benchmarks' shape: 12 levels, 4
+     * children per class on average, 10% of the classes with an extra
+     * parent and one property for each 10 classes.
+     *
+     * @param classes The number of classes.
+     * @param mappingDensity The fraction of the classes and properties
+     *        mapped to features.
+     * @return The ontology.
+     */
+    static SyntheticOntology ontology(int classes, double mappingDensity)
+    {
+        return new SyntheticOntologyGenerator().setClasses(classes)
+            .setMaxDepth(12).setBranching(4).setMultipleInheritanceRate(0.1)
+            .setOnlyBegottenFatherRate(0.05).setProperties(classes / 10)
+            .setClassMappingDensity(mappingDensity)
+            .setPropertyMappingDensity(mappingDensity).setSeed(SEED)
+            .generate();
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.benchmarks;
+
+import java.util.Map;
+
+import br.com.ufcg.splab.recsys.recommender.SimilarityMethod;
+
+/**
+ * The dot product of the profiles, iterating over the smaller one.
+ *
+ * @author Saulo Toledo
+ */
+class DotProductSimilarity implements SimilarityMethod
+{
+    @Override
+    public Double calculate(Map<String, Double> v1, Map<String, Double> v2)
+    {
+        Map<String, Double> smaller = (v1.size() <= v2.size()) ? v1 : v2;
+        Map<String, Double> larger = (smaller == v1) ? v2 : v1;
+
+        double result = 0;
+        for (Map.Entry<String, Double> entry : smaller.entrySet()) {
+            Double value = larger.get(entry.getKey());
+            if (value != null) {
+                result += entry.getValue() * value;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.benchmarks;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import br.com.ufcg.splab.recsys.metrics.Histogram;
+import br.com.ufcg.splab.recsys.metrics.MetricsRegistry;
+import br.com.ufcg.splab.recsys.ontorec.NodeManager;
+import br.com.ufcg.splab.recsys.ontorec.recommender.OntoRecApproach;
+import br.com.ufcg.splab.recsys.ontorec.synthetic.SyntheticOntology;
+import br.com.ufcg.splab.recsys.ontorec.synthetic.SyntheticWorkload;
+import br.com.ufcg.splab.recsys.recommender.Recommender;
+
+/**
+ * Drives an end-to-end load against an {@link OntoRecApproach} over a
+ * generated ontology and catalog: each request expands a user selection and
+ * recommends the top-N items with {@link Recommender#recommendTo}. The
+ * ontology is shared by all the threads, while each thread has its own
+ * recommender (the approaches keep the current user profile), so the memory
+ * grows with the number of threads and the catalog size.
+ * <p>
+ * The latencies are measured from the moment each request should have been
+ * sent, so the time a request waits behind a slow one is not hidden
+ * (the coordinated omission):
+ * <ul>
+ * <li>At the open loop, a dispatcher sends the requests at the target rate
+ * to the worker threads, whether the previous ones were answered or not.</li>
+ * <li>At the closed loop with a target rate, each thread is paced to its
+ * share of the rate, and the requests it could not send while it waited are
+ * added to the histogram with {@link Histogram#recordCorrected}.</li>
+ * <li>At the closed loop without a target rate, the threads send the
+ * requests as fast as they can and the latency is the service time.</li>
+ * </ul>
+ * Run it from the benchmarks jar:
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar br.com.ufcg.splab.recsys.benchmarks.LoadHarness \
+ *     --mode open --threads 8 --rate 500 --duration 60 --out report.json
+ * </pre>
+ *
+ * @author Saulo Toledo
+ */
+public class LoadHarness
+{
+    private final LoadSettings settings;
+
+    private NodeManager<String> nm;
+    private List<Map<String, Double>> catalog;
+    private List<Map<String, Double>> profiles;
+
+    private final AtomicLong nextProfile = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    private final Histogram latency;
+    private final Histogram serviceTime;
+
+    private final ThreadLocal<Recommender> recommenders = new ThreadLocal<Recommender>() {
+        @Override
+        protected Recommender initialValue()
+        {
+            return LoadHarness.this.createRecommender();
+        }
+    };
+
+    LoadHarness(LoadSettings settings)
+    {
+        this.settings = settings;
+
+        MetricsRegistry registry = new MetricsRegistry();
+        this.latency = registry.histogram("load.latency");
+        this.serviceTime = registry.histogram("load.serviceTime");
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        LoadSettings settings;
+        try {
+            settings = LoadSettings.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(LoadSettings.usage());
+            System.exit(2);
+            return;
+        }
+
+        LoadHarness harness = new LoadHarness(settings);
+        harness.prepare();
+        LoadReport report = harness.run();
+
+        File out = new File(settings.out);
+        report.write(out);
+        System.out.print(report.toJson());
+        System.out.println("The report was written to " + out.getPath());
+    }
+
+    /**
+     * Generates the ontology, the catalog and the user profiles.
+     *
+     * @throws Exception If the ontology cannot be built.
+     */
+    void prepare() throws Exception
+    {
+        SyntheticOntology ontology = BenchmarkGraphs.ontology(
+            this.settings.classes, this.settings.mappingDensity);
+        SyntheticWorkload workload = new SyntheticWorkload(ontology,
+            this.settings.seed);
+
+        this.nm = ontology.toNodeManager(
+            BenchmarkGraphs.approach(this.settings.approach),
+            this.settings.lambda, this.settings.upsilon);
+        this.catalog = workload.nextCatalog(this.settings.items,
+            this.settings.featuresPerItem);
+
+        this.profiles = new ArrayList<Map<String, Double>>(
+            this.settings.profiles);
+        for (int i = 0; i < this.settings.profiles; i++) {
+            this.profiles.add(workload
+                .nextUserProfile(this.settings.selectedFeatures));
+        }
+    }
+
+    private Recommender createRecommender()
+    {
+        OntoRecApproach approach = new OntoRecApproach(this.nm,
+            new DotProductSimilarity());
+        approach.setMaxHeight(this.settings.tau);
+
+        Recommender recommender = new Recommender(approach);
+        for (Map<String, Double> item : this.catalog) {
+            recommender.addItem(item);
+        }
+        return recommender;
+    }
+
+    /**
+     * Runs the warm up and the measured period.
+     *
+     * @return The report of the measured period.
+     * @throws InterruptedException If the run is interrupted.
+     */
+    LoadReport run() throws InterruptedException
+    {
+        long start = System.nanoTime();
+        long measureStart = start
+            + TimeUnit.SECONDS.toNanos(this.settings.warmupSeconds);
+        long end = measureStart
+            + TimeUnit.SECONDS.toNanos(this.settings.durationSeconds);
+
+        boolean corrected;
+        if (LoadSettings.OPEN.equals(this.settings.mode)) {
+            this.runOpenLoop(start, measureStart, end);
+            corrected = true;
+        } else {
+            this.runClosedLoop(start, measureStart, end);
+            corrected = this.settings.rate > 0;
+        }
+
+        long elapsed = Math.max(0, Math.min(System.nanoTime(), end)
+            - measureStart);
+        return new LoadReport(this.settings, this.requests.get(),
+            this.errors.get(), elapsed, corrected, this.latency,
+            this.serviceTime);
+    }
+
+    private void runClosedLoop(final long start, final long measureStart,
+        final long end) throws InterruptedException
+    {
+        final long interval = this.settings.expectedIntervalPerThread();
+        List<Thread> workers = new ArrayList<Thread>();
+
+        for (int t = 0; t < this.settings.threads; t++) {
+            Thread worker = new Thread(new Runnable() {
+                @Override
+                public void run()
+                {
+                    long next = start;
+                    while (true) {
+                        long now = System.nanoTime();
+                        if (next > now) {
+                            LockSupport.parkNanos(next - now);
+                            now = System.nanoTime();
+                        }
+                        if (now >= end) {
+                            return;
+                        }
+
+                        LoadHarness.this.execute(now, now >= measureStart,
+                            interval);
+                        next = now + interval;
+                    }
+                }
+            }, "load-worker-" + t);
+            worker.start();
+            workers.add(worker);
+        }
+
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+
+    private void runOpenLoop(long start, final long measureStart, long end)
+        throws InterruptedException
+    {
+        ExecutorService pool = Executors
+            .newFixedThreadPool(this.settings.threads);
+        double interval = 1e9 / this.settings.rate;
+
+        try {
+            for (long i = 0;; i++) {
+                final long intendedStart = start + (long) (i * interval);
+                if (intendedStart >= end) {
+                    break;
+                }
+
+                long now = System.nanoTime();
+                if (intendedStart > now) {
+                    LockSupport.parkNanos(intendedStart - now);
+                }
+
+                pool.execute(new Runnable() {
+                    @Override
+                    public void run()
+                    {
+                        LoadHarness.this.execute(intendedStart,
+                            intendedStart >= measureStart, 0);
+                    }
+                });
+            }
+        } finally {
+            pool.shutdown();
+            pool.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+
+    /**
+     * Sends one request and records its latency.
+     *
+     * @param intendedStart When the request should have been sent.
+     * @param measured If the request is at the measured period.
+     * @param expectedInterval The interval used to correct the latency of
+     *        the closed loop, or 0.
+     */
+    private void execute(long intendedStart, boolean measured,
+        long expectedInterval)
+    {
+        Map<String, Double> profile = this.profiles.get((int) (this.nextProfile
+            .getAndIncrement() % this.profiles.size()));
+
+        long actualStart = System.nanoTime();
+        boolean failed = false;
+        try {
+            this.recommenders.get().recommendTo(profile, this.settings.topN);
+        } catch (Exception e) {
+            failed = true;
+        }
+        long finish = System.nanoTime();
+
+        if ( !measured) {
+            return;
+        }
+        if (failed) {
+            this.errors.incrementAndGet();
+            return;
+        }
+
+        this.requests.incrementAndGet();
+        this.serviceTime.record(finish - actualStart);
+        this.latency.recordCorrected(finish - intendedStart, expectedInterval);
+    }
+}
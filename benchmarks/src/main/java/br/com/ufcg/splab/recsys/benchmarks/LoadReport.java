@@ -0,0 +1,133 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import br.com.ufcg.splab.recsys.metrics.Histogram;
+
+/**
+ * The results of a load run, written as JSON. The latencies are reported in
+ * microseconds.
+ *
+ * @author Saulo Toledo
+ */
+class LoadReport
+{
+    private final Map<String, Object> settings;
+    private final Map<String, Object> results = new LinkedHashMap<String, Object>();
+
+    /**
+     * Creates a report.
+     *
+     * @param settings The run settings.
+     * @param requests The measured requests.
+     * @param errors The failed requests.
+     * @param elapsedNanos The measured time.
+     * @param corrected If the latencies are corrected for the coordinated
+     *        omission.
+     * @param latency The latencies, from the intended start of each request.
+     * @param serviceTime The service times, from the actual start of each
+     *        request.
+     */
+    LoadReport(LoadSettings settings, long requests, long errors,
+        long elapsedNanos, boolean corrected, Histogram latency,
+        Histogram serviceTime)
+    {
+        this.settings = settings.toMap();
+        this.results.put("requests", requests);
+        this.results.put("errors", errors);
+        this.results.put("elapsedSeconds", elapsedNanos / 1e9);
+        this.results.put("throughput", (elapsedNanos == 0) ? 0d : requests
+            * 1e9 / elapsedNanos);
+        this.results.put("coordinatedOmissionCorrected", corrected);
+        this.results.put("latency", summarize(latency));
+        this.results.put("serviceTime", summarize(serviceTime));
+    }
+
+    private static Map<String, Object> summarize(Histogram histogram)
+    {
+        Map<String, Object> result = new LinkedHashMap<String, Object>();
+        result.put("count", histogram.getCount());
+        result.put("mean", histogram.getMean() / 1e3);
+        result.put("p50", histogram.getValueAtPercentile(50) / 1e3);
+        result.put("p90", histogram.getValueAtPercentile(90) / 1e3);
+        result.put("p99", histogram.getValueAtPercentile(99) / 1e3);
+        result.put("p99.9", histogram.getValueAtPercentile(99.9) / 1e3);
+        result.put("max", histogram.getMax() / 1e3);
+        return result;
+    }
+
+    /**
+     * Returns the report as JSON.
+     *
+     * @return The JSON document.
+     */
+    String toJson()
+    {
+        Map<String, Object> document = new LinkedHashMap<String, Object>();
+        document.put("settings", this.settings);
+        document.put("results", this.results);
+
+        StringBuilder sb = new StringBuilder();
+        appendJson(sb, document, "");
+        return sb.append('\n').toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void appendJson(StringBuilder sb, Object value,
+        String indent)
+    {
+        if (value instanceof Map) {
+            String inner = indent + "  ";
+            sb.append("{\n");
+            boolean first = true;
+            for (Map.Entry<String, Object> entry : ((Map<String, Object>) value)
+                .entrySet()) {
+                if ( !first) {
+                    sb.append(",\n");
+                }
+                first = false;
+                sb.append(inner).append('"').append(entry.getKey())
+                    .append("\": ");
+                appendJson(sb, entry.getValue(), inner);
+            }
+            sb.append('\n').append(indent).append('}');
+        } else if (value instanceof String) {
+            sb.append('"')
+                .append(((String) value).replace("\\", "\\\\").replace("\"",
+                    "\\\"")).append('"');
+        } else if (value instanceof Double) {
+            sb.append(String.format(Locale.ROOT, "%.3f", value));
+        } else {
+            sb.append(value);
+        }
+    }
+
+    /**
+     * Writes the report as JSON.
+     *
+     * @param file The report file.
+     * @throws IOException If the file cannot be written.
+     */
+    void write(File file) throws IOException
+    {
+        Writer out = new OutputStreamWriter(new FileOutputStream(file),
+            "UTF-8");
+        try {
+            out.write(this.toJson());
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.benchmarks;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The settings of a load run, read from the command line as
+ * <code>--name value</code> pairs. See {@link #usage()}.
+ *
+ * @author Saulo Toledo
+ */
+class LoadSettings
+{
+    /**
+     * The closed loop: each thread sends a request after the previous one
+     * is answered.
+     */
+    static final String CLOSED = "closed";
+
+    /**
+     * The open loop: the requests are sent at a fixed rate, whether the
+     * previous ones were answered or not.
+     */
+    static final String OPEN = "open";
+
+    String mode = CLOSED;
+    int threads = Runtime.getRuntime().availableProcessors();
+    double rate = 0;
+    int durationSeconds = 60;
+    int warmupSeconds = 10;
+
+    int classes = 10000;
+    double mappingDensity = 0.1d;
+    int items = 100000;
+    int featuresPerItem = 10;
+    int profiles = 10000;
+    int selectedFeatures = 5;
+    String approach = "BFS";
+    int tau = 2;
+    boolean lambda = false;
+    boolean upsilon = false;
+    int topN = 10;
+    long seed = BenchmarkGraphs.SEED;
+
+    String out = "load-report.json";
+
+    /**
+     * Reads the settings.
+     *
+     * @param args The command line arguments.
+     * @return The settings.
+     * @throws IllegalArgumentException If an argument is unknown or invalid.
+     */
+    static LoadSettings parse(String[] args)
+    {
+        if (args.length % 2 != 0) {
+            throw new IllegalArgumentException(
+                "The arguments must be --name value pairs");
+        }
+
+        LoadSettings settings = new LoadSettings();
+        for (int i = 0; i < args.length; i += 2) {
+            settings.set(args[i], args[i + 1]);
+        }
+
+        if ( !CLOSED.equals(settings.mode) && !OPEN.equals(settings.mode)) {
+            throw new IllegalArgumentException("Unknown mode: "
+                + settings.mode);
+        }
+        if (OPEN.equals(settings.mode) && settings.rate <= 0) {
+            throw new IllegalArgumentException(
+                "The open loop needs a --rate");
+        }
+        if (settings.threads < 1) {
+            throw new IllegalArgumentException(
+                "The run needs at least one thread");
+        }
+        return settings;
+    }
+
+    private void set(String name, String value)
+    {
+        if ("--mode".equals(name)) {
+            this.mode = value;
+        } else if ("--threads".equals(name)) {
+            this.threads = Integer.parseInt(value);
+        } else if ("--rate".equals(name)) {
+            this.rate = Double.parseDouble(value);
+        } else if ("--duration".equals(name)) {
+            this.durationSeconds = Integer.parseInt(value);
+        } else if ("--warmup".equals(name)) {
+            this.warmupSeconds = Integer.parseInt(value);
+        } else if ("--classes".equals(name)) {
+            this.classes = Integer.parseInt(value);
+        } else if ("--mapping-density".equals(name)) {
+            this.mappingDensity = Double.parseDouble(value);
+        } else if ("--items".equals(name)) {
+            this.items = Integer.parseInt(value);
+        } else if ("--features-per-item".equals(name)) {
+            this.featuresPerItem = Integer.parseInt(value);
+        } else if ("--profiles".equals(name)) {
+            this.profiles = Integer.parseInt(value);
+        } else if ("--selected".equals(name)) {
+            this.selectedFeatures = Integer.parseInt(value);
+        } else if ("--approach".equals(name)) {
+            this.approach = value;
+        } else if ("--tau".equals(name)) {
+            this.tau = Integer.parseInt(value);
+        } else if ("--lambda".equals(name)) {
+            this.lambda = Boolean.parseBoolean(value);
+        } else if ("--upsilon".equals(name)) {
+            this.upsilon = Boolean.parseBoolean(value);
+        } else if ("--top".equals(name)) {
+            this.topN = Integer.parseInt(value);
+        } else if ("--seed".equals(name)) {
+            this.seed = Long.parseLong(value);
+        } else if ("--out".equals(name)) {
+            this.out = value;
+        } else {
+            throw new IllegalArgumentException("Unknown argument: " + name);
+        }
+    }
+
+    /**
+     * Returns the expected interval between two requests of the same
+     * thread.
+     *
+     * @return The interval in nanoseconds, or 0 if there is no target rate.
+     */
+    long expectedIntervalPerThread()
+    {
+        if (this.rate <= 0) {
+            return 0;
+        }
+        return (long) (1e9 * this.threads / this.rate);
+    }
+
+    /**
+     * Returns the settings that describe the run, by name.
+     *
+     * @return The settings.
+     */
+    Map<String, Object> toMap()
+    {
+        Map<String, Object> result = new LinkedHashMap<String, Object>();
+        result.put("mode", this.mode);
+        result.put("threads", this.threads);
+        result.put("targetRate", this.rate);
+        result.put("durationSeconds", this.durationSeconds);
+        result.put("warmupSeconds", this.warmupSeconds);
+        result.put("classes", this.classes);
+        result.put("mappingDensity", this.mappingDensity);
+        result.put("items", this.items);
+        result.put("featuresPerItem", this.featuresPerItem);
+        result.put("profiles", this.profiles);
+        result.put("selectedFeatures", this.selectedFeatures);
+        result.put("approach", this.approach);
+        result.put("tau", this.tau);
+        result.put("lambda", this.lambda);
+        result.put("upsilon", this.upsilon);
+        result.put("topN", this.topN);
+        result.put("seed", this.seed);
+        return result;
+    }
+
+    /**
+     * Returns the command line help.
+     *
+     * @return The help.
+     */
+    static String usage()
+    {
+        return "Usage: LoadHarness [--name value]...\n"
+            + "  --mode closed|open     The load loop (closed)\n"
+            + "  --threads N            The worker threads (the processors)\n"
+            + "  --rate R               The target requests per second; needed by\n"
+            + "                         the open loop, paces the closed one (none)\n"
+            + "  --duration S           The measured seconds (60)\n"
+            + "  --warmup S             The unmeasured seconds before them (10)\n"
+            + "  --classes N            The ontology classes (10000)\n"
+            + "  --mapping-density D    The fraction of mapped classes (0.1)\n"
+            + "  --items N              The catalog items (100000)\n"
+            + "  --features-per-item N  The features of each item (10)\n"
+            + "  --profiles N           The distinct user profiles (10000)\n"
+            + "  --selected N           The selected features per user (5)\n"
+            + "  --approach BFS|TAUNTH  The node weighting approach (BFS)\n"
+            + "  --tau N                The τ value (2)\n"
+            + "  --lambda B, --upsilon B The λ and υ values (false)\n"
+            + "  --top N                The recommended items (10)\n"
+            + "  --seed N               The data seed (42)\n"
+            + "  --out FILE             The JSON report (load-report.json)\n";
+    }
+}
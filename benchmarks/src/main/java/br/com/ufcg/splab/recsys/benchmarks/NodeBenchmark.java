@@ -0,0 +1,79 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.benchmarks;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import br.com.ufcg.splab.recsys.ontorec.Node;
+import br.com.ufcg.splab.recsys.ontorec.NodeManager;
+import br.com.ufcg.splab.recsys.ontorec.synthetic.SyntheticOntology;
+
+/**
+ * Benchmarks the graph traversals of a single node: the search for its
+ * τ-nth ancestors and the distances to the mapped nodes. The measured node
+ * is in the middle of the generation order, so it has both many paths to
+ * the root and a large subgraph below its ancestors.
+ *
+ * @author Saulo Toledo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NodeBenchmark
+{
+    @Param({ "1000", "10000", "100000" })
+    public int nodes;
+
+    @Param({ "1", "2", "4" })
+    public int tau;
+
+    @Param({ "false", "true" })
+    public boolean lambda;
+
+    private Node<String> node;
+    private Set<Node<String>> mappedNodes;
+
+    @Setup
+    public void setup() throws Exception
+    {
+        NodeManager<String> nm = BenchmarkGraphs.ontology(this.nodes, 0.1)
+            .toNodeManager(BenchmarkGraphs.approach("BFS"), this.lambda,
+                false);
+
+        this.node = nm.getNode(SyntheticOntology.className(this.nodes / 2));
+        this.mappedNodes = nm.getMappedNodes();
+    }
+
+    @Benchmark
+    public Set<Node<String>> extractMaxNodesFromTau()
+    {
+        return this.node.extractMaxNodesFromTau(this.tau, this.lambda);
+    }
+
+    @Benchmark
+    public Map<Node<String>, Integer> getDistancesTo()
+    {
+        return this.node.getDistancesTo(this.mappedNodes, this.tau,
+            this.lambda);
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import br.com.ufcg.splab.recsys.ontorec.NodeManager;
+import br.com.ufcg.splab.recsys.ontorec.OWLReader;
+import br.com.ufcg.splab.recsys.ontorec.weighting.BFSPathNodeWeightingApproach;
+
+/**
+ * Benchmarks the load of an ontology file.
+ *
+ * @author Saulo Toledo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class OWLReaderBenchmark
+{
+    @Param({ "1000", "10000", "100000" })
+    public int nodes;
+
+    private String ontologyFile;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        File file = File.createTempFile("ontorec-benchmark", ".owl");
+        file.deleteOnExit();
+        BenchmarkGraphs.ontology(this.nodes, 0).writeRdfXml(file);
+        this.ontologyFile = file.getAbsolutePath();
+    }
+
+    @Benchmark
+    public NodeManager<String> load()
+    {
+        return new OWLReader(this.ontologyFile,
+            new BFSPathNodeWeightingApproach<String>(), false, false)
+            .getNodeManager();
+    }
+}
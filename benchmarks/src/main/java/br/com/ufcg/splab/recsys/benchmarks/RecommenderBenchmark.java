@@ -0,0 +1,95 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.benchmarks;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import br.com.ufcg.splab.recsys.ontorec.NodeManager;
+import br.com.ufcg.splab.recsys.ontorec.synthetic.SyntheticOntology;
+import br.com.ufcg.splab.recsys.ontorec.synthetic.SyntheticWorkload;
+import br.com.ufcg.splab.recsys.recommender.Approach;
+import br.com.ufcg.splab.recsys.recommender.Recommender;
+import br.com.ufcg.splab.recsys.recommender.SimilarityMapper;
+
+/**
+ * Benchmarks the top-N recommendation over catalogs of different sizes. The
+ * largest catalog needs a large heap (around 16 GB with the default
+ * parameters); pass <code>-jvmArgs -Xmx16g</code> or select the smaller
+ * sizes with <code>-p items=10000,100000</code>.
+ *
+ * @author Saulo Toledo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class RecommenderBenchmark
+{
+    @Param({ "10000", "100000", "1000000", "10000000" })
+    public int items;
+
+    @Param({ "10000" })
+    public int classes;
+
+    @Param({ "10" })
+    public int featuresPerItem;
+
+    @Param({ "10" })
+    public int numItems;
+
+    private Recommender recommender;
+    private Map<String, Double> userProfile;
+
+    @Setup
+    public void setup() throws Exception
+    {
+        Approach approach = new Approach(new DotProductSimilarity()) {
+            @Override
+            public Map<String, Double> getUserProfile()
+            {
+                return this.userProfile;
+            }
+        };
+
+        SyntheticOntology ontology = BenchmarkGraphs.ontology(this.classes,
+            0.1);
+        SyntheticWorkload workload = new SyntheticWorkload(ontology,
+            BenchmarkGraphs.SEED);
+
+        this.recommender = new Recommender(approach);
+        for (Map<String, Double> item : workload.nextCatalog(this.items,
+            this.featuresPerItem)) {
+            this.recommender.addItem(item);
+        }
+
+        // An expanded profile, as OntoRecApproach builds it:
+        NodeManager<String> nm = ontology.toNodeManager(
+            BenchmarkGraphs.approach("BFS"), false, false);
+        this.userProfile = nm.getFeaturesWeight(workload.nextSelection(5), 2);
+    }
+
+    @Benchmark
+    public List<SimilarityMapper> recommendTo() throws Exception
+    {
+        return this.recommender.recommendTo(this.userProfile, this.numItems);
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.benchmarks;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import br.com.ufcg.splab.recsys.ontorec.NodeManager;
+import br.com.ufcg.splab.recsys.ontorec.synthetic.SyntheticOntology;
+import br.com.ufcg.splab.recsys.ontorec.synthetic.SyntheticWorkload;
+
+/**
+ * Benchmarks the features' weight calculation of both node weighting
+ * approaches across the τ, λ and υ combinations.
+ *
+ * @author Saulo Toledo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WeightingBenchmark
+{
+    @Param({ "BFS", "TAUNTH" })
+    public String approach;
+
+    @Param({ "10000" })
+    public int nodes;
+
+    @Param({ "0.1" })
+    public double mappingDensity;
+
+    @Param({ "5" })
+    public int selectedFeatures;
+
+    @Param({ "1", "2", "4" })
+    public int tau;
+
+    @Param({ "false", "true" })
+    public boolean lambda;
+
+    @Param({ "false", "true" })
+    public boolean upsilon;
+
+    private NodeManager<String> nm;
+    private Set<String> selection;
+
+    @Setup
+    public void setup() throws Exception
+    {
+        SyntheticOntology ontology = BenchmarkGraphs.ontology(this.nodes,
+            this.mappingDensity);
+
+        this.nm = ontology.toNodeManager(
+            BenchmarkGraphs.approach(this.approach), this.lambda,
+            this.upsilon);
+        this.selection = new SyntheticWorkload(ontology, BenchmarkGraphs.SEED)
+            .nextSelection(this.selectedFeatures);
+    }
+
+    @Benchmark
+    public Map<String, Double> getFeaturesWeight()
+    {
+        return this.nm.getFeaturesWeight(this.selection, this.tau);
+    }
+}
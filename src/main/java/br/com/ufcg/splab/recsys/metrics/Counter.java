@@ -0,0 +1,87 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A monotonic counter that can be updated by many threads.
+ *
+ * @author Saulo Toledo
+ */
+public class Counter
+{
+    private final String name;
+    private final AtomicLong value = new AtomicLong();
+
+    /**
+     * Creates a counter. Counters are created by {@link MetricsRegistry}.
+     *
+     * @param name The counter name.
+     */
+    Counter(String name)
+    {
+        this.name = name;
+    }
+
+    /**
+     * Returns the counter name.
+     *
+     * @return The counter name.
+     */
+    public String getName()
+    {
+        return this.name;
+    }
+
+    /**
+     * Increments the counter by one.
+     */
+    public void increment()
+    {
+        this.value.incrementAndGet();
+    }
+
+    /**
+     * Increments the counter.
+     *
+     * @param delta The amount to add. Hot loops should count locally and add
+     *        the total once, instead of incrementing the counter at each step.
+     */
+    public void add(long delta)
+    {
+        if (delta != 0) {
+            this.value.addAndGet(delta);
+        }
+    }
+
+    /**
+     * Returns the current value.
+     *
+     * @return The current value.
+     */
+    public long getValue()
+    {
+        return this.value.get();
+    }
+
+    /**
+     * Sets the counter back to zero.
+     */
+    void reset()
+    {
+        this.value.set(0);
+    }
+
+    /**
+     * Returns a string representation of the object.
+     */
+    @Override
+    public String toString()
+    {
+        return String.format("%s=%d", this.name, this.getValue());
+    }
+}
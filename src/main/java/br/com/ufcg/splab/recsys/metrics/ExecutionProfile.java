@@ -0,0 +1,370 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The profile of a single call: the wall time, CPU time and allocated bytes
+ * spent at each phase, and the amount of graph work done. A profile is
+ * active at the thread that started it, until it is stopped. The
+ * instrumented code asks for the {@link #current() current profile} and does
+ * nothing else when there is none, so the profiling costs nothing when it is
+ * off:
+ *
+ * <pre>
+ * ExecutionProfile profile = ExecutionProfile.current();
+ * if (profile != null) {
+ *     profile.begin();
+ * }
+ * try {
+ *     ...
+ * } finally {
+ *     if (profile != null) {
+ *         profile.end(Phase.BFS);
+ *     }
+ * }
+ * </pre>
+ *
+ * A phase that may throw (when a {@code WorkBudget} is exceeded, for
+ * example) must be ended at a finally block, or the phases that follow are
+ * attributed to the wrong parent.
+ *
+ * The work done by other threads (such as the partitions scored by an
+ * executor) is part of the wall time of the phase that waits for it, but not
+ * of its CPU time or allocated bytes.
+ *
+ * @author Saulo Toledo
+ */
+public class ExecutionProfile
+{
+    /**
+     * The profiled phases.
+     */
+    public enum Phase
+    {
+        /**
+         * The search for the τ-nth ancestors of the mapped nodes.
+         */
+        TAU_ANCESTORS,
+
+        /**
+         * The discovery of the subgraphs below the τ-nth ancestors.
+         */
+        SUBGRAPH,
+
+        /**
+         * The breadth first searches for the distances to the mapped nodes.
+         */
+        BFS,
+
+        /**
+         * The mapping of the nodes distances to features distances.
+         */
+        FEATURE_DISTANCES,
+
+        /**
+         * The normalization of the distances to weights.
+         */
+        NORMALIZATION,
+
+        /**
+         * The merge of the weights computed for each selected feature.
+         */
+        MERGE,
+
+        /**
+         * The scoring of the items against the user profile.
+         */
+        ITEM_SCORING,
+
+        /**
+         * The ordering of the best scored items.
+         */
+        SORT
+    }
+
+    private static final ThreadLocal<ExecutionProfile> CURRENT = new ThreadLocal<ExecutionProfile>();
+
+    private static final ThreadMXBean THREADS = ManagementFactory
+        .getThreadMXBean();
+
+    /**
+     * The max depth of nested phases.
+     */
+    private static final int MAX_DEPTH = 16;
+
+    private final Map<Phase, PhaseStats> phases = new EnumMap<Phase, PhaseStats>(
+        Phase.class);
+
+    private final long[] wallStarts = new long[MAX_DEPTH];
+    private final long[] cpuStarts = new long[MAX_DEPTH];
+    private final long[] allocationStarts = new long[MAX_DEPTH];
+    private int depth;
+
+    private final boolean cpuTimeEnabled;
+    private final boolean allocationEnabled;
+
+    private ExecutionProfile previous;
+    private long wallStart;
+    private long wallTime;
+
+    private long nodesVisited;
+    private long edgesVisited;
+    private long pathsBuilt;
+
+    /**
+     * Creates an inactive profile.
+     */
+    public ExecutionProfile()
+    {
+        this.cpuTimeEnabled = THREADS.isCurrentThreadCpuTimeSupported()
+            && THREADS.isThreadCpuTimeEnabled();
+        this.allocationEnabled = isAllocationSupported();
+    }
+
+    private static boolean isAllocationSupported()
+    {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+            return threads.isThreadAllocatedMemorySupported()
+                && threads.isThreadAllocatedMemoryEnabled();
+        }
+        return false;
+    }
+
+    /**
+     * Returns the profile active at the current thread.
+     *
+     * @return The active profile, or null if the profiling is off.
+     */
+    public static ExecutionProfile current()
+    {
+        return CURRENT.get();
+    }
+
+    /**
+     * Activates this profile at the current thread. The previously active
+     * profile, if any, is activated again when this one is stopped.
+     *
+     * @return This profile.
+     */
+    public ExecutionProfile start()
+    {
+        this.previous = CURRENT.get();
+        this.wallStart = System.nanoTime();
+        CURRENT.set(this);
+        return this;
+    }
+
+    /**
+     * Deactivates this profile at the current thread.
+     */
+    public void stop()
+    {
+        this.wallTime += System.nanoTime() - this.wallStart;
+        if (this.previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(this.previous);
+        }
+        this.previous = null;
+    }
+
+    /**
+     * Marks the beginning of a phase. Each call must be followed by a call to
+     * {@link #end(Phase)}. Phases can be nested.
+     */
+    public void begin()
+    {
+        if (this.depth < MAX_DEPTH) {
+            this.wallStarts[this.depth] = System.nanoTime();
+            this.cpuStarts[this.depth] = this.cpuTimeEnabled ? THREADS
+                .getCurrentThreadCpuTime() : 0;
+            this.allocationStarts[this.depth] = this.currentAllocatedBytes();
+        }
+        this.depth++;
+    }
+
+    /**
+     * Marks the end of the phase started at the last {@link #begin()}.
+     *
+     * @param phase The finished phase.
+     */
+    public void end(Phase phase)
+    {
+        this.depth--;
+        if (this.depth < 0 || this.depth >= MAX_DEPTH) {
+            this.depth = Math.max(this.depth, 0);
+            return;
+        }
+
+        PhaseStats stats = this.phases.get(phase);
+        if (stats == null) {
+            stats = new PhaseStats();
+            this.phases.put(phase, stats);
+        }
+
+        stats.calls++;
+        stats.wallTime += System.nanoTime() - this.wallStarts[this.depth];
+        if (this.cpuTimeEnabled) {
+            stats.cpuTime += THREADS.getCurrentThreadCpuTime()
+                - this.cpuStarts[this.depth];
+        }
+        if (this.allocationEnabled) {
+            stats.allocatedBytes += this.currentAllocatedBytes()
+                - this.allocationStarts[this.depth];
+        }
+    }
+
+    private long currentAllocatedBytes()
+    {
+        if ( !this.allocationEnabled) {
+            return 0;
+        }
+        return ((com.sun.management.ThreadMXBean) THREADS)
+            .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Adds graph work done by a traversal.
+     *
+     * @param nodes The visited nodes.
+     * @param edges The followed edges.
+     * @param paths The built paths.
+     */
+    public void addWork(long nodes, long edges, long paths)
+    {
+        this.nodesVisited += nodes;
+        this.edgesVisited += edges;
+        this.pathsBuilt += paths;
+    }
+
+    /**
+     * Returns the number of times a phase ran.
+     *
+     * @param phase The phase.
+     * @return The number of calls.
+     */
+    public long getCalls(Phase phase)
+    {
+        PhaseStats stats = this.phases.get(phase);
+        return (stats == null) ? 0 : stats.calls;
+    }
+
+    /**
+     * Returns the wall time spent at a phase.
+     *
+     * @param phase The phase.
+     * @return The wall time in nanoseconds.
+     */
+    public long getWallTime(Phase phase)
+    {
+        PhaseStats stats = this.phases.get(phase);
+        return (stats == null) ? 0 : stats.wallTime;
+    }
+
+    /**
+     * Returns the CPU time spent at a phase by the profiled thread.
+     *
+     * @param phase The phase.
+     * @return The CPU time in nanoseconds, or 0 if the JVM does not measure
+     *         it.
+     */
+    public long getCpuTime(Phase phase)
+    {
+        PhaseStats stats = this.phases.get(phase);
+        return (stats == null) ? 0 : stats.cpuTime;
+    }
+
+    /**
+     * Returns the bytes allocated at a phase by the profiled thread.
+     *
+     * @param phase The phase.
+     * @return The allocated bytes, or 0 if the JVM does not measure them.
+     */
+    public long getAllocatedBytes(Phase phase)
+    {
+        PhaseStats stats = this.phases.get(phase);
+        return (stats == null) ? 0 : stats.allocatedBytes;
+    }
+
+    /**
+     * Returns the wall time while this profile was active.
+     *
+     * @return The total wall time in nanoseconds.
+     */
+    public long getTotalWallTime()
+    {
+        return this.wallTime;
+    }
+
+    /**
+     * Returns the nodes visited by the graph traversals.
+     *
+     * @return The visited nodes.
+     */
+    public long getNodesVisited()
+    {
+        return this.nodesVisited;
+    }
+
+    /**
+     * Returns the edges followed by the graph traversals.
+     *
+     * @return The followed edges.
+     */
+    public long getEdgesVisited()
+    {
+        return this.edgesVisited;
+    }
+
+    /**
+     * Returns the paths built by the τ-nth ancestor searches.
+     *
+     * @return The built paths.
+     */
+    public long getPathsBuilt()
+    {
+        return this.pathsBuilt;
+    }
+
+    /**
+     * Returns a string representation of the object.
+     */
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(
+            "total=%.3fms, nodes=%d, edges=%d, paths=%d",
+            this.wallTime / 1e6, this.nodesVisited, this.edgesVisited,
+            this.pathsBuilt));
+
+        for (Map.Entry<Phase, PhaseStats> entry : this.phases.entrySet()) {
+            PhaseStats stats = entry.getValue();
+            sb.append(String.format(
+                "%n  %s: calls=%d, wall=%.3fms, cpu=%.3fms, allocated=%dB",
+                entry.getKey(), stats.calls, stats.wallTime / 1e6,
+                stats.cpuTime / 1e6, stats.allocatedBytes));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The values accumulated for a phase.
+     */
+    private static class PhaseStats
+    {
+        private long calls;
+        private long wallTime;
+        private long cpuTime;
+        private long allocatedBytes;
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of non negative values with log-linear buckets, in the style of
+ * the HDR histograms: each power of two range is split into
+ * {@value #SUB_BUCKETS} buckets, so any recorded value is reported with a
+ * relative error below 1/{@value #SUB_BUCKETS}, from nanoseconds to days,
+ * with a fixed memory footprint. Recording is lock free.
+ *
+ * @author Saulo Toledo
+ */
+public class Histogram
+{
+    /**
+     * The number of linear buckets in each power of two range.
+     */
+    static final int SUB_BUCKETS = 16;
+
+    /**
+     * The values below this limit have one bucket each.
+     */
+    private static final int LINEAR_LIMIT = 2 * SUB_BUCKETS;
+
+    /**
+     * The number of buckets needed for the whole positive long range.
+     */
+    static final int BUCKET_COUNT = (63 - 4) * SUB_BUCKETS + LINEAR_LIMIT;
+
+    private final String name;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Creates a histogram. Histograms are created by {@link MetricsRegistry}.
+     *
+     * @param name The histogram name.
+     */
+    Histogram(String name)
+    {
+        this.name = name;
+    }
+
+    /**
+     * Returns the histogram name.
+     *
+     * @return The histogram name.
+     */
+    public String getName()
+    {
+        return this.name;
+    }
+
+    /**
+     * Records a value. Negative values are recorded as zero.
+     *
+     * @param value The value.
+     */
+    public void record(long value)
+    {
+        long v = Math.max(0, value);
+
+        this.buckets.incrementAndGet(bucketIndex(v));
+        this.count.incrementAndGet();
+        this.sum.addAndGet(v);
+
+        long currentMax = this.max.get();
+        while (v > currentMax && !this.max.compareAndSet(currentMax, v)) {
+            currentMax = this.max.get();
+        }
+    }
+
+    /**
+     * Records a latency measured by a driver that waits for each response
+     * before sending the next request, correcting the coordinated omission:
+     * while a response was late, the requests that would have been sent at
+     * each expected interval were not, so their latencies are recorded too,
+     * decreasing by one interval each.
+     *
+     * @param value The measured latency.
+     * @param expectedInterval The expected interval between the requests,
+     *        or 0 to record the value only.
+     */
+    public void recordCorrected(long value, long expectedInterval)
+    {
+        this.record(value);
+        if (expectedInterval <= 0) {
+            return;
+        }
+
+        long missed = value - expectedInterval;
+        while (missed >= expectedInterval) {
+            this.record(missed);
+            missed -= expectedInterval;
+        }
+    }
+
+    /**
+     * Returns the number of recorded values.
+     *
+     * @return The number of recorded values.
+     */
+    public long getCount()
+    {
+        return this.count.get();
+    }
+
+    /**
+     * Returns the sum of the recorded values.
+     *
+     * @return The sum of the recorded values.
+     */
+    public long getSum()
+    {
+        return this.sum.get();
+    }
+
+    /**
+     * Returns the greatest recorded value.
+     *
+     * @return The greatest recorded value, or 0 if nothing was recorded.
+     */
+    public long getMax()
+    {
+        return this.max.get();
+    }
+
+    /**
+     * Returns the mean of the recorded values.
+     *
+     * @return The mean, or 0 if nothing was recorded.
+     */
+    public double getMean()
+    {
+        long n = this.getCount();
+        return (n == 0) ? 0d : this.getSum() / (double) n;
+    }
+
+    /**
+     * Returns the value at a given percentile. The result is the upper bound
+     * of the bucket where the percentile falls, limited to the greatest
+     * recorded value.
+     *
+     * @param percentile The percentile, from 0 to 100.
+     * @return The value at the percentile, or 0 if nothing was recorded.
+     */
+    public long getValueAtPercentile(double percentile)
+    {
+        long[] counts = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = this.buckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        double p = Math.min(100d, Math.max(0d, percentile));
+        long rank = Math.max(1, (long) Math.ceil(p / 100d * total));
+
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(bucketUpperBound(i), this.getMax());
+            }
+        }
+        return this.getMax();
+    }
+
+    /**
+     * Adds all the values recorded at another histogram to this one.
+     *
+     * @param other The other histogram.
+     */
+    public void add(Histogram other)
+    {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long bucketCount = other.buckets.get(i);
+            if (bucketCount != 0) {
+                this.buckets.addAndGet(i, bucketCount);
+            }
+        }
+        this.count.addAndGet(other.getCount());
+        this.sum.addAndGet(other.getSum());
+
+        long otherMax = other.getMax();
+        long currentMax = this.max.get();
+        while (otherMax > currentMax
+            && !this.max.compareAndSet(currentMax, otherMax)) {
+            currentMax = this.max.get();
+        }
+    }
+
+    /**
+     * Discards all the recorded values.
+     */
+    public void reset()
+    {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            this.buckets.set(i, 0);
+        }
+        this.count.set(0);
+        this.sum.set(0);
+        this.max.set(0);
+    }
+
+    /**
+     * Returns the bucket of a value.
+     *
+     * @param value A non negative value.
+     * @return The bucket index.
+     */
+    static int bucketIndex(long value)
+    {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - 4;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift)
+            - SUB_BUCKETS;
+    }
+
+    /**
+     * Returns the greatest value stored at a bucket.
+     *
+     * @param index The bucket index.
+     * @return The greatest value of the bucket.
+     */
+    static long bucketUpperBound(int index)
+    {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long subBucket = index % SUB_BUCKETS + SUB_BUCKETS;
+        long upperBound = ((subBucket + 1) << shift) - 1;
+        return (upperBound < 0) ? Long.MAX_VALUE : upperBound;
+    }
+
+    /**
+     * Returns a string representation of the object.
+     */
+    @Override
+    public String toString()
+    {
+        return String.format(
+            "%s{count=%d, mean=%.1f, p50=%d, p99=%d, max=%d}", this.name,
+            this.getCount(), this.getMean(), this.getValueAtPercentile(50),
+            this.getValueAtPercentile(99), this.getMax());
+    }
+}
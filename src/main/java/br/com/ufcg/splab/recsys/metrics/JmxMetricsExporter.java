@@ -0,0 +1,202 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Exposes the metrics of a registry as the attributes of a JMX MBean, read
+ * live from the registry at each request. Each counter is exposed with its
+ * own name, and each timer or histogram as a group of attributes
+ * ({@code <name>.count}, {@code .mean}, {@code .p50}, {@code .p99} and
+ * {@code .max}). The timers' values are in nanoseconds.
+ *
+ * @author Saulo Toledo
+ */
+public class JmxMetricsExporter implements MetricsExporter
+{
+    /**
+     * The default name of the MBean.
+     */
+    public static final String DEFAULT_OBJECT_NAME = "br.com.ufcg.splab.recsys:type=Metrics";
+
+    private final ObjectName objectName;
+    private final MBeanServer server;
+
+    /**
+     * Creates an exporter for the platform MBean server and the default
+     * MBean name.
+     *
+     * @throws JMException If the default name is invalid.
+     */
+    public JmxMetricsExporter() throws JMException
+    {
+        this(ManagementFactory.getPlatformMBeanServer(), new ObjectName(
+            DEFAULT_OBJECT_NAME));
+    }
+
+    /**
+     * Creates an exporter.
+     *
+     * @param server The MBean server.
+     * @param objectName The MBean name.
+     */
+    public JmxMetricsExporter(MBeanServer server, ObjectName objectName)
+    {
+        this.server = server;
+        this.objectName = objectName;
+    }
+
+    /**
+     * Registers the registry's MBean, if it is not registered yet. The MBean
+     * reads the registry at each request, so there is nothing else to
+     * publish after the registration.
+     */
+    @Override
+    public synchronized void export(MetricsRegistry registry)
+        throws JMException
+    {
+        if ( !this.server.isRegistered(this.objectName)) {
+            this.server.registerMBean(new MetricsMBean(registry),
+                this.objectName);
+        }
+    }
+
+    /**
+     * Unregisters the MBean, if it is registered.
+     *
+     * @throws JMException If the MBean cannot be unregistered.
+     */
+    public synchronized void unregister() throws JMException
+    {
+        if (this.server.isRegistered(this.objectName)) {
+            this.server.unregisterMBean(this.objectName);
+        }
+    }
+
+    /**
+     * The MBean that reads the metrics from a registry.
+     */
+    static class MetricsMBean implements DynamicMBean
+    {
+        private final MetricsRegistry registry;
+
+        MetricsMBean(MetricsRegistry registry)
+        {
+            this.registry = registry;
+        }
+
+        /**
+         * Reads all the metrics values, by attribute name.
+         *
+         * @return The attributes values.
+         */
+        Map<String, Object> readValues()
+        {
+            Map<String, Object> values = new LinkedHashMap<String, Object>();
+
+            for (Counter counter : this.registry.getCounters().values()) {
+                values.put(counter.getName(), counter.getValue());
+            }
+            for (Timer timer : this.registry.getTimers().values()) {
+                putHistogramValues(values, timer.getHistogram());
+            }
+            for (Histogram histogram : this.registry.getHistograms().values()) {
+                putHistogramValues(values, histogram);
+            }
+
+            return values;
+        }
+
+        private static void putHistogramValues(Map<String, Object> values,
+            Histogram histogram)
+        {
+            String name = histogram.getName();
+            values.put(name + ".count", histogram.getCount());
+            values.put(name + ".mean", histogram.getMean());
+            values.put(name + ".p50", histogram.getValueAtPercentile(50));
+            values.put(name + ".p99", histogram.getValueAtPercentile(99));
+            values.put(name + ".max", histogram.getMax());
+        }
+
+        @Override
+        public Object getAttribute(String attribute)
+            throws AttributeNotFoundException
+        {
+            Map<String, Object> values = this.readValues();
+            if ( !values.containsKey(attribute)) {
+                throw new AttributeNotFoundException(attribute);
+            }
+            return values.get(attribute);
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute)
+            throws AttributeNotFoundException
+        {
+            throw new AttributeNotFoundException(String.format(
+                "The metric '%s' is read only", attribute.getName()));
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes)
+        {
+            Map<String, Object> values = this.readValues();
+            AttributeList result = new AttributeList();
+            for (String attribute : attributes) {
+                if (values.containsKey(attribute)) {
+                    result.add(new Attribute(attribute, values.get(attribute)));
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes)
+        {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params,
+            String[] signature)
+        {
+            throw new UnsupportedOperationException(actionName);
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo()
+        {
+            List<MBeanAttributeInfo> attributes = new ArrayList<MBeanAttributeInfo>();
+            for (Map.Entry<String, Object> entry : this.readValues()
+                .entrySet()) {
+                attributes.add(new MBeanAttributeInfo(entry.getKey(), entry
+                    .getValue().getClass().getName(), entry.getKey(), true,
+                    false, false));
+            }
+
+            return new MBeanInfo(this.getClass().getName(),
+                "The OntoRec metrics",
+                attributes.toArray(new MBeanAttributeInfo[attributes.size()]),
+                null, new MBeanOperationInfo[0], null);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.metrics;
+
+/**
+ * Publishes the metrics of a registry to an external system. Exporters are
+ * added with {@link MetricsRegistry#addExporter(MetricsExporter)} and called
+ * at each {@link MetricsRegistry#export()}, usually from a scheduled task of
+ * the application.
+ *
+ * @author Saulo Toledo
+ */
+public interface MetricsExporter
+{
+    /**
+     * Publishes the current values of the registry's metrics.
+     *
+     * @param registry The registry.
+     * @throws Exception If the metrics cannot be published.
+     */
+    void export(MetricsRegistry registry) throws Exception;
+}
@@ -0,0 +1,195 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.metrics;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the named counters, timers and histograms of the application. The
+ * metrics are created at the first request for their names and live as long
+ * as the registry. The library records its metrics at the
+ * {@link #getDefault() default registry}.
+ *
+ * @author Saulo Toledo
+ */
+public class MetricsRegistry
+{
+    /**
+     * The application logger.
+     */
+    private static final Logger LOGGER = LoggerFactory
+        .getLogger(MetricsRegistry.class);
+
+    private static final MetricsRegistry DEFAULT = new MetricsRegistry();
+
+    private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<String, Counter>();
+    private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<String, Timer>();
+    private final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<String, Histogram>();
+    private final List<MetricsExporter> exporters = new CopyOnWriteArrayList<MetricsExporter>();
+
+    /**
+     * Returns the registry where the library records its metrics.
+     *
+     * @return The default registry.
+     */
+    public static MetricsRegistry getDefault()
+    {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns a counter, creating it if needed.
+     *
+     * @param name The counter name.
+     * @return The counter.
+     */
+    public Counter counter(String name)
+    {
+        Counter counter = this.counters.get(name);
+        if (counter == null) {
+            Counter created = new Counter(name);
+            counter = this.counters.putIfAbsent(name, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        return counter;
+    }
+
+    /**
+     * Returns a timer, creating it if needed.
+     *
+     * @param name The timer name.
+     * @return The timer.
+     */
+    public Timer timer(String name)
+    {
+        Timer timer = this.timers.get(name);
+        if (timer == null) {
+            Timer created = new Timer(name);
+            timer = this.timers.putIfAbsent(name, created);
+            if (timer == null) {
+                timer = created;
+            }
+        }
+        return timer;
+    }
+
+    /**
+     * Returns a histogram, creating it if needed.
+     *
+     * @param name The histogram name.
+     * @return The histogram.
+     */
+    public Histogram histogram(String name)
+    {
+        Histogram histogram = this.histograms.get(name);
+        if (histogram == null) {
+            Histogram created = new Histogram(name);
+            histogram = this.histograms.putIfAbsent(name, created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Returns the counters, sorted by name.
+     *
+     * @return An unmodifiable map from names to counters.
+     */
+    public SortedMap<String, Counter> getCounters()
+    {
+        return Collections
+            .unmodifiableSortedMap(new TreeMap<String, Counter>(this.counters));
+    }
+
+    /**
+     * Returns the timers, sorted by name.
+     *
+     * @return An unmodifiable map from names to timers.
+     */
+    public SortedMap<String, Timer> getTimers()
+    {
+        return Collections
+            .unmodifiableSortedMap(new TreeMap<String, Timer>(this.timers));
+    }
+
+    /**
+     * Returns the histograms, sorted by name.
+     *
+     * @return An unmodifiable map from names to histograms.
+     */
+    public SortedMap<String, Histogram> getHistograms()
+    {
+        return Collections.unmodifiableSortedMap(new TreeMap<String, Histogram>(
+            this.histograms));
+    }
+
+    /**
+     * Adds an exporter, called at each {@link #export()}.
+     *
+     * @param exporter The exporter.
+     */
+    public void addExporter(MetricsExporter exporter)
+    {
+        this.exporters.add(exporter);
+    }
+
+    /**
+     * Removes an exporter.
+     *
+     * @param exporter The exporter.
+     * @return True if the exporter was registered, false otherwise.
+     */
+    public boolean removeExporter(MetricsExporter exporter)
+    {
+        return this.exporters.remove(exporter);
+    }
+
+    /**
+     * Publishes the metrics through all the exporters. A failing exporter is
+     * logged and does not prevent the others from running.
+     */
+    public void export()
+    {
+        for (MetricsExporter exporter : this.exporters) {
+            try {
+                exporter.export(this);
+            } catch (Exception e) {
+                LOGGER.warn("The metrics exporter {} failed", exporter
+                    .getClass().getSimpleName(), e);
+            }
+        }
+    }
+
+    /**
+     * Resets the values of all the metrics. The metrics themselves are kept,
+     * so the references held by the instrumented code remain valid.
+     */
+    public void reset()
+    {
+        for (Counter counter : this.counters.values()) {
+            counter.reset();
+        }
+        for (Timer timer : this.timers.values()) {
+            timer.getHistogram().reset();
+        }
+        for (Histogram histogram : this.histograms.values()) {
+            histogram.reset();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.metrics;
+
+/**
+ * The graph work done by the current thread since it started. The values
+ * only grow, so the work done by a call is the difference between the values
+ * read at its end and at its beginning.
+ *
+ * @author Saulo Toledo
+ */
+public final class ThreadWork
+{
+    /**
+     * The index of the visited nodes at the work array.
+     */
+    public static final int NODES = 0;
+
+    /**
+     * The index of the followed edges at the work array.
+     */
+    public static final int EDGES = 1;
+
+    /**
+     * The index of the built paths at the work array.
+     */
+    public static final int PATHS = 2;
+
+    private static final ThreadLocal<long[]> WORK = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue()
+        {
+            return new long[3];
+        }
+    };
+
+    private ThreadWork()
+    {
+    }
+
+    /**
+     * Adds graph work done by the current thread.
+     *
+     * @param nodes The visited nodes.
+     * @param edges The followed edges.
+     * @param paths The built paths.
+     */
+    public static void add(long nodes, long edges, long paths)
+    {
+        long[] work = WORK.get();
+        work[NODES] += nodes;
+        work[EDGES] += edges;
+        work[PATHS] += paths;
+    }
+
+    /**
+     * Returns the work done by the current thread. The array is updated in
+     * place, so its values must be copied to be kept.
+     *
+     * @return The work, indexed by {@link #NODES}, {@link #EDGES} and
+     *         {@link #PATHS}.
+     */
+    public static long[] current()
+    {
+        return WORK.get();
+    }
+}
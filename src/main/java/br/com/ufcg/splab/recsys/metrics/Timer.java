@@ -0,0 +1,101 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency of an operation. The durations are recorded in
+ * nanoseconds at a {@link Histogram}:
+ *
+ * <pre>
+ * long start = timer.start();
+ * try {
+ *     ...
+ * } finally {
+ *     timer.stop(start);
+ * }
+ * </pre>
+ *
+ * @author Saulo Toledo
+ */
+public class Timer
+{
+    private final Histogram histogram;
+
+    /**
+     * Creates a timer. Timers are created by {@link MetricsRegistry}.
+     *
+     * @param name The timer name.
+     */
+    Timer(String name)
+    {
+        this.histogram = new Histogram(name);
+    }
+
+    /**
+     * Returns the timer name.
+     *
+     * @return The timer name.
+     */
+    public String getName()
+    {
+        return this.histogram.getName();
+    }
+
+    /**
+     * Returns the start time of a measurement.
+     *
+     * @return The start time, to be informed to {@link #stop(long)}.
+     */
+    public long start()
+    {
+        return System.nanoTime();
+    }
+
+    /**
+     * Records the time elapsed since a measurement started.
+     *
+     * @param start The value returned by {@link #start()}.
+     * @return The elapsed time in nanoseconds.
+     */
+    public long stop(long start)
+    {
+        long elapsed = System.nanoTime() - start;
+        this.histogram.record(elapsed);
+        return elapsed;
+    }
+
+    /**
+     * Records a duration.
+     *
+     * @param duration The duration.
+     * @param unit The duration unit.
+     */
+    public void record(long duration, TimeUnit unit)
+    {
+        this.histogram.record(unit.toNanos(duration));
+    }
+
+    /**
+     * Returns the histogram with the recorded durations, in nanoseconds.
+     *
+     * @return The histogram.
+     */
+    public Histogram getHistogram()
+    {
+        return this.histogram;
+    }
+
+    /**
+     * Returns a string representation of the object.
+     */
+    @Override
+    public String toString()
+    {
+        return this.histogram.toString();
+    }
+}
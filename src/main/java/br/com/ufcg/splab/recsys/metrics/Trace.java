@@ -0,0 +1,316 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Captures the typed events of a single request in a ring buffer. A trace is
+ * active at the thread that started it, until it is stopped. The events keep
+ * references to their subjects and details, and are only rendered as text
+ * when the trace is read, so recording an event does not format or allocate
+ * anything. The instrumented code does nothing when there is no active
+ * trace:
+ *
+ * <pre>
+ * Trace trace = Trace.current();
+ * if (trace != null) {
+ *     trace.record(EventType.DISTANCE_FOUND, node, target, distance);
+ * }
+ * </pre>
+ *
+ * When the buffer is full, the oldest events are discarded. The subjects
+ * and details must not be changed after they are recorded.
+ *
+ * @author Saulo Toledo
+ */
+public class Trace
+{
+    /**
+     * The default number of events kept by a trace.
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * The traced event types. Each type renders its subject, detail and value
+     * with its own message.
+     */
+    public enum EventType
+    {
+        /**
+         * The τ-nth ancestors of a node were computed. The detail is the set
+         * of ancestors and the value is τ.
+         */
+        TAU_ANCESTORS_COMPUTED("The τ-ancestors of '%s' for τ=%3$d are %2$s"),
+
+        /**
+         * The subgraph below an ancestor was discovered. The detail is the
+         * set of subgraph nodes and the value is its size.
+         */
+        SUBGRAPH_DISCOVERED("The subgraph below '%s' has %3$d nodes: %2$s"),
+
+        /**
+         * A distance between two nodes was found. The value is the distance.
+         */
+        DISTANCE_FOUND("The distance from '%s' to '%s' is %d"),
+
+        /**
+         * The distances from a node to all the reachable mapped nodes were
+         * computed. The detail is the distances map.
+         */
+        DISTANCES_COMPUTED("The distances from '%s' to the mapped nodes are %s"),
+
+        /**
+         * The weights for a selected feature were computed. The detail is the
+         * partial weights map and the value is the sum of the distances.
+         */
+        FEATURE_WEIGHTS_COMPUTED(
+            "The weights for the feature '%s' are %s (the sum of distances is %d)"),
+
+        /**
+         * The items were scored for a user. The subject is the approach name,
+         * the detail is the ordered result and the value is the number of
+         * scored items.
+         */
+        ITEMS_SCORED("%s scored %3$d items, the best ones are %2$s");
+
+        private final String message;
+
+        private EventType(String message)
+        {
+            this.message = message;
+        }
+
+        /**
+         * Renders an event of this type.
+         *
+         * @param subject The event subject.
+         * @param detail The event detail.
+         * @param value The event value.
+         * @return The event message.
+         */
+        public String render(Object subject, Object detail, long value)
+        {
+            return String.format(this.message, subject, detail, value);
+        }
+    }
+
+    private static final ThreadLocal<Trace> CURRENT = new ThreadLocal<Trace>();
+
+    private final EventType[] types;
+    private final long[] timestamps;
+    private final Object[] subjects;
+    private final Object[] details;
+    private final long[] values;
+
+    private long recorded;
+    private long startTime;
+    private Trace previous;
+
+    /**
+     * Creates an inactive trace with the default capacity.
+     */
+    public Trace()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an inactive trace.
+     *
+     * @param capacity The number of events to keep.
+     */
+    public Trace(int capacity)
+    {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException(
+                "The trace capacity must be positive");
+        }
+        this.types = new EventType[capacity];
+        this.timestamps = new long[capacity];
+        this.subjects = new Object[capacity];
+        this.details = new Object[capacity];
+        this.values = new long[capacity];
+    }
+
+    /**
+     * Returns the trace active at the current thread.
+     *
+     * @return The active trace, or null if the tracing is off.
+     */
+    public static Trace current()
+    {
+        return CURRENT.get();
+    }
+
+    /**
+     * Activates this trace at the current thread. The previously active trace,
+     * if any, is activated again when this one is stopped.
+     *
+     * @return This trace.
+     */
+    public Trace start()
+    {
+        this.previous = CURRENT.get();
+        this.startTime = System.nanoTime();
+        CURRENT.set(this);
+        return this;
+    }
+
+    /**
+     * Deactivates this trace at the current thread.
+     */
+    public void stop()
+    {
+        if (this.previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(this.previous);
+        }
+        this.previous = null;
+    }
+
+    /**
+     * Records an event.
+     *
+     * @param type The event type.
+     * @param subject The event subject.
+     * @param detail The event detail.
+     * @param value The event value.
+     */
+    public void record(EventType type, Object subject, Object detail,
+        long value)
+    {
+        int slot = (int) (this.recorded % this.types.length);
+        this.types[slot] = type;
+        this.timestamps[slot] = System.nanoTime() - this.startTime;
+        this.subjects[slot] = subject;
+        this.details[slot] = detail;
+        this.values[slot] = value;
+        this.recorded++;
+    }
+
+    /**
+     * Returns the number of recorded events, including the discarded ones.
+     *
+     * @return The number of recorded events.
+     */
+    public long getRecordedCount()
+    {
+        return this.recorded;
+    }
+
+    /**
+     * Returns the number of events discarded because the buffer was full.
+     *
+     * @return The number of discarded events.
+     */
+    public long getDroppedCount()
+    {
+        return Math.max(0, this.recorded - this.types.length);
+    }
+
+    /**
+     * Returns the kept events, from the oldest to the newest.
+     *
+     * @return An unmodifiable list with the kept events.
+     */
+    public List<Event> getEvents()
+    {
+        int kept = (int) Math.min(this.recorded, this.types.length);
+        List<Event> events = new ArrayList<Event>(kept);
+
+        for (long i = this.recorded - kept; i < this.recorded; i++) {
+            int slot = (int) (i % this.types.length);
+            events.add(new Event(this.types[slot], this.timestamps[slot],
+                this.subjects[slot], this.details[slot], this.values[slot]));
+        }
+        return Collections.unmodifiableList(events);
+    }
+
+    /**
+     * Renders the kept events, one per line.
+     *
+     * @return The rendered events.
+     */
+    public String render()
+    {
+        StringBuilder sb = new StringBuilder();
+        if (this.getDroppedCount() > 0) {
+            sb.append(String.format("(%d older events were discarded)%n",
+                this.getDroppedCount()));
+        }
+        for (Event event : this.getEvents()) {
+            sb.append(event).append(String.format("%n"));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * A recorded event.
+     */
+    public static class Event
+    {
+        private final EventType type;
+        private final long timestamp;
+        private final Object subject;
+        private final Object detail;
+        private final long value;
+
+        Event(EventType type, long timestamp, Object subject, Object detail,
+            long value)
+        {
+            this.type = type;
+            this.timestamp = timestamp;
+            this.subject = subject;
+            this.detail = detail;
+            this.value = value;
+        }
+
+        public EventType getType()
+        {
+            return this.type;
+        }
+
+        /**
+         * Returns when the event was recorded.
+         *
+         * @return The nanoseconds since the trace was started.
+         */
+        public long getTimestamp()
+        {
+            return this.timestamp;
+        }
+
+        public Object getSubject()
+        {
+            return this.subject;
+        }
+
+        public Object getDetail()
+        {
+            return this.detail;
+        }
+
+        public long getValue()
+        {
+            return this.value;
+        }
+
+        /**
+         * Returns a string representation of the object.
+         */
+        @Override
+        public String toString()
+        {
+            return String.format("[%.3fms] %s: %s", this.timestamp / 1e6,
+                this.type, this.type.render(this.subject, this.detail,
+                    this.value));
+        }
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.metrics.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The recommendation of the top-N items to each user of a batch.
+ *
+ * @author Saulo Toledo
+ */
+@Name("br.com.ufcg.splab.recsys.BatchRecommendation")
+@Label("Batch Recommendation")
+@Description("The items were scored and the best ones recommended to each user of a batch")
+class BatchRecommendationEvent extends WorkEvent
+{
+    @Label("Approach")
+    String approach;
+
+    @Label("Users")
+    int users;
+
+    @Label("Items Scored")
+    long itemsScored;
+
+    @Label("Requested Items")
+    int requestedItems;
+}
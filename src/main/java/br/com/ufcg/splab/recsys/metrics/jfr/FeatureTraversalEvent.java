@@ -0,0 +1,30 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.metrics.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The traversal of the graph from the node of a selected feature.
+ *
+ * @author Saulo Toledo
+ */
+@Name("br.com.ufcg.splab.recsys.FeatureTraversal")
+@Label("Feature Traversal")
+@Description("The distances from a selected feature to the mapped nodes were found")
+class FeatureTraversalEvent extends WorkEvent
+{
+    @Label("Feature")
+    String feature;
+
+    @Label("Tau")
+    int tau;
+
+    @Label("Reached Nodes")
+    int reachedNodes;
+}
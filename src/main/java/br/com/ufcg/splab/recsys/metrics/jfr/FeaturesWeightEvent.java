@@ -0,0 +1,36 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.metrics.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The calculation of the features' weight for a selection of features.
+ *
+ * @author Saulo Toledo
+ */
+@Name("br.com.ufcg.splab.recsys.FeaturesWeight")
+@Label("Features Weight")
+@Description("The features' weight were calculated for the selected features")
+class FeaturesWeightEvent extends WorkEvent
+{
+    @Label("Approach")
+    String approach;
+
+    @Label("Tau")
+    int tau;
+
+    @Label("Lambda")
+    boolean lambda;
+
+    @Label("Upsilon")
+    boolean upsilon;
+
+    @Label("Selected Features")
+    int selectedFeatures;
+}
@@ -0,0 +1,293 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.metrics.jfr;
+
+/**
+ * Emits the OntoRec stages as JDK Flight Recorder events, in the "OntoRec"
+ * category, so they can be correlated with the GC, lock and I/O events of
+ * the same recording. Each stage is opened by a <code>begin</code> method
+ * and closed by the matching <code>end</code> method, which receives what
+ * was returned by the first one:
+ *
+ * <pre>
+ * Object event = FlightRecorderEvents.beginFeaturesWeight();
+ * ...
+ * FlightRecorderEvents.endFeaturesWeight(event, approach, tau, lambda,
+ *     upsilon, selectedFeatures.size());
+ * </pre>
+ *
+ * The events are only created if the JVM has the Flight Recorder, and are
+ * only written if a recording enables them (e.g. by starting the JVM with
+ * <code>-XX:StartFlightRecording</code>). The callers only see the events
+ * as objects, so the event classes are never loaded by JVMs without the
+ * Flight Recorder.
+ *
+ * @author Saulo Toledo
+ */
+public final class FlightRecorderEvents
+{
+    private static final boolean AVAILABLE = isFlightRecorderPresent();
+
+    private FlightRecorderEvents()
+    {
+    }
+
+    private static boolean isFlightRecorderPresent()
+    {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns if the JVM has the Flight Recorder.
+     *
+     * @return true if the events are emitted, false otherwise.
+     */
+    public static boolean isAvailable()
+    {
+        return AVAILABLE;
+    }
+
+    /**
+     * Opens the event of an ontology load.
+     *
+     * @return The event, or null if the events are not emitted.
+     */
+    public static Object beginOntologyLoad()
+    {
+        if ( !AVAILABLE) {
+            return null;
+        }
+        OntologyLoadEvent event = new OntologyLoadEvent();
+        event.beginWork();
+        return event;
+    }
+
+    /**
+     * Closes the event of an ontology load.
+     *
+     * @param handle The event returned by {@link #beginOntologyLoad()}.
+     * @param file The ontology file.
+     * @param nodes The number of loaded nodes.
+     */
+    public static void endOntologyLoad(Object handle, String file, int nodes)
+    {
+        if (handle == null) {
+            return;
+        }
+        OntologyLoadEvent event = (OntologyLoadEvent) handle;
+        if (event.endWork()) {
+            event.file = file;
+            event.nodes = nodes;
+            event.commit();
+        }
+    }
+
+    /**
+     * Opens the event of a features mapping.
+     *
+     * @return The event, or null if the events are not emitted.
+     */
+    public static Object beginMapping()
+    {
+        if ( !AVAILABLE) {
+            return null;
+        }
+        MappingEvent event = new MappingEvent();
+        event.beginWork();
+        return event;
+    }
+
+    /**
+     * Closes the event of a features mapping.
+     *
+     * @param handle The event returned by {@link #beginMapping()}.
+     * @param processor The name of the mappings processor.
+     * @param mappedFeatures The number of mapped features.
+     */
+    public static void endMapping(Object handle, String processor,
+        int mappedFeatures)
+    {
+        if (handle == null) {
+            return;
+        }
+        MappingEvent event = (MappingEvent) handle;
+        if (event.endWork()) {
+            event.processor = processor;
+            event.mappedFeatures = mappedFeatures;
+            event.commit();
+        }
+    }
+
+    /**
+     * Opens the event of a features' weight calculation.
+     *
+     * @return The event, or null if the events are not emitted.
+     */
+    public static Object beginFeaturesWeight()
+    {
+        if ( !AVAILABLE) {
+            return null;
+        }
+        FeaturesWeightEvent event = new FeaturesWeightEvent();
+        event.beginWork();
+        return event;
+    }
+
+    /**
+     * Closes the event of a features' weight calculation.
+     *
+     * @param handle The event returned by {@link #beginFeaturesWeight()}.
+     * @param approach The name of the weighting approach.
+     * @param tau The τ value.
+     * @param lambda The λ value.
+     * @param upsilon The υ value.
+     * @param selectedFeatures The number of selected features.
+     */
+    public static void endFeaturesWeight(Object handle, String approach,
+        int tau, boolean lambda, boolean upsilon, int selectedFeatures)
+    {
+        if (handle == null) {
+            return;
+        }
+        FeaturesWeightEvent event = (FeaturesWeightEvent) handle;
+        if (event.endWork()) {
+            event.approach = approach;
+            event.tau = tau;
+            event.lambda = lambda;
+            event.upsilon = upsilon;
+            event.selectedFeatures = selectedFeatures;
+            event.commit();
+        }
+    }
+
+    /**
+     * Opens the event of the traversal for a selected feature.
+     *
+     * @return The event, or null if the events are not emitted.
+     */
+    public static Object beginFeatureTraversal()
+    {
+        if ( !AVAILABLE) {
+            return null;
+        }
+        FeatureTraversalEvent event = new FeatureTraversalEvent();
+        event.beginWork();
+        return event;
+    }
+
+    /**
+     * Closes the event of the traversal for a selected feature.
+     *
+     * @param handle The event returned by {@link #beginFeatureTraversal()}.
+     * @param feature The selected feature.
+     * @param tau The τ value.
+     * @param reachedNodes The number of mapped nodes reached.
+     */
+    public static void endFeatureTraversal(Object handle, String feature,
+        int tau, int reachedNodes)
+    {
+        if (handle == null) {
+            return;
+        }
+        FeatureTraversalEvent event = (FeatureTraversalEvent) handle;
+        if (event.endWork()) {
+            event.feature = feature;
+            event.tau = tau;
+            event.reachedNodes = reachedNodes;
+            event.commit();
+        }
+    }
+
+    /**
+     * Opens the event of a recommendation.
+     *
+     * @return The event, or null if the events are not emitted.
+     */
+    public static Object beginRecommendation()
+    {
+        if ( !AVAILABLE) {
+            return null;
+        }
+        RecommendationEvent event = new RecommendationEvent();
+        event.beginWork();
+        return event;
+    }
+
+    /**
+     * Closes the event of a recommendation.
+     *
+     * @param handle The event returned by {@link #beginRecommendation()}.
+     * @param approach The name of the recommendation approach.
+     * @param itemsScored The number of scored items.
+     * @param requestedItems The number of requested items (the N of the
+     *        top-N), or -1 if all the items were requested.
+     * @param recommendedItems The number of recommended items.
+     */
+    public static void endRecommendation(Object handle, String approach,
+        long itemsScored, int requestedItems, int recommendedItems)
+    {
+        if (handle == null) {
+            return;
+        }
+        RecommendationEvent event = (RecommendationEvent) handle;
+        if (event.endWork()) {
+            event.approach = approach;
+            event.itemsScored = itemsScored;
+            event.requestedItems = requestedItems;
+            event.recommendedItems = recommendedItems;
+            event.commit();
+        }
+    }
+
+    /**
+     * Opens the event of a batch recommendation.
+     *
+     * @return The event, or null if the events are not emitted.
+     */
+    public static Object beginBatchRecommendation()
+    {
+        if ( !AVAILABLE) {
+            return null;
+        }
+        BatchRecommendationEvent event = new BatchRecommendationEvent();
+        event.beginWork();
+        return event;
+    }
+
+    /**
+     * Closes the event of a batch recommendation.
+     *
+     * @param handle The event returned by
+     *        {@link #beginBatchRecommendation()}.
+     * @param approach The name of the recommendation approach.
+     * @param users The number of users of the batch.
+     * @param itemsScored The number of scored items, for all the users.
+     * @param requestedItems The number of requested items per user (the N
+     *        of the top-N), or -1 if all the items were requested.
+     */
+    public static void endBatchRecommendation(Object handle, String approach,
+        int users, long itemsScored, int requestedItems)
+    {
+        if (handle == null) {
+            return;
+        }
+        BatchRecommendationEvent event = (BatchRecommendationEvent) handle;
+        if (event.endWork()) {
+            event.approach = approach;
+            event.users = users;
+            event.itemsScored = itemsScored;
+            event.requestedItems = requestedItems;
+            event.commit();
+        }
+    }
+}
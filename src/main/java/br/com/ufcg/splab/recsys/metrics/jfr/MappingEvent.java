@@ -0,0 +1,27 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.metrics.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The application of a mappings processor to a node manager.
+ *
+ * @author Saulo Toledo
+ */
+@Name("br.com.ufcg.splab.recsys.Mapping")
+@Label("Features Mapping")
+@Description("The features were mapped to the ontology nodes")
+class MappingEvent extends WorkEvent
+{
+    @Label("Processor")
+    String processor;
+
+    @Label("Mapped Features")
+    int mappedFeatures;
+}
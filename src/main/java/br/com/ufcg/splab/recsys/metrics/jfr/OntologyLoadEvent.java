@@ -0,0 +1,27 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.metrics.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The load of an ontology into a node manager.
+ *
+ * @author Saulo Toledo
+ */
+@Name("br.com.ufcg.splab.recsys.OntologyLoad")
+@Label("Ontology Load")
+@Description("An ontology file was read into a node manager")
+class OntologyLoadEvent extends WorkEvent
+{
+    @Label("File")
+    String file;
+
+    @Label("Nodes")
+    int nodes;
+}
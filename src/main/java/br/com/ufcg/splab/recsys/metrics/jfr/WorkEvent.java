@@ -0,0 +1,62 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+
+import br.com.ufcg.splab.recsys.metrics.ThreadWork;
+
+/**
+ * An OntoRec event that carries the graph work done by the current thread
+ * while it was open.
+ *
+ * @author Saulo Toledo
+ */
+@Category("OntoRec")
+abstract class WorkEvent extends Event
+{
+    @Label("Nodes Visited")
+    long nodesVisited;
+
+    @Label("Edges Visited")
+    long edgesVisited;
+
+    @Label("Paths Built")
+    long pathsBuilt;
+
+    /**
+     * Opens the event and reads the work done so far.
+     */
+    void beginWork()
+    {
+        long[] work = ThreadWork.current();
+        this.nodesVisited = work[ThreadWork.NODES];
+        this.edgesVisited = work[ThreadWork.EDGES];
+        this.pathsBuilt = work[ThreadWork.PATHS];
+        this.begin();
+    }
+
+    /**
+     * Closes the event and keeps the work done while it was open.
+     *
+     * @return true if the event must be committed, false otherwise.
+     */
+    boolean endWork()
+    {
+        this.end();
+        if ( !this.shouldCommit()) {
+            return false;
+        }
+
+        long[] work = ThreadWork.current();
+        this.nodesVisited = work[ThreadWork.NODES] - this.nodesVisited;
+        this.edgesVisited = work[ThreadWork.EDGES] - this.edgesVisited;
+        this.pathsBuilt = work[ThreadWork.PATHS] - this.pathsBuilt;
+        return true;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.ontorec;
+
+import java.util.Map;
+
+/**
+ * The features' weight calculated under a {@link WorkBudget}. A degraded
+ * result has the weights of the selected features expanded before the budget
+ * was exceeded; the selected features always have the weight 1 and the
+ * features that were not reached have the weight 0. The result of an anytime
+ * calculation holds the weights of the deepest τ completed within its budget.
+ *
+ * @author Saulo Toledo
+ */
+public class FeaturesWeightResult
+{
+    private final Map<String, Double> weights;
+    private final int tau;
+    private final WorkBudgetExceededException exceeded;
+
+    /**
+     * Creates a result.
+     *
+     * @param weights The features' weight.
+     * @param tau The τ value of the weights.
+     * @param exceeded The exception thrown when the budget was exceeded, or
+     *        null if the result is complete.
+     */
+    FeaturesWeightResult(Map<String, Double> weights, int tau,
+        WorkBudgetExceededException exceeded)
+    {
+        this.weights = weights;
+        this.tau = tau;
+        this.exceeded = exceeded;
+    }
+
+    public Map<String, Double> getWeights()
+    {
+        return this.weights;
+    }
+
+    /**
+     * Returns the τ value of the weights. It is lower than the requested one
+     * if an anytime calculation was stopped by its budget, and 0 if not even
+     * the first level was completed.
+     *
+     * @return The τ value.
+     */
+    public int getTau()
+    {
+        return this.tau;
+    }
+
+    /**
+     * Returns if the expansion was stopped by the budget.
+     *
+     * @return true if the result is partial.
+     */
+    public boolean isDegraded()
+    {
+        return this.exceeded != null;
+    }
+
+    /**
+     * Returns why the expansion was stopped.
+     *
+     * @return The exception thrown when the budget was exceeded, or null if
+     *         the result is complete.
+     */
+    public WorkBudgetExceededException getExceeded()
+    {
+        return this.exceeded;
+    }
+
+    /**
+     * Returns a string representation of the object.
+     */
+    @Override
+    public String toString()
+    {
+        return (this.isDegraded() ? "degraded " : "") + "τ = " + this.tau
+            + ": " + this.weights;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.ontorec;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The features' weight calculated for a range of τ values and one or both λ
+ * values by {@link NodeManager#getFeaturesWeightSweep}. Besides the weights
+ * of each τ and λ, it labels each feature with the min τ at which it becomes
+ * reachable from the selected features.
+ *
+ * @author Saulo Toledo
+ */
+public class FeaturesWeightSweep
+{
+    private final int minTau;
+    private final int maxTau;
+
+    private final Map<Boolean, Map<Integer, Map<String, Double>>> weights = new HashMap<Boolean, Map<Integer, Map<String, Double>>>();
+    private final Map<Boolean, Map<String, Integer>> minReachingTaus = new HashMap<Boolean, Map<String, Integer>>();
+
+    /**
+     * Creates an empty sweep.
+     *
+     * @param minTau The min τ value.
+     * @param maxTau The max τ value.
+     */
+    FeaturesWeightSweep(int minTau, int maxTau)
+    {
+        this.minTau = minTau;
+        this.maxTau = maxTau;
+    }
+
+    /**
+     * Adds the features' weight of a τ and λ. The τ values of a λ must be
+     * added in ascending order.
+     *
+     * @param tau The τ value.
+     * @param lambda The λ value.
+     * @param reachableFeatures The features reachable for this τ.
+     * @param featuresWeight The weight of all the mapped features.
+     */
+    void put(int tau, boolean lambda, Set<String> reachableFeatures,
+        Map<String, Double> featuresWeight)
+    {
+        Map<Integer, Map<String, Double>> lambdaWeights = this.weights
+            .get(lambda);
+        Map<String, Integer> lambdaTaus = this.minReachingTaus.get(lambda);
+        if (lambdaWeights == null) {
+            lambdaWeights = new HashMap<Integer, Map<String, Double>>();
+            lambdaTaus = new HashMap<String, Integer>();
+            this.weights.put(lambda, lambdaWeights);
+            this.minReachingTaus.put(lambda, lambdaTaus);
+        }
+
+        lambdaWeights.put(tau, Collections.unmodifiableMap(featuresWeight));
+        for (String feature : reachableFeatures) {
+            if ( !lambdaTaus.containsKey(feature)) {
+                lambdaTaus.put(feature, tau);
+            }
+        }
+    }
+
+    public int getMinTau()
+    {
+        return this.minTau;
+    }
+
+    public int getMaxTau()
+    {
+        return this.maxTau;
+    }
+
+    /**
+     * Returns the λ values of this sweep.
+     *
+     * @return The λ values.
+     */
+    public Set<Boolean> getLambdas()
+    {
+        return Collections.unmodifiableSet(this.weights.keySet());
+    }
+
+    /**
+     * Returns the features' weight of a τ and λ.
+     *
+     * @param tau The τ value.
+     * @param lambda The λ value.
+     * @return The weight of all the mapped features.
+     * @throws IllegalArgumentException If the τ or λ value was not swept.
+     */
+    public Map<String, Double> getWeights(int tau, boolean lambda)
+    {
+        Map<Integer, Map<String, Double>> lambdaWeights = this.weights
+            .get(lambda);
+        if (lambdaWeights == null || !lambdaWeights.containsKey(tau)) {
+            throw new IllegalArgumentException(String.format(
+                "The sweep has no features' weight for τ = %d and λ = %s",
+                tau, lambda));
+        }
+        return lambdaWeights.get(tau);
+    }
+
+    /**
+     * Returns the min swept τ at which each feature becomes reachable from
+     * the selected features. The selected features are reachable at the min τ
+     * of the sweep, and the features that are unreachable at the max τ are
+     * not in the result.
+     *
+     * @param lambda The λ value.
+     * @return A map from each reachable feature to its min τ.
+     * @throws IllegalArgumentException If the λ value was not swept.
+     */
+    public Map<String, Integer> getMinReachingTaus(boolean lambda)
+    {
+        Map<String, Integer> lambdaTaus = this.minReachingTaus.get(lambda);
+        if (lambdaTaus == null) {
+            throw new IllegalArgumentException(
+                "The sweep has no features' weight for λ = " + lambda);
+        }
+        return Collections.unmodifiableMap(lambdaTaus);
+    }
+
+    /**
+     * Returns a string representation of the object.
+     */
+    @Override
+    public String toString()
+    {
+        return String.format("τ in [%d, %d], λ in %s: %s", this.minTau,
+            this.maxTau, this.getLambdas(), this.weights);
+    }
+}
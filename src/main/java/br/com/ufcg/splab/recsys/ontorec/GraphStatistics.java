@@ -0,0 +1,413 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.ontorec;
+
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * The shape of a manager's hierarchy and the cost estimates derived from it.
+ * The statistics are computed in a single pass over the nodes in topological
+ * order (the parents before their children):
+ * <ul>
+ * <li>the depth of each node, as the longest path from a root;</li>
+ * <li>the branching, the multiple inheritance and the diamonds, where each
+ * parent beyond the first one of a node closes a diamond (or a cycle);</li>
+ * <li>by dynamic programming, the number of edges followed by the τ-nth
+ * ancestors path enumeration of each node, for each τ and λ.</li>
+ * </ul>
+ * The statistics are a snapshot. They are valid while the hierarchy and the
+ * features mapping (which defines the nodes ignored by λ) do not change. The
+ * cost estimates are only computed for acyclic hierarchies; for the other
+ * ones they are unknown.
+ *
+ * @author Saulo Toledo
+ * @param <T> The node type.
+ */
+public final class GraphStatistics<T>
+{
+    /**
+     * The value of an unknown cost estimate.
+     */
+    public static final long UNKNOWN_COST = -1;
+
+    /**
+     * The max τ with its own cost estimates. The estimates for larger τ values
+     * are the ones of this τ, so they are lower bounds.
+     */
+    static final int MAX_ESTIMATED_TAU = 8;
+
+    private final int nodeCount;
+    private final long edgeCount;
+    private final int rootCount;
+    private final int leafCount;
+    private final int maxDepth;
+    private final int maxParents;
+    private final int multipleInheritanceNodes;
+    private final boolean acyclic;
+
+    /**
+     * The depth of each node, by id.
+     */
+    private final int[] depths;
+
+    /**
+     * The max τ with its own estimates at this hierarchy. Beyond the max
+     * depth the path enumeration reaches all the roots, so its cost does not
+     * grow anymore.
+     */
+    private final int estimatedTaus;
+
+    /**
+     * The path enumeration cost of each node for each τ, indexed by
+     * <code>id * (estimatedTaus + 1) + τ</code>, for λ false and true. Null if
+     * the hierarchy has cycles.
+     */
+    private final long[][] enumerationCosts;
+
+    /**
+     * An upper bound of the number of edges above each node, by id. Null if
+     * the hierarchy has cycles.
+     */
+    private final long[] upwardEdges;
+
+    /**
+     * Computes the statistics of a manager's nodes.
+     *
+     * @param nodes The nodes, indexed by their ids.
+     */
+    GraphStatistics(List<Node<T>> nodes)
+    {
+        int count = nodes.size();
+        this.nodeCount = count;
+        this.depths = new int[count];
+
+        long edges = 0;
+        int roots = 0;
+        int leaves = 0;
+        int parentsMax = 0;
+        int multipleParents = 0;
+        boolean foreignNodes = false;
+
+        int[] pendingParents = new int[count];
+        LinkedList<Node<T>> ready = new LinkedList<Node<T>>();
+
+        for (Node<T> node : nodes) {
+            int parents = node.getParents().size();
+            edges += parents;
+            parentsMax = Math.max(parentsMax, parents);
+            if (parents > 1) {
+                multipleParents++;
+            }
+            if (node.isRoot()) {
+                roots++;
+                ready.add(node);
+            }
+            if (node.isLeaf()) {
+                leaves++;
+            }
+            pendingParents[node.getId()] = parents;
+
+            for (Node<T> parent : node.getParents()) {
+                foreignNodes |= !isManagedBy(parent, nodes);
+            }
+        }
+
+        this.edgeCount = edges;
+        this.rootCount = roots;
+        this.leafCount = leaves;
+        this.maxParents = parentsMax;
+        this.multipleInheritanceNodes = multipleParents;
+
+        // Kahn's algorithm, from the roots down. The nodes left behind are on
+        // cycles or below them:
+        List<Node<T>> order = new LinkedList<Node<T>>();
+        int depthMax = 0;
+        while ( !foreignNodes && !ready.isEmpty()) {
+            Node<T> node = ready.removeFirst();
+            order.add(node);
+            depthMax = Math.max(depthMax, this.depths[node.getId()]);
+
+            for (Node<T> child : node.getChildren()) {
+                if ( !isManagedBy(child, nodes)) {
+                    foreignNodes = true;
+                    break;
+                }
+                int id = child.getId();
+                this.depths[id] = Math.max(this.depths[id],
+                    this.depths[node.getId()] + 1);
+                if (--pendingParents[id] == 0) {
+                    ready.add(child);
+                }
+            }
+        }
+
+        this.maxDepth = depthMax;
+        this.acyclic = !foreignNodes && order.size() == count;
+
+        if ( !this.acyclic) {
+            boolean[] ordered = new boolean[count];
+            for (Node<T> node : order) {
+                ordered[node.getId()] = true;
+            }
+            for (int id = 0; id < count; id++) {
+                if ( !ordered[id]) {
+                    this.depths[id] = -1;
+                }
+            }
+        }
+        this.estimatedTaus = Math.min(depthMax + 1, MAX_ESTIMATED_TAU);
+
+        if (this.acyclic) {
+            this.enumerationCosts = new long[][] {
+                this.computeEnumerationCosts(order, false),
+                this.computeEnumerationCosts(order, true) };
+            this.upwardEdges = this.computeUpwardEdges(order);
+        } else {
+            this.enumerationCosts = null;
+            this.upwardEdges = null;
+        }
+    }
+
+    private static <T> boolean isManagedBy(Node<T> node, List<Node<T>> nodes)
+    {
+        int id = node.getId();
+        return id >= 0 && id < nodes.size() && nodes.get(id) == node;
+    }
+
+    /**
+     * Returns if a node is skipped by the τ-nth ancestors searches when λ is
+     * true. It is the same rule of the searches at {@link Node}.
+     *
+     * @param node The node.
+     * @return true if the node is an only begotten father without mapped
+     *         attributes.
+     */
+    static boolean isIgnoredByLambda(Node<?> node)
+    {
+        return node.getChildren().size() == 1 && !node.hasMappedAttributes();
+    }
+
+    /**
+     * Computes the number of edges followed by the path enumeration from each
+     * node. For a node n and a τ greater than zero, each parent p costs one
+     * edge plus its own cost for the τ left after moving to it, which is τ if p
+     * is ignored by λ or τ - 1 otherwise.
+     */
+    private long[] computeEnumerationCosts(List<Node<T>> order, boolean lambda)
+    {
+        int width = this.estimatedTaus + 1;
+        long[] costs = new long[this.nodeCount * width];
+        boolean[] ignored = new boolean[this.nodeCount];
+
+        for (Node<T> node : order) {
+            int id = node.getId();
+            ignored[id] = lambda && isIgnoredByLambda(node);
+
+            for (int tau = 1; tau < width; tau++) {
+                long cost = 0;
+                for (Node<T> parent : node.getParents()) {
+                    int parentId = parent.getId();
+                    int parentTau = ignored[parentId] ? tau : tau - 1;
+                    cost = saturatedAdd(cost, 1);
+                    if (parentTau > 0) {
+                        cost = saturatedAdd(cost, costs[parentId * width
+                            + parentTau]);
+                    }
+                }
+                costs[id * width + tau] = cost;
+            }
+        }
+        return costs;
+    }
+
+    /**
+     * Computes an upper bound of the number of distinct edges above each
+     * node. It counts the shared ancestors once per path, so it is capped by
+     * the total number of edges.
+     */
+    private long[] computeUpwardEdges(List<Node<T>> order)
+    {
+        long[] upward = new long[this.nodeCount];
+        for (Node<T> node : order) {
+            long edges = 0;
+            for (Node<T> parent : node.getParents()) {
+                edges = saturatedAdd(edges,
+                    saturatedAdd(1, upward[parent.getId()]));
+            }
+            upward[node.getId()] = Math.min(edges, this.edgeCount);
+        }
+        return upward;
+    }
+
+    private static long saturatedAdd(long a, long b)
+    {
+        long sum = a + b;
+        return (sum < 0) ? Long.MAX_VALUE : sum;
+    }
+
+    /**
+     * Estimates the edges followed by the τ-nth ancestors path enumeration of
+     * a node. The estimate is exact for the acyclic hierarchies and τ values
+     * up to {@value #MAX_ESTIMATED_TAU}.
+     *
+     * @param node The node.
+     * @param tau The τ value.
+     * @param lambda If only begotten fathers are ignored.
+     * @return The estimated cost, or {@link #UNKNOWN_COST} if the hierarchy
+     *         has cycles.
+     */
+    public long estimatePathEnumerationCost(Node<T> node, int tau,
+        boolean lambda)
+    {
+        if (this.enumerationCosts == null || !this.contains(node)) {
+            return UNKNOWN_COST;
+        }
+        if (tau <= 0) {
+            return 0;
+        }
+        int width = this.estimatedTaus + 1;
+        return this.enumerationCosts[lambda ? 1 : 0][node.getId() * width
+            + Math.min(tau, this.estimatedTaus)];
+    }
+
+    /**
+     * Estimates the edges followed by the τ-nth ancestors state traversal of
+     * a node, which expands each pair of ancestor and remaining τ once. It is
+     * never more than the path enumeration cost, and much less of it when
+     * the paths share ancestors through diamonds.
+     *
+     * @param node The node.
+     * @param tau The τ value.
+     * @param lambda If only begotten fathers are ignored.
+     * @return The estimated cost, or {@link #UNKNOWN_COST} if the hierarchy
+     *         has cycles.
+     */
+    public long estimateStateTraversalCost(Node<T> node, int tau,
+        boolean lambda)
+    {
+        long enumeration = this.estimatePathEnumerationCost(node, tau, lambda);
+        if (enumeration <= 0) {
+            return enumeration;
+        }
+        long upward = this.upwardEdges[node.getId()];
+        long states = (upward > Long.MAX_VALUE / tau) ? Long.MAX_VALUE
+            : upward * tau;
+        return Math.min(enumeration, states);
+    }
+
+    private boolean contains(Node<T> node)
+    {
+        int id = node.getId();
+        return id >= 0 && id < this.nodeCount;
+    }
+
+    public int getNodeCount()
+    {
+        return this.nodeCount;
+    }
+
+    public long getEdgeCount()
+    {
+        return this.edgeCount;
+    }
+
+    public int getRootCount()
+    {
+        return this.rootCount;
+    }
+
+    public int getLeafCount()
+    {
+        return this.leafCount;
+    }
+
+    /**
+     * Returns the length of the longest path from a root to a node.
+     *
+     * @return The max depth, or the max depth above the cycles if the
+     *         hierarchy is not acyclic.
+     */
+    public int getMaxDepth()
+    {
+        return this.maxDepth;
+    }
+
+    /**
+     * Returns the depth of a node, as the longest path from a root to it.
+     *
+     * @param node The node.
+     * @return The node depth, or -1 if it is not a node of this hierarchy or
+     *         if it is on or below a cycle.
+     */
+    public int getDepth(Node<T> node)
+    {
+        return this.contains(node) ? this.depths[node.getId()] : -1;
+    }
+
+    /**
+     * Returns the mean number of children of the nodes that have children.
+     *
+     * @return The mean branching.
+     */
+    public double getMeanBranching()
+    {
+        int parents = this.nodeCount - this.leafCount;
+        return (parents == 0) ? 0 : (double) this.edgeCount / parents;
+    }
+
+    public int getMaxParents()
+    {
+        return this.maxParents;
+    }
+
+    /**
+     * Returns the number of nodes with more than one parent.
+     *
+     * @return The multiple inheritance nodes.
+     */
+    public int getMultipleInheritanceNodes()
+    {
+        return this.multipleInheritanceNodes;
+    }
+
+    /**
+     * Returns the number of diamonds. Each edge beyond the ones of a spanning
+     * forest closes a diamond (two paths that meet again at an ancestor), or
+     * a cycle.
+     *
+     * @return The number of diamonds.
+     */
+    public long getDiamondCount()
+    {
+        return this.edgeCount - (this.nodeCount - this.rootCount);
+    }
+
+    /**
+     * Returns if the hierarchy has no cycles. The cost estimates are only
+     * known for acyclic hierarchies.
+     *
+     * @return true if the hierarchy is acyclic.
+     */
+    public boolean isAcyclic()
+    {
+        return this.acyclic;
+    }
+
+    /**
+     * Returns a string representation of the object.
+     */
+    @Override
+    public String toString()
+    {
+        return String.format(
+            "nodes=%d, edges=%d, roots=%d, leaves=%d, maxDepth=%d, meanBranching=%.2f, maxParents=%d, multipleInheritance=%d, diamonds=%d, acyclic=%s",
+            this.nodeCount, this.edgeCount, this.rootCount, this.leafCount,
+            this.maxDepth, this.getMeanBranching(), this.maxParents,
+            this.multipleInheritanceNodes, this.getDiamondCount(),
+            this.acyclic);
+    }
+}
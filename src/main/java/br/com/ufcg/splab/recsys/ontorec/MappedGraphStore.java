@@ -0,0 +1,931 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.ontorec;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A read-only graph store that keeps an ontology outside the heap. It reads
+ * the node names, the edges and the attributes directly from a memory mapped
+ * {@link NodeManagerSnapshot} file, so the heap usage and the garbage
+ * collection pressure of the graph do not grow with the ontology size. The
+ * file can be written by a {@link SnapshotWriter}, without loading the
+ * ontology into a {@link NodeManager}. Nodes are identified by their ids at
+ * the snapshot, and {@link #getNode(String)} returns lightweight views that
+ * only hold the store and the node id.
+ * <p>
+ * The features' weight can be calculated directly over the store by
+ * {@link #getFeaturesWeight(Set, int, boolean, boolean)}. The searches reuse
+ * per-thread buffers, so a search does not allocate memory proportional to
+ * the ontology size. The buffers are allocated outside the heap, on the first
+ * search of each thread, and take 28 bytes per node: about 280 MB per
+ * searching thread at 10 million classes, so the number of threads that
+ * search a large store should be bounded. The τ-nth ancestor searches for τ
+ * above 63 also allocate a bit set per call.
+ * <p>
+ * Each snapshot section is mapped on its own, so a section cannot be larger
+ * than 2 GB. The store is safe to share between threads.
+ *
+ * @author Saulo Toledo
+ */
+public final class MappedGraphStore implements Closeable
+{
+    /**
+     * The application logger.
+     */
+    private static final Logger LOGGER = LoggerFactory
+        .getLogger(MappedGraphStore.class);
+
+    private final RandomAccessFile file;
+
+    private final int nodeCount;
+
+    private final IntBuffer stringOffsets;
+    private final ByteBuffer stringBlob;
+
+    private final IntBuffer nodeNames;
+    private final IntBuffer sortedByName;
+
+    private final IntBuffer childOffsets;
+    private final IntBuffer childTargets;
+    private final IntBuffer parentOffsets;
+    private final IntBuffer parentTargets;
+
+    private final IntBuffer attributeOffsets;
+    private final IntBuffer attributeNames;
+
+    /**
+     * The nodes that some attribute is mapped to.
+     */
+    private final BitSet mappedAttributeNodes;
+
+    /**
+     * The mapped features, indexed by name.
+     */
+    private final Map<String, FeatureMapping> featureMapping;
+
+    /**
+     * The τ values up to which the τ-nth ancestor searches keep their
+     * expanded pairs at the per-thread buffers.
+     */
+    private static final int MAX_MASKED_TAU = 63;
+
+    /**
+     * The search buffers of each thread, created on the first search.
+     */
+    private final ThreadLocal<SearchBuffers> buffers = new ThreadLocal<SearchBuffers>()
+    {
+        @Override
+        protected SearchBuffers initialValue()
+        {
+            return new SearchBuffers(MappedGraphStore.this.nodeCount);
+        }
+    };
+
+    /**
+     * Opens a snapshot file as a graph store.
+     *
+     * @param snapshot The snapshot file, written by
+     *        {@link NodeManagerSnapshot#save(NodeManager, File)} or by a
+     *        {@link SnapshotWriter}.
+     * @throws IOException If the file cannot be read or it is not a valid
+     *         snapshot.
+     */
+    public MappedGraphStore(File snapshot) throws IOException
+    {
+        this.file = new RandomAccessFile(snapshot, "r");
+
+        try {
+            FileChannel channel = this.file.getChannel();
+
+            NodeManagerSnapshot.checkHeader(channel, snapshot);
+
+            long position = NodeManagerSnapshot.HEADER_SIZE;
+
+            int stringCount = this.readInt(position);
+            position += 4;
+            this.stringOffsets = this.mapInts(position, stringCount + 1);
+            position += 4L * (stringCount + 1);
+            int blobLength = this.stringOffsets.get(stringCount);
+            this.stringBlob = this.map(position, blobLength);
+            position += blobLength + NodeManagerSnapshot.padding(blobLength);
+
+            this.nodeCount = this.readInt(position);
+            position += 4;
+            this.nodeNames = this.mapInts(position, this.nodeCount);
+            position += 4L * this.nodeCount;
+            this.sortedByName = this.mapInts(position, this.nodeCount);
+            position += 4L * this.nodeCount;
+
+            this.childOffsets = this.mapInts(position, this.nodeCount + 1);
+            position += 4L * (this.nodeCount + 1);
+            int childCount = this.childOffsets.get(this.nodeCount);
+            this.childTargets = this.mapInts(position, childCount);
+            position += 4L * childCount;
+
+            this.parentOffsets = this.mapInts(position, this.nodeCount + 1);
+            position += 4L * (this.nodeCount + 1);
+            int parentCount = this.parentOffsets.get(this.nodeCount);
+            this.parentTargets = this.mapInts(position, parentCount);
+            position += 4L * parentCount;
+
+            this.attributeOffsets = this
+                .mapInts(position, this.nodeCount + 1);
+            position += 4L * (this.nodeCount + 1);
+            int attributeCount = this.attributeOffsets.get(this.nodeCount);
+            this.attributeNames = this.mapInts(position, attributeCount);
+            position += 4L * attributeCount;
+
+            IntBuffer attributeMappings = this.mapInts(position,
+                attributeCount);
+            position += 4L * attributeCount;
+            this.mappedAttributeNodes = new BitSet(this.nodeCount);
+            for (int k = 0; k < attributeCount; k++) {
+                int node = attributeMappings.get(k);
+                if (node != NodeManagerSnapshot.NONE) {
+                    this.mappedAttributeNodes.set(node);
+                }
+            }
+
+            int mappingCount = this.readInt(position);
+            position += 4;
+            IntBuffer mappings = this.mapInts(position, 4 * mappingCount);
+            this.featureMapping = new LinkedHashMap<String, FeatureMapping>();
+            for (int i = 0; i < mappingCount; i++) {
+                String feature = this.getString(mappings.get(4 * i));
+                int node = mappings.get(4 * i + 1);
+                this.checkNode(node);
+                this.featureMapping.put(feature, new FeatureMapping(node,
+                    mappings.get(4 * i + 2) != NodeManagerSnapshot.NONE));
+            }
+        } catch (IOException e) {
+            this.file.close();
+            throw e;
+        } catch (RuntimeException e) {
+            this.file.close();
+            throw new IOException(String.format(
+                "The snapshot '%s' is invalid", snapshot), e);
+        }
+
+        LOGGER.debug(
+            "The snapshot '{}' was opened as a graph store with {} nodes",
+            snapshot, this.nodeCount);
+    }
+
+    /**
+     * Returns the number of nodes at the store.
+     *
+     * @return The number of nodes.
+     */
+    public int getNodeCount()
+    {
+        return this.nodeCount;
+    }
+
+    /**
+     * Returns the id of a node by using a binary search over the names.
+     *
+     * @param name The node name.
+     * @return The node id, or -1 if there is no node with the name.
+     */
+    public int getNodeId(String name)
+    {
+        int low = 0;
+        int high = this.nodeCount - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int node = this.sortedByName.get(middle);
+            int comparison = this.getName(node).compareTo(name);
+
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return node;
+            }
+        }
+        return NodeManagerSnapshot.NONE;
+    }
+
+    /**
+     * Returns a view for a node.
+     *
+     * @param name The node name.
+     * @return A view for the node, or null if there is no node with the name.
+     */
+    public NodeView getNode(String name)
+    {
+        int node = this.getNodeId(name);
+        return (node == NodeManagerSnapshot.NONE) ? null : new NodeView(node);
+    }
+
+    /**
+     * Returns a view for a node.
+     *
+     * @param node The node id.
+     * @return A view for the node.
+     */
+    public NodeView getNode(int node)
+    {
+        this.checkNode(node);
+        return new NodeView(node);
+    }
+
+    /**
+     * Returns the name of a node.
+     *
+     * @param node The node id.
+     * @return The node name.
+     */
+    public String getName(int node)
+    {
+        return this.getString(this.nodeNames.get(node));
+    }
+
+    public int getChildCount(int node)
+    {
+        return this.childOffsets.get(node + 1) - this.childOffsets.get(node);
+    }
+
+    /**
+     * Returns the k-th child of a node.
+     *
+     * @param node The node id.
+     * @param k The child index, from 0 to the children count (exclusive).
+     * @return The child id.
+     */
+    public int getChild(int node, int k)
+    {
+        return this.childTargets.get(this.childOffsets.get(node) + k);
+    }
+
+    public int getParentCount(int node)
+    {
+        return this.parentOffsets.get(node + 1) - this.parentOffsets.get(node);
+    }
+
+    /**
+     * Returns the k-th parent of a node.
+     *
+     * @param node The node id.
+     * @param k The parent index, from 0 to the parents count (exclusive).
+     * @return The parent id.
+     */
+    public int getParent(int node, int k)
+    {
+        return this.parentTargets.get(this.parentOffsets.get(node) + k);
+    }
+
+    /**
+     * Returns the names of the node's own attributes.
+     *
+     * @param node The node id.
+     * @return The names of the node's own attributes.
+     */
+    public List<String> getAttributeNames(int node)
+    {
+        int start = this.attributeOffsets.get(node);
+        int end = this.attributeOffsets.get(node + 1);
+
+        List<String> result = new ArrayList<String>(end - start);
+        for (int k = start; k < end; k++) {
+            result.add(this.getString(this.attributeNames.get(k)));
+        }
+        return result;
+    }
+
+    /**
+     * Discovers the subgraph where a node is the root and all its descendants
+     * are reachable.
+     *
+     * @param node The node id.
+     * @return The ids of the node and all its descendants.
+     */
+    public BitSet getDescendants(int node)
+    {
+        this.checkNode(node);
+
+        BitSet visited = new BitSet(this.nodeCount);
+        int[] queue = new int[16];
+        int head = 0;
+        int tail = 0;
+
+        visited.set(node);
+        queue[tail++] = node;
+        while (head < tail) {
+            int current = queue[head++];
+
+            int end = this.childOffsets.get(current + 1);
+            for (int k = this.childOffsets.get(current); k < end; k++) {
+                int child = this.childTargets.get(k);
+                if ( !visited.get(child)) {
+                    visited.set(child);
+                    if (tail == queue.length) {
+                        queue = grow(queue);
+                    }
+                    queue[tail++] = child;
+                }
+            }
+        }
+        return visited;
+    }
+
+    /**
+     * Uses BFS to discover the length of the lesser non directional path
+     * (where does not matter if the next node at path is parent or child)
+     * from a node to each reference node.
+     *
+     * @param node The origin node id.
+     * @param subgraph The nodes to consider in the search, or null to
+     *        consider the whole graph.
+     * @param referenceNodes The nodes for which to search the distances.
+     * @return A map from each reachable reference node to its distance.
+     */
+    public Map<Integer, Integer> getDistancesTo(int node, BitSet subgraph,
+        int[] referenceNodes)
+    {
+        this.checkNode(node);
+
+        SearchBuffers buffers = this.buffers.get();
+        int visit = this.search(node, subgraph, 0, false, buffers);
+
+        Map<Integer, Integer> result = new HashMap<Integer, Integer>();
+        for (int referenceNode : referenceNodes) {
+            if (buffers.visits.get(referenceNode) == visit) {
+                result.put(referenceNode, buffers.distances.get(referenceNode));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the τ-nth ancestors of a node, by a breadth first traversal of
+     * the pairs of ancestor and remaining τ (the same traversal of the
+     * {@link TraversalPlanner} for the managers).
+     *
+     * @param node The node id.
+     * @param tau The level of the ancestors to return.
+     * @param lambda If true, only begotten fathers will be ignored at
+     *        ancestors.
+     * @return The ids of the τ-nth ancestors of the node.
+     */
+    public int[] getTauAncestors(int node, int tau, boolean lambda)
+    {
+        this.checkNode(node);
+
+        if (tau == 0) {
+            return new int[] { node };
+        }
+        if (tau < 0) {
+            return new int[0];
+        }
+
+        SearchBuffers buffers = this.buffers.get();
+        // The pairs of node and remaining τ already expanded: each node keeps
+        // a bit per remaining τ, valid while its stamp is the one of this
+        // search, and the bit 0 marks the τ-nth ancestors found.
+        int search = buffers.nextTauSearch();
+        BitSet largeTauPairs = (tau > MAX_MASKED_TAU) ? new BitSet() : null;
+        int[] ancestors = new int[4];
+        int found = 0;
+
+        IntBuffer pairs = buffers.ensurePairs(2);
+        int head = 0;
+        int tail = 0;
+        pairs.put(tail++, node);
+        pairs.put(tail++, tau);
+
+        while (head < tail) {
+            int current = pairs.get(head++);
+            int currentTau = pairs.get(head++);
+
+            int end = this.parentOffsets.get(current + 1);
+            for (int k = this.parentOffsets.get(current); k < end; k++) {
+                int parent = this.parentTargets.get(k);
+                int parentTau = (lambda && this.isIgnored(parent)) ? currentTau
+                    : currentTau - 1;
+
+                if (buffers.tauStamps.get(parent) != search) {
+                    buffers.tauStamps.put(parent, search);
+                    buffers.tauMasks.put(parent, 0L);
+                }
+                long mask = buffers.tauMasks.get(parent);
+
+                if (parentTau == 0) {
+                    if ((mask & 1L) == 0) {
+                        buffers.tauMasks.put(parent, mask | 1L);
+                        if (found == ancestors.length) {
+                            ancestors = grow(ancestors);
+                        }
+                        ancestors[found++] = parent;
+                    }
+                    continue;
+                }
+
+                boolean expanded;
+                if (largeTauPairs != null) {
+                    int pair = parent * (tau + 1) + parentTau;
+                    expanded = largeTauPairs.get(pair);
+                    largeTauPairs.set(pair);
+                } else {
+                    expanded = (mask & (1L << parentTau)) != 0;
+                    buffers.tauMasks.put(parent, mask | (1L << parentTau));
+                }
+                if ( !expanded) {
+                    pairs = buffers.ensurePairs(tail + 2);
+                    pairs.put(tail++, parent);
+                    pairs.put(tail++, parentTau);
+                }
+            }
+        }
+
+        int[] result = Arrays.copyOf(ancestors, found);
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Returns the features mapped at the snapshot.
+     *
+     * @return An unmodifiable view of the mapped features names.
+     */
+    public Set<String> getMappedFeatures()
+    {
+        return Collections.unmodifiableSet(this.featureMapping.keySet());
+    }
+
+    /**
+     * Calculates the features' weight over the store, as the
+     * {@link br.com.ufcg.splab.recsys.ontorec.weighting.BFSPathNodeWeightingApproach
+     * BFS path approach} does for a node manager: for each selected feature,
+     * the distances from its node to the other mapped nodes are searched
+     * inside the subgraphs below its τ-nth ancestors, normalized to weights
+     * and averaged with the weights of the previous selected features. The
+     * unreachable features have weight 0.
+     * <p>
+     * With λ, the distance of a node reached by more than one shortest path
+     * depends on the path the search follows, so it may differ from the one
+     * of a node manager, which follows its sets order.
+     *
+     * @param selectedFeatures The selected features. All of them must be
+     *        mapped.
+     * @param tau The τ value.
+     * @param lambda If only begotten fathers are ignored.
+     * @param upsilon If the selected features also achieve the other
+     *        selected features.
+     * @return The weight of each mapped feature.
+     * @throws IllegalArgumentException If a selected feature is not mapped.
+     */
+    public Map<String, Double> getFeaturesWeight(Set<String> selectedFeatures,
+        int tau, boolean lambda, boolean upsilon)
+    {
+        Map<String, Double> result = new HashMap<String, Double>();
+        SearchBuffers buffers = this.buffers.get();
+
+        for (String referenceFeature : selectedFeatures) {
+            FeatureMapping reference = this.featureMapping
+                .get(referenceFeature);
+            if (reference == null) {
+                throw new IllegalArgumentException(String.format(
+                    "The feature '%s' is not mapped at the store",
+                    referenceFeature));
+            }
+
+            int visit = this.searchFromTauAncestors(reference.node,
+                reference.toAttribute ? tau - 1 : tau, lambda, buffers);
+
+            Map<String, Double> partialResult = new HashMap<String, Double>();
+            int pathsSum = 0;
+            for (Map.Entry<String, FeatureMapping> entry : this.featureMapping
+                .entrySet()) {
+                String feature = entry.getKey();
+                FeatureMapping destiny = entry.getValue();
+
+                if (feature.equals(referenceFeature)
+                    || (selectedFeatures.contains(feature) && !upsilon)
+                    || buffers.visits.get(destiny.node) != visit) {
+                    continue;
+                }
+
+                int distance = buffers.distances.get(destiny.node);
+                if (reference.toAttribute) {
+                    distance++;
+                }
+                if (destiny.toAttribute) {
+                    distance++;
+                }
+                pathsSum += distance;
+                partialResult.put(feature, (double) distance);
+            }
+
+            for (Map.Entry<String, Double> entry : partialResult.entrySet()) {
+                entry.setValue((pathsSum == 0) ? 0d : 1 - entry.getValue()
+                    / pathsSum);
+            }
+            for (String feature : selectedFeatures) {
+                partialResult.put(feature, 1d);
+            }
+
+            for (Map.Entry<String, Double> entry : partialResult.entrySet()) {
+                Double oldValue = result.get(entry.getKey());
+                result.put(entry.getKey(), (oldValue == null) ? entry
+                    .getValue() : (oldValue + entry.getValue()) / 2);
+            }
+        }
+
+        for (String feature : this.featureMapping.keySet()) {
+            if ( !result.containsKey(feature)) {
+                result.put(feature, 0d);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Marks the subgraphs below the τ-nth ancestors of a node and searches
+     * the distances from the node inside them.
+     *
+     * @return The visit stamp of the search at the buffers.
+     */
+    private int searchFromTauAncestors(int node, int tau, boolean lambda,
+        SearchBuffers buffers)
+    {
+        int mark = buffers.nextMark();
+        for (int ancestor : this.getTauAncestors(node, tau, lambda)) {
+            if (buffers.marks.get(ancestor) == mark) {
+                continue;
+            }
+            buffers.marks.put(ancestor, mark);
+
+            int head = 0;
+            int tail = 0;
+            buffers.queue.put(tail++, ancestor);
+            while (head < tail) {
+                int current = buffers.queue.get(head++);
+
+                int end = this.childOffsets.get(current + 1);
+                for (int k = this.childOffsets.get(current); k < end; k++) {
+                    int child = this.childTargets.get(k);
+                    if (buffers.marks.get(child) != mark) {
+                        buffers.marks.put(child, mark);
+                        buffers.queue.put(tail++, child);
+                    }
+                }
+            }
+        }
+        return this.search(node, null, mark, lambda, buffers);
+    }
+
+    /**
+     * Searches the distances from a node by BFS. The nodes and distances
+     * found are left at the buffers, stamped with the returned visit.
+     *
+     * @param node The origin node id.
+     * @param subgraph The nodes to consider in the search, or null to use the
+     *        mark.
+     * @param mark The mark of the nodes to consider at the buffers, or 0 to
+     *        consider the whole graph when there is no subgraph.
+     * @param lambda If true, the only begotten fathers at the paths are not
+     *        counted at the distances.
+     * @param buffers The current thread buffers.
+     * @return The visit stamp of the search.
+     */
+    private int search(int node, BitSet subgraph, int mark, boolean lambda,
+        SearchBuffers buffers)
+    {
+        int visit = buffers.nextVisit();
+        int head = 0;
+        int tail = 0;
+
+        buffers.visits.put(node, visit);
+        buffers.distances.put(node, 0);
+        buffers.queue.put(tail++, node);
+        while (head < tail) {
+            int current = buffers.queue.get(head++);
+            // The current node is counted at the paths that pass through it
+            // unless it is ignored by λ:
+            int distance = buffers.distances.get(current)
+                + ((lambda && this.isIgnored(current)) ? 0 : 1);
+
+            for (int direction = 0; direction < 2; direction++) {
+                IntBuffer offsets = (direction == 0) ? this.childOffsets
+                    : this.parentOffsets;
+                IntBuffer targets = (direction == 0) ? this.childTargets
+                    : this.parentTargets;
+
+                int end = offsets.get(current + 1);
+                for (int k = offsets.get(current); k < end; k++) {
+                    int neighbor = targets.get(k);
+                    if (buffers.visits.get(neighbor) != visit
+                        && (subgraph != null ? subgraph.get(neighbor)
+                            : (mark == 0 || buffers.marks.get(neighbor) == mark))) {
+                        buffers.visits.put(neighbor, visit);
+                        buffers.distances.put(neighbor, distance);
+                        buffers.queue.put(tail++, neighbor);
+                    }
+                }
+            }
+        }
+        return visit;
+    }
+
+    /**
+     * Returns if a node is ignored by λ: a node with a single child and no
+     * attribute mapped to it.
+     */
+    private boolean isIgnored(int node)
+    {
+        return this.getChildCount(node) == 1
+            && !this.mappedAttributeNodes.get(node);
+    }
+
+    /**
+     * Closes the store file. The mapped sections are released by the garbage
+     * collector.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        this.file.close();
+    }
+
+    private String getString(int id)
+    {
+        int start = this.stringOffsets.get(id);
+        byte[] bytes = new byte[this.stringOffsets.get(id + 1) - start];
+
+        ByteBuffer blob = this.stringBlob.duplicate();
+        blob.position(start);
+        blob.get(bytes);
+
+        return new String(bytes, NodeManagerSnapshot.UTF8);
+    }
+
+    private void checkNode(int node)
+    {
+        if (node < 0 || node >= this.nodeCount) {
+            throw new IllegalArgumentException(String.format(
+                "The node id %d is not at the store", node));
+        }
+    }
+
+    private int readInt(long position) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(4);
+        while (buffer.hasRemaining()) {
+            if (this.file.getChannel().read(buffer,
+                position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of the snapshot");
+            }
+        }
+        buffer.flip();
+        return buffer.getInt();
+    }
+
+    private ByteBuffer map(long position, long length) throws IOException
+    {
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException(
+                "A snapshot section is larger than the max mapped size");
+        }
+        return this.file.getChannel().map(FileChannel.MapMode.READ_ONLY,
+            position, length);
+    }
+
+    private IntBuffer mapInts(long position, int count) throws IOException
+    {
+        return this.map(position, 4L * count).asIntBuffer();
+    }
+
+    private static int[] grow(int[] queue)
+    {
+        int[] result = new int[queue.length * 2];
+        System.arraycopy(queue, 0, result, 0, queue.length);
+        return result;
+    }
+
+    /**
+     * The mapping of a feature at the store.
+     */
+    private static final class FeatureMapping
+    {
+        private final int node;
+        private final boolean toAttribute;
+
+        FeatureMapping(int node, boolean toAttribute)
+        {
+            this.node = node;
+            this.toAttribute = toAttribute;
+        }
+    }
+
+    /**
+     * The buffers of the searches done by a thread. They are allocated once,
+     * outside the heap, and reused by all the searches, and they are cleared
+     * by stamping each search with a new mark or visit number instead of
+     * being filled again.
+     */
+    private static final class SearchBuffers
+    {
+        private final IntBuffer marks;
+        private final IntBuffer visits;
+        private final IntBuffer distances;
+        private final IntBuffer queue;
+        private final IntBuffer tauStamps;
+        private final LongBuffer tauMasks;
+
+        /**
+         * The queue of pairs of node and remaining τ of the τ-nth ancestor
+         * searches. It grows with the pairs, not with the ontology.
+         */
+        private IntBuffer pairs;
+
+        private int mark;
+        private int visit;
+        private int tauSearch;
+
+        SearchBuffers(int nodeCount)
+        {
+            this.marks = allocateInts(nodeCount);
+            this.visits = allocateInts(nodeCount);
+            this.distances = allocateInts(nodeCount);
+            this.queue = allocateInts(nodeCount);
+            this.tauStamps = allocateInts(nodeCount);
+            this.tauMasks = ByteBuffer.allocateDirect(8 * nodeCount)
+                .order(ByteOrder.nativeOrder()).asLongBuffer();
+            this.pairs = allocateInts(64);
+        }
+
+        int nextMark()
+        {
+            if (this.mark == Integer.MAX_VALUE) {
+                clear(this.marks);
+                this.mark = 0;
+            }
+            return ++this.mark;
+        }
+
+        int nextVisit()
+        {
+            if (this.visit == Integer.MAX_VALUE) {
+                clear(this.visits);
+                this.visit = 0;
+            }
+            return ++this.visit;
+        }
+
+        int nextTauSearch()
+        {
+            if (this.tauSearch == Integer.MAX_VALUE) {
+                clear(this.tauStamps);
+                this.tauSearch = 0;
+            }
+            return ++this.tauSearch;
+        }
+
+        /**
+         * Returns the pairs queue with room for at least the informed number
+         * of values, keeping the values already in it.
+         */
+        IntBuffer ensurePairs(int size)
+        {
+            if (size > this.pairs.capacity()) {
+                IntBuffer larger = allocateInts(Math.max(size,
+                    2 * this.pairs.capacity()));
+                for (int i = 0; i < this.pairs.capacity(); i++) {
+                    larger.put(i, this.pairs.get(i));
+                }
+                this.pairs = larger;
+            }
+            return this.pairs;
+        }
+
+        private static IntBuffer allocateInts(int count)
+        {
+            return ByteBuffer.allocateDirect(4 * count)
+                .order(ByteOrder.nativeOrder()).asIntBuffer();
+        }
+
+        private static void clear(IntBuffer buffer)
+        {
+            for (int i = 0; i < buffer.capacity(); i++) {
+                buffer.put(i, 0);
+            }
+        }
+    }
+
+    /**
+     * A lightweight view of a node at the store. Views are created on demand
+     * and only hold the node id, so they are cheap to discard.
+     */
+    public final class NodeView
+    {
+        private final int id;
+
+        private NodeView(int id)
+        {
+            this.id = id;
+        }
+
+        public int getId()
+        {
+            return this.id;
+        }
+
+        public String getData()
+        {
+            return MappedGraphStore.this.getName(this.id);
+        }
+
+        public List<NodeView> getChildren()
+        {
+            int count = MappedGraphStore.this.getChildCount(this.id);
+            List<NodeView> result = new ArrayList<NodeView>(count);
+            for (int k = 0; k < count; k++) {
+                result.add(new NodeView(MappedGraphStore.this.getChild(
+                    this.id, k)));
+            }
+            return result;
+        }
+
+        public List<NodeView> getParents()
+        {
+            int count = MappedGraphStore.this.getParentCount(this.id);
+            List<NodeView> result = new ArrayList<NodeView>(count);
+            for (int k = 0; k < count; k++) {
+                result.add(new NodeView(MappedGraphStore.this.getParent(
+                    this.id, k)));
+            }
+            return result;
+        }
+
+        public List<String> getAttributeNames()
+        {
+            return MappedGraphStore.this.getAttributeNames(this.id);
+        }
+
+        public boolean isRoot()
+        {
+            return MappedGraphStore.this.getParentCount(this.id) == 0;
+        }
+
+        public boolean isLeaf()
+        {
+            return MappedGraphStore.this.getChildCount(this.id) == 0;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (obj instanceof NodeView) {
+                NodeView other = (NodeView) obj;
+                return this.getStore() == other.getStore()
+                    && this.id == other.id;
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return this.id;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s: %s", this.getClass().getSimpleName(),
+                this.getData());
+        }
+
+        private MappedGraphStore getStore()
+        {
+            return MappedGraphStore.this;
+        }
+    }
+}
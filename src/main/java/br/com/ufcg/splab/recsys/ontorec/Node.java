@@ -5,16 +5,24 @@
  */
 package br.com.ufcg.splab.recsys.ontorec;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import br.com.ufcg.splab.recsys.metrics.ExecutionProfile;
+import br.com.ufcg.splab.recsys.metrics.ExecutionProfile.Phase;
+import br.com.ufcg.splab.recsys.metrics.Trace;
+import br.com.ufcg.splab.recsys.metrics.Trace.EventType;
+
 /**
  * Creates a node from a simple graph.
  *
@@ -28,6 +36,11 @@ public class Node<T> implements Mappable
      */
     private static final Logger LOGGER = LoggerFactory.getLogger(Node.class);
 
+    /**
+     * The structure shared by the nodes created outside a manager.
+     */
+    private static final Structure UNMANAGED_STRUCTURE = new Structure();
+
     /**
      * The node's parents list.
      */
@@ -48,6 +61,43 @@ public class Node<T> implements Mappable
      */
     private final Set<NodeAttribute> attributes = new HashSet<NodeAttribute>();
 
+    /**
+     * This node's attributes indexed by name.
+     */
+    private final Map<String, NodeAttribute> attributesByName = new HashMap<String, NodeAttribute>();
+
+    /**
+     * The manager that created this node, notified when the node's own
+     * attributes change. It is null for nodes created outside a manager.
+     */
+    private NodeManager<T> manager;
+
+    /**
+     * The id given by the manager that created this node, or -1 for nodes
+     * created outside a manager.
+     */
+    private int id = -1;
+
+    /**
+     * The cached hash code of the node's data, or 0 if it was not computed
+     * yet.
+     */
+    private int hash;
+
+    /**
+     * The number of descendant nodes declaring each attribute name, or null if
+     * it was not computed yet. It is kept up to date when the descendants'
+     * attributes change, and discarded when the structure version changes.
+     */
+    private volatile AttributeCounts descendantAttributeCounts;
+
+    /**
+     * The own and inherited attributes of the node by name, or null if they
+     * were not indexed yet. They are discarded when the structure version or
+     * its attributes version changes.
+     */
+    private volatile InheritedAttributes inheritedAttributes;
+
     /**
      * Creates a node with the informed data.
      *
@@ -58,6 +108,36 @@ public class Node<T> implements Mappable
         this.data = data;
     }
 
+    /**
+     * Defines the manager that created this node.
+     *
+     * @param manager The manager.
+     */
+    void setManager(NodeManager<T> manager)
+    {
+        this.manager = manager;
+    }
+
+    /**
+     * Returns the id given by the manager that created this node.
+     *
+     * @return The node id, or -1 for nodes created outside a manager.
+     */
+    int getId()
+    {
+        return this.id;
+    }
+
+    /**
+     * Defines the id of this node in its manager.
+     *
+     * @param id The node id.
+     */
+    void setId(int id)
+    {
+        this.id = id;
+    }
+
     /**
      * Returns the node's data.
      *
@@ -76,6 +156,7 @@ public class Node<T> implements Mappable
     public Node<T> setData(T data)
     {
         this.data = data;
+        this.hash = 0;
         return this;
     }
 
@@ -111,6 +192,7 @@ public class Node<T> implements Mappable
         }
 
         this.parents.add(parent);
+        this.structureChanged(parent);
         parent.addChild(this);
 
         return true;
@@ -127,6 +209,9 @@ public class Node<T> implements Mappable
     {
         boolean result = false;
         result = this.parents.remove(parent);
+        if (result) {
+            this.structureChanged(parent);
+        }
 
         if (parent.isParentOf(this)) {
             // This "OR" is necessary because of the recursion:
@@ -148,6 +233,7 @@ public class Node<T> implements Mappable
         }
 
         this.children.add(child);
+        this.structureChanged(child);
         child.addParent(this);
 
         return true;
@@ -163,6 +249,9 @@ public class Node<T> implements Mappable
     {
         boolean result;
         result = this.children.remove(child);
+        if (result) {
+            this.structureChanged(child);
+        }
 
         if (child.isChildOf(this)) {
             // This "OR" is necessary because of the recursion:
@@ -172,6 +261,47 @@ public class Node<T> implements Mappable
         return result;
     }
 
+    /**
+     * Links a child to the current node without checking the existing edges.
+     * It is used to rebuild graphs that were already validated, and the caller
+     * must certify that the edge does not exist yet.
+     *
+     * @param child The child node.
+     */
+    void linkChild(Node<T> child)
+    {
+        this.children.add(child);
+        child.parents.add(this);
+        this.structureChanged(child);
+    }
+
+    /**
+     * Returns the structure of the hierarchy this node belongs to: the one of
+     * its manager, or the one shared by the nodes created outside a manager.
+     *
+     * @return The node's structure.
+     */
+    Structure getStructure()
+    {
+        return (this.manager != null) ? this.manager.getStructure()
+            : UNMANAGED_STRUCTURE;
+    }
+
+    /**
+     * Records that an edge between the current node and another one was added
+     * or removed.
+     *
+     * @param other The other node of the edge.
+     */
+    private void structureChanged(Node<T> other)
+    {
+        Structure structure = this.getStructure();
+        structure.changed();
+        if (other.getStructure() != structure) {
+            other.getStructure().changed();
+        }
+    }
+
     /**
      * Verify if the current node is root (a node that has no parents).
      *
@@ -201,38 +331,64 @@ public class Node<T> implements Mappable
      */
     public boolean addAttribute(NodeAttribute attribute)
     {
-        Set<NodeAttribute> allAttributes = this.getAllInheritedAttributes();
-        Set<NodeAttribute> childrenAttributes = this.getAllChildrenAttributes();
+        String attributeName = attribute.getName();
 
-        if ( !this.getAttributes().contains(attribute)
-            && !allAttributes.contains(attribute)
-            && !childrenAttributes.contains(attribute)) {
+        String whoContainsTheAttr = null;
+        if (this.attributesByName.containsKey(attributeName)) {
+            whoContainsTheAttr = "this node";
+        } else if (this.getOwnOrInheritedAttributeByName(attributeName) != null) {
+            whoContainsTheAttr = "a parent node";
+        } else if (this.getDescendantAttributeCounts().containsKey(
+            attributeName)) {
+            whoContainsTheAttr = "a child node";
+        }
 
-            LOGGER.debug(String.format(
-                "A new attribute '%s' was created in the node '%s'",
-                attribute.getName(), this.getData().toString()));
+        if (whoContainsTheAttr == null) {
+            LOGGER.debug("A new attribute '{}' was created in the node '{}'",
+                attribute.getName(), this.getData());
 
-            this.attributes.add(attribute);
-            attribute.setAttachedNode(this);
+            this.putAttribute(attribute);
             return true;
         }
-
-        String whoContainsTheAttr = "";
-        if ( !this.getAttributes().contains(attribute)) {
-            whoContainsTheAttr = "this node";
-        } else if ( !allAttributes.contains(attribute)) {
-            whoContainsTheAttr = "a parent node";
-        } else if (childrenAttributes.contains(attribute)) {
-            whoContainsTheAttr = "a child node";
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug(
+                "It was not possible to create the attribute '{}' in the node '{}' because '{}' already contains an attribute with this name",
+                attribute.getName(), this.getData(), whoContainsTheAttr);
         }
-        LOGGER.debug(String.format(
-            "It was not possible to create the attribute '%s' in the node '%s' because '%s' already contains an attribute with this name",
-            attribute.getName(), this.getData().toString(),
-            whoContainsTheAttr));
 
         return false;
     }
 
+    /**
+     * Attaches an attribute to the current node without checking the
+     * attributes of the ancestors and descendants. It is used to rebuild
+     * graphs that were already validated.
+     *
+     * @param attribute The attribute to attach.
+     */
+    void attachAttribute(NodeAttribute attribute)
+    {
+        this.putAttribute(attribute);
+    }
+
+    /**
+     * Stores an attribute at the current node and its indexes.
+     *
+     * @param attribute The attribute to store.
+     */
+    private void putAttribute(NodeAttribute attribute)
+    {
+        this.attributes.add(attribute);
+        this.attributesByName.put(attribute.getName(), attribute);
+        attribute.setAttachedNode(this);
+        this.updateAncestorsAttributeCounts(attribute.getName(), 1);
+        this.getStructure().attributesChanged();
+
+        if (this.manager != null) {
+            this.manager.attributeAttached(this, attribute);
+        }
+    }
+
     /**
      * Removes an attribute from the current node.
      *
@@ -245,13 +401,20 @@ public class Node<T> implements Mappable
         Boolean result = this.attributes.remove(attribute);
 
         if (result) {
-            LOGGER.debug(String.format(
-                "The attribute '%s' was successfully removed from the node '%s'",
-                attribute.getName(), this.getData().toString()));
+            this.attributesByName.remove(attribute.getName());
+            this.updateAncestorsAttributeCounts(attribute.getName(), -1);
+            this.getStructure().attributesChanged();
+            if (this.manager != null) {
+                this.manager.attributeDetached(this, attribute);
+            }
+
+            LOGGER.debug(
+                "The attribute '{}' was successfully removed from the node '{}'",
+                attribute.getName(), this.getData());
         } else {
-            LOGGER.debug(String.format(
-                "Failed to remove the attribute '%s' from the node '%s'",
-                attribute.getName(), this.getData().toString()));
+            LOGGER.debug(
+                "Failed to remove the attribute '{}' from the node '{}'",
+                attribute.getName(), this.getData());
         }
 
         return result;
@@ -260,11 +423,11 @@ public class Node<T> implements Mappable
     /**
      * Returns the node's own attributes.
      *
-     * @return The node's own attributes.
+     * @return An unmodifiable view of the node's own attributes.
      */
     public Set<NodeAttribute> getAttributes()
     {
-        return this.attributes;
+        return Collections.unmodifiableSet(this.attributes);
     }
 
     /**
@@ -276,15 +439,62 @@ public class Node<T> implements Mappable
      */
     public NodeAttribute getOwnOrInheritedAttributeByName(String attributeName)
     {
-        Set<NodeAttribute> attrs = this.getAllAttributes();
+        return this.getInheritedAttributesByName().get(attributeName);
+    }
+
+    /**
+     * Returns the own and inherited attributes of the node by name. When an
+     * attribute name is declared more than once, the declaration of the node
+     * nearest to the current one is kept. The index is built by a single walk
+     * over the ancestors and reused until the structure or the attributes of
+     * the manager's nodes change.
+     *
+     * @return The own and inherited attributes of the node by name.
+     */
+    private Map<String, NodeAttribute> getInheritedAttributesByName()
+    {
+        Structure structure = this.getStructure();
+        long version = structure.getVersion();
+        long attributesVersion = structure.getAttributesVersion();
+
+        InheritedAttributes cached = this.inheritedAttributes;
+        if (cached != null && cached.version == version
+            && cached.attributesVersion == attributesVersion) {
+            return cached.byName;
+        }
+
+        // Walks the current node and then its ancestors in breadth-first
+        // order, so the nearest declaration of each name wins:
+        Map<String, NodeAttribute> byName = new HashMap<String, NodeAttribute>();
+        List<Node<T>> nodesQueue = new LinkedList<Node<T>>();
+        Set<Node<T>> visitedNodes = new HashSet<Node<T>>();
+
+        nodesQueue.add(this);
+        visitedNodes.add(this);
 
-        for (NodeAttribute attr : attrs) {
-            if (attr.getName().equals(attributeName)) {
-                return attr;
+        Node<T> current;
+        while (nodesQueue.size() != 0) {
+            current = nodesQueue.remove(0);
+
+            for (Map.Entry<String, NodeAttribute> entry : current.attributesByName
+                .entrySet()) {
+                if ( !byName.containsKey(entry.getKey())) {
+                    byName.put(entry.getKey(), entry.getValue());
+                }
+            }
+
+            for (Node<T> parent : current.getParents()) {
+                if ( !visitedNodes.contains(parent)) {
+                    nodesQueue.add(parent);
+                    visitedNodes.add(parent);
+                }
             }
         }
 
-        return null;
+        this.inheritedAttributes = new InheritedAttributes(version,
+            attributesVersion, byName);
+
+        return byName;
     }
 
     /**
@@ -301,7 +511,8 @@ public class Node<T> implements Mappable
     }
 
     /**
-     * Returns all inherited attributes.
+     * Returns all inherited attributes. Each ancestor is visited once, even if
+     * the hierarchy has cycles.
      *
      * @return All inherited attributes.
      */
@@ -309,28 +520,123 @@ public class Node<T> implements Mappable
     {
         Set<NodeAttribute> allAttributes = new HashSet<NodeAttribute>();
 
-        for (Node<T> parent : this.getParents()) {
-            allAttributes.addAll(parent.getAllAttributes());
+        LinkedList<Node<T>> nodesStack = new LinkedList<Node<T>>();
+        Set<Node<T>> visitedNodes = new HashSet<Node<T>>();
+
+        nodesStack.push(this);
+        visitedNodes.add(this);
+
+        Node<T> current;
+        while ( !nodesStack.isEmpty()) {
+            current = nodesStack.pop();
+
+            for (Node<T> parent : current.parents) {
+                if (visitedNodes.add(parent)) {
+                    allAttributes.addAll(parent.attributes);
+                    nodesStack.push(parent);
+                }
+            }
         }
 
         return allAttributes;
     }
 
     /**
-     * Returns all children's attributes.
+     * Returns the number of descendant nodes declaring each attribute name.
+     * The counts are computed once per structure version of the node's
+     * manager and then kept up to date as the descendants' attributes are
+     * added or removed, so checking if a descendant has an attribute does not
+     * walk the subgraph.
      *
-     * @return All children's attributes.
+     * @return The number of descendants declaring each attribute name.
      */
-    private Set<NodeAttribute> getAllChildrenAttributes()
+    private Map<String, Integer> getDescendantAttributeCounts()
     {
-        Set<NodeAttribute> allAttributes = new HashSet<NodeAttribute>();
+        Structure structure = this.getStructure();
+        // The version is read before the walk, so an edge changed during the
+        // walk discards the counts:
+        long version = structure.getVersion();
+
+        AttributeCounts cached = this.descendantAttributeCounts;
+        if (cached != null && cached.version == version) {
+            OntoRecMetrics.DESCENDANT_ATTRIBUTES_CACHE_HITS.increment();
+            return cached.counts;
+        }
+
+        OntoRecMetrics.DESCENDANT_ATTRIBUTES_CACHE_MISSES.increment();
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+
+        LinkedList<Node<T>> nodesStack = new LinkedList<Node<T>>();
+        Set<Node<T>> visitedNodes = new HashSet<Node<T>>();
 
-        for (Node<T> child : this.getChildren()) {
-            allAttributes.addAll(child.getAttributes());
-            allAttributes.addAll(child.getAllChildrenAttributes());
+        nodesStack.push(this);
+        visitedNodes.add(this);
+
+        Node<T> current;
+        while ( !nodesStack.isEmpty()) {
+            current = nodesStack.pop();
+
+            for (Node<T> child : current.children) {
+                if (visitedNodes.add(child)) {
+                    for (String name : child.attributesByName.keySet()) {
+                        Integer count = counts.get(name);
+                        counts.put(name, (count == null) ? 1 : count + 1);
+                    }
+                    nodesStack.push(child);
+                }
+            }
         }
 
-        return allAttributes;
+        this.descendantAttributeCounts = new AttributeCounts(version, counts);
+        structure.attributeCountsComputed(version);
+        return counts;
+    }
+
+    /**
+     * Updates the descendant attribute counts already computed at the
+     * ancestors of the current node, after one of its own attributes was
+     * added or removed. The ancestors are not walked when no node of the
+     * structure has counts for its current version.
+     *
+     * @param attributeName The attribute name.
+     * @param delta 1 if the attribute was added, -1 if it was removed.
+     */
+    private void updateAncestorsAttributeCounts(String attributeName,
+        int delta)
+    {
+        if ( !this.getStructure().hasAttributeCounts()) {
+            return;
+        }
+
+        LinkedList<Node<T>> nodesStack = new LinkedList<Node<T>>();
+        Set<Node<T>> visitedNodes = new HashSet<Node<T>>();
+
+        nodesStack.push(this);
+        visitedNodes.add(this);
+
+        Node<T> current;
+        while ( !nodesStack.isEmpty()) {
+            current = nodesStack.pop();
+
+            for (Node<T> parent : current.parents) {
+                if (visitedNodes.add(parent)) {
+                    AttributeCounts cached = parent.descendantAttributeCounts;
+                    if (cached != null
+                        && cached.version == parent.getStructure()
+                            .getVersion()) {
+                        Map<String, Integer> counts = cached.counts;
+                        Integer count = counts.get(attributeName);
+                        int newCount = ((count == null) ? 0 : count) + delta;
+                        if (newCount > 0) {
+                            counts.put(attributeName, newCount);
+                        } else {
+                            counts.remove(attributeName);
+                        }
+                    }
+                    nodesStack.push(parent);
+                }
+            }
+        }
     }
 
     /**
@@ -365,6 +671,9 @@ public class Node<T> implements Mappable
     @Override
     public boolean equals(Object obj)
     {
+        if (this == obj) {
+            return true;
+        }
         if (obj instanceof Node<?>) {
             return this.getData().equals( ((Node<?>) obj).getData());
         }
@@ -379,7 +688,8 @@ public class Node<T> implements Mappable
      * invoke the equals method if their hashCodes are different. The typical
      * implementation is to convert the internal address of the object into an
      * integer, but we change this behavior here to certify that the objects
-     * with the same name have the same hashCode.
+     * with the same data have the same hashCode. The data's hash code is
+     * cached until the data changes.
      *
      * @see <http://docs.oracle.com/javase/6/docs/api/java/lang/Object.html#hashCode>
      * @return The hash code.
@@ -387,7 +697,12 @@ public class Node<T> implements Mappable
     @Override
     public int hashCode()
     {
-        return this.getData().toString().length();
+        int h = this.hash;
+        if (h == 0) {
+            h = this.getData().hashCode();
+            this.hash = h;
+        }
+        return h;
     }
 
     /**
@@ -426,24 +741,38 @@ public class Node<T> implements Mappable
      */
     private Set<LinkedList<Node<T>>> buildPathsToRoot(Node<T> referenceNode)
     {
+        Set<LinkedList<Node<T>>> paths = new HashSet<LinkedList<Node<T>>>();
+
+        // Depth first search with an explicit stack. A parent that is already
+        // in the current path closes a cycle and is not followed:
+        LinkedList<PathFrame<T>> framesStack = new LinkedList<PathFrame<T>>();
+        LinkedList<Node<T>> currentPath = new LinkedList<Node<T>>();
+        Set<Node<T>> nodesOnPath = new HashSet<Node<T>>();
+
+        framesStack.push(new PathFrame<T>(referenceNode, 0, true));
+        currentPath.addLast(referenceNode);
+        nodesOnPath.add(referenceNode);
+
+        while ( !framesStack.isEmpty()) {
+            PathFrame<T> frame = framesStack.peek();
+
+            if (frame.node.isRoot()) {
+                paths.add(new LinkedList<Node<T>>(currentPath));
+            } else if (frame.parents.hasNext()) {
+                Node<T> parent = frame.parents.next();
+                if (nodesOnPath.add(parent)) {
+                    framesStack.push(new PathFrame<T>(parent, 0, true));
+                    currentPath.addLast(parent);
+                }
+                continue;
+            }
 
-        Set<LinkedList<Node<T>>> partialPaths = new HashSet<LinkedList<Node<T>>>();
-
-        for (Node<T> parent : referenceNode.getParents()) {
-            partialPaths.addAll(this.buildPathsToRoot(parent));
-        }
-
-        for (LinkedList<Node<T>> partialPath : partialPaths) {
-            partialPath.addFirst(referenceNode);
-        }
-
-        if (referenceNode.getParents().size() == 0) {
-            LinkedList<Node<T>> pathSet = new LinkedList<Node<T>>();
-            pathSet.add(referenceNode);
-            partialPaths.add(pathSet);
+            framesStack.pop();
+            currentPath.removeLast();
+            nodesOnPath.remove(frame.node);
         }
 
-        return partialPaths;
+        return paths;
     }
 
     /**
@@ -504,46 +833,194 @@ public class Node<T> implements Mappable
     private Set<LinkedList<Node<T>>> buildSubgraphMaxHeightPaths(
         Node<T> referenceNode, int tau, boolean lambda)
     {
+        Set<LinkedList<Node<T>>> paths = new HashSet<LinkedList<Node<T>>>();
+
+        if (tau == 0) {
+            LinkedList<Node<T>> path = new LinkedList<Node<T>>();
+            path.add(referenceNode);
+            paths.add(path);
+            return paths;
+        }
+
+        // Depth first search with an explicit stack. The nodes ignored by
+        // lambda are on the current search path but not on the resulting
+        // path. A parent that is already on the search path closes a cycle
+        // and is not followed:
+        LinkedList<PathFrame<T>> framesStack = new LinkedList<PathFrame<T>>();
+        LinkedList<Node<T>> currentPath = new LinkedList<Node<T>>();
+        Set<Node<T>> nodesOnPath = new HashSet<Node<T>>();
+
+        framesStack.push(new PathFrame<T>(referenceNode, tau, true));
+        currentPath.addLast(referenceNode);
+        nodesOnPath.add(referenceNode);
 
-        Set<LinkedList<Node<T>>> partialPaths = new HashSet<LinkedList<Node<T>>>();
+        long visitedNodes = 1;
+        long visitedEdges = 0;
 
-        if (tau > 0) {
-            int iteractionTau;
-            for (Node<T> parent : referenceNode.getParents()) {
+        WorkBudgetTracker budget = WorkBudgetTracker.current();
 
-                if (lambda
+        while ( !framesStack.isEmpty()) {
+            PathFrame<T> frame = framesStack.peek();
+
+            if (frame.parents.hasNext()) {
+                Node<T> parent = frame.parents.next();
+                visitedEdges++;
+                if (budget != null) {
+                    budget.check(visitedNodes, visitedEdges, paths.size());
+                }
+                if (nodesOnPath.contains(parent)) {
+                    continue;
+                }
+
+                boolean ignored = lambda
                     && parent.getChildren().size() == 1
-                    && !parent.hasMappedAttributes()) {
-                    iteractionTau = tau;
+                    && !parent.hasMappedAttributes();
+                int parentTau = ignored ? frame.tau : frame.tau - 1;
+                visitedNodes++;
+
+                if (parentTau == 0) {
+                    LinkedList<Node<T>> path = new LinkedList<Node<T>>(
+                        currentPath);
+                    path.addLast(parent);
+                    paths.add(path);
                 } else {
-                    iteractionTau = tau - 1;
+                    framesStack.push(new PathFrame<T>(parent, parentTau,
+                        !ignored));
+                    nodesOnPath.add(parent);
+                    if ( !ignored) {
+                        currentPath.addLast(parent);
+                    }
                 }
+                continue;
+            }
 
-                partialPaths.addAll(this.buildSubgraphMaxHeightPaths(parent,
-                    iteractionTau, lambda));
+            framesStack.pop();
+            nodesOnPath.remove(frame.node);
+            if (frame.onResultPath) {
+                currentPath.removeLast();
             }
         }
 
-        for (LinkedList<Node<T>> partialPath : partialPaths) {
-            if (lambda) {
-                if (referenceNode.equals(this)
-                    || referenceNode.getChildren().size() != 1
-                    || (referenceNode.getChildren().size() == 1
-                        && referenceNode.hasMappedAttributes())) {
-                    partialPath.addFirst(referenceNode);
-                }
-            } else {
-                partialPath.addFirst(referenceNode);
-            }
+        OntoRecMetrics.recordWork(visitedNodes, visitedEdges, paths.size());
+
+        return paths;
+    }
+
+    /**
+     * The version of the hierarchy structure of a manager's nodes,
+     * incremented each time an edge between them is added or removed. The
+     * cached structural data of a node, and the statistics and ancestors table
+     * of its manager's planner, are valid only while the version of its
+     * structure does not change, so the edits of a manager do not discard the
+     * data of the others. Edges between nodes of different managers change
+     * both structures, but the data cached above such an edge only follows
+     * the structure of its own manager.
+     */
+    static final class Structure
+    {
+        private final AtomicLong version = new AtomicLong();
+
+        /**
+         * The version of the attributes of the structure's nodes, incremented
+         * each time one of them is attached or removed.
+         */
+        private final AtomicLong attributesVersion = new AtomicLong();
+
+        /**
+         * The last version in which some node computed its descendant
+         * attribute counts.
+         */
+        private volatile long attributeCountsVersion = -1;
+
+        long getVersion()
+        {
+            return this.version.get();
         }
 
-        if (tau == 0) {
-            LinkedList<Node<T>> pathSet = new LinkedList<Node<T>>();
-            pathSet.add(referenceNode);
-            partialPaths.add(pathSet);
+        private void changed()
+        {
+            this.version.incrementAndGet();
+        }
+
+        long getAttributesVersion()
+        {
+            return this.attributesVersion.get();
         }
 
-        return partialPaths;
+        private void attributesChanged()
+        {
+            this.attributesVersion.incrementAndGet();
+        }
+
+        private void attributeCountsComputed(long version)
+        {
+            this.attributeCountsVersion = version;
+        }
+
+        /**
+         * Returns if some node may have descendant attribute counts for the
+         * current version.
+         */
+        private boolean hasAttributeCounts()
+        {
+            return this.attributeCountsVersion == this.version.get();
+        }
+    }
+
+    /**
+     * The descendant attribute counts of a node and the structure version in
+     * which they were computed.
+     */
+    private static final class AttributeCounts
+    {
+        private final long version;
+        private final Map<String, Integer> counts;
+
+        AttributeCounts(long version, Map<String, Integer> counts)
+        {
+            this.version = version;
+            this.counts = counts;
+        }
+    }
+
+    /**
+     * The own and inherited attributes of a node by name and the versions in
+     * which they were indexed.
+     */
+    private static final class InheritedAttributes
+    {
+        private final long version;
+        private final long attributesVersion;
+        private final Map<String, NodeAttribute> byName;
+
+        InheritedAttributes(long version, long attributesVersion,
+                            Map<String, NodeAttribute> byName)
+        {
+            this.version = version;
+            this.attributesVersion = attributesVersion;
+            this.byName = byName;
+        }
+    }
+
+    /**
+     * A node being expanded by the iterative path searches.
+     *
+     * @param <T> The node type.
+     */
+    private static class PathFrame<T>
+    {
+        private final Node<T> node;
+        private final int tau;
+        private final boolean onResultPath;
+        private final Iterator<Node<T>> parents;
+
+        PathFrame(Node<T> node, int tau, boolean onResultPath)
+        {
+            this.node = node;
+            this.tau = tau;
+            this.onResultPath = onResultPath;
+            this.parents = node.getParents().iterator();
+        }
     }
 
     /**
@@ -585,33 +1062,52 @@ public class Node<T> implements Mappable
     public Map<Node<T>, Integer> getDistancesTo(Set<Node<T>> referenceNodes,
         int tau, boolean lambda)
     {
-        
-
         Set<Node<T>> maxNodesFromTau = this.extractMaxNodesFromTau(tau,
             lambda);
         Set<Node<T>> subgraphNodes = new HashSet<Node<T>>();
 
-        LOGGER.debug(String.format(
-            "For the current setup with τ=%d, we can reach the nodes in the set '%s'",
-            tau, maxNodesFromTau));
+        Trace trace = Trace.current();
+        ExecutionProfile profile = ExecutionProfile.current();
+        if (profile != null) {
+            profile.begin();
+        }
 
-        for (Node<T> pseudoRoot : maxNodesFromTau) {
-            Set<Node<T>> reachableSubgraphNodes = pseudoRoot
-                .bfsDiscoverSubgraphNodes();
-            subgraphNodes.addAll(reachableSubgraphNodes);
+        // The phases are ended even if the work budget is exceeded, so the
+        // profile stays balanced:
+        try {
+            for (Node<T> pseudoRoot : maxNodesFromTau) {
+                Set<Node<T>> reachableSubgraphNodes = pseudoRoot
+                    .bfsDiscoverSubgraphNodes();
+                subgraphNodes.addAll(reachableSubgraphNodes);
+
+                if (trace != null) {
+                    trace.record(EventType.SUBGRAPH_DISCOVERED, pseudoRoot,
+                        reachableSubgraphNodes, reachableSubgraphNodes.size());
+                }
+            }
+        } finally {
+            if (profile != null) {
+                profile.end(Phase.SUBGRAPH);
+            }
+        }
 
-            LOGGER.debug(String.format(
-                "From the node '%s' we can reach the nodes in the set '%s'",
-                pseudoRoot, reachableSubgraphNodes));
+        if (profile != null) {
+            profile.begin();
         }
 
-        Map<Node<T>, Integer> result = this
-            .bfsDiscoverLesserNonDirectionalDistanceTo(subgraphNodes,
-                referenceNodes, lambda);
+        Map<Node<T>, Integer> result;
+        try {
+            result = this.bfsDiscoverLesserNonDirectionalDistanceTo(
+                subgraphNodes, referenceNodes, lambda);
+        } finally {
+            if (profile != null) {
+                profile.end(Phase.BFS);
+            }
+        }
 
-        LOGGER.debug(String.format(
-            "The distances starting from '%s' for the mapped reachable nodes are '%s'",
-            this.getData().toString(), result));
+        if (trace != null) {
+            trace.record(EventType.DISTANCES_COMPUTED, this, result, 0);
+        }
 
         return result;
     }
@@ -621,9 +1117,25 @@ public class Node<T> implements Mappable
      * it's all descendant nodes are reachable.
      *
      * @return A set of nodes containing the current node and it's all
-     *         descendant nodes.
+     *         descendant nodes. It must not be modified, since it may be kept
+     *         by the current {@link TraversalMemo}.
      */
     private Set<Node<T>> bfsDiscoverSubgraphNodes()
+    {
+        TraversalMemo memo = TraversalMemo.current();
+        if (memo == null) {
+            return this.bfsDiscoverNewSubgraphNodes();
+        }
+
+        Set<Node<T>> result = memo.getSubgraph(this);
+        if (result == null) {
+            result = this.bfsDiscoverNewSubgraphNodes();
+            memo.putSubgraph(this, result);
+        }
+        return result;
+    }
+
+    private Set<Node<T>> bfsDiscoverNewSubgraphNodes()
     {
         List<Node<T>> nodesQueue = new LinkedList<Node<T>>();
         Set<Node<T>> visitedNodes = new HashSet<Node<T>>();
@@ -631,10 +1143,18 @@ public class Node<T> implements Mappable
         nodesQueue.add(this);
         visitedNodes.add(this);
 
+        long visitedEdges = 0;
+
+        WorkBudgetTracker budget = WorkBudgetTracker.current();
+
         Node<T> current;
         while (nodesQueue.size() != 0) {
             current = nodesQueue.remove(0);
 
+            visitedEdges += current.getChildren().size();
+            if (budget != null) {
+                budget.check(visitedNodes.size(), visitedEdges, 0);
+            }
             for (Node<T> child : current.getChildren()) {
                 if ( !visitedNodes.contains(child)) {
                     nodesQueue.add(child);
@@ -643,6 +1163,8 @@ public class Node<T> implements Mappable
             }
         }
 
+        OntoRecMetrics.recordWork(visitedNodes.size(), visitedEdges, 0);
+
         return visitedNodes;
     }
 
@@ -705,10 +1227,21 @@ public class Node<T> implements Mappable
         nodesQueue.add(this);
         cameFrom.put(this, null);
 
+        long visitedNodes = 0;
+        long visitedEdges = 0;
+
+        WorkBudgetTracker budget = WorkBudgetTracker.current();
+
         Node<T> current;
         Set<Node<T>> neighborhood;
         while (nodesQueue.size() != 0) {
             current = nodesQueue.remove(0);
+            visitedNodes++;
+            visitedEdges += current.getChildren().size()
+                + current.getParents().size();
+            if (budget != null) {
+                budget.check(visitedNodes, visitedEdges, 0);
+            }
 
             neighborhood = new HashSet<Node<T>>();
             neighborhood.addAll(current.getChildren());
@@ -729,6 +1262,8 @@ public class Node<T> implements Mappable
             }
         }
 
+        OntoRecMetrics.recordWork(visitedNodes, visitedEdges, 0);
+
         // Paths construction:
         Map<Node<T>, LinkedList<Node<T>>> result = new HashMap<Node<T>, LinkedList<Node<T>>>();
 
@@ -783,31 +1318,191 @@ public class Node<T> implements Mappable
     }
 
     /**
-     * Returns a set containing all the τ-nth ancestors of this node. It gets
-     * all possible paths for the given parameter and extracts their last nodes.
+     * Returns a set containing all the τ-nth ancestors of this node. For the
+     * nodes of a manager, the search strategy is chosen by the manager's
+     * {@link TraversalPlanner planner}. For the other nodes, all possible
+     * paths for the given parameter are built and their last nodes are
+     * extracted.
      *
      * @param tau The level of the ancestor to return.
      * @param lambda If true, only begotten fathers will be
      *        ignored at ancestors.
-     * @return A set containing all the τ-nth ancestors of this node.
+     * @return A set containing all the τ-nth ancestors of this node. It may be
+     *         unmodifiable.
      */
     public Set<Node<T>> extractMaxNodesFromTau(int tau,
         Boolean lambda)
+    {
+        ExecutionProfile profile = ExecutionProfile.current();
+        if (profile != null) {
+            profile.begin();
+        }
+
+        Set<Node<T>> result;
+        try {
+            if (this.manager != null) {
+                result = this.manager.getTraversalPlanner()
+                    .extractMaxNodesFromTau(this, tau, lambda);
+            } else {
+                result = this.enumerateMaxNodesFromTau(tau, lambda);
+            }
+        } finally {
+            if (profile != null) {
+                profile.end(Phase.TAU_ANCESTORS);
+            }
+        }
+
+        Trace trace = Trace.current();
+        if (trace != null) {
+            trace.record(EventType.TAU_ANCESTORS_COMPUTED, this, result, tau);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the τ-nth ancestors of this node as the last nodes of all the
+     * paths built by {@link #getSubgraphMaxHeightPaths(int, boolean)}. The
+     * number of paths grows exponentially with the diamonds above the node.
+     *
+     * @param tau The level of the ancestor to return.
+     * @param lambda If true, only begotten fathers will be ignored at
+     *        ancestors.
+     * @return A set containing all the τ-nth ancestors of this node.
+     */
+    Set<Node<T>> enumerateMaxNodesFromTau(int tau, boolean lambda)
     {
         Set<LinkedList<Node<T>>> allPaths = this.getSubgraphMaxHeightPaths(tau,
             lambda);
 
-        LOGGER.debug(String.format(
-            "The paths for the node '%s' with τ=%s are %s", this, tau, allPaths));
-
         Set<Node<T>> result = new HashSet<Node<T>>();
-        Node<T> maxNode;
         for (LinkedList<Node<T>> path : allPaths) {
-            maxNode = path.get(path.size() - 1);
-            if ( !result.contains(maxNode)) {
-                result.add(maxNode);
+            result.add(path.getLast());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the τ-nth ancestors of this node by a breadth first traversal
+     * of the pairs of ancestor and remaining τ. Each pair is expanded once,
+     * however many paths lead to it, so the work is bounded by the ancestors
+     * count times τ. The result is the same of
+     * {@link #enumerateMaxNodesFromTau(int, boolean)} at acyclic hierarchies;
+     * at cyclic ones, the path enumeration does not follow the cycles and
+     * this traversal does.
+     *
+     * @param tau The level of the ancestor to return.
+     * @param lambda If true, only begotten fathers will be ignored at
+     *        ancestors.
+     * @return A set containing all the τ-nth ancestors of this node.
+     */
+    Set<Node<T>> traverseMaxNodesFromTau(int tau, boolean lambda)
+    {
+        Set<Node<T>> result = new HashSet<Node<T>>();
+        if (tau == 0) {
+            result.add(this);
+            return result;
+        }
+        if (tau < 0) {
+            return result;
+        }
+
+        // The remaining τ values already expanded for each node:
+        Map<Node<T>, boolean[]> expanded = new HashMap<Node<T>, boolean[]>();
+        LinkedList<Node<T>> nodesQueue = new LinkedList<Node<T>>();
+        LinkedList<Integer> tausQueue = new LinkedList<Integer>();
+
+        nodesQueue.add(this);
+        tausQueue.add(tau);
+
+        long visitedNodes = 1;
+        long visitedEdges = 0;
+
+        WorkBudgetTracker budget = WorkBudgetTracker.current();
+
+        while ( !nodesQueue.isEmpty()) {
+            Node<T> current = nodesQueue.removeFirst();
+            int currentTau = tausQueue.removeFirst();
+
+            for (Node<T> parent : current.parents) {
+                visitedEdges++;
+                if (budget != null) {
+                    budget.check(visitedNodes, visitedEdges, 0);
+                }
+
+                boolean ignored = lambda && parent.children.size() == 1
+                    && !parent.hasMappedAttributes();
+                int parentTau = ignored ? currentTau : currentTau - 1;
+
+                if (parentTau == 0) {
+                    result.add(parent);
+                    continue;
+                }
+
+                boolean[] taus = expanded.get(parent);
+                if (taus == null) {
+                    taus = new boolean[tau + 1];
+                    expanded.put(parent, taus);
+                }
+                if ( !taus[parentTau]) {
+                    taus[parentTau] = true;
+                    nodesQueue.addLast(parent);
+                    tausQueue.addLast(parentTau);
+                    visitedNodes++;
+                }
             }
         }
+
+        OntoRecMetrics.recordWork(visitedNodes, visitedEdges, 0);
+
+        return result;
+    }
+
+    /**
+     * Returns the τ-nth ancestors of a node from its (τ - 1)-nth ancestors:
+     * the first parents of the frontier nodes that are not ignored by λ,
+     * walking through the ignored ones. The result is the same of a full
+     * search at acyclic hierarchies.
+     *
+     * @param frontier The (τ - 1)-nth ancestors of the node.
+     * @param lambda If true, only begotten fathers will be ignored at
+     *        ancestors.
+     * @return A set containing the τ-nth ancestors of the node.
+     */
+    static <T> Set<Node<T>> extendMaxNodesFromTau(Set<Node<T>> frontier,
+        boolean lambda)
+    {
+        Set<Node<T>> result = new HashSet<Node<T>>();
+        Set<Node<T>> ignoredNodes = new HashSet<Node<T>>();
+        LinkedList<Node<T>> nodesStack = new LinkedList<Node<T>>(frontier);
+
+        long visitedNodes = frontier.size();
+        long visitedEdges = 0;
+
+        WorkBudgetTracker budget = WorkBudgetTracker.current();
+
+        while ( !nodesStack.isEmpty()) {
+            Node<T> current = nodesStack.pop();
+
+            for (Node<T> parent : current.parents) {
+                visitedEdges++;
+                if (budget != null) {
+                    budget.check(visitedNodes, visitedEdges, 0);
+                }
+
+                if (lambda && parent.children.size() == 1
+                    && !parent.hasMappedAttributes()) {
+                    if (ignoredNodes.add(parent)) {
+                        nodesStack.push(parent);
+                        visitedNodes++;
+                    }
+                } else {
+                    result.add(parent);
+                }
+            }
+        }
+
+        OntoRecMetrics.recordWork(visitedNodes, visitedEdges, 0);
+
         return result;
     }
 }
@@ -28,6 +28,11 @@ class NodeAttribute implements Mappable
      */
     private Node<?> isMappedTo;
 
+    /**
+     * The cached hash code of the name, or 0 if it was not computed yet.
+     */
+    private int hash;
+
     /**
      * Creates a node attribute.
      *
@@ -67,6 +72,7 @@ class NodeAttribute implements Mappable
     public NodeAttribute setName(String name)
     {
         this.name = name;
+        this.hash = 0;
         return this;
     }
 
@@ -114,6 +120,9 @@ class NodeAttribute implements Mappable
     @Override
     public boolean equals(Object obj)
     {
+        if (this == obj) {
+            return true;
+        }
         if (obj instanceof NodeAttribute) {
             return this.getName().equals(((NodeAttribute) obj).getName());
         }
@@ -128,7 +137,8 @@ class NodeAttribute implements Mappable
      * invoke the equals method if their hashCodes are different. The typical
      * implementation is to convert the internal address of the object into an
      * integer, but we change this behavior here to certify that the objects
-     * with the same name have the same hashCode.
+     * with the same name have the same hashCode. The name's hash code is
+     * cached until the name changes.
      *
      * @see http
      *      ://docs.oracle.com/javase/6/docs/api/java/lang/Object.html#hashCode
@@ -136,6 +146,11 @@ class NodeAttribute implements Mappable
     @Override
     public int hashCode()
     {
-        return this.getName().length();
+        int h = this.hash;
+        if (h == 0) {
+            h = this.getName().hashCode();
+            this.hash = h;
+        }
+        return h;
     }
 }
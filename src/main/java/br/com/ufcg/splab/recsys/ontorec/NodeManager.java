@@ -5,15 +5,28 @@
  */
 package br.com.ufcg.splab.recsys.ontorec;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import br.com.ufcg.splab.recsys.metrics.ExecutionProfile;
+import br.com.ufcg.splab.recsys.metrics.Timer;
+import br.com.ufcg.splab.recsys.metrics.jfr.FlightRecorderEvents;
 import br.com.ufcg.splab.recsys.ontorec.weighting.NodeWeightingApproach;
 
 /**
@@ -36,6 +49,16 @@ public class NodeManager<T>
      */
     private final Map<T, Node<T>> nodeMap = new HashMap<T, Node<T>>();
 
+    /**
+     * The registered nodes indexed by their ids, assigned in creation order.
+     */
+    private final List<Node<T>> nodesById = new ArrayList<Node<T>>();
+
+    /**
+     * The nodes where each attribute name is declared.
+     */
+    private final Map<String, Set<Node<T>>> attributeDeclarations = new HashMap<String, Set<Node<T>>>();
+
     /**
      * Defines if this manager should ignore only begotten fathers in its
      * operations.
@@ -55,6 +78,51 @@ public class NodeManager<T>
      */
     private final Map<String, NodeFeatureMappingStructure<T>> featureMapping = new HashMap<String, NodeFeatureMappingStructure<T>>();
 
+    /**
+     * The nodes directly mapped to features, or null if they must be
+     * collected again from the features mapping.
+     */
+    private volatile Set<Node<T>> mappedNodesCache;
+
+    /**
+     * The nodes whose attributes are mapped to features, or null if they must
+     * be collected again from the features mapping.
+     */
+    private volatile Set<Node<T>> attributeNodesCache;
+
+    /**
+     * The version of the features mapping, incremented each time it changes.
+     */
+    private volatile long mappingVersion;
+
+    /**
+     * The last snapshot of the mapped features names, or null if it was not
+     * taken yet.
+     */
+    private volatile MappedFeatures mappedFeaturesCache;
+
+    /**
+     * The version of the hierarchy structure of this manager's nodes.
+     */
+    private final Node.Structure structure = new Node.Structure();
+
+    /**
+     * Chooses how the τ-nth ancestors of the nodes are searched.
+     */
+    private final TraversalPlanner<T> traversalPlanner = new TraversalPlanner<T>(
+        this);
+
+    /**
+     * The work budget of the features' weight calculations without an
+     * explicit one, or null if they are not limited.
+     */
+    private volatile WorkBudget workBudget;
+
+    /**
+     * The last warm-up started, or null if there was none.
+     */
+    private volatile WarmUp warmUp;
+
     private final NodeWeightingApproach<T> nodeWeightingApproach;
 
     public NodeManager(NodeWeightingApproach<T> nodeWeightingApproach,
@@ -62,11 +130,10 @@ public class NodeManager<T>
     {
         LOGGER.debug(
             "--------------------------------------------------------------------------");
-        LOGGER.debug(String.format(
-            "A NodeManager was created by using the %s approach, λ = '%s' and υ = '%s'",
-            nodeWeightingApproach.getClass().getSimpleName(),
-            String.valueOf(lambda),
-            String.valueOf(upsilon)));
+        LOGGER.debug(
+            "A NodeManager was created by using the {} approach, λ = '{}' and υ = '{}'",
+            nodeWeightingApproach.getClass().getSimpleName(), lambda,
+            upsilon);
 
         this.nodeWeightingApproach = nodeWeightingApproach;
         this.lambda = lambda;
@@ -85,15 +152,87 @@ public class NodeManager<T>
             node = this.nodeMap.get(data);
         } else {
             node = new Node<T>(data);
+            node.setManager(this);
+            node.setId(this.nodesById.size());
             this.nodeMap.put(data, node);
+            this.nodesById.add(node);
 
-            LOGGER.debug(
-                String.format("A new node was created for this manager: '%s'",
-                    node.toString()));
+            LOGGER.debug("A new node was created for this manager: '{}'",
+                node);
         }
         return node;
     }
 
+    /**
+     * Returns all the nodes registered at this manager.
+     *
+     * @return An unmodifiable view of the registered nodes.
+     */
+    public Collection<Node<T>> getNodes()
+    {
+        return Collections.unmodifiableCollection(this.nodeMap.values());
+    }
+
+    /**
+     * Removes the edges that close cycles in the hierarchy, so each remaining
+     * node is never its own ancestor. The graph is searched depth first from
+     * each node, in creation order, and every edge from a node to one of its
+     * ancestors in the search path is removed and logged as a warning.
+     *
+     * @return The number of removed edges.
+     */
+    public int breakCycles()
+    {
+        final int unvisited = 0;
+        final int inPath = 1;
+        final int done = 2;
+
+        int[] state = new int[this.nodesById.size()];
+        int removedEdges = 0;
+
+        LinkedList<Node<T>> nodesStack = new LinkedList<Node<T>>();
+        LinkedList<Iterator<Node<T>>> childrenStack = new LinkedList<Iterator<Node<T>>>();
+
+        for (Node<T> start : this.nodesById) {
+            if (state[start.getId()] != unvisited) {
+                continue;
+            }
+
+            state[start.getId()] = inPath;
+            nodesStack.push(start);
+            childrenStack.push(new ArrayList<Node<T>>(start.getChildren())
+                .iterator());
+
+            while ( !nodesStack.isEmpty()) {
+                Node<T> current = nodesStack.peek();
+                Iterator<Node<T>> children = childrenStack.peek();
+
+                if ( !children.hasNext()) {
+                    state[current.getId()] = done;
+                    nodesStack.pop();
+                    childrenStack.pop();
+                    continue;
+                }
+
+                Node<T> child = children.next();
+                if (state[child.getId()] == inPath) {
+                    LOGGER.warn(
+                        "The edge from '{}' to its child '{}' closes a cycle and was removed",
+                        current, child);
+                    current.removeChild(child);
+                    removedEdges++;
+                } else if (state[child.getId()] == unvisited) {
+                    state[child.getId()] = inPath;
+                    nodesStack.push(child);
+                    childrenStack.push(new ArrayList<Node<T>>(child
+                        .getChildren()).iterator());
+                }
+            }
+        }
+
+        return removedEdges;
+    }
+
     public NodeAttribute createAttribute(String attributeName,
         Node<T> attachedNode)
     {
@@ -122,7 +261,272 @@ public class NodeManager<T>
      */
     public boolean nodeExists(Node<T> element)
     {
-        return this.nodeMap.containsValue(element);
+        // Nodes are equal when their data is equal:
+        return element != null && this.nodeMap.containsKey(element.getData());
+    }
+
+    /**
+     * Returns the id of a registered node. Ids are assigned in creation order
+     * and never change.
+     *
+     * @param element The node.
+     * @return The node id, or null if the node is not registered.
+     */
+    public Integer getNodeId(Node<T> element)
+    {
+        if (element == null) {
+            return null;
+        }
+        Node<T> node = this.nodeMap.get(element.getData());
+        return (node == null) ? null : node.getId();
+    }
+
+    /**
+     * Returns the registered nodes indexed by their ids.
+     *
+     * @return An unmodifiable view of the registered nodes.
+     */
+    List<Node<T>> getNodesById()
+    {
+        return Collections.unmodifiableList(this.nodesById);
+    }
+
+    /**
+     * Returns the planner that chooses how the τ-nth ancestors of the nodes
+     * are searched. It also gives the statistics of the hierarchy.
+     *
+     * @return The traversal planner.
+     */
+    public TraversalPlanner<T> getTraversalPlanner()
+    {
+        return this.traversalPlanner;
+    }
+
+    /**
+     * Starts to precompute, in parallel, the τ-nth ancestors of every node
+     * mapped to a feature for the given τ values and the λ of this manager,
+     * so the first calls after a startup do not pay for them. The ancestors
+     * are kept at the {@link TraversalPlanner planner} table. The nodes whose
+     * attributes are mapped also get the (τ - 1)-nth ancestors, which are the
+     * ones their features use. The mapped node sets and the hierarchy
+     * statistics are computed before this method returns.
+     * <p>
+     * The hierarchy and the features mapping must not change during the
+     * warm-up, and any later change discards the warmed ancestors. If the
+     * executor rejects a node, the node and the ones not submitted yet are
+     * done as failed.
+     *
+     * @param taus The τ values.
+     * @param executor The executor that runs the warm-up, or null to use a
+     *        new pool with a thread per processor, shut down at the end.
+     * @return The progress of the warm-up.
+     */
+    public WarmUp warmUp(Collection<Integer> taus, ExecutorService executor)
+    {
+        Map<Node<T>, SortedSet<Integer>> nodesTaus = new HashMap<Node<T>, SortedSet<Integer>>();
+        for (NodeFeatureMappingStructure<T> mapping : this.featureMapping
+            .values()) {
+            SortedSet<Integer> nodeTaus = nodesTaus.get(mapping.getNode());
+            if (nodeTaus == null) {
+                nodeTaus = new TreeSet<Integer>();
+                nodesTaus.put(mapping.getNode(), nodeTaus);
+            }
+            for (int tau : taus) {
+                if (tau < 0) {
+                    throw new IllegalArgumentException(
+                        "The τ values must not be negative");
+                }
+                nodeTaus.add(tau);
+                if (mapping.isMappingToAttribute() && tau > 0) {
+                    nodeTaus.add(tau - 1);
+                }
+            }
+        }
+
+        this.getMappedNodes();
+        this.getAttributeNodes();
+        this.traversalPlanner.getStatistics();
+
+        final boolean currentLambda = Boolean.TRUE.equals(this.getLambda());
+        final WarmUp result = new WarmUp(nodesTaus.size());
+        this.warmUp = result;
+
+        ExecutorService pool = executor;
+        if (pool == null) {
+            pool = Executors.newFixedThreadPool(Runtime.getRuntime()
+                .availableProcessors());
+        }
+
+        LOGGER.debug("Warming up {} nodes for τ in {}", nodesTaus.size(),
+            taus);
+
+        int submitted = 0;
+        for (final Map.Entry<Node<T>, SortedSet<Integer>> entry : nodesTaus
+            .entrySet()) {
+            try {
+                pool.execute(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        try {
+                            // In ascending order, each τ moves up from the
+                            // previous one:
+                            for (int tau : entry.getValue()) {
+                                entry.getKey().extractMaxNodesFromTau(tau,
+                                    currentLambda);
+                            }
+                        } catch (RuntimeException e) {
+                            result.fail(e);
+                        } catch (Error e) {
+                            // The error is kept by the warm-up and still
+                            // reaches the executor:
+                            result.fail(e);
+                            throw e;
+                        } finally {
+                            result.nodeDone();
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // The nodes that were not submitted will never be done by a
+                // task, so the warm-up finishes as failed:
+                LOGGER.warn("The executor rejected the warm-up of {} nodes",
+                    nodesTaus.size() - submitted);
+                result.nodesRejected(nodesTaus.size() - submitted, e);
+                break;
+            }
+            submitted++;
+        }
+
+        if (pool != executor) {
+            pool.shutdown();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the last warm-up started by {@link #warmUp}.
+     *
+     * @return The warm-up, or null if there was none.
+     */
+    public WarmUp getWarmUp()
+    {
+        return this.warmUp;
+    }
+
+    /**
+     * Returns a registered node by its id. The returned instance is the only
+     * one kept by this manager for its data, so it can be compared by
+     * reference with other nodes of this manager.
+     *
+     * @param id The node id.
+     * @return The node, or null if there is no node with this id.
+     */
+    public Node<T> getNodeById(int id)
+    {
+        if (id < 0 || id >= this.nodesById.size()) {
+            return null;
+        }
+        return this.nodesById.get(id);
+    }
+
+    /**
+     * Returns the nodes where an attribute is declared (not the ones that
+     * inherit it).
+     *
+     * @param attributeName The attribute name.
+     * @return An unmodifiable set with the declaring nodes, empty if there is
+     *         no declaration.
+     */
+    public Set<Node<T>> getAttributeDeclaringNodes(String attributeName)
+    {
+        Set<Node<T>> nodes = this.attributeDeclarations.get(attributeName);
+        if (nodes == null) {
+            return Collections.emptySet();
+        }
+        return Collections.unmodifiableSet(nodes);
+    }
+
+    /**
+     * Updates the attributes index when an attribute is attached to a node of
+     * this manager.
+     *
+     * @param node The node.
+     * @param attribute The attached attribute.
+     */
+    void attributeAttached(Node<T> node, NodeAttribute attribute)
+    {
+        Set<Node<T>> nodes = this.attributeDeclarations.get(attribute
+            .getName());
+        if (nodes == null) {
+            nodes = new HashSet<Node<T>>();
+            this.attributeDeclarations.put(attribute.getName(), nodes);
+        }
+        nodes.add(node);
+    }
+
+    /**
+     * Updates the attributes index when an attribute is removed from a node
+     * of this manager.
+     *
+     * @param node The node.
+     * @param attribute The removed attribute.
+     */
+    void attributeDetached(Node<T> node, NodeAttribute attribute)
+    {
+        Set<Node<T>> nodes = this.attributeDeclarations.get(attribute
+            .getName());
+        if (nodes != null) {
+            nodes.remove(node);
+            if (nodes.isEmpty()) {
+                this.attributeDeclarations.remove(attribute.getName());
+            }
+        }
+    }
+
+    /**
+     * Returns the mapping structure of a feature.
+     *
+     * @param featureName The feature name.
+     * @return The mapping structure, or null if the feature is not mapped.
+     */
+    public NodeFeatureMappingStructure<T> getFeatureMappingStructure(
+        String featureName)
+    {
+        return this.featureMapping.get(featureName);
+    }
+
+    /**
+     * Discards the cached mapped nodes sets. It must be called each time the
+     * features mapping changes.
+     */
+    private void invalidateMappingCaches()
+    {
+        this.mappedNodesCache = null;
+        this.attributeNodesCache = null;
+        this.mappingVersion++;
+    }
+
+    /**
+     * Returns the hierarchy structure of this manager's nodes.
+     *
+     * @return The structure.
+     */
+    Node.Structure getStructure()
+    {
+        return this.structure;
+    }
+
+    /**
+     * Returns the version of the features mapping. It changes each time the
+     * mapping changes.
+     *
+     * @return The mapping version.
+     */
+    long getMappingVersion()
+    {
+        return this.mappingVersion;
     }
 
     public NodeManager<T> addFeatureMapping(String featureName, Node<T> node)
@@ -136,16 +540,18 @@ public class NodeManager<T>
     {
         NodeFeatureMappingStructure<T> featureMappingStructure;
         if (attribute == null) {
-            LOGGER.debug(String.format(
-                "A new mapping was initialized to this NodeManager. The feature '%s' was directly mapped to the node '%s'",
-                featureName, node.toString()));
+            LOGGER.debug(
+                "A new mapping was initialized to this NodeManager. The feature '{}' was directly mapped to the node '{}'",
+                featureName, node);
 
             featureMappingStructure = new NodeFeatureMappingStructure<T>(
                 featureName, node);
         } else {
-            LOGGER.debug(String.format(
-                "A new mapping was initialized to this NodeManager. The feature '%s' was mapped to the attribute '%s' in the node '%s'",
-                featureName, attribute.toString(), node.toString()));
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug(
+                    "A new mapping was initialized to this NodeManager. The feature '{}' was mapped to the attribute '{}' in the node '{}'",
+                    featureName, attribute, node);
+            }
 
             if ( !node.getAllAttributes().contains(attribute)) {
                 String errorMessage = String.format(
@@ -162,9 +568,10 @@ public class NodeManager<T>
 
         if ( !this.featureMapping.containsKey(featureName)) {
             this.featureMapping.put(featureName, featureMappingStructure);
+            this.invalidateMappingCaches();
         } else {
-            LOGGER.debug(String.format(
-                "The feature '%s' is already mapped, skipping!", featureName));
+            LOGGER.debug("The feature '{}' is already mapped, skipping!",
+                featureName);
         }
 
         return this;
@@ -173,30 +580,115 @@ public class NodeManager<T>
     public boolean removeFeatureMapping(String featureName)
     {
         if (this.featureMapping.containsKey(featureName)) {
-            LOGGER.debug(String.format(
-                "The feature mapping for the feature '%s' was successfully removed",
-                featureName));
+            LOGGER.debug(
+                "The feature mapping for the feature '{}' was successfully removed",
+                featureName);
 
             this.featureMapping.remove(featureName);
+            this.invalidateMappingCaches();
             return true;
         }
 
-        LOGGER.debug(String.format(
-            "It was not possible to remove the feature mapping for the feature '%s'",
-            featureName));
+        LOGGER.debug(
+            "It was not possible to remove the feature mapping for the feature '{}'",
+            featureName);
 
         return false;
     }
 
+    /**
+     * Returns the features mapping of this manager, where each key is a
+     * feature name.
+     *
+     * @return An unmodifiable view of the features mapping.
+     */
+    Map<String, NodeFeatureMappingStructure<T>> getFeatureMapping()
+    {
+        return Collections.unmodifiableMap(this.featureMapping);
+    }
+
+    /**
+     * Registers a feature mapping without validating it. It is used to
+     * rebuild managers whose mappings were already validated.
+     *
+     * @param featureMappingStructure The feature mapping.
+     */
+    void putFeatureMapping(
+        NodeFeatureMappingStructure<T> featureMappingStructure)
+    {
+        this.featureMapping.put(featureMappingStructure.getFeatureName(),
+            featureMappingStructure);
+        this.invalidateMappingCaches();
+    }
+
+    /**
+     * Returns the nodes directly mapped to features. The set is cached until
+     * the features mapping changes.
+     *
+     * @return An unmodifiable set with the directly mapped nodes.
+     */
     public Set<Node<T>> getMappedNodes()
+    {
+        Set<Node<T>> mappedNodes = this.mappedNodesCache;
+        if (mappedNodes != null) {
+            OntoRecMetrics.MAPPED_NODES_CACHE_HITS.increment();
+        } else {
+            OntoRecMetrics.MAPPED_NODES_CACHE_MISSES.increment();
+            mappedNodes = Collections.unmodifiableSet(this
+                .collectMappedNodes(false));
+            this.mappedNodesCache = mappedNodes;
+        }
+        return mappedNodes;
+    }
+
+    /**
+     * Returns the mapped features names. The set is a snapshot, copied once
+     * per mapping version, so it does not change when features are mapped
+     * later.
+     *
+     * @return An unmodifiable snapshot of the mapped features names.
+     */
+    public Set<String> getMappedFeatures()
+    {
+        MappedFeatures cached = this.mappedFeaturesCache;
+        long version = this.mappingVersion;
+        if (cached == null || cached.version != version) {
+            cached = new MappedFeatures(version, Collections
+                .unmodifiableSet(new HashSet<String>(this.featureMapping
+                    .keySet())));
+            this.mappedFeaturesCache = cached;
+        }
+        return cached.features;
+    }
+
+    /**
+     * Returns the nodes whose attributes are mapped to features. The set is
+     * cached until the features mapping changes.
+     *
+     * @return An unmodifiable set with the nodes whose attributes are mapped.
+     */
+    public Set<Node<T>> getAttributeNodes()
+    {
+        Set<Node<T>> attributeNodes = this.attributeNodesCache;
+        if (attributeNodes != null) {
+            OntoRecMetrics.ATTRIBUTE_NODES_CACHE_HITS.increment();
+        } else {
+            OntoRecMetrics.ATTRIBUTE_NODES_CACHE_MISSES.increment();
+            attributeNodes = Collections.unmodifiableSet(this
+                .collectMappedNodes(true));
+            this.attributeNodesCache = attributeNodes;
+        }
+        return attributeNodes;
+    }
+
+    private Set<Node<T>> collectMappedNodes(boolean mappingToAttribute)
     {
         Set<Node<T>> mappedNodes = new HashSet<Node<T>>();
 
         for (NodeFeatureMappingStructure<T> featureMappingStructure : this.featureMapping
             .values()) {
 
-            if ( !featureMappingStructure.isMappingToAttribute()
-                && !mappedNodes.contains(featureMappingStructure.getNode())) {
+            if (featureMappingStructure.isMappingToAttribute() == mappingToAttribute) {
                 mappedNodes.add(featureMappingStructure.getNode());
             }
         }
@@ -204,54 +696,298 @@ public class NodeManager<T>
         return mappedNodes;
     }
 
-    public Set<String> getMappedFeatures()
+    /**
+     * Calculates the features' weight and records how the time and the graph
+     * work were spent at a profile.
+     *
+     * @param selectedFeatures The selected features.
+     * @param tau The τ value.
+     * @param profile The profile that receives the measurements. It is
+     *        active at the current thread during the call.
+     * @return The features' weight.
+     */
+    public Map<String, Double> getFeaturesWeight(Set<String> selectedFeatures,
+        Integer tau, ExecutionProfile profile)
     {
-        Set<String> mappedFeatures = new HashSet<String>();
+        profile.start();
+        try {
+            return this.getFeaturesWeight(selectedFeatures, tau);
+        } finally {
+            profile.stop();
+        }
+    }
 
-        for (NodeFeatureMappingStructure<T> featureMappingStructure : this.featureMapping
-            .values()) {
+    /**
+     * Calculates the features' weight. If a {@link #setWorkBudget(WorkBudget)
+     * default work budget} is defined, the calculation is limited by it.
+     *
+     * @param selectedFeatures The selected features.
+     * @param tau The τ value.
+     * @return The features' weight.
+     * @throws WorkBudgetExceededException If the default budget is exceeded
+     *         and its policy is {@link WorkBudget.Policy#FAIL_FAST}.
+     */
+    public Map<String, Double> getFeaturesWeight(Set<String> selectedFeatures,
+        Integer tau)
+    {
+        WorkBudget budget = this.workBudget;
+        if (budget != null && WorkBudgetTracker.current() == null) {
+            return this.getFeaturesWeight(selectedFeatures, tau, budget)
+                .getWeights();
+        }
+        return this.computeFeaturesWeight(selectedFeatures, tau);
+    }
+
+    /**
+     * Calculates the features' weight limited by a work budget. When the
+     * budget is exceeded, the call fails or returns a degraded result,
+     * according to the budget policy.
+     *
+     * @param selectedFeatures The selected features.
+     * @param tau The τ value.
+     * @param budget The work budget of this call.
+     * @return The features' weight, marked as degraded if the budget was
+     *         exceeded.
+     * @throws WorkBudgetExceededException If the budget is exceeded and its
+     *         policy is {@link WorkBudget.Policy#FAIL_FAST}.
+     */
+    public FeaturesWeightResult getFeaturesWeight(
+        Set<String> selectedFeatures, Integer tau, WorkBudget budget)
+    {
+        WorkBudgetTracker tracker = new WorkBudgetTracker(budget).start();
+        try {
+            Map<String, Double> weights;
+            try {
+                weights = this.computeFeaturesWeight(selectedFeatures, tau);
+            } catch (WorkBudgetExceededException e) {
+                // The weighting approaches that do not stop by themselves
+                // lose the whole expansion:
+                if ( !tracker.degrade(e)) {
+                    throw e;
+                }
+                weights = this.getSelectedFeaturesWeight(selectedFeatures);
+            }
 
-            if ( !mappedFeatures
-                .contains(featureMappingStructure.getFeatureName())) {
-                mappedFeatures.add(featureMappingStructure.getFeatureName());
+            if (tracker.isDegraded()) {
+                LOGGER.warn(
+                    "A degraded features' weight was returned for τ = '{}' and the selected features {}: {}",
+                    tau, selectedFeatures, tracker.getExceeded().getMessage());
+                return new FeaturesWeightResult(weights, tau,
+                    tracker.getExceeded());
             }
+            return new FeaturesWeightResult(weights, tau, null);
+        } finally {
+            tracker.stop();
         }
-
-        return mappedFeatures;
     }
 
-    public Set<Node<T>> getAttributeNodes()
+    /**
+     * Calculates the features' weight for the deepest τ reached within a work
+     * budget. τ is deepened from 1 to the max one, a level at a time, and the
+     * weights of the last complete level are kept. The τ-nth ancestors of
+     * each level are found by moving up from the ones of the previous level
+     * (see {@link TraversalPlanner}), and the subgraph below each τ-nth
+     * ancestor is discovered once for the whole call (see
+     * {@link TraversalMemo}). The distances from each selected feature are
+     * still searched again at each level, since the searched subgraph grows
+     * with τ.
+     * <p>
+     * When the budget is exceeded, the running level is discarded and the
+     * weights of the previous one are returned, marked as degraded. The
+     * budget policy is only used when not even the first level is completed:
+     * {@link WorkBudget.Policy#DEGRADE} returns the weights of τ = 0, where
+     * only the selected features have weight.
+     *
+     * @param selectedFeatures The selected features.
+     * @param maxTau The max τ value.
+     * @param budget The work budget of the whole calculation.
+     * @return The features' weight and the τ value reached.
+     * @throws WorkBudgetExceededException If the budget is exceeded before
+     *         the first level is completed and its policy is
+     *         {@link WorkBudget.Policy#FAIL_FAST}.
+     */
+    public FeaturesWeightResult getFeaturesWeightAnytime(
+        Set<String> selectedFeatures, int maxTau, WorkBudget budget)
     {
-        Set<Node<T>> mappedNodes = new HashSet<Node<T>>();
+        if (maxTau < 1) {
+            throw new IllegalArgumentException("The max τ must be positive");
+        }
 
-        for (NodeFeatureMappingStructure<T> featureMappingStructure : this.featureMapping
-            .values()) {
+        // The levels must not degrade by themselves, so an interrupted level
+        // is discarded instead of returned:
+        WorkBudgetTracker tracker = new WorkBudgetTracker(
+            budget.withPolicy(WorkBudget.Policy.FAIL_FAST)).start();
+        TraversalMemo memo = new TraversalMemo().start();
+        try {
+            Map<String, Double> weights = null;
+            int tau = 0;
+            WorkBudgetExceededException exceeded = null;
 
-            if (featureMappingStructure.isMappingToAttribute()
-                && !mappedNodes.contains(featureMappingStructure.getNode())) {
-                mappedNodes.add(featureMappingStructure.getNode());
+            while (tau < maxTau && exceeded == null) {
+                try {
+                    tracker.checkDeadline();
+                    weights = this.computeFeaturesWeight(selectedFeatures,
+                        tau + 1);
+                    tau++;
+                    OntoRecMetrics.ANYTIME_LEVELS.increment();
+                } catch (WorkBudgetExceededException e) {
+                    exceeded = e;
+                }
             }
+
+            if (exceeded == null) {
+                return new FeaturesWeightResult(weights, tau, null);
+            }
+
+            if (weights == null) {
+                if (budget.getPolicy() != WorkBudget.Policy.DEGRADE) {
+                    throw exceeded;
+                }
+                OntoRecMetrics.DEGRADED_EXPANSIONS.increment();
+                weights = this.getSelectedFeaturesWeight(selectedFeatures);
+            }
+            OntoRecMetrics.ANYTIME_INTERRUPTED.increment();
+            LOGGER.debug(
+                "The anytime features' weight stopped at τ = '{}' of '{}' after reusing {} discovered subgraphs: {}",
+                tau, maxTau, memo.getHits(), exceeded.getMessage());
+            return new FeaturesWeightResult(weights, tau, exceeded);
+        } finally {
+            memo.stop();
+            tracker.stop();
         }
+    }
 
-        return mappedNodes;
+    private Map<String, Double> getSelectedFeaturesWeight(
+        Set<String> selectedFeatures)
+    {
+        Map<String, Double> weights = new HashMap<String, Double>();
+        for (String feature : selectedFeatures) {
+            weights.put(feature, 1d);
+        }
+        return this.addUnreachableFeaturesTo(weights);
     }
 
-    public Map<String, Double> getFeaturesWeight(Set<String> selectedFeatures,
-        Integer tau)
+    /**
+     * Calculates the features' weight for a range of τ values, and for both λ
+     * values if requested, sharing the traversals among them. The τ values
+     * are calculated in ascending order, so the τ-nth ancestors of each level
+     * are found by moving up from the ones of the previous level (see
+     * {@link TraversalPlanner}), and the subgraph below each τ-nth ancestor is
+     * discovered once for the whole sweep (see {@link TraversalMemo}). Each
+     * result is the same of a {@link #getFeaturesWeight(Set, Integer)} call
+     * for that τ and λ. The default work budget does not limit the sweep.
+     *
+     * @param selectedFeatures The selected features.
+     * @param minTau The min τ value.
+     * @param maxTau The max τ value.
+     * @param bothLambdas If true, the features' weight is calculated for both
+     *        λ values. Otherwise, only for the λ of this manager.
+     * @return The features' weight of each τ and λ.
+     */
+    public FeaturesWeightSweep getFeaturesWeightSweep(
+        Set<String> selectedFeatures, int minTau, int maxTau,
+        boolean bothLambdas)
     {
+        if (minTau < 1 || maxTau < minTau) {
+            throw new IllegalArgumentException(String.format(
+                "Invalid τ range: [%d, %d]", minTau, maxTau));
+        }
+
+        SortedSet<Integer> taus = new TreeSet<Integer>();
+        for (int tau = minTau; tau <= maxTau; tau++) {
+            taus.add(tau);
+        }
+        return this.getFeaturesWeightSweep(selectedFeatures, taus,
+            bothLambdas);
+    }
+
+    /**
+     * Calculates the features' weight for some τ values, and for both λ
+     * values if requested, like {@link #getFeaturesWeightSweep(Set, int,
+     * int, boolean)}, but only for the informed τ values. A sparse grid
+     * therefore costs only its own levels. The τ-nth ancestors of a level are
+     * found by moving up from the previous level only when the two τ values
+     * are consecutive, and the min reaching τ of each feature is the first
+     * swept τ at which it is reachable.
+     *
+     * @param selectedFeatures The selected features.
+     * @param taus The τ values. They must be positive.
+     * @param bothLambdas If true, the features' weight is calculated for both
+     *        λ values. Otherwise, only for the λ of this manager.
+     * @return The features' weight of each τ and λ.
+     */
+    public FeaturesWeightSweep getFeaturesWeightSweep(
+        Set<String> selectedFeatures, SortedSet<Integer> taus,
+        boolean bothLambdas)
+    {
+        if (taus.isEmpty() || taus.first() < 1) {
+            throw new IllegalArgumentException("Invalid τ values: " + taus);
+        }
+        int minTau = taus.first();
+        int maxTau = taus.last();
+
+        boolean[] lambdas = bothLambdas ? new boolean[] { false, true }
+            : new boolean[] { Boolean.TRUE.equals(this.getLambda()) };
+        FeaturesWeightSweep sweep = new FeaturesWeightSweep(minTau, maxTau);
+
+        TraversalMemo memo = new TraversalMemo().start();
+        try {
+            for (boolean lambda : lambdas) {
+                for (int tau : taus) {
+                    Map<String, Double> reachableFeaturesWeights = this
+                        .computeReachableFeaturesWeight(selectedFeatures, tau,
+                            lambda);
+                    sweep.put(tau, lambda, reachableFeaturesWeights.keySet(),
+                        this.addUnreachableFeaturesTo(
+                            new HashMap<String, Double>(
+                                reachableFeaturesWeights)));
+                }
+            }
+        } finally {
+            memo.stop();
+        }
+
         LOGGER.debug(
-            String.format("Getting the features' weight for τ = '%s'", tau));
+            "The features' weight sweep for τ in {} reused {} discovered subgraphs",
+            taus, memo.getHits());
 
-        Set<Node<T>> directMappedNodes = this.getMappedNodes();
-        Set<Node<T>> attributeNodes = this.getAttributeNodes();
+        return sweep;
+    }
 
-        Map<String, Double> reachableFeaturesWeights = this.nodeWeightingApproach
-            .getFeaturesWeight(selectedFeatures, directMappedNodes,
-                attributeNodes, this.featureMapping, tau,
-                this.getLambda(),
-                this.getUpsilon());
+    private Map<String, Double> computeFeaturesWeight(
+        Set<String> selectedFeatures, Integer tau)
+    {
+        return this.addUnreachableFeaturesTo(this
+            .computeReachableFeaturesWeight(selectedFeatures, tau,
+                this.getLambda()));
+    }
+
+    private Map<String, Double> computeReachableFeaturesWeight(
+        Set<String> selectedFeatures, Integer tau, Boolean lambda)
+    {
+        LOGGER.debug("Getting the features' weight for τ = '{}'", tau);
 
-        return this.addUnreachableFeaturesTo(reachableFeaturesWeights);
+        Timer timer = OntoRecMetrics.featuresWeightTimer(
+            this.nodeWeightingApproach.getClass().getSimpleName(), tau,
+            lambda, this.getUpsilon());
+        long start = timer.start();
+        Object event = FlightRecorderEvents.beginFeaturesWeight();
+
+        try {
+            Set<Node<T>> directMappedNodes = this.getMappedNodes();
+            Set<Node<T>> attributeNodes = this.getAttributeNodes();
+
+            return this.nodeWeightingApproach.getFeaturesWeight(
+                selectedFeatures, directMappedNodes, attributeNodes,
+                this.featureMapping, tau, lambda, this.getUpsilon());
+        } finally {
+            timer.stop(start);
+            FlightRecorderEvents.endFeaturesWeight(event,
+                this.nodeWeightingApproach.getClass().getSimpleName(), tau,
+                Boolean.TRUE.equals(lambda),
+                Boolean.TRUE.equals(this.getUpsilon()),
+                selectedFeatures.size());
+        }
     }
 
     private Map<String, Double> addUnreachableFeaturesTo(
@@ -260,15 +996,39 @@ public class NodeManager<T>
         Map<String, Double> result = reachableFeaturesWeights;
         for (String featureName : this.featureMapping.keySet()) {
             if ( !result.containsKey(featureName)) {
-                LOGGER.debug(String.format(
-                    "The feature '%s' is unreachable. Adding it to the result vector with value 0",
-                    featureName));
+                LOGGER.debug(
+                    "The feature '{}' is unreachable. Adding it to the result vector with value 0",
+                    featureName);
                 result.put(featureName, 0d);
             }
         }
         return result;
     }
 
+    /**
+     * Returns the default work budget of the features' weight calculations.
+     *
+     * @return The default budget, or null if the calculations are not
+     *         limited.
+     */
+    public WorkBudget getWorkBudget()
+    {
+        return this.workBudget;
+    }
+
+    /**
+     * Defines the work budget of the features' weight calculations that do
+     * not have an explicit one, so a pathological selection cannot hold a
+     * request thread for long.
+     *
+     * @param workBudget The default budget, or null to not limit the
+     *        calculations.
+     */
+    public void setWorkBudget(WorkBudget workBudget)
+    {
+        this.workBudget = workBudget;
+    }
+
     /**
      * Returns if this manager ignores only begotten fathers in its operations.
      *
@@ -348,4 +1108,20 @@ public class NodeManager<T>
 
         return result;
     }
+
+    /**
+     * A snapshot of the mapped features names and the mapping version in
+     * which it was taken.
+     */
+    private static final class MappedFeatures
+    {
+        private final long version;
+        private final Set<String> features;
+
+        MappedFeatures(long version, Set<String> features)
+        {
+            this.version = version;
+            this.features = features;
+        }
+    }
 }
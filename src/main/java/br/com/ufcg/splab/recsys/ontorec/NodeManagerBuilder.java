@@ -0,0 +1,399 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.ontorec;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import br.com.ufcg.splab.recsys.ontorec.weighting.NodeWeightingApproach;
+
+/**
+ * Builds a node manager from lists of nodes, edges and attributes informed in
+ * any order. The graph is linked at {@link #build()} without the per edge
+ * checks done by {@link Node#addParent(Node)} and {@link Node#addChild(Node)},
+ * and the attributes are validated after all the edges exist, without
+ * computing the inherited and descendant attributes for each one of them.
+ * <p>
+ * The result is the same of adding all the edges first and then each
+ * attribute, in the informed order, with {@link Node#addAttribute}: an
+ * attribute is rejected if the node, an ancestor or a descendant already has
+ * an attribute with the same name.
+ *
+ * @author Saulo Toledo
+ * @param <T> The node type.
+ */
+public class NodeManagerBuilder<T>
+{
+    /**
+     * The application logger.
+     */
+    private static final Logger LOGGER = LoggerFactory
+        .getLogger(NodeManagerBuilder.class);
+
+    private final NodeWeightingApproach<T> nodeWeightingApproach;
+    private final Boolean lambda;
+    private final Boolean upsilon;
+
+    /**
+     * The nodes data, in the order they were informed.
+     */
+    private final Set<T> nodes = new LinkedHashSet<T>();
+
+    /**
+     * The edges, where each key is a parent and the value is its children.
+     */
+    private final Map<T, Set<T>> edges = new HashMap<T, Set<T>>();
+
+    /**
+     * The attributes declarations, in the order they were informed.
+     */
+    private final List<AttributeDeclaration<T>> attributes = new ArrayList<AttributeDeclaration<T>>();
+
+    /**
+     * Creates a builder for a manager with the informed settings.
+     *
+     * @param nodeWeightingApproach The approach used by the manager.
+     * @param lambda If the manager should ignore only begotten fathers.
+     * @param upsilon If the manager should achieve all the other mapped nodes.
+     */
+    public NodeManagerBuilder(NodeWeightingApproach<T> nodeWeightingApproach,
+        Boolean lambda, Boolean upsilon)
+    {
+        this.nodeWeightingApproach = nodeWeightingApproach;
+        this.lambda = lambda;
+        this.upsilon = upsilon;
+    }
+
+    /**
+     * Declares a node.
+     *
+     * @param data The node data.
+     * @return This builder.
+     */
+    public NodeManagerBuilder<T> addNode(T data)
+    {
+        this.nodes.add(data);
+        return this;
+    }
+
+    /**
+     * Declares an edge. The nodes are declared if needed.
+     *
+     * @param parent The parent node data.
+     * @param child The child node data.
+     * @return This builder.
+     */
+    public NodeManagerBuilder<T> addEdge(T parent, T child)
+    {
+        this.nodes.add(parent);
+        this.nodes.add(child);
+
+        Set<T> children = this.edges.get(parent);
+        if (children == null) {
+            children = new LinkedHashSet<T>();
+            this.edges.put(parent, children);
+        }
+        children.add(child);
+
+        return this;
+    }
+
+    /**
+     * Declares an attribute. The node is declared if needed.
+     *
+     * @param data The data of the node where the attribute is declared.
+     * @param attributeName The attribute name.
+     * @return This builder.
+     */
+    public NodeManagerBuilder<T> addAttribute(T data, String attributeName)
+    {
+        this.nodes.add(data);
+        this.attributes.add(new AttributeDeclaration<T>(data, attributeName));
+        return this;
+    }
+
+    /**
+     * Builds the manager.
+     *
+     * @return The manager with all the declared nodes, edges and the
+     *         accepted attributes.
+     */
+    public NodeManager<T> build()
+    {
+        NodeManager<T> nm = new NodeManager<T>(this.nodeWeightingApproach,
+            this.lambda, this.upsilon);
+
+        for (T data : this.nodes) {
+            nm.getNode(data);
+        }
+
+        int edgeCount = 0;
+        for (Map.Entry<T, Set<T>> entry : this.edges.entrySet()) {
+            Node<T> parent = nm.getNode(entry.getKey());
+            for (T child : entry.getValue()) {
+                parent.linkChild(nm.getNode(child));
+                edgeCount++;
+            }
+        }
+
+        // The attributes validation expects a hierarchy without cycles:
+        int removedEdges = nm.breakCycles();
+        if (removedEdges > 0) {
+            LOGGER.warn(
+                "The hierarchy had cycles and {} edges were removed to break them",
+                removedEdges);
+            edgeCount -= removedEdges;
+        }
+
+        int accepted = this.attachAttributes(nm);
+
+        LOGGER.debug(
+            "A NodeManager was built with {} nodes, {} edges and {} of {} attributes",
+            this.nodes.size(), edgeCount, accepted, this.attributes.size());
+
+        return nm;
+    }
+
+    /**
+     * Validates and attaches the attributes. Most attribute names are
+     * declared only once and cannot conflict with anything, so only the
+     * repeated names need to look at the graph. For those, the nodes are
+     * sorted topologically once, and one pass downwards and one pass upwards
+     * collect, at each node, the repeated declarations of its ancestors and
+     * of its descendants. Each declaration is then checked, in the informed
+     * order, against the accepted declarations of the same name among them.
+     * The sets are shared along the single parent chains, so the passes are
+     * linear in the graph size for a bounded number of repeated declarations.
+     *
+     * @param nm The manager with the linked graph, without cycles.
+     * @return The number of accepted attributes.
+     */
+    private int attachAttributes(NodeManager<T> nm)
+    {
+        Map<String, Integer> declarationsByName = new HashMap<String, Integer>();
+        for (AttributeDeclaration<T> declaration : this.attributes) {
+            Integer count = declarationsByName.get(declaration.name);
+            declarationsByName.put(declaration.name, (count == null) ? 1
+                : count + 1);
+        }
+
+        // The repeated declarations are numbered so the ones of each name are
+        // in a range of their own:
+        Map<String, Integer> rangeStarts = new HashMap<String, Integer>();
+        Map<String, Integer> nextIds = new HashMap<String, Integer>();
+        int[] ids = new int[this.attributes.size()];
+        Map<Node<T>, BitSet> ownDeclarations = new HashMap<Node<T>, BitSet>();
+        int repeated = 0;
+
+        for (int i = 0; i < ids.length; i++) {
+            AttributeDeclaration<T> declaration = this.attributes.get(i);
+            int count = declarationsByName.get(declaration.name);
+            if (count == 1) {
+                ids[i] = -1;
+                continue;
+            }
+
+            Integer id = nextIds.get(declaration.name);
+            if (id == null) {
+                id = repeated;
+                rangeStarts.put(declaration.name, repeated);
+                repeated += count;
+            }
+            nextIds.put(declaration.name, id + 1);
+            ids[i] = id;
+
+            Node<T> node = nm.getNode(declaration.data);
+            BitSet own = ownDeclarations.get(node);
+            if (own == null) {
+                own = new BitSet();
+                ownDeclarations.put(node, own);
+            }
+            own.set(id);
+        }
+
+        Map<Node<T>, BitSet> ancestors = Collections.emptyMap();
+        Map<Node<T>, BitSet> descendants = Collections.emptyMap();
+        if (repeated > 0) {
+            List<Node<T>> order = this.sortTopologically(nm);
+            ancestors = this.collectDeclarations(order, ownDeclarations, true);
+            Collections.reverse(order);
+            descendants = this.collectDeclarations(order, ownDeclarations,
+                false);
+        }
+
+        BitSet acceptedIds = new BitSet(repeated);
+        int accepted = 0;
+
+        for (int i = 0; i < ids.length; i++) {
+            AttributeDeclaration<T> declaration = this.attributes.get(i);
+            Node<T> node = nm.getNode(declaration.data);
+
+            if (ids[i] >= 0) {
+                int from = rangeStarts.get(declaration.name);
+                int to = from + declarationsByName.get(declaration.name);
+
+                String whoContainsTheAttr = null;
+                if (this.intersects(ownDeclarations.get(node), acceptedIds,
+                    from, to)) {
+                    whoContainsTheAttr = "this node";
+                } else if (this.intersects(ancestors.get(node), acceptedIds,
+                    from, to)) {
+                    whoContainsTheAttr = "a parent node";
+                } else if (this.intersects(descendants.get(node),
+                    acceptedIds, from, to)) {
+                    whoContainsTheAttr = "a child node";
+                }
+
+                if (whoContainsTheAttr != null) {
+                    if (LOGGER.isDebugEnabled()) {
+                        LOGGER.debug(
+                            "It was not possible to create the attribute '{}' in the node '{}' because '{}' already contains an attribute with this name",
+                            declaration.name, node.getData(),
+                            whoContainsTheAttr);
+                    }
+                    continue;
+                }
+                acceptedIds.set(ids[i]);
+            }
+
+            node.attachAttribute(new NodeAttribute(declaration.name));
+            accepted++;
+        }
+
+        return accepted;
+    }
+
+    /**
+     * Sorts the nodes so each one comes after all its parents.
+     *
+     * @param nm The manager with the linked graph.
+     * @return The sorted nodes.
+     */
+    private List<Node<T>> sortTopologically(NodeManager<T> nm)
+    {
+        Map<Node<T>, Integer> pendingParents = new HashMap<Node<T>, Integer>();
+        LinkedList<Node<T>> ready = new LinkedList<Node<T>>();
+        for (Node<T> node : nm.getNodes()) {
+            int parents = node.getParents().size();
+            if (parents == 0) {
+                ready.add(node);
+            } else {
+                pendingParents.put(node, parents);
+            }
+        }
+
+        List<Node<T>> order = new ArrayList<Node<T>>(nm.getNodes().size());
+        while ( !ready.isEmpty()) {
+            Node<T> node = ready.removeFirst();
+            order.add(node);
+
+            for (Node<T> child : node.getChildren()) {
+                int parents = pendingParents.get(child) - 1;
+                if (parents == 0) {
+                    pendingParents.remove(child);
+                    ready.add(child);
+                } else {
+                    pendingParents.put(child, parents);
+                }
+            }
+        }
+
+        if ( !pendingParents.isEmpty()) {
+            throw new IllegalStateException(
+                "The hierarchy still has cycles after they were broken");
+        }
+
+        return order;
+    }
+
+    /**
+     * Collects, at each node, its own declarations and the ones of the nodes
+     * above it (its ancestors, or its descendants when moving upwards). A
+     * node with a single source of declarations shares its set.
+     *
+     * @param order The nodes, each one after the nodes it reads from.
+     * @param ownDeclarations The declarations of each node.
+     * @param fromParents If the declarations are read from the parents, or
+     *        from the children otherwise.
+     * @return The declarations at each node with some of them.
+     */
+    private Map<Node<T>, BitSet> collectDeclarations(List<Node<T>> order,
+        Map<Node<T>, BitSet> ownDeclarations, boolean fromParents)
+    {
+        Map<Node<T>, BitSet> result = new HashMap<Node<T>, BitSet>();
+
+        for (Node<T> node : order) {
+            BitSet declarations = ownDeclarations.get(node);
+            boolean shared = true;
+
+            for (Node<T> source : (fromParents ? node.getParents() : node
+                .getChildren())) {
+                BitSet other = result.get(source);
+                if (other == null || other == declarations) {
+                    continue;
+                }
+                if (declarations == null) {
+                    declarations = other;
+                } else {
+                    if (shared) {
+                        declarations = (BitSet) declarations.clone();
+                        shared = false;
+                    }
+                    declarations.or(other);
+                }
+            }
+
+            if (declarations != null) {
+                result.put(node, declarations);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Verifies if a set of declarations has an accepted one in a range.
+     */
+    private boolean intersects(BitSet declarations, BitSet acceptedIds,
+        int from, int to)
+    {
+        if (declarations == null) {
+            return false;
+        }
+        for (int id = declarations.nextSetBit(from); id >= 0 && id < to; id = declarations
+            .nextSetBit(id + 1)) {
+            if (acceptedIds.get(id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * An attribute declaration.
+     */
+    private static class AttributeDeclaration<T>
+    {
+        private final T data;
+        private final String name;
+
+        AttributeDeclaration(T data, String name)
+        {
+            this.data = data;
+            this.name = name;
+        }
+    }
+}
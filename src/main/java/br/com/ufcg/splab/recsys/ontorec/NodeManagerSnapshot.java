@@ -0,0 +1,433 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.ontorec;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import br.com.ufcg.splab.recsys.ontorec.weighting.NodeWeightingApproach;
+
+/**
+ * Saves and loads node managers as compact binary snapshots, so an ontology
+ * does not need to be parsed and mapped again each time the application
+ * starts. A snapshot contains a header (magic number, format version, body
+ * checksum and body length) followed by a body with the interned names, the
+ * nodes table, the children and parents edges in the compressed sparse row
+ * (CSR) format, the attributes and the features mapping.
+ *
+ * @author Saulo Toledo
+ */
+public final class NodeManagerSnapshot
+{
+    /**
+     * The application logger.
+     */
+    private static final Logger LOGGER = LoggerFactory
+        .getLogger(NodeManagerSnapshot.class);
+
+    /**
+     * The snapshot files magic number ("ONTR").
+     */
+    static final int MAGIC = 0x4F4E5452;
+
+    /**
+     * The current snapshot format version.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * The header size, in bytes.
+     */
+    static final int HEADER_SIZE = 24;
+
+    /**
+     * The charset of the interned names.
+     */
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * The value used for absent references at the snapshot tables.
+     */
+    static final int NONE = -1;
+
+    private NodeManagerSnapshot()
+    {
+    }
+
+    /**
+     * Saves a node manager to a snapshot file.
+     *
+     * @param nm The node manager.
+     * @param file The snapshot file. It is overwritten if it exists.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void save(NodeManager<String> nm, File file)
+        throws IOException
+    {
+        List<Node<String>> nodes = new ArrayList<Node<String>>(nm.getNodes());
+        Map<Node<String>, Integer> nodeIds = new HashMap<Node<String>, Integer>();
+
+        SnapshotWriter writer = new SnapshotWriter(file);
+        boolean written = false;
+        try {
+            for (Node<String> node : nodes) {
+                nodeIds.put(node, writer.addNode(node.getData()));
+            }
+
+            for (int i = 0; i < nodes.size(); i++) {
+                for (Node<String> child : nodes.get(i).getChildren()) {
+                    writer.addEdge(i, nodeIds.get(child));
+                }
+            }
+
+            for (int i = 0; i < nodes.size(); i++) {
+                for (NodeAttribute attribute : nodes.get(i).getAttributes()) {
+                    writer.setAttributeMapping(
+                        writer.addAttribute(i, attribute.getName()),
+                        getNodeId(nodeIds, attribute.getIsMappedTo()));
+                }
+            }
+
+            for (NodeFeatureMappingStructure<String> mapping : nm
+                .getFeatureMapping().values()) {
+                int node = getNodeId(nodeIds, mapping.getNode());
+                if (node == NONE) {
+                    throw new IOException(String.format(
+                        "The feature '%s' is mapped to a node that is not registered at the manager",
+                        mapping.getFeatureName()));
+                }
+                if (mapping.isMappingToAttribute()) {
+                    writer.addFeatureMapping(mapping.getFeatureName(), node,
+                        mapping.getAttribute().getName(),
+                        getAttachedNodeId(nodeIds, mapping.getAttribute()));
+                } else {
+                    writer.addFeatureMapping(mapping.getFeatureName(), node,
+                        null, NONE);
+                }
+            }
+
+            writer.close();
+            written = true;
+        } finally {
+            if ( !written) {
+                writer.abort();
+            }
+        }
+
+        LOGGER.debug(
+            "A snapshot with {} nodes and {} mappings was saved to '{}'",
+            nodes.size(), nm.getFeatureMapping().size(), file);
+    }
+
+    /**
+     * Loads a node manager from a snapshot file. The file is memory mapped
+     * and its checksum is verified once, so the graph is rebuilt without
+     * validating each edge, attribute and mapping again.
+     *
+     * @param file The snapshot file.
+     * @param nodeWeightingApproach The approach used by the loaded manager.
+     * @param lambda If the loaded manager should ignore only begotten fathers.
+     * @param upsilon If the loaded manager should achieve all the other mapped
+     *        nodes.
+     * @return The loaded node manager.
+     * @throws IOException If the file cannot be read or it is not a valid
+     *         snapshot.
+     */
+    public static NodeManager<String> load(File file,
+        NodeWeightingApproach<String> nodeWeightingApproach, Boolean lambda,
+        Boolean upsilon) throws IOException
+    {
+        ByteBuffer body = mapBody(file);
+
+        String[] strings = readStrings(body);
+
+        int nodeCount = body.getInt();
+        NodeManager<String> nm = new NodeManager<String>(
+            nodeWeightingApproach, lambda, upsilon);
+
+        List<Node<String>> nodes = new ArrayList<Node<String>>(nodeCount);
+        for (int i = 0; i < nodeCount; i++) {
+            nodes.add(nm.getNode(strings[body.getInt()]));
+        }
+        // The nodes sorted by name are only used by the mapped graph store:
+        skipInts(body, nodeCount);
+
+        int[] childOffsets = readInts(body, nodeCount + 1);
+        for (int i = 0; i < nodeCount; i++) {
+            Node<String> parent = nodes.get(i);
+            for (int k = childOffsets[i]; k < childOffsets[i + 1]; k++) {
+                parent.linkChild(nodes.get(body.getInt()));
+            }
+        }
+        // The parents edges are the same edges in the opposite direction:
+        int[] parentOffsets = readInts(body, nodeCount + 1);
+        skipInts(body, parentOffsets[nodeCount]);
+
+        int[] attributeOffsets = readInts(body, nodeCount + 1);
+        int attributeCount = attributeOffsets[nodeCount];
+        int[] attributeNames = readInts(body, attributeCount);
+        int[] attributeMappings = readInts(body, attributeCount);
+
+        NodeAttribute[] attributes = new NodeAttribute[attributeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            for (int k = attributeOffsets[i]; k < attributeOffsets[i + 1]; k++) {
+                attributes[k] = new NodeAttribute(strings[attributeNames[k]]);
+                nodes.get(i).attachAttribute(attributes[k]);
+            }
+        }
+
+        int mappingCount = body.getInt();
+        for (int i = 0; i < mappingCount; i++) {
+            String featureName = strings[body.getInt()];
+            Node<String> node = nodes.get(body.getInt());
+            int attributeName = body.getInt();
+            int attributeNode = body.getInt();
+
+            try {
+                if (attributeName == NONE) {
+                    nm.putFeatureMapping(new NodeFeatureMappingStructure<String>(
+                        featureName, node));
+                } else {
+                    NodeAttribute attribute = findAttribute(nodes,
+                        attributeNode, strings[attributeName]);
+                    nm.putFeatureMapping(new NodeFeatureMappingStructure<String>(
+                        featureName, node, attribute));
+                }
+            } catch (Exception e) {
+                throw new IOException(String.format(
+                    "The snapshot '%s' has an invalid mapping for the feature '%s'",
+                    file, featureName), e);
+            }
+        }
+
+        // The mappings above mark their attributes, so the saved marks are
+        // restored at the end:
+        for (int k = 0; k < attributeCount; k++) {
+            attributes[k].setIsMappedTo(attributeMappings[k] == NONE ? null
+                : nodes.get(attributeMappings[k]));
+        }
+
+        LOGGER.debug(
+            "A snapshot with {} nodes and {} mappings was loaded from '{}'",
+            nodeCount, mappingCount, file);
+
+        return nm;
+    }
+
+    /**
+     * Maps a snapshot file and validates its header and checksum.
+     *
+     * @param file The snapshot file.
+     * @return A buffer positioned at the beginning of the snapshot body.
+     * @throws IOException If the file cannot be read or it is not a valid
+     *         snapshot.
+     */
+    static ByteBuffer mapBody(File file) throws IOException
+    {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            checkHeader(channel, file);
+
+            return channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE,
+                channel.size() - HEADER_SIZE);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Validates the header of a snapshot file and the checksum of its body.
+     * The body is read in chunks, so it is not limited by the max mapped
+     * size.
+     *
+     * @param channel The snapshot file channel.
+     * @param file The snapshot file, used at the error messages.
+     * @throws IOException If the file cannot be read or it is not a valid
+     *         snapshot.
+     */
+    static void checkHeader(FileChannel channel, File file)
+        throws IOException
+    {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) {
+                break;
+            }
+        }
+        header.flip();
+
+        if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+            throw new IOException(String.format(
+                "The file '%s' is not an OntoRec snapshot", file));
+        }
+
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException(String.format(
+                "The snapshot '%s' has the unsupported version %d", file,
+                version));
+        }
+
+        long checksum = header.getLong();
+        long length = header.getLong();
+        if (length != channel.size() - HEADER_SIZE) {
+            throw new IOException(String.format(
+                "The snapshot '%s' is truncated", file));
+        }
+
+        CRC32 crc = new CRC32();
+        ByteBuffer chunk = ByteBuffer.allocate(64 * 1024);
+        long position = HEADER_SIZE;
+        while (position < channel.size()) {
+            chunk.clear();
+            int read = channel.read(chunk, position);
+            if (read < 0) {
+                break;
+            }
+            crc.update(chunk.array(), 0, read);
+            position += read;
+        }
+        if (crc.getValue() != checksum) {
+            throw new IOException(String.format(
+                "The snapshot '%s' is corrupted", file));
+        }
+    }
+
+    /**
+     * Reads the interned names table.
+     *
+     * @param body The snapshot body, positioned at the names table.
+     * @return The interned names.
+     */
+    static String[] readStrings(ByteBuffer body)
+    {
+        int count = body.getInt();
+        int[] offsets = readInts(body, count + 1);
+
+        byte[] blob = new byte[offsets[count]];
+        body.get(blob);
+        body.position(body.position() + padding(blob.length));
+
+        String[] strings = new String[count];
+        for (int i = 0; i < count; i++) {
+            strings[i] = new String(blob, offsets[i], offsets[i + 1]
+                - offsets[i], UTF8);
+        }
+        return strings;
+    }
+
+    static int[] readInts(ByteBuffer body, int count)
+    {
+        int[] result = new int[count];
+        body.asIntBuffer().get(result);
+        body.position(body.position() + 4 * count);
+        return result;
+    }
+
+    static void skipInts(ByteBuffer body, int count)
+    {
+        body.position(body.position() + 4 * count);
+    }
+
+    /**
+     * Returns the number of bytes needed to align a section to 4 bytes.
+     *
+     * @param length The section length.
+     * @return The padding length.
+     */
+    static int padding(int length)
+    {
+        return (4 - (length % 4)) % 4;
+    }
+
+    /**
+     * Writes the interned names table, padded to 4 bytes.
+     *
+     * @param out The snapshot body.
+     * @param strings The interned names, in the order of their ids.
+     * @throws IOException If the names cannot be written.
+     */
+    static void writeStrings(DataOutputStream out, List<String> strings)
+        throws IOException
+    {
+        List<byte[]> encoded = new ArrayList<byte[]>(strings.size());
+        for (String string : strings) {
+            encoded.add(string.getBytes(UTF8));
+        }
+
+        out.writeInt(strings.size());
+        int offset = 0;
+        out.writeInt(offset);
+        for (byte[] bytes : encoded) {
+            offset += bytes.length;
+            out.writeInt(offset);
+        }
+        for (byte[] bytes : encoded) {
+            out.write(bytes);
+        }
+        for (int i = 0; i < padding(offset); i++) {
+            out.writeByte(0);
+        }
+    }
+
+    private static int getNodeId(Map<Node<String>, Integer> nodeIds,
+        Node<?> node)
+    {
+        if (node == null) {
+            return NONE;
+        }
+        Integer id = nodeIds.get(node);
+        return (id == null) ? NONE : id;
+    }
+
+    /**
+     * Returns the node where a mapped attribute instance is attached, if the
+     * instance is the one the node holds. Mappings can also be created with
+     * detached attribute instances that only share the name.
+     */
+    private static int getAttachedNodeId(Map<Node<String>, Integer> nodeIds,
+        NodeAttribute attribute)
+    {
+        Node<?> attachedNode = attribute.getAttachedNode();
+        if (attachedNode == null) {
+            return NONE;
+        }
+        for (NodeAttribute candidate : attachedNode.getAttributes()) {
+            if (candidate == attribute) {
+                return getNodeId(nodeIds, attachedNode);
+            }
+        }
+        return NONE;
+    }
+
+    private static NodeAttribute findAttribute(List<Node<String>> nodes,
+        int attributeNode, String attributeName)
+    {
+        if (attributeNode != NONE) {
+            for (NodeAttribute attribute : nodes.get(attributeNode)
+                .getAttributes()) {
+                if (attribute.getName().equals(attributeName)) {
+                    return attribute;
+                }
+            }
+        }
+        return new NodeAttribute(attributeName);
+    }
+}
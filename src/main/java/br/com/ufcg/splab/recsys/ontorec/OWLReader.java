@@ -1,22 +1,35 @@
 package br.com.ufcg.splab.recsys.ontorec;
 
-import java.io.File;
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
 
+import br.com.ufcg.splab.recsys.metrics.jfr.FlightRecorderEvents;
 import br.com.ufcg.splab.recsys.ontorec.weighting.NodeWeightingApproach;
 
+/**
+ * Reads an OWL ontology in the RDF/XML format into a node manager. The file
+ * is read in a single streaming pass: the classes and their
+ * <code>rdfs:subClassOf</code> edges are added to the graph as they are read,
+ * and only the properties declarations are kept until the end of the
+ * document, so the memory usage is bounded by the graph instead of the
+ * document.
+ *
+ * @author Saulo Toledo
+ */
 public class OWLReader
 {
     /**
@@ -25,188 +38,355 @@ public class OWLReader
     private static final Logger LOGGER = LoggerFactory
             .getLogger(OWLReader.class);
 
-    private Map<String, Node<String>> nodeMap = new HashMap<String, Node<String>>();
+    private static final String OWL_CLASS = "owl:Class";
+    private static final String OWL_OBJECT_PROPERTY = "owl:ObjectProperty";
+    private static final String OWL_DATATYPE_PROPERTY = "owl:DatatypeProperty";
+    private static final String RDFS_SUBCLASS_OF = "rdfs:subClassOf";
+    private static final String RDFS_DOMAIN = "rdfs:domain";
+    private static final String RDFS_SUBPROPERTY_OF = "rdfs:subPropertyOf";
+    private static final String RDF_ABOUT = "rdf:about";
+    private static final String RDF_RESOURCE = "rdf:resource";
+
     private NodeManager<String> nm;
 
     public OWLReader(String filepath,
             NodeWeightingApproach<String> nodeWeightingApproach,
             Boolean lambda, Boolean upsilon)
     {
+        Object event = FlightRecorderEvents.beginOntologyLoad();
 
-        this.nm = new NodeManager<String>(nodeWeightingApproach,
-                lambda, upsilon);
+        NodeManagerBuilder<String> builder = new NodeManagerBuilder<String>(
+                nodeWeightingApproach, lambda, upsilon);
         try {
+            InputStream in = new BufferedInputStream(new FileInputStream(
+                    filepath));
+            try {
+                this.read(in, builder);
+            } finally {
+                in.close();
+            }
+        } catch (Exception e) {
+            LOGGER.error("An exception has occurred.", e);
+        }
 
-            File fXmlFile = new File(filepath);
-            DocumentBuilderFactory dbFactory = DocumentBuilderFactory
-                    .newInstance();
-            DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-            Document doc = dBuilder.parse(fXmlFile);
-
-            // optional, but recommended
-            // read this -
-            // http://stackoverflow.com/questions/13786607/normalization-in-dom-parsing-with-java-how-does-it-work
-            doc.getDocumentElement().normalize();
-
-            NodeList nList = doc.getElementsByTagName("owl:Class");
-
-            for (int temp = 0; temp < nList.getLength(); temp++) {
-
-                org.w3c.dom.Node nNode = nList.item(temp);
+        if (this.nm == null) {
+            // The reading failed, but what was read is kept:
+            this.nm = builder.build();
+        }
 
-                if (nNode.getNodeType() == org.w3c.dom.Node.ELEMENT_NODE) {
+        FlightRecorderEvents.endOntologyLoad(event, filepath, this.nm
+                .getNodes().size());
+    }
 
-                    Element eElement = (Element) nNode;
+    /**
+     * Reads the ontology document. The properties are applied after the
+     * whole document is read, the object properties first and the datatype
+     * properties after them, because an attribute can only be created if no
+     * ancestor or descendant already has it, so the order matters. The graph
+     * and the domain attributes are collected by a builder that links and
+     * validates them at once.
+     *
+     * @param in The ontology document.
+     * @param builder The builder that collects the graph.
+     * @throws XMLStreamException If the document is malformed.
+     */
+    private void read(InputStream in, NodeManagerBuilder<String> builder)
+            throws XMLStreamException
+    {
+        List<PropertyDeclaration> objectProperties = new ArrayList<PropertyDeclaration>();
+        List<PropertyDeclaration> datatypeProperties = new ArrayList<PropertyDeclaration>();
 
-                    String nodeName = eElement.getAttribute("rdf:about").split(
-                            "#")[1];
-                    Node<String> currentNode = this.nm.getNode(nodeName);
-                    this.nodeMap.put(nodeName, currentNode);
+        // The open elements that matter for the reader. Anonymous classes
+        // and properties are kept as null:
+        LinkedList<String> classes = new LinkedList<String>();
+        LinkedList<PropertyDeclaration> properties = new LinkedList<PropertyDeclaration>();
+        LinkedList<String> openElements = new LinkedList<String>();
 
-                    NodeList subClassOfList = eElement
-                            .getElementsByTagName("rdfs:subClassOf");
-                    if (subClassOfList.getLength() > 0) {
+        XMLStreamReader reader = XMLInputFactory.newInstance()
+                .createXMLStreamReader(in);
+        try {
+            while (reader.hasNext()) {
+                int event = reader.next();
+
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String element = this.getQualifiedName(
+                            reader.getPrefix(), reader.getLocalName());
+                    openElements.push(element);
+
+                    if (element.equals(OWL_CLASS)) {
+                        classes.push(this.readClass(reader, builder));
+
+                    } else if (element.equals(RDFS_SUBCLASS_OF)) {
+                        this.readSubClassOf(reader, classes.peek(), builder);
+
+                    } else if (element.equals(OWL_OBJECT_PROPERTY)
+                            || element.equals(OWL_DATATYPE_PROPERTY)) {
+                        PropertyDeclaration property = this
+                                .readProperty(reader);
+                        properties.push(property);
+
+                        if (property != null) {
+                            if (element.equals(OWL_OBJECT_PROPERTY)) {
+                                objectProperties.add(property);
+                            } else {
+                                datatypeProperties.add(property);
+                            }
+                        }
 
-                        for (int i = 0; i < subClassOfList.getLength(); i++) {
-                            Element parentElement = (Element) (subClassOfList
-                                    .item(i));
-                            String parentElementName = parentElement
-                                    .getAttribute("rdf:resource").split("#")[1];
-                            Node<String> parentNode = this.nm
-                                    .getNode(parentElementName);
+                    } else if (element.equals(RDFS_DOMAIN)
+                            && properties.peek() != null) {
+                        String domain = this.getResourceName(reader,
+                                RDF_RESOURCE);
+                        if (domain != null) {
+                            properties.peek().domains.add(domain);
+                        }
 
-                            this.nodeMap.put(parentElementName, parentNode);
-                            currentNode.addParent(parentNode);
+                    } else if (element.equals(RDFS_SUBPROPERTY_OF)
+                            && properties.peek() != null) {
+                        String superProperty = this.getResourceName(reader,
+                                RDF_RESOURCE);
+                        if (superProperty != null) {
+                            properties.peek().superProperties
+                                    .add(superProperty);
                         }
                     }
-                }
-            }
-
-            List<String> attributesToRemoveAndToAdd = new ArrayList<String>();
-            List<String> attributeNodes = new ArrayList<String>();
-
-            nList = doc.getElementsByTagName("owl:ObjectProperty");
-
-            for (int temp = 0; temp < nList.getLength(); temp++) {
-
-                org.w3c.dom.Node nNode = nList.item(temp);
-
-                if (nNode.getNodeType() == org.w3c.dom.Node.ELEMENT_NODE) {
-
-                    Element eElement = (Element) nNode;
-
-                    String attrName = eElement.getAttribute("rdf:about").split(
-                            "#")[1];
 
-                    NodeList domains = eElement
-                            .getElementsByTagName("rdfs:domain");
-                    if (domains.getLength() > 0) {
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    String element = openElements.pop();
 
-                        for (int i = 0; i < domains.getLength(); i++) {
-                            Element domain = (Element) (domains.item(i));
-                            String domainElementName = domain.getAttribute(
-                                    "rdf:resource").split("#")[1];
-
-                            // NodeName -> AttributeName
-                            attributeNodes.add(domainElementName + " -> "
-                                    + attrName);
-                            Node<String> domainNode = this.nm
-                                    .getNode(domainElementName);
-
-                            domainNode
-                                    .addAttribute(new NodeAttribute(attrName));
-                        }
+                    if (element.equals(OWL_CLASS)) {
+                        classes.pop();
+                    } else if (element.equals(OWL_OBJECT_PROPERTY)
+                            || element.equals(OWL_DATATYPE_PROPERTY)) {
+                        properties.pop();
                     }
                 }
             }
+        } finally {
+            reader.close();
+        }
 
-            nList = doc.getElementsByTagName("owl:DatatypeProperty");
-
-            for (int temp = 0; temp < nList.getLength(); temp++) {
+        PropertyHierarchy hierarchy = new PropertyHierarchy();
 
-                org.w3c.dom.Node nNode = nList.item(temp);
+        for (PropertyDeclaration property : objectProperties) {
+            this.addDomainAttributes(property, hierarchy, builder);
+        }
 
-                if (nNode.getNodeType() == org.w3c.dom.Node.ELEMENT_NODE) {
+        for (PropertyDeclaration property : datatypeProperties) {
+            this.addDomainAttributes(property, hierarchy, builder);
 
-                    Element eElement = (Element) nNode;
+            for (String enumValueName : property.superProperties) {
+                hierarchy.subProperties.add(new SubPropertyRelation(
+                        property.name, enumValueName));
 
-                    String attrName = eElement.getAttribute("rdf:about").split(
-                            "#")[1];
+                builder.addAttribute(enumValueName, property.name);
+            }
+        }
 
-                    NodeList domains = eElement
-                            .getElementsByTagName("rdfs:domain");
-                    if (domains.getLength() > 0) {
+        this.nm = builder.build();
 
-                        for (int i = 0; i < domains.getLength(); i++) {
-                            Element domain = (Element) (domains.item(i));
-                            String domainElementName = domain.getAttribute(
-                                    "rdf:resource").split("#")[1];
+        this.replaceSuperProperties(hierarchy);
+    }
 
-                            // NodeName -> AttributeName
-                            attributeNodes.add(domainElementName + " -> "
-                                    + attrName);
-                            Node<String> domainNode = this.nm
-                                    .getNode(domainElementName);
+    /**
+     * Replaces each super property by its sub properties at the nodes where
+     * the super property was declared. The moves are applied in the order
+     * the sub properties were read, since the attributes validation depends
+     * on the attributes already present at the graph.
+     *
+     * @param hierarchy The properties hierarchy read from the document.
+     */
+    private void replaceSuperProperties(PropertyHierarchy hierarchy)
+    {
+        for (SubPropertyRelation relation : hierarchy.subProperties) {
+            List<String> domainNodes = hierarchy.domains
+                    .get(relation.superProperty);
+            if (domainNodes == null) {
+                continue;
+            }
 
-                            domainNode
-                                    .addAttribute(new NodeAttribute(attrName));
-                        }
-                    }
+            for (String nodeName : domainNodes) {
+                this.nm.getNode(nodeName).addAttribute(
+                        new NodeAttribute(relation.subProperty));
+            }
 
-                    NodeList enumValues = eElement
-                            .getElementsByTagName("rdfs:subPropertyOf");
-                    if (enumValues.getLength() > 0) {
+            this.nm.getNode(domainNodes.get(domainNodes.size() - 1))
+                    .removeAttribute(new NodeAttribute(relation.superProperty));
+        }
+    }
 
-                        for (int i = 0; i < enumValues.getLength(); i++) {
-                            Element enumValue = (Element) (enumValues.item(i));
-                            String enumValueName = enumValue.getAttribute(
-                                    "rdf:resource").split("#")[1];
+    /**
+     * Reads an <code>owl:Class</code> element, declaring its node.
+     *
+     * @param reader The reader positioned at the element.
+     * @param builder The builder that collects the graph.
+     * @return The class name, or null if the class is anonymous.
+     */
+    private String readClass(XMLStreamReader reader,
+            NodeManagerBuilder<String> builder)
+    {
+        String nodeName = this.getResourceName(reader, RDF_ABOUT);
+        if (nodeName != null) {
+            builder.addNode(nodeName);
+        }
+        return nodeName;
+    }
 
-                            // attrName (that should be removed) ->
-                            // AttributeName (that should be added)
-                            attributesToRemoveAndToAdd.add(attrName + " -> "
-                                    + enumValueName);
+    /**
+     * Reads an <code>rdfs:subClassOf</code> element, linking the current class
+     * to its parent. Restrictions and other anonymous parents are ignored.
+     *
+     * @param reader The reader positioned at the element.
+     * @param currentNode The name of the class being read, or null if it is
+     *        anonymous.
+     * @param builder The builder that collects the graph.
+     */
+    private void readSubClassOf(XMLStreamReader reader, String currentNode,
+            NodeManagerBuilder<String> builder)
+    {
+        String parentElementName = this.getResourceName(reader, RDF_RESOURCE);
+        if (currentNode != null && parentElementName != null) {
+            builder.addEdge(parentElementName, currentNode);
+        }
+    }
 
-                            Node<String> domainNode = this.nm
-                                    .getNode(enumValueName);
+    /**
+     * Reads an <code>owl:ObjectProperty</code> or
+     * <code>owl:DatatypeProperty</code> element.
+     *
+     * @param reader The reader positioned at the element.
+     * @return The property declaration, or null if it is anonymous.
+     */
+    private PropertyDeclaration readProperty(XMLStreamReader reader)
+    {
+        String attrName = this.getResourceName(reader, RDF_ABOUT);
+        if (attrName == null) {
+            return null;
+        }
+        return new PropertyDeclaration(attrName);
+    }
 
-                            domainNode
-                                    .addAttribute(new NodeAttribute(attrName));
-                        }
-                    }
+    /**
+     * Creates the attributes for a property at each one of its domains.
+     *
+     * @param property The property declaration.
+     * @param hierarchy The properties hierarchy where the domain nodes are
+     *        registered.
+     * @param builder The builder that collects the graph.
+     */
+    private void addDomainAttributes(PropertyDeclaration property,
+            PropertyHierarchy hierarchy, NodeManagerBuilder<String> builder)
+    {
+        for (String domainElementName : property.domains) {
+            hierarchy.addDomain(property.name, domainElementName);
 
-                }
-            }
-            for (String attrInfo : attributesToRemoveAndToAdd) {
-                String attrThatShouldBeRemoved = attrInfo.split(" -> ")[1];
-                String attrThatShouldBeAdded = attrInfo.split(" -> ")[0];
-
-                Node<String> node = null;
-                for (String attrNodesInfo : attributeNodes) {
-                    String nodeName = attrNodesInfo.split(" -> ")[0];
-                    String attrAtNode = attrNodesInfo.split(" -> ")[1];
-
-                    if (attrAtNode.equals(attrThatShouldBeRemoved)) {
-                        node = this.nm.getNode(nodeName);
-                        node.addAttribute(new NodeAttribute(
-                                attrThatShouldBeAdded));
-                    }
-                }
+            builder.addAttribute(domainElementName, property.name);
+        }
+    }
 
-                if (node != null) {
-                    node.removeAttribute(new NodeAttribute(
-                            attrThatShouldBeRemoved));
+    /**
+     * Returns the name of the resource referenced by an attribute of the
+     * current element, that is, the fragment of the IRI after the '#'.
+     *
+     * @param reader The reader positioned at the element.
+     * @param attributeName The qualified attribute name.
+     * @return The resource name, or null if the element does not have the
+     *         attribute or it does not reference a named resource.
+     */
+    private String getResourceName(XMLStreamReader reader,
+            String attributeName)
+    {
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            String name = this.getQualifiedName(reader.getAttributePrefix(i),
+                    reader.getAttributeLocalName(i));
+
+            if (name.equals(attributeName)) {
+                String[] iri = reader.getAttributeValue(i).split("#");
+                if (iri.length < 2) {
+                    return null;
                 }
-
+                return iri[1];
             }
+        }
+        return null;
+    }
 
-        } catch (Exception e) {
-            LOGGER.error("An exception has occurred.", e);
+    /**
+     * Returns the qualified name of an element or attribute, as it appears at
+     * the document.
+     *
+     * @param prefix The namespace prefix.
+     * @param localName The local name.
+     * @return The qualified name.
+     */
+    private String getQualifiedName(String prefix, String localName)
+    {
+        if (prefix == null || prefix.isEmpty()) {
+            return localName;
         }
+        return prefix + ":" + localName;
     }
 
     public NodeManager<String> getNodeManager()
     {
         return this.nm;
     }
+
+    /**
+     * A property declaration, kept until the whole document is read.
+     */
+    private static class PropertyDeclaration
+    {
+        private final String name;
+        private final List<String> domains = new ArrayList<String>();
+        private final List<String> superProperties = new ArrayList<String>();
+
+        PropertyDeclaration(String name)
+        {
+            this.name = name;
+        }
+    }
+
+    /**
+     * The properties domains and the sub property relations read from the
+     * document.
+     */
+    private static class PropertyHierarchy
+    {
+        /**
+         * The nodes where each property was declared, in reading order.
+         */
+        private final Map<String, List<String>> domains = new HashMap<String, List<String>>();
+
+        /**
+         * The sub property relations, in reading order.
+         */
+        private final List<SubPropertyRelation> subProperties = new ArrayList<SubPropertyRelation>();
+
+        void addDomain(String property, String domainNode)
+        {
+            List<String> nodes = this.domains.get(property);
+            if (nodes == null) {
+                nodes = new ArrayList<String>();
+                this.domains.put(property, nodes);
+            }
+            nodes.add(domainNode);
+        }
+    }
+
+    /**
+     * A <code>rdfs:subPropertyOf</code> relation. The sub property replaces
+     * the super property at the super property domains.
+     */
+    private static class SubPropertyRelation
+    {
+        private final String subProperty;
+        private final String superProperty;
+
+        SubPropertyRelation(String subProperty, String superProperty)
+        {
+            this.subProperty = subProperty;
+            this.superProperty = superProperty;
+        }
+    }
 }
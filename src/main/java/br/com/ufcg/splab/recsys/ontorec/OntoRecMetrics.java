@@ -0,0 +1,267 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.ontorec;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import br.com.ufcg.splab.recsys.metrics.Counter;
+import br.com.ufcg.splab.recsys.metrics.ExecutionProfile;
+import br.com.ufcg.splab.recsys.metrics.MetricsRegistry;
+import br.com.ufcg.splab.recsys.metrics.ThreadWork;
+import br.com.ufcg.splab.recsys.metrics.Timer;
+import br.com.ufcg.splab.recsys.ontorec.WorkBudget.Limit;
+
+/**
+ * The metrics recorded by the ontology expansion at the
+ * {@link MetricsRegistry#getDefault() default registry}. The traversals count
+ * their work locally and add the totals once, at their end.
+ *
+ * @author Saulo Toledo
+ */
+public final class OntoRecMetrics
+{
+    /**
+     * The nodes visited by the graph traversals.
+     */
+    public static final Counter NODES_VISITED = MetricsRegistry.getDefault()
+        .counter("ontorec.traversal.nodesVisited");
+
+    /**
+     * The edges followed by the graph traversals.
+     */
+    public static final Counter EDGES_VISITED = MetricsRegistry.getDefault()
+        .counter("ontorec.traversal.edgesVisited");
+
+    /**
+     * The paths built by the τ-nth ancestor searches.
+     */
+    public static final Counter PATHS_ENUMERATED = MetricsRegistry
+        .getDefault().counter("ontorec.traversal.pathsEnumerated");
+
+    /**
+     * The requests for the mapped nodes answered from the manager's cache.
+     */
+    public static final Counter MAPPED_NODES_CACHE_HITS = MetricsRegistry
+        .getDefault().counter("ontorec.cache.mappedNodes.hits");
+
+    /**
+     * The requests for the mapped nodes that had to read the features
+     * mapping.
+     */
+    public static final Counter MAPPED_NODES_CACHE_MISSES = MetricsRegistry
+        .getDefault().counter("ontorec.cache.mappedNodes.misses");
+
+    /**
+     * The requests for the attribute mapped nodes answered from the manager's
+     * cache.
+     */
+    public static final Counter ATTRIBUTE_NODES_CACHE_HITS = MetricsRegistry
+        .getDefault().counter("ontorec.cache.attributeNodes.hits");
+
+    /**
+     * The requests for the attribute mapped nodes that had to read the
+     * features mapping.
+     */
+    public static final Counter ATTRIBUTE_NODES_CACHE_MISSES = MetricsRegistry
+        .getDefault().counter("ontorec.cache.attributeNodes.misses");
+
+    /**
+     * The descendant attributes checks answered from a node's counts.
+     */
+    public static final Counter DESCENDANT_ATTRIBUTES_CACHE_HITS = MetricsRegistry
+        .getDefault().counter("ontorec.cache.descendantAttributes.hits");
+
+    /**
+     * The descendant attributes checks that had to walk the subgraph.
+     */
+    public static final Counter DESCENDANT_ATTRIBUTES_CACHE_MISSES = MetricsRegistry
+        .getDefault().counter("ontorec.cache.descendantAttributes.misses");
+
+    /**
+     * The τ-nth ancestor searches done by path enumeration.
+     */
+    public static final Counter PLANS_PATH_ENUMERATION = MetricsRegistry
+        .getDefault().counter("ontorec.planner.pathEnumeration");
+
+    /**
+     * The τ-nth ancestor searches done by state traversal.
+     */
+    public static final Counter PLANS_STATE_TRAVERSAL = MetricsRegistry
+        .getDefault().counter("ontorec.planner.stateTraversal");
+
+    /**
+     * The τ-nth ancestor searches answered from the ancestors table.
+     */
+    public static final Counter PLANS_ANCESTOR_TABLE = MetricsRegistry
+        .getDefault().counter("ontorec.planner.ancestorTable");
+
+    /**
+     * The τ-nth ancestor searches done by moving up from the (τ - 1)-nth
+     * ancestors of a previous search.
+     */
+    public static final Counter PLANS_FRONTIER_EXTENSION = MetricsRegistry
+        .getDefault().counter("ontorec.planner.frontierExtension");
+
+    /**
+     * The edges the planner estimated for the searches with a known estimate.
+     */
+    public static final Counter PLANNER_ESTIMATED_EDGES = MetricsRegistry
+        .getDefault().counter("ontorec.planner.estimatedEdges");
+
+    /**
+     * The edges actually followed by the searches with a known estimate.
+     */
+    public static final Counter PLANNER_ACTUAL_EDGES = MetricsRegistry
+        .getDefault().counter("ontorec.planner.actualEdges");
+
+    /**
+     * The features' weight calculations that returned a degraded result
+     * because their work budget was exceeded.
+     */
+    public static final Counter DEGRADED_EXPANSIONS = MetricsRegistry
+        .getDefault().counter("ontorec.budget.degraded");
+
+    /**
+     * The τ levels completed by the anytime features' weight calculations.
+     */
+    public static final Counter ANYTIME_LEVELS = MetricsRegistry.getDefault()
+        .counter("ontorec.anytime.levels");
+
+    /**
+     * The anytime features' weight calculations stopped by their budget
+     * before the max τ.
+     */
+    public static final Counter ANYTIME_INTERRUPTED = MetricsRegistry
+        .getDefault().counter("ontorec.anytime.interrupted");
+
+    /**
+     * The timers of the features' weight calculations by setup, so the hot
+     * path does not build their names and look them up at the registry.
+     */
+    private static final ConcurrentMap<TimerKey, Timer> FEATURES_WEIGHT_TIMERS = new ConcurrentHashMap<TimerKey, Timer>();
+
+    private OntoRecMetrics()
+    {
+    }
+
+    /**
+     * Records the work done by a traversal at the counters, at the current
+     * thread's work and at the current execution profile and work budget, if
+     * there are ones.
+     *
+     * @param nodes The visited nodes.
+     * @param edges The followed edges.
+     * @param paths The built paths.
+     */
+    public static void recordWork(long nodes, long edges, long paths)
+    {
+        NODES_VISITED.add(nodes);
+        EDGES_VISITED.add(edges);
+        PATHS_ENUMERATED.add(paths);
+        ThreadWork.add(nodes, edges, paths);
+
+        ExecutionProfile profile = ExecutionProfile.current();
+        if (profile != null) {
+            profile.addWork(nodes, edges, paths);
+        }
+
+        WorkBudgetTracker budget = WorkBudgetTracker.current();
+        if (budget != null) {
+            budget.addWork(nodes, edges, paths);
+        }
+    }
+
+    /**
+     * Returns the counter of the calls that exceeded a limit of their work
+     * budget, either failing or returning a degraded result.
+     *
+     * @param limit The exceeded limit.
+     * @return The counter.
+     */
+    public static Counter budgetExceededCounter(Limit limit)
+    {
+        return MetricsRegistry.getDefault().counter(
+            "ontorec.budget.exceeded." + limit.name().toLowerCase());
+    }
+
+    /**
+     * Returns the timer of the features' weight calculations for a setup.
+     *
+     * @param approachName The weighting approach name.
+     * @param tau The τ value.
+     * @param lambda The λ value.
+     * @param upsilon The υ value.
+     * @return The timer.
+     */
+    public static Timer featuresWeightTimer(String approachName, Integer tau,
+        Boolean lambda, Boolean upsilon)
+    {
+        TimerKey key = new TimerKey(approachName, tau, lambda, upsilon);
+        Timer timer = FEATURES_WEIGHT_TIMERS.get(key);
+        if (timer == null) {
+            timer = MetricsRegistry.getDefault().timer(
+                "ontorec.featuresWeight." + approachName + ".tau" + tau
+                    + ".lambda" + lambda + ".upsilon" + upsilon);
+            FEATURES_WEIGHT_TIMERS.putIfAbsent(key, timer);
+        }
+        return timer;
+    }
+
+    /**
+     * The setup of a features' weight timer.
+     */
+    private static final class TimerKey
+    {
+        private final String approachName;
+        private final Integer tau;
+        private final Boolean lambda;
+        private final Boolean upsilon;
+
+        TimerKey(String approachName, Integer tau, Boolean lambda,
+                 Boolean upsilon)
+        {
+            this.approachName = approachName;
+            this.tau = tau;
+            this.lambda = lambda;
+            this.upsilon = upsilon;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if ( !(obj instanceof TimerKey)) {
+                return false;
+            }
+            TimerKey other = (TimerKey) obj;
+            return equal(this.approachName, other.approachName)
+                && equal(this.tau, other.tau)
+                && equal(this.lambda, other.lambda)
+                && equal(this.upsilon, other.upsilon);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int result = 17;
+            result = 31 * result + hash(this.approachName);
+            result = 31 * result + hash(this.tau);
+            result = 31 * result + hash(this.lambda);
+            result = 31 * result + hash(this.upsilon);
+            return result;
+        }
+
+        private static boolean equal(Object a, Object b)
+        {
+            return (a == null) ? b == null : a.equals(b);
+        }
+
+        private static int hash(Object o)
+        {
+            return (o == null) ? 0 : o.hashCode();
+        }
+    }
+}
@@ -0,0 +1,611 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.ontorec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes a {@link NodeManagerSnapshot} file from nodes, edges, attributes and
+ * features mappings declared one at a time, without building a
+ * {@link NodeManager}. It is meant for ontologies larger than the heap, which
+ * are then read by a {@link MappedGraphStore}.
+ * <p>
+ * The writer keeps the interned names and a few ints per node, attribute and
+ * mapping in the heap. The edges, usually the largest part of an ontology,
+ * are spilled to temporary files and only sorted into the compressed sparse
+ * row (CSR) format when the writer is closed. Duplicated edges are written
+ * once. The graph is not validated, as the snapshots are expected to come
+ * from a valid source.
+ * <p>
+ * The snapshot is written by {@link #close()}. A writer is not safe to share
+ * between threads.
+ *
+ * @author Saulo Toledo
+ */
+public final class SnapshotWriter implements Closeable
+{
+    /**
+     * The application logger.
+     */
+    private static final Logger LOGGER = LoggerFactory
+        .getLogger(SnapshotWriter.class);
+
+    private final File file;
+
+    /**
+     * The temporary file with the (parent, child) pairs of the edges.
+     */
+    private final File edgesFile;
+    private final DataOutputStream edges;
+    private long edgeCount;
+
+    /**
+     * The interned names and their ids.
+     */
+    private final Map<String, Integer> strings = new LinkedHashMap<String, Integer>();
+
+    /**
+     * The node of each interned name, or NONE if the name is not a node name.
+     */
+    private int[] nodeOfString = new int[16];
+
+    private int[] nodeNames = new int[16];
+    private int nodeCount;
+
+    private int[] attributeNodes = new int[16];
+    private int[] attributeNames = new int[16];
+    private int[] attributeMappings = new int[16];
+    private int attributeCount;
+
+    /**
+     * The attribute index of each pair of node and attribute name.
+     */
+    private final Map<Long, Integer> attributeIds = new HashMap<Long, Integer>();
+
+    private int[] mappings = new int[16];
+    private int mappingCount;
+    private final Set<Integer> mappedFeatures = new HashSet<Integer>();
+
+    private boolean closed;
+
+    /**
+     * Creates a writer for a snapshot file.
+     *
+     * @param file The snapshot file. It is overwritten when the writer is
+     *        closed.
+     * @throws IOException If the temporary edges file cannot be created.
+     */
+    public SnapshotWriter(File file) throws IOException
+    {
+        this.file = file;
+        this.edgesFile = File.createTempFile("ontorec-edges", ".tmp");
+        this.edges = new DataOutputStream(new BufferedOutputStream(
+            new FileOutputStream(this.edgesFile)));
+    }
+
+    /**
+     * Adds a node, if there is not a node with the same name yet.
+     *
+     * @param name The node name.
+     * @return The node id.
+     */
+    public int addNode(String name)
+    {
+        this.checkOpen();
+
+        int string = this.intern(name);
+        int node = this.nodeOfString[string];
+        if (node == NodeManagerSnapshot.NONE) {
+            node = this.nodeCount++;
+            this.nodeNames = ensureCapacity(this.nodeNames, this.nodeCount);
+            this.nodeNames[node] = string;
+            this.nodeOfString[string] = node;
+        }
+        return node;
+    }
+
+    /**
+     * Adds an edge, adding its nodes if they do not exist.
+     *
+     * @param parent The parent node name.
+     * @param child The child node name.
+     * @throws IOException If the edge cannot be spilled to the temporary file.
+     */
+    public void addEdge(String parent, String child) throws IOException
+    {
+        this.addEdge(this.addNode(parent), this.addNode(child));
+    }
+
+    /**
+     * Adds an edge between two nodes already added.
+     *
+     * @param parent The parent node id.
+     * @param child The child node id.
+     * @throws IOException If the edge cannot be spilled to the temporary file.
+     */
+    public void addEdge(int parent, int child) throws IOException
+    {
+        this.checkOpen();
+        this.checkNode(parent);
+        this.checkNode(child);
+        if (parent == child) {
+            throw new IllegalArgumentException(String.format(
+                "The node id %d cannot be its own parent", parent));
+        }
+
+        this.edges.writeInt(parent);
+        this.edges.writeInt(child);
+        this.edgeCount++;
+    }
+
+    /**
+     * Adds an attribute to a node, adding the node if it does not exist.
+     *
+     * @param node The node name.
+     * @param attributeName The attribute name.
+     * @return The attribute index.
+     */
+    public int addAttribute(String node, String attributeName)
+    {
+        return this.addAttribute(this.addNode(node), attributeName);
+    }
+
+    /**
+     * Adds an attribute to a node already added, if the node does not have an
+     * attribute with the same name yet.
+     *
+     * @param node The node id.
+     * @param attributeName The attribute name.
+     * @return The attribute index.
+     */
+    public int addAttribute(int node, String attributeName)
+    {
+        this.checkOpen();
+        this.checkNode(node);
+
+        int name = this.intern(attributeName);
+        Long key = ((long) node << 32) | name;
+        Integer attribute = this.attributeIds.get(key);
+        if (attribute == null) {
+            attribute = this.attributeCount++;
+            this.attributeNodes = ensureCapacity(this.attributeNodes,
+                this.attributeCount);
+            this.attributeNames = ensureCapacity(this.attributeNames,
+                this.attributeCount);
+            this.attributeMappings = ensureCapacity(this.attributeMappings,
+                this.attributeCount);
+            this.attributeNodes[attribute] = node;
+            this.attributeNames[attribute] = name;
+            this.attributeMappings[attribute] = NodeManagerSnapshot.NONE;
+            this.attributeIds.put(key, attribute);
+        }
+        return attribute;
+    }
+
+    /**
+     * Maps a feature to a node, adding the node if it does not exist. A
+     * feature already mapped is skipped.
+     *
+     * @param featureName The feature name.
+     * @param node The node name.
+     */
+    public void addFeatureMapping(String featureName, String node)
+    {
+        this.addFeatureMapping(featureName, this.addNode(node), null,
+            NodeManagerSnapshot.NONE);
+    }
+
+    /**
+     * Maps a feature to an attribute that a node has (or inherits), adding the
+     * nodes and the attribute if they do not exist. A feature already mapped
+     * is skipped.
+     *
+     * @param featureName The feature name.
+     * @param node The name of the node the feature is mapped to.
+     * @param attributeNode The name of the node that declares the attribute.
+     * @param attributeName The attribute name.
+     */
+    public void addFeatureMapping(String featureName, String node,
+        String attributeNode, String attributeName)
+    {
+        int nodeId = this.addNode(node);
+        int attributeNodeId = this.addNode(attributeNode);
+        int attribute = this.addAttribute(attributeNodeId, attributeName);
+
+        if (this.addFeatureMapping(featureName, nodeId, attributeName,
+            attributeNodeId)) {
+            this.setAttributeMapping(attribute, nodeId);
+        }
+    }
+
+    /**
+     * Maps a feature without marking the mapped attribute. It is used to
+     * write the exact state of a node manager.
+     *
+     * @param featureName The feature name.
+     * @param node The node id.
+     * @param attributeName The attribute name, or null for mappings to nodes.
+     * @param attributeNode The id of the node that declares the attribute, or
+     *        NONE for detached attributes.
+     * @return true if the feature was mapped, false if it was already mapped.
+     */
+    boolean addFeatureMapping(String featureName, int node,
+        String attributeName, int attributeNode)
+    {
+        this.checkOpen();
+        this.checkNode(node);
+
+        int feature = this.intern(featureName);
+        if ( !this.mappedFeatures.add(feature)) {
+            LOGGER.debug("The feature '{}' is already mapped, skipping!",
+                featureName);
+            return false;
+        }
+
+        this.mappings = ensureCapacity(this.mappings,
+            4 * (this.mappingCount + 1));
+        int offset = 4 * this.mappingCount++;
+        this.mappings[offset] = feature;
+        this.mappings[offset + 1] = node;
+        this.mappings[offset + 2] = (attributeName == null) ? NodeManagerSnapshot.NONE
+            : this.intern(attributeName);
+        this.mappings[offset + 3] = attributeNode;
+        return true;
+    }
+
+    /**
+     * Marks the node an attribute is mapped to.
+     *
+     * @param attribute The attribute index.
+     * @param node The node id, or NONE if the attribute is not mapped.
+     */
+    void setAttributeMapping(int attribute, int node)
+    {
+        this.attributeMappings[attribute] = node;
+    }
+
+    public int getNodeCount()
+    {
+        return this.nodeCount;
+    }
+
+    public long getEdgeCount()
+    {
+        return this.edgeCount;
+    }
+
+    /**
+     * Writes the snapshot file and removes the temporary files.
+     *
+     * @throws IOException If the snapshot cannot be written.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+
+        File targetsFile = null;
+        try {
+            this.edges.close();
+
+            if (4 * this.edgeCount > Integer.MAX_VALUE) {
+                throw new IOException(
+                    "The edges section is larger than the max mapped size");
+            }
+            int edgeCount = (int) this.edgeCount;
+
+            int[] childOffsets = new int[this.nodeCount + 1];
+            int[] parentOffsets = new int[this.nodeCount + 1];
+            this.countEdges(childOffsets, parentOffsets);
+
+            targetsFile = File.createTempFile("ontorec-targets", ".tmp");
+            RandomAccessFile targets = new RandomAccessFile(targetsFile, "rw");
+            try {
+                FileChannel channel = targets.getChannel();
+                IntBuffer childTargets = channel.map(
+                    FileChannel.MapMode.READ_WRITE, 0, 4L * edgeCount)
+                    .asIntBuffer();
+                IntBuffer parentTargets = channel.map(
+                    FileChannel.MapMode.READ_WRITE, 4L * edgeCount,
+                    4L * edgeCount).asIntBuffer();
+
+                this.placeEdges(childOffsets, childTargets, parentOffsets,
+                    parentTargets);
+                int[] childCounts = sortAndDistinct(childOffsets,
+                    childTargets);
+                int[] parentCounts = sortAndDistinct(parentOffsets,
+                    parentTargets);
+
+                this.writeSnapshot(childOffsets, childCounts, childTargets,
+                    parentOffsets, parentCounts, parentTargets);
+            } finally {
+                targets.close();
+            }
+        } finally {
+            this.edgesFile.delete();
+            if (targetsFile != null) {
+                targetsFile.delete();
+            }
+        }
+
+        LOGGER.debug(
+            "A snapshot with {} nodes, {} edges and {} mappings was written to '{}'",
+            this.nodeCount, this.edgeCount, this.mappingCount, this.file);
+    }
+
+    /**
+     * Discards the declared graph without writing the snapshot file.
+     */
+    public void abort()
+    {
+        if ( !this.closed) {
+            this.closed = true;
+            try {
+                this.edges.close();
+            } catch (IOException e) {
+                LOGGER.debug("The temporary edges file could not be closed",
+                    e);
+            }
+            this.edgesFile.delete();
+        }
+    }
+
+    /**
+     * Counts the children and the parents of each node, from the spilled
+     * edges, and turns the counts into the offsets where the targets of each
+     * node start.
+     */
+    private void countEdges(int[] childOffsets, int[] parentOffsets)
+        throws IOException
+    {
+        DataInputStream in = this.openEdges();
+        try {
+            for (long k = 0; k < this.edgeCount; k++) {
+                childOffsets[in.readInt() + 1]++;
+                parentOffsets[in.readInt() + 1]++;
+            }
+        } finally {
+            in.close();
+        }
+
+        for (int i = 0; i < this.nodeCount; i++) {
+            childOffsets[i + 1] += childOffsets[i];
+            parentOffsets[i + 1] += parentOffsets[i];
+        }
+    }
+
+    /**
+     * Places each spilled edge at the targets of its parent and child.
+     */
+    private void placeEdges(int[] childOffsets, IntBuffer childTargets,
+        int[] parentOffsets, IntBuffer parentTargets) throws IOException
+    {
+        int[] childCursors = Arrays.copyOf(childOffsets, this.nodeCount);
+        int[] parentCursors = Arrays.copyOf(parentOffsets, this.nodeCount);
+
+        DataInputStream in = this.openEdges();
+        try {
+            for (long k = 0; k < this.edgeCount; k++) {
+                int parent = in.readInt();
+                int child = in.readInt();
+                childTargets.put(childCursors[parent]++, child);
+                parentTargets.put(parentCursors[child]++, parent);
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Sorts the targets of each node and moves the distinct ones to the
+     * beginning of its range.
+     *
+     * @return The number of distinct targets of each node.
+     */
+    private static int[] sortAndDistinct(int[] offsets, IntBuffer targets)
+    {
+        int nodeCount = offsets.length - 1;
+        int[] counts = new int[nodeCount];
+        int[] range = new int[0];
+
+        for (int i = 0; i < nodeCount; i++) {
+            int length = offsets[i + 1] - offsets[i];
+            if (length > range.length) {
+                range = new int[length];
+            }
+            for (int k = 0; k < length; k++) {
+                range[k] = targets.get(offsets[i] + k);
+            }
+            Arrays.sort(range, 0, length);
+
+            int count = 0;
+            for (int k = 0; k < length; k++) {
+                if (count == 0 || range[k] != range[count - 1]) {
+                    range[count++] = range[k];
+                }
+            }
+            for (int k = 0; k < count; k++) {
+                targets.put(offsets[i] + k, range[k]);
+            }
+            counts[i] = count;
+        }
+        return counts;
+    }
+
+    private void writeSnapshot(int[] childOffsets, int[] childCounts,
+        IntBuffer childTargets, int[] parentOffsets, int[] parentCounts,
+        IntBuffer parentTargets) throws IOException
+    {
+        final List<String> names = new ArrayList<String>(this.strings.keySet());
+
+        CRC32 crc = new CRC32();
+        FileOutputStream fileOut = new FileOutputStream(this.file);
+        try {
+            fileOut.write(new byte[NodeManagerSnapshot.HEADER_SIZE]);
+
+            DataOutputStream out = new DataOutputStream(
+                new CheckedOutputStream(new BufferedOutputStream(fileOut),
+                    crc));
+
+            NodeManagerSnapshot.writeStrings(out, names);
+
+            out.writeInt(this.nodeCount);
+            for (int i = 0; i < this.nodeCount; i++) {
+                out.writeInt(this.nodeNames[i]);
+            }
+
+            Integer[] sortedByName = new Integer[this.nodeCount];
+            for (int i = 0; i < this.nodeCount; i++) {
+                sortedByName[i] = i;
+            }
+            final int[] nodeNames = this.nodeNames;
+            Arrays.sort(sortedByName, new Comparator<Integer>()
+            {
+                @Override
+                public int compare(Integer node1, Integer node2)
+                {
+                    return names.get(nodeNames[node1]).compareTo(
+                        names.get(nodeNames[node2]));
+                }
+            });
+            for (Integer node : sortedByName) {
+                out.writeInt(node);
+            }
+
+            writeEdges(out, childOffsets, childCounts, childTargets);
+            writeEdges(out, parentOffsets, parentCounts, parentTargets);
+
+            // The attributes are grouped by node with a counting sort:
+            int[] attributeOffsets = new int[this.nodeCount + 1];
+            for (int k = 0; k < this.attributeCount; k++) {
+                attributeOffsets[this.attributeNodes[k] + 1]++;
+            }
+            for (int i = 0; i < this.nodeCount; i++) {
+                attributeOffsets[i + 1] += attributeOffsets[i];
+            }
+            int[] attributeOrder = new int[this.attributeCount];
+            int[] cursors = Arrays.copyOf(attributeOffsets, this.nodeCount);
+            for (int k = 0; k < this.attributeCount; k++) {
+                attributeOrder[cursors[this.attributeNodes[k]]++] = k;
+            }
+
+            for (int offset : attributeOffsets) {
+                out.writeInt(offset);
+            }
+            for (int attribute : attributeOrder) {
+                out.writeInt(this.attributeNames[attribute]);
+            }
+            for (int attribute : attributeOrder) {
+                out.writeInt(this.attributeMappings[attribute]);
+            }
+
+            out.writeInt(this.mappingCount);
+            for (int k = 0; k < 4 * this.mappingCount; k++) {
+                out.writeInt(this.mappings[k]);
+            }
+            out.flush();
+        } finally {
+            fileOut.close();
+        }
+
+        RandomAccessFile header = new RandomAccessFile(this.file, "rw");
+        try {
+            long bodyLength = header.length()
+                - NodeManagerSnapshot.HEADER_SIZE;
+            header.writeInt(NodeManagerSnapshot.MAGIC);
+            header.writeInt(NodeManagerSnapshot.VERSION);
+            header.writeLong(crc.getValue());
+            header.writeLong(bodyLength);
+        } finally {
+            header.close();
+        }
+    }
+
+    private static void writeEdges(DataOutputStream out, int[] offsets,
+        int[] counts, IntBuffer targets) throws IOException
+    {
+        int offset = 0;
+        out.writeInt(offset);
+        for (int count : counts) {
+            offset += count;
+            out.writeInt(offset);
+        }
+        for (int i = 0; i < counts.length; i++) {
+            for (int k = 0; k < counts[i]; k++) {
+                out.writeInt(targets.get(offsets[i] + k));
+            }
+        }
+    }
+
+    private DataInputStream openEdges() throws IOException
+    {
+        return new DataInputStream(new BufferedInputStream(
+            new FileInputStream(this.edgesFile)));
+    }
+
+    private int intern(String string)
+    {
+        Integer id = this.strings.get(string);
+        if (id == null) {
+            id = this.strings.size();
+            this.strings.put(string, id);
+            this.nodeOfString = ensureCapacity(this.nodeOfString, id + 1);
+            this.nodeOfString[id] = NodeManagerSnapshot.NONE;
+        }
+        return id;
+    }
+
+    private void checkNode(int node)
+    {
+        if (node < 0 || node >= this.nodeCount) {
+            throw new IllegalArgumentException(String.format(
+                "The node id %d was not added to the writer", node));
+        }
+    }
+
+    private void checkOpen()
+    {
+        if (this.closed) {
+            throw new IllegalStateException("The snapshot writer is closed");
+        }
+    }
+
+    private static int[] ensureCapacity(int[] array, int capacity)
+    {
+        if (capacity <= array.length) {
+            return array;
+        }
+        return Arrays.copyOf(array, Math.max(capacity, array.length * 2));
+    }
+}
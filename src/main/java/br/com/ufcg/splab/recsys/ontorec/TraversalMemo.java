@@ -0,0 +1,145 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.ontorec;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the subgraphs discovered below the τ-nth ancestors, so the calls that
+ * share a memo discover each one once. The subgraph below a node does not
+ * depend on τ or λ, so a sweep over them finds the same pseudo-roots many
+ * times. A memo is active at the thread that started it, until it is
+ * stopped, and the traversals use it when it is active:
+ *
+ * <pre>
+ * TraversalMemo memo = TraversalMemo.current();
+ * Set&lt;Node&lt;T&gt;&gt; subgraph = (memo != null) ? memo.getSubgraph(root) : null;
+ * </pre>
+ *
+ * The memoized subgraphs are not updated when the hierarchy changes, so a
+ * memo must only live while the hierarchy is not modified.
+ *
+ * @author Saulo Toledo
+ */
+public class TraversalMemo
+{
+    private static final ThreadLocal<TraversalMemo> CURRENT = new ThreadLocal<TraversalMemo>();
+
+    private final Map<Node<?>, Set<?>> subgraphs = new HashMap<Node<?>, Set<?>>();
+    private final Map<Node<?>, Map<?, ?>> descendantTrees = new HashMap<Node<?>, Map<?, ?>>();
+
+    private long hits;
+    private TraversalMemo previous;
+
+    /**
+     * Returns the memo active at the current thread.
+     *
+     * @return The active memo, or null if the traversals are not memoized.
+     */
+    public static TraversalMemo current()
+    {
+        return CURRENT.get();
+    }
+
+    /**
+     * Activates this memo at the current thread.
+     *
+     * @return This memo.
+     */
+    public TraversalMemo start()
+    {
+        this.previous = CURRENT.get();
+        CURRENT.set(this);
+        return this;
+    }
+
+    /**
+     * Deactivates this memo at the current thread.
+     */
+    public void stop()
+    {
+        if (this.previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(this.previous);
+        }
+        this.previous = null;
+    }
+
+    /**
+     * Returns the nodes of the subgraph below a node, as discovered by a
+     * previous traversal.
+     *
+     * @param root The root of the subgraph.
+     * @return The root and all its descendants, or null if they were not
+     *         discovered yet. The set must not be modified.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Set<Node<T>> getSubgraph(Node<T> root)
+    {
+        Set<Node<T>> result = (Set<Node<T>>) this.subgraphs.get(root);
+        if (result != null) {
+            this.hits++;
+        }
+        return result;
+    }
+
+    /**
+     * Keeps the nodes of the subgraph below a node.
+     *
+     * @param root The root of the subgraph.
+     * @param subgraph The root and all its descendants.
+     */
+    public <T> void putSubgraph(Node<T> root, Set<Node<T>> subgraph)
+    {
+        this.subgraphs.put(root, subgraph);
+    }
+
+    /**
+     * Returns the breadth first search tree of the subgraph below a node, as
+     * discovered by a previous traversal.
+     *
+     * @param root The root of the subgraph.
+     * @return A map from each node of the subgraph to the node it was reached
+     *         from (null for the root), or null if the subgraph was not
+     *         discovered yet. The map must not be modified.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Map<Node<T>, Node<T>> getDescendantTree(Node<T> root)
+    {
+        Map<Node<T>, Node<T>> result = (Map<Node<T>, Node<T>>) this.descendantTrees
+            .get(root);
+        if (result != null) {
+            this.hits++;
+        }
+        return result;
+    }
+
+    /**
+     * Keeps the breadth first search tree of the subgraph below a node.
+     *
+     * @param root The root of the subgraph.
+     * @param cameFrom A map from each node of the subgraph to the node it was
+     *        reached from.
+     */
+    public <T> void putDescendantTree(Node<T> root,
+        Map<Node<T>, Node<T>> cameFrom)
+    {
+        this.descendantTrees.put(root, cameFrom);
+    }
+
+    /**
+     * Returns how many discovered subgraphs were reused.
+     *
+     * @return The number of reused subgraphs.
+     */
+    public long getHits()
+    {
+        return this.hits;
+    }
+}
@@ -0,0 +1,312 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.ontorec;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import br.com.ufcg.splab.recsys.metrics.ThreadWork;
+
+/**
+ * Chooses how the τ-nth ancestors of a manager's nodes are searched. Both
+ * weighting approaches start from these ancestors, and the cost of the
+ * searches varies by orders of magnitude with the shape of the hierarchy.
+ * For each query, the cheapest correct strategy is chosen:
+ * <ul>
+ * <li>{@link Strategy#ANCESTOR_TABLE}, if the ancestors were already found for
+ * the same node, τ and λ;</li>
+ * <li>{@link Strategy#FRONTIER_EXTENSION}, if the hierarchy is acyclic and the
+ * (τ - 1)-nth ancestors were already found;</li>
+ * <li>{@link Strategy#STATE_TRAVERSAL}, if the hierarchy is acyclic and its
+ * estimated cost is lower than the path enumeration one, which happens when
+ * there are diamonds above the node;</li>
+ * <li>{@link Strategy#PATH_ENUMERATION} otherwise. It is the only strategy
+ * used at cyclic hierarchies.</li>
+ * </ul>
+ * The estimates come from the {@link GraphStatistics} of the hierarchy. The
+ * statistics and the ancestors table are discarded when the hierarchy or the
+ * features mapping change. The estimated and the actual costs (in followed
+ * edges) of each query are logged at the debug level and added to the
+ * planner metrics.
+ *
+ * @author Saulo Toledo
+ * @param <T> The node type.
+ */
+public class TraversalPlanner<T>
+{
+    /**
+     * The application logger.
+     */
+    private static final Logger LOGGER = LoggerFactory
+        .getLogger(TraversalPlanner.class);
+
+    /**
+     * The strategies to search for the τ-nth ancestors.
+     */
+    public enum Strategy
+    {
+        /**
+         * Builds all the paths up to the τ-nth ancestors and takes their last
+         * nodes. Its cost grows exponentially with the diamonds.
+         */
+        PATH_ENUMERATION,
+
+        /**
+         * Traverses the pairs of ancestor and remaining τ, expanding each one
+         * once. It is only correct at acyclic hierarchies.
+         */
+        STATE_TRAVERSAL,
+
+        /**
+         * Reads the ancestors found by a previous query.
+         */
+        ANCESTOR_TABLE,
+
+        /**
+         * Moves one level up from the (τ - 1)-nth ancestors found by a
+         * previous query, so a search deepened level by level never restarts.
+         * It is only correct at acyclic hierarchies.
+         */
+        FRONTIER_EXTENSION
+    }
+
+    private final NodeManager<T> manager;
+
+    /**
+     * The statistics of the current hierarchy, or null if they must be
+     * computed again.
+     */
+    private volatile GraphStatistics<T> statistics;
+
+    /**
+     * The ancestors already found, by node id, τ and λ. A new table replaces
+     * it when the hierarchy or the mapping change, so the queries that were
+     * running store their results at the discarded one.
+     */
+    private volatile Map<Long, Set<Node<T>>> ancestorTable = new ConcurrentHashMap<Long, Set<Node<T>>>();
+
+    private volatile long structureVersion = -1;
+    private volatile long mappingVersion = -1;
+
+    /**
+     * Creates a planner.
+     *
+     * @param manager The manager of the planned nodes.
+     */
+    TraversalPlanner(NodeManager<T> manager)
+    {
+        this.manager = manager;
+    }
+
+    /**
+     * Discards the statistics and the ancestors table if the hierarchy or the
+     * features mapping of the manager changed since they were built. The
+     * edits of other managers do not discard them.
+     */
+    private void validate()
+    {
+        long currentStructure = this.manager.getStructure().getVersion();
+        long currentMapping = this.manager.getMappingVersion();
+
+        if (currentStructure == this.structureVersion
+            && currentMapping == this.mappingVersion) {
+            return;
+        }
+
+        synchronized (this) {
+            if (currentStructure != this.structureVersion
+                || currentMapping != this.mappingVersion) {
+                this.statistics = null;
+                this.ancestorTable = new ConcurrentHashMap<Long, Set<Node<T>>>();
+                this.structureVersion = currentStructure;
+                this.mappingVersion = currentMapping;
+            }
+        }
+    }
+
+    /**
+     * Returns the statistics of the current hierarchy. They are computed at
+     * the first call after each change of the hierarchy or of the features
+     * mapping.
+     *
+     * @return The hierarchy statistics.
+     */
+    public GraphStatistics<T> getStatistics()
+    {
+        this.validate();
+        GraphStatistics<T> current = this.statistics;
+        if (current == null) {
+            synchronized (this) {
+                current = this.statistics;
+                if (current == null) {
+                    current = new GraphStatistics<T>(this.manager.getNodesById());
+                    this.statistics = current;
+                    LOGGER.debug("The hierarchy statistics were computed: {}",
+                        current);
+                }
+            }
+        }
+        return current;
+    }
+
+    private static long tableKey(Node<?> node, int tau, boolean lambda)
+    {
+        return ((long) node.getId() << 33) | ((long) tau << 1)
+            | (lambda ? 1 : 0);
+    }
+
+    /**
+     * Chooses the strategy to search for the τ-nth ancestors of a node.
+     *
+     * @param node A node of the planner's manager.
+     * @param tau The τ value.
+     * @param lambda If only begotten fathers are ignored.
+     * @return The chosen plan.
+     */
+    public Plan plan(Node<T> node, int tau, boolean lambda)
+    {
+        this.validate();
+        Map<Long, Set<Node<T>>> table = this.ancestorTable;
+        if (table.containsKey(tableKey(node, tau, lambda))) {
+            return new Plan(Strategy.ANCESTOR_TABLE, 0);
+        }
+        return this.planTraversal(node, tau, lambda, table);
+    }
+
+    private Plan planTraversal(Node<T> node, int tau, boolean lambda,
+        Map<Long, Set<Node<T>>> table)
+    {
+        GraphStatistics<T> current = this.getStatistics();
+
+        long enumerationCost = current.estimatePathEnumerationCost(node, tau,
+            lambda);
+        if ( !current.isAcyclic()) {
+            return new Plan(Strategy.PATH_ENUMERATION, enumerationCost);
+        }
+
+        Set<Node<T>> frontier = (tau > 1) ? table.get(tableKey(node, tau - 1,
+            lambda)) : null;
+        if (frontier != null) {
+            long frontierCost = 0;
+            for (Node<T> frontierNode : frontier) {
+                frontierCost += frontierNode.getParents().size();
+            }
+            return new Plan(Strategy.FRONTIER_EXTENSION, frontierCost);
+        }
+
+        long traversalCost = current.estimateStateTraversalCost(node, tau,
+            lambda);
+        if (traversalCost < enumerationCost) {
+            return new Plan(Strategy.STATE_TRAVERSAL, traversalCost);
+        }
+        return new Plan(Strategy.PATH_ENUMERATION, enumerationCost);
+    }
+
+    /**
+     * Returns the τ-nth ancestors of a node by the cheapest strategy, and
+     * stores them at the ancestors table.
+     *
+     * @param node A node of the planner's manager.
+     * @param tau The τ value.
+     * @param lambda If only begotten fathers are ignored.
+     * @return An unmodifiable set with the τ-nth ancestors of the node.
+     */
+    Set<Node<T>> extractMaxNodesFromTau(Node<T> node, int tau, boolean lambda)
+    {
+        if (tau < 0) {
+            // No path reaches a negative τ:
+            return Collections.emptySet();
+        }
+
+        this.validate();
+        Map<Long, Set<Node<T>>> table = this.ancestorTable;
+        Long key = tableKey(node, tau, lambda);
+
+        Set<Node<T>> result = table.get(key);
+        if (result != null) {
+            OntoRecMetrics.PLANS_ANCESTOR_TABLE.increment();
+            return result;
+        }
+
+        Plan plan = this.planTraversal(node, tau, lambda, table);
+        long edgesBefore = ThreadWork.current()[ThreadWork.EDGES];
+
+        if (plan.getStrategy() == Strategy.FRONTIER_EXTENSION) {
+            OntoRecMetrics.PLANS_FRONTIER_EXTENSION.increment();
+            result = Node.extendMaxNodesFromTau(
+                table.get(tableKey(node, tau - 1, lambda)), lambda);
+        } else if (plan.getStrategy() == Strategy.STATE_TRAVERSAL) {
+            OntoRecMetrics.PLANS_STATE_TRAVERSAL.increment();
+            result = node.traverseMaxNodesFromTau(tau, lambda);
+        } else {
+            OntoRecMetrics.PLANS_PATH_ENUMERATION.increment();
+            result = node.enumerateMaxNodesFromTau(tau, lambda);
+        }
+
+        long actualCost = ThreadWork.current()[ThreadWork.EDGES] - edgesBefore;
+        if (plan.getEstimatedCost() != GraphStatistics.UNKNOWN_COST) {
+            OntoRecMetrics.PLANNER_ESTIMATED_EDGES
+                .add(plan.getEstimatedCost());
+            OntoRecMetrics.PLANNER_ACTUAL_EDGES.add(actualCost);
+        }
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug(
+                "The τ-ancestors of '{}' for τ={} and λ={} were found by {}: {} edges were estimated and {} were followed",
+                node, tau, lambda, plan.getStrategy(),
+                plan.getEstimatedCost(), actualCost);
+        }
+
+        result = Collections.unmodifiableSet(result);
+        table.put(key, result);
+        return result;
+    }
+
+    /**
+     * The strategy chosen for a query and its estimated cost.
+     */
+    public static class Plan
+    {
+        private final Strategy strategy;
+        private final long estimatedCost;
+
+        Plan(Strategy strategy, long estimatedCost)
+        {
+            this.strategy = strategy;
+            this.estimatedCost = estimatedCost;
+        }
+
+        public Strategy getStrategy()
+        {
+            return this.strategy;
+        }
+
+        /**
+         * Returns the estimated number of edges to follow.
+         *
+         * @return The estimated cost, or {@link GraphStatistics#UNKNOWN_COST}.
+         */
+        public long getEstimatedCost()
+        {
+            return this.estimatedCost;
+        }
+
+        /**
+         * Returns a string representation of the object.
+         */
+        @Override
+        public String toString()
+        {
+            return String.format("%s (estimated cost: %d edges)",
+                this.strategy, this.estimatedCost);
+        }
+    }
+}
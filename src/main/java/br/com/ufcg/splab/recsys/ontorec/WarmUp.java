@@ -0,0 +1,201 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.ontorec;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The progress of a {@link NodeManager#warmUp warm-up}. A service can poll
+ * it or wait for it before accepting traffic:
+ *
+ * <pre>
+ * WarmUp warmUp = nm.warmUp(Arrays.asList(2, 3), null);
+ * if ( !warmUp.awaitReady(1, TimeUnit.MINUTES)) {
+ *     ...
+ * }
+ * </pre>
+ *
+ * @author Saulo Toledo
+ */
+public class WarmUp
+{
+    /**
+     * The application logger.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(WarmUp.class);
+
+    private final int total;
+    private final AtomicInteger done = new AtomicInteger();
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private final long startTime = System.nanoTime();
+
+    private volatile Throwable failure;
+    private volatile long elapsedNanos;
+
+    /**
+     * Creates the progress of a warm-up.
+     *
+     * @param total The number of nodes to warm up.
+     */
+    WarmUp(int total)
+    {
+        this.total = total;
+        if (total == 0) {
+            this.finish();
+        }
+    }
+
+    /**
+     * Marks a node as done, whether it was warmed up or it failed.
+     */
+    void nodeDone()
+    {
+        if (this.done.incrementAndGet() == this.total) {
+            this.finish();
+        }
+    }
+
+    /**
+     * Records the failure of a node. Only the first failure is kept.
+     *
+     * @param failure The failure, either an exception or an error.
+     */
+    synchronized void fail(Throwable failure)
+    {
+        if (this.failure == null) {
+            this.failure = failure;
+        }
+    }
+
+    /**
+     * Marks the nodes that could not be submitted as failed and done.
+     *
+     * @param count The number of nodes.
+     * @param failure Why they could not be submitted.
+     */
+    void nodesRejected(int count, Throwable failure)
+    {
+        this.fail(failure);
+        for (int i = 0; i < count; i++) {
+            this.nodeDone();
+        }
+    }
+
+    private void finish()
+    {
+        this.elapsedNanos = System.nanoTime() - this.startTime;
+        this.finished.countDown();
+
+        if (this.failure != null) {
+            LOGGER.warn("The warm-up of {} nodes failed", this.total,
+                this.failure);
+        } else {
+            LOGGER.debug("The warm-up of {} nodes finished in {} ms",
+                this.total, this.elapsedNanos / 1000000);
+        }
+    }
+
+    /**
+     * Returns the number of nodes to warm up.
+     *
+     * @return The number of nodes.
+     */
+    public int getTotal()
+    {
+        return this.total;
+    }
+
+    /**
+     * Returns the number of nodes already done.
+     *
+     * @return The number of nodes.
+     */
+    public int getDone()
+    {
+        return this.done.get();
+    }
+
+    /**
+     * Returns the done fraction of the warm-up.
+     *
+     * @return A value from 0 to 1.
+     */
+    public double getProgress()
+    {
+        return (this.total == 0) ? 1 : this.done.get() / (double) this.total;
+    }
+
+    /**
+     * Returns if all the nodes are done.
+     *
+     * @return true if the warm-up has finished, even if it failed.
+     */
+    public boolean isDone()
+    {
+        return this.finished.getCount() == 0;
+    }
+
+    /**
+     * Returns if the warm-up has finished without failures.
+     *
+     * @return true if the manager is warm.
+     */
+    public boolean isReady()
+    {
+        return this.isDone() && this.failure == null;
+    }
+
+    /**
+     * Waits for the warm-up to finish.
+     *
+     * @param timeout The max time to wait.
+     * @param unit The timeout unit.
+     * @return true if the manager is warm, false if the time is over or the
+     *         warm-up failed.
+     * @throws InterruptedException If the current thread is interrupted.
+     */
+    public boolean awaitReady(long timeout, TimeUnit unit)
+        throws InterruptedException
+    {
+        return this.finished.await(timeout, unit) && this.isReady();
+    }
+
+    /**
+     * Returns why the warm-up failed.
+     *
+     * @return The first failure, or null if there was none.
+     */
+    public Throwable getFailure()
+    {
+        return this.failure;
+    }
+
+    /**
+     * Returns how long the warm-up took.
+     *
+     * @return The elapsed time in nanoseconds, or -1 if it has not finished.
+     */
+    public long getElapsedNanos()
+    {
+        return this.isDone() ? this.elapsedNanos : -1;
+    }
+
+    /**
+     * Returns a string representation of the object.
+     */
+    @Override
+    public String toString()
+    {
+        return String.format("%d of %d nodes%s", this.done.get(), this.total,
+            (this.failure != null) ? " (failed)" : (this.isDone() ? " (ready)"
+                : ""));
+    }
+}
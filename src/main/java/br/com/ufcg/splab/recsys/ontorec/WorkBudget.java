@@ -0,0 +1,225 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.ontorec;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The max amount of work of a features' weight calculation, as visited nodes,
+ * followed edges, built paths and elapsed time. The limits are checked while
+ * the graph is traversed, so a selection whose expansion is pathological
+ * stops early instead of holding its thread. When a limit is exceeded, the
+ * {@link Policy policy} defines if the call fails or returns what was
+ * expanded so far:
+ *
+ * <pre>
+ * WorkBudget budget = new WorkBudget().setMaxPaths(100000)
+ *     .setTimeout(50, TimeUnit.MILLISECONDS).setPolicy(Policy.DEGRADE);
+ * FeaturesWeightResult result = nm.getFeaturesWeight(selection, tau, budget);
+ * </pre>
+ *
+ * The limits are checked at intervals, so a call can go slightly beyond them
+ * before it stops. A budget can be shared by many calls and threads; each
+ * call counts its own work.
+ *
+ * @author Saulo Toledo
+ */
+public class WorkBudget
+{
+    /**
+     * The value of an unlimited amount.
+     */
+    public static final long UNLIMITED = Long.MAX_VALUE;
+
+    /**
+     * What to do when a limit is exceeded.
+     */
+    public enum Policy
+    {
+        /**
+         * The call throws a {@link WorkBudgetExceededException}.
+         */
+        FAIL_FAST,
+
+        /**
+         * The call returns the weights of the selected features expanded
+         * before the limit was exceeded, marked as degraded.
+         */
+        DEGRADE
+    }
+
+    /**
+     * The limited amounts.
+     */
+    public enum Limit
+    {
+        NODES("nodes were visited"),
+        EDGES("edges were followed"),
+        PATHS("paths were built"),
+        DEADLINE("nanoseconds have passed");
+
+        private final String description;
+
+        private Limit(String description)
+        {
+            this.description = description;
+        }
+
+        /**
+         * Describes an amount of this limit.
+         *
+         * @param amount The amount.
+         * @return The description.
+         */
+        String describe(long amount)
+        {
+            return amount + " " + this.description;
+        }
+    }
+
+    private long maxNodes = UNLIMITED;
+    private long maxEdges = UNLIMITED;
+    private long maxPaths = UNLIMITED;
+    private long timeoutNanos = UNLIMITED;
+    private Policy policy = Policy.FAIL_FAST;
+
+    public long getMaxNodes()
+    {
+        return this.maxNodes;
+    }
+
+    /**
+     * Defines the max number of nodes visited by the traversals.
+     *
+     * @param maxNodes The max visited nodes.
+     * @return This budget.
+     */
+    public WorkBudget setMaxNodes(long maxNodes)
+    {
+        this.maxNodes = requirePositive(maxNodes, "nodes");
+        return this;
+    }
+
+    public long getMaxEdges()
+    {
+        return this.maxEdges;
+    }
+
+    /**
+     * Defines the max number of edges followed by the traversals.
+     *
+     * @param maxEdges The max followed edges.
+     * @return This budget.
+     */
+    public WorkBudget setMaxEdges(long maxEdges)
+    {
+        this.maxEdges = requirePositive(maxEdges, "edges");
+        return this;
+    }
+
+    public long getMaxPaths()
+    {
+        return this.maxPaths;
+    }
+
+    /**
+     * Defines the max number of paths built by the τ-nth ancestor searches.
+     *
+     * @param maxPaths The max built paths.
+     * @return This budget.
+     */
+    public WorkBudget setMaxPaths(long maxPaths)
+    {
+        this.maxPaths = requirePositive(maxPaths, "paths");
+        return this;
+    }
+
+    /**
+     * Returns the max time of a call.
+     *
+     * @return The timeout in nanoseconds, or {@link #UNLIMITED}.
+     */
+    public long getTimeoutNanos()
+    {
+        return this.timeoutNanos;
+    }
+
+    /**
+     * Defines the max time of a call, counted from its beginning.
+     *
+     * @param timeout The timeout.
+     * @param unit The timeout unit.
+     * @return This budget.
+     */
+    public WorkBudget setTimeout(long timeout, TimeUnit unit)
+    {
+        this.timeoutNanos = requirePositive(unit.toNanos(timeout), "time");
+        return this;
+    }
+
+    public Policy getPolicy()
+    {
+        return this.policy;
+    }
+
+    /**
+     * Defines what to do when a limit is exceeded.
+     *
+     * @param policy The policy.
+     * @return This budget.
+     */
+    public WorkBudget setPolicy(Policy policy)
+    {
+        if (policy == null) {
+            throw new IllegalArgumentException("The budget policy is required");
+        }
+        this.policy = policy;
+        return this;
+    }
+
+    /**
+     * Returns a copy of this budget with another policy.
+     *
+     * @param policy The policy of the copy.
+     * @return The copy.
+     */
+    WorkBudget withPolicy(Policy policy)
+    {
+        WorkBudget result = new WorkBudget();
+        result.maxNodes = this.maxNodes;
+        result.maxEdges = this.maxEdges;
+        result.maxPaths = this.maxPaths;
+        result.timeoutNanos = this.timeoutNanos;
+        return result.setPolicy(policy);
+    }
+
+    private static long requirePositive(long value, String name)
+    {
+        if (value <= 0) {
+            throw new IllegalArgumentException(String.format(
+                "The %s budget must be positive", name));
+        }
+        return value;
+    }
+
+    /**
+     * Returns a string representation of the object.
+     */
+    @Override
+    public String toString()
+    {
+        return String.format(
+            "maxNodes=%s, maxEdges=%s, maxPaths=%s, timeout=%s, policy=%s",
+            format(this.maxNodes), format(this.maxEdges),
+            format(this.maxPaths), (this.timeoutNanos == UNLIMITED) ? "none"
+                : (this.timeoutNanos / 1e6) + "ms", this.policy);
+    }
+
+    private static String format(long limit)
+    {
+        return (limit == UNLIMITED) ? "none" : String.valueOf(limit);
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.ontorec;
+
+import br.com.ufcg.splab.recsys.ontorec.WorkBudget.Limit;
+
+/**
+ * Thrown when a features' weight calculation exceeds its {@link WorkBudget}.
+ * It is unchecked because it is thrown from inside the graph traversals.
+ *
+ * @author Saulo Toledo
+ */
+public class WorkBudgetExceededException extends RuntimeException
+{
+    private static final long serialVersionUID = 1L;
+
+    private final Limit limit;
+    private final long used;
+    private final long allowed;
+
+    /**
+     * Creates the exception.
+     *
+     * @param limit The exceeded limit.
+     * @param used The amount used when the limit was detected.
+     * @param allowed The allowed amount.
+     */
+    public WorkBudgetExceededException(Limit limit, long used, long allowed)
+    {
+        super(String.format(
+            "The work budget was exceeded: %s, the limit is %d",
+            limit.describe(used), allowed));
+        this.limit = limit;
+        this.used = used;
+        this.allowed = allowed;
+    }
+
+    public Limit getLimit()
+    {
+        return this.limit;
+    }
+
+    public long getUsed()
+    {
+        return this.used;
+    }
+
+    public long getAllowed()
+    {
+        return this.allowed;
+    }
+}
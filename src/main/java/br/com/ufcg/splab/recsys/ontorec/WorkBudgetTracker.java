@@ -0,0 +1,214 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.ontorec;
+
+import br.com.ufcg.splab.recsys.ontorec.WorkBudget.Limit;
+import br.com.ufcg.splab.recsys.ontorec.WorkBudget.Policy;
+
+/**
+ * Counts the work of a single call against its {@link WorkBudget}. A tracker
+ * is active at the thread that started it, until it is stopped. The finished
+ * traversals add their work through {@link OntoRecMetrics#recordWork}, and
+ * the running ones check their partial work at each step, so a pathological
+ * traversal is stopped in the middle:
+ *
+ * <pre>
+ * WorkBudgetTracker budget = WorkBudgetTracker.current();
+ * ...
+ * if (budget != null) {
+ *     budget.check(visitedNodes, visitedEdges, builtPaths);
+ * }
+ * </pre>
+ *
+ * @author Saulo Toledo
+ */
+public class WorkBudgetTracker
+{
+    private static final ThreadLocal<WorkBudgetTracker> CURRENT = new ThreadLocal<WorkBudgetTracker>();
+
+    /**
+     * The deadline is read once every this number of checks, plus one.
+     */
+    private static final int DEADLINE_CHECK_MASK = 0xFF;
+
+    private final WorkBudget budget;
+
+    private long nodes;
+    private long edges;
+    private long paths;
+
+    private long startTime;
+    private long deadline;
+    private int checks;
+
+    private WorkBudgetExceededException exceeded;
+    private boolean degraded;
+    private WorkBudgetTracker previous;
+
+    /**
+     * Creates an inactive tracker.
+     *
+     * @param budget The budget of the tracked call.
+     */
+    public WorkBudgetTracker(WorkBudget budget)
+    {
+        this.budget = budget;
+    }
+
+    /**
+     * Returns the tracker active at the current thread.
+     *
+     * @return The active tracker, or null if the work is not limited.
+     */
+    public static WorkBudgetTracker current()
+    {
+        return CURRENT.get();
+    }
+
+    /**
+     * Activates this tracker at the current thread and starts counting its
+     * time.
+     *
+     * @return This tracker.
+     */
+    public WorkBudgetTracker start()
+    {
+        this.previous = CURRENT.get();
+        this.startTime = System.nanoTime();
+        long timeout = this.budget.getTimeoutNanos();
+        this.deadline = (timeout == WorkBudget.UNLIMITED) ? Long.MAX_VALUE
+            : this.startTime + timeout;
+        CURRENT.set(this);
+        return this;
+    }
+
+    /**
+     * Deactivates this tracker at the current thread.
+     */
+    public void stop()
+    {
+        if (this.previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(this.previous);
+        }
+        this.previous = null;
+    }
+
+    /**
+     * Adds the work of a finished traversal.
+     *
+     * @param nodes The visited nodes.
+     * @param edges The followed edges.
+     * @param paths The built paths.
+     */
+    void addWork(long nodes, long edges, long paths)
+    {
+        this.nodes += nodes;
+        this.edges += edges;
+        this.paths += paths;
+    }
+
+    /**
+     * Checks the work done so far, including the partial work of a running
+     * traversal, and the deadline.
+     *
+     * @param runningNodes The nodes visited by the running traversal.
+     * @param runningEdges The edges followed by the running traversal.
+     * @param runningPaths The paths built by the running traversal.
+     * @throws WorkBudgetExceededException If a limit was exceeded.
+     */
+    public void check(long runningNodes, long runningEdges, long runningPaths)
+    {
+        this.checkLimit(Limit.NODES, this.nodes + runningNodes,
+            this.budget.getMaxNodes());
+        this.checkLimit(Limit.EDGES, this.edges + runningEdges,
+            this.budget.getMaxEdges());
+        this.checkLimit(Limit.PATHS, this.paths + runningPaths,
+            this.budget.getMaxPaths());
+
+        if ((++this.checks & DEADLINE_CHECK_MASK) == 0) {
+            this.checkDeadline();
+        }
+    }
+
+    /**
+     * Checks the deadline.
+     *
+     * @throws WorkBudgetExceededException If the deadline has passed.
+     */
+    public void checkDeadline()
+    {
+        long now = System.nanoTime();
+        if (now - this.deadline > 0) {
+            this.exceed(new WorkBudgetExceededException(Limit.DEADLINE, now
+                - this.startTime, this.budget.getTimeoutNanos()));
+        }
+    }
+
+    private void checkLimit(Limit limit, long used, long allowed)
+    {
+        if (used > allowed) {
+            this.exceed(new WorkBudgetExceededException(limit, used, allowed));
+        }
+    }
+
+    private void exceed(WorkBudgetExceededException exception)
+    {
+        if (this.exceeded == null) {
+            this.exceeded = exception;
+            OntoRecMetrics.budgetExceededCounter(exception.getLimit())
+                .increment();
+        }
+        throw exception;
+    }
+
+    /**
+     * Handles an exceeded budget. If the policy allows it, the call is marked
+     * as degraded and it must return the work done so far.
+     *
+     * @param exception The exception thrown when the budget was exceeded.
+     * @return true if the call must return a degraded result, false if the
+     *         exception must be thrown to the caller.
+     */
+    public boolean degrade(WorkBudgetExceededException exception)
+    {
+        if (this.budget.getPolicy() != Policy.DEGRADE) {
+            return false;
+        }
+        if ( !this.degraded) {
+            this.degraded = true;
+            OntoRecMetrics.DEGRADED_EXPANSIONS.increment();
+        }
+        return true;
+    }
+
+    /**
+     * Returns if the tracked call returned a degraded result.
+     *
+     * @return true if the call was degraded.
+     */
+    public boolean isDegraded()
+    {
+        return this.degraded;
+    }
+
+    /**
+     * Returns the first exceeded limit of the tracked call.
+     *
+     * @return The exception thrown when the budget was exceeded, or null if
+     *         it was not exceeded.
+     */
+    public WorkBudgetExceededException getExceeded()
+    {
+        return this.exceeded;
+    }
+
+    public WorkBudget getBudget()
+    {
+        return this.budget;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.ontorec.evaluation;
+
+/**
+ * A point of a {@link ParameterGrid}: the node weighting approach and the τ,
+ * λ and υ values used to expand the user profiles.
+ *
+ * @author Saulo Toledo
+ */
+public final class EvaluationConfiguration
+{
+    private final String approachName;
+    private final int tau;
+    private final boolean lambda;
+    private final boolean upsilon;
+
+    /**
+     * Creates a configuration.
+     *
+     * @param approachName The name of the node weighting approach at the
+     *        grid.
+     * @param tau The τ value.
+     * @param lambda The λ value.
+     * @param upsilon The υ value.
+     */
+    public EvaluationConfiguration(String approachName, int tau,
+        boolean lambda, boolean upsilon)
+    {
+        this.approachName = approachName;
+        this.tau = tau;
+        this.lambda = lambda;
+        this.upsilon = upsilon;
+    }
+
+    public String getApproachName()
+    {
+        return this.approachName;
+    }
+
+    public int getTau()
+    {
+        return this.tau;
+    }
+
+    public boolean getLambda()
+    {
+        return this.lambda;
+    }
+
+    public boolean getUpsilon()
+    {
+        return this.upsilon;
+    }
+
+    /**
+     * Indicates whether some other object is "equal to" this one.
+     *
+     * @return True if the objects are equal, false otherwise.
+     */
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj) {
+            return true;
+        }
+        if ( !(obj instanceof EvaluationConfiguration)) {
+            return false;
+        }
+        EvaluationConfiguration other = (EvaluationConfiguration) obj;
+        return this.approachName.equals(other.approachName)
+            && this.tau == other.tau && this.lambda == other.lambda
+            && this.upsilon == other.upsilon;
+    }
+
+    /**
+     * Returns a hash code value for the object.
+     *
+     * @return The hash code.
+     */
+    @Override
+    public int hashCode()
+    {
+        int result = this.approachName.hashCode();
+        result = 31 * result + this.tau;
+        result = 31 * result + (this.lambda ? 1 : 0);
+        return 31 * result + (this.upsilon ? 1 : 0);
+    }
+
+    /**
+     * Returns a string representation of the object.
+     *
+     * @return A string representation of the object.
+     */
+    @Override
+    public String toString()
+    {
+        return String.format("%s(τ = %d, λ = %s, υ = %s)", this.approachName,
+            this.tau, this.lambda, this.upsilon);
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.ontorec.evaluation;
+
+import java.util.Map;
+
+import br.com.ufcg.splab.recsys.recommender.Approach;
+import br.com.ufcg.splab.recsys.recommender.SimilarityMethod;
+
+/**
+ * Scores the items against user profiles that were already expanded, so the
+ * expansions of a whole τ sweep are calculated once and only scored for each
+ * τ.
+ *
+ * @author Saulo Toledo
+ */
+class ExpandedProfileApproach extends Approach
+{
+    ExpandedProfileApproach(SimilarityMethod similarityMethod)
+    {
+        super(similarityMethod);
+    }
+
+    @Override
+    public Map<String, Double> getUserProfile() throws Exception
+    {
+        return this.userProfile;
+    }
+}
@@ -0,0 +1,380 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.ontorec.evaluation;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import br.com.ufcg.splab.recsys.ontorec.FeaturesWeightSweep;
+import br.com.ufcg.splab.recsys.ontorec.NodeManager;
+import br.com.ufcg.splab.recsys.ontorec.NodeManagerSnapshot;
+import br.com.ufcg.splab.recsys.ontorec.weighting.NodeWeightingApproach;
+import br.com.ufcg.splab.recsys.recommender.Approach;
+import br.com.ufcg.splab.recsys.recommender.Recommender;
+import br.com.ufcg.splab.recsys.recommender.SimilarityMethod;
+import br.com.ufcg.splab.recsys.recommender.SimilarityMapper;
+
+/**
+ * Evaluates every configuration of a {@link ParameterGrid} by replaying the
+ * held out interactions of an {@link InteractionLog} and accumulating their
+ * {@link RankingMetrics}.
+ * <p>
+ * The ontology is loaded and mapped once by the caller. Since λ and υ are
+ * fixed when a node manager is created, each group of configurations with the
+ * same approach, λ and υ works on its own copy of the ontology, loaded once
+ * from a {@link NodeManagerSnapshot} saved once per evaluation, and on its own
+ * recommender. The tasks are the groups, split by users when there are fewer
+ * groups than processors, and the tasks of a group share its copy and its
+ * recommender, which they only read. Each task expands the profile of a user
+ * for the τ values of the grid at once (see
+ * {@link NodeManager#getFeaturesWeightSweep(Set, SortedSet, boolean)}) and
+ * scores the users of a block together for each τ.
+ *
+ * @author Saulo Toledo
+ */
+public class GridEvaluator
+{
+    /**
+     * The application logger.
+     */
+    private static final Logger LOGGER = LoggerFactory
+        .getLogger(GridEvaluator.class);
+
+    /**
+     * The default cutoff of the ranked lists.
+     */
+    public static final int DEFAULT_CUTOFF = 10;
+
+    private final NodeManager<String> ontology;
+    private final List<Map<String, Double>> items;
+    private final SimilarityMethod similarityMethod;
+
+    private int cutoff = DEFAULT_CUTOFF;
+    private int userBlockSize = Approach.DEFAULT_USER_BLOCK_SIZE;
+    private ExecutorService executor;
+
+    /**
+     * Creates an evaluator.
+     *
+     * @param ontology The loaded and mapped ontology. It is only read.
+     * @param items The items profiles. They are shared by all the tasks and
+     *        must not be changed during an evaluation.
+     * @param similarityMethod The similarity method. It is used by many
+     *        threads.
+     */
+    public GridEvaluator(NodeManager<String> ontology,
+        List<Map<String, Double>> items, SimilarityMethod similarityMethod)
+    {
+        this.ontology = ontology;
+        this.items = items;
+        this.similarityMethod = similarityMethod;
+    }
+
+    public int getCutoff()
+    {
+        return this.cutoff;
+    }
+
+    /**
+     * Defines the number of items recommended to each user and the cutoff of
+     * the metrics.
+     *
+     * @param cutoff The cutoff. It must be positive.
+     */
+    public void setCutoff(int cutoff)
+    {
+        if (cutoff <= 0) {
+            throw new IllegalArgumentException("The cutoff must be positive");
+        }
+        this.cutoff = cutoff;
+    }
+
+    public int getUserBlockSize()
+    {
+        return this.userBlockSize;
+    }
+
+    /**
+     * Defines the number of users scored together by each task.
+     *
+     * @param userBlockSize The number of users. It must be positive.
+     */
+    public void setUserBlockSize(int userBlockSize)
+    {
+        if (userBlockSize <= 0) {
+            throw new IllegalArgumentException(
+                "The user block size must be positive");
+        }
+        this.userBlockSize = userBlockSize;
+    }
+
+    /**
+     * Returns the executor that runs the evaluation tasks.
+     *
+     * @return The executor, or null if each evaluation creates a pool with a
+     *         thread per processor.
+     */
+    public ExecutorService getExecutor()
+    {
+        return this.executor;
+    }
+
+    /**
+     * Defines the executor that runs the evaluation tasks. It is not shut
+     * down by this class.
+     *
+     * @param executor The executor, or null to create a pool with a thread
+     *        per processor at each evaluation.
+     */
+    public void setExecutor(ExecutorService executor)
+    {
+        this.executor = executor;
+    }
+
+    /**
+     * Evaluates all the configurations of a grid.
+     *
+     * @param grid The grid.
+     * @param log The held out interactions.
+     * @return The metrics of each configuration, in the grid order.
+     * @throws Exception If the ontology copy cannot be saved or loaded, or if
+     *         an evaluation task fails.
+     */
+    public Map<EvaluationConfiguration, RankingMetrics> evaluate(
+        ParameterGrid grid, InteractionLog log) throws Exception
+    {
+        List<EvaluationConfiguration> configurations = grid
+            .getConfigurations();
+        if (configurations.isEmpty()) {
+            throw new IllegalArgumentException(
+                "The grid needs at least an approach and a τ value");
+        }
+
+        long start = System.nanoTime();
+        int processors = Runtime.getRuntime().availableProcessors();
+        ExecutorService pool = this.executor;
+        if (pool == null) {
+            pool = Executors.newFixedThreadPool(processors);
+        }
+
+        File snapshot = File.createTempFile("ontorec-grid", ".snapshot");
+        try {
+            NodeManagerSnapshot.save(this.ontology, snapshot);
+
+            int groups = grid.getApproaches().size()
+                * grid.getLambdas().size() * grid.getUpsilons().size();
+            List<HeldOutCase> cases = log.getCases();
+            int chunks = Math.max(1, Math.min((processors + groups - 1)
+                / groups, cases.size()));
+            int chunkSize = Math.max(1, (cases.size() + chunks - 1) / chunks);
+
+            Map<EvaluationConfiguration, RankingMetrics> result = new LinkedHashMap<EvaluationConfiguration, RankingMetrics>();
+            for (EvaluationConfiguration configuration : configurations) {
+                result.put(configuration, new RankingMetrics(this.cutoff));
+            }
+
+            List<Future<Map<EvaluationConfiguration, RankingMetrics>>> futures = new ArrayList<Future<Map<EvaluationConfiguration, RankingMetrics>>>();
+            for (Map.Entry<String, NodeWeightingApproach<String>> approach : grid
+                .getApproaches().entrySet()) {
+                for (boolean lambda : grid.getLambdas()) {
+                    for (boolean upsilon : grid.getUpsilons()) {
+                        Group group = new Group(snapshot, approach.getKey(),
+                            approach.getValue(), lambda, upsilon);
+                        for (int from = 0; from < cases.size(); from += chunkSize) {
+                            futures.add(pool.submit(this.newTask(group,
+                                grid.getTaus(), cases.subList(from, Math.min(
+                                    from + chunkSize, cases.size())))));
+                        }
+                    }
+                }
+            }
+
+            for (Future<Map<EvaluationConfiguration, RankingMetrics>> future : futures) {
+                Map<EvaluationConfiguration, RankingMetrics> partial = await(future);
+                for (EvaluationConfiguration configuration : partial.keySet()) {
+                    result.get(configuration).merge(partial.get(configuration));
+                }
+            }
+
+            LOGGER.debug(
+                "{} configurations were evaluated for {} users by {} tasks in {} ms",
+                configurations.size(), cases.size(), futures.size(),
+                (System.nanoTime() - start) / 1000000);
+
+            return result;
+        } finally {
+            if (pool != this.executor) {
+                pool.shutdownNow();
+            }
+            if ( !snapshot.delete()) {
+                snapshot.deleteOnExit();
+            }
+        }
+    }
+
+    private Callable<Map<EvaluationConfiguration, RankingMetrics>> newTask(
+        final Group group, final SortedSet<Integer> taus,
+        final List<HeldOutCase> cases)
+    {
+        return new Callable<Map<EvaluationConfiguration, RankingMetrics>>()
+        {
+            @Override
+            public Map<EvaluationConfiguration, RankingMetrics> call()
+                throws Exception
+            {
+                return GridEvaluator.this.evaluateGroup(group, taus, cases);
+            }
+        };
+    }
+
+    /**
+     * Evaluates the configurations with the same approach, λ and υ for some
+     * users.
+     */
+    private Map<EvaluationConfiguration, RankingMetrics> evaluateGroup(
+        Group group, SortedSet<Integer> taus, List<HeldOutCase> cases)
+        throws Exception
+    {
+        group.load();
+        NodeManager<String> nm = group.nm;
+        Recommender recommender = group.recommender;
+        boolean lambda = group.lambda;
+        Set<String> mappedFeatures = nm.getMappedFeatures();
+
+        Map<Integer, RankingMetrics> metrics = new HashMap<Integer, RankingMetrics>();
+        for (int tau : taus) {
+            metrics.put(tau, new RankingMetrics(this.cutoff));
+        }
+
+        for (int from = 0; from < cases.size(); from += this.userBlockSize) {
+            List<HeldOutCase> block = cases.subList(from, Math.min(from
+                + this.userBlockSize, cases.size()));
+
+            Map<Integer, List<Map<String, Double>>> profiles = new HashMap<Integer, List<Map<String, Double>>>();
+            for (int tau : taus) {
+                profiles.put(tau, new ArrayList<Map<String, Double>>(
+                    block.size()));
+            }
+
+            for (HeldOutCase heldOutCase : block) {
+                // The features unknown to the ontology cannot be expanded:
+                Set<String> selectedFeatures = new HashSet<String>(
+                    heldOutCase.getSelectedFeatures());
+                selectedFeatures.retainAll(mappedFeatures);
+
+                FeaturesWeightSweep sweep = nm.getFeaturesWeightSweep(
+                    selectedFeatures, taus, false);
+                for (int tau : taus) {
+                    profiles.get(tau).add(sweep.getWeights(tau, lambda));
+                }
+            }
+
+            for (int tau : taus) {
+                List<List<SimilarityMapper>> rankings = recommender
+                    .recommendTo(profiles.get(tau), this.cutoff);
+                for (int i = 0; i < block.size(); i++) {
+                    metrics.get(tau).record(getItemIds(rankings.get(i)),
+                        block.get(i).getRelevantItems());
+                }
+            }
+        }
+
+        Map<EvaluationConfiguration, RankingMetrics> result = new HashMap<EvaluationConfiguration, RankingMetrics>();
+        for (int tau : taus) {
+            result.put(new EvaluationConfiguration(group.approachName, tau,
+                lambda, group.upsilon), metrics.get(tau));
+        }
+        return result;
+    }
+
+    /**
+     * A group of configurations with the same approach, λ and υ. Its copy of
+     * the ontology and its recommender are created by the first task of the
+     * group and shared by the others.
+     */
+    private final class Group
+    {
+        private final File snapshot;
+        private final String approachName;
+        private final NodeWeightingApproach<String> approach;
+        private final boolean lambda;
+        private final boolean upsilon;
+
+        private NodeManager<String> nm;
+        private Recommender recommender;
+
+        Group(File snapshot, String approachName,
+              NodeWeightingApproach<String> approach, boolean lambda,
+              boolean upsilon)
+        {
+            this.snapshot = snapshot;
+            this.approachName = approachName;
+            this.approach = approach;
+            this.lambda = lambda;
+            this.upsilon = upsilon;
+        }
+
+        /**
+         * Loads the copy of the ontology and fills the recommender, if this
+         * was not done yet.
+         *
+         * @throws Exception If the ontology copy cannot be loaded.
+         */
+        synchronized void load() throws Exception
+        {
+            if (this.nm != null) {
+                return;
+            }
+
+            Recommender groupRecommender = new Recommender(
+                new ExpandedProfileApproach(
+                    GridEvaluator.this.similarityMethod));
+            for (Map<String, Double> item : GridEvaluator.this.items) {
+                groupRecommender.addItem(item);
+            }
+
+            this.recommender = groupRecommender;
+            this.nm = NodeManagerSnapshot.load(this.snapshot, this.approach,
+                this.lambda, this.upsilon);
+        }
+    }
+
+    private static List<Integer> getItemIds(List<SimilarityMapper> ranking)
+    {
+        List<Integer> result = new ArrayList<Integer>(ranking.size());
+        for (SimilarityMapper item : ranking) {
+            result.add(item.getProfileId());
+        }
+        return result;
+    }
+
+    private static <R> R await(Future<R> task) throws Exception
+    {
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
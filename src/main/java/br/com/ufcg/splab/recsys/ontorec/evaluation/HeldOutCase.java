@@ -0,0 +1,64 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.ontorec.evaluation;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * A user of an {@link InteractionLog}: the features the user selected and the
+ * items the user interacted with that were held out of the training data.
+ *
+ * @author Saulo Toledo
+ */
+public final class HeldOutCase
+{
+    private final String userId;
+    private final Set<String> selectedFeatures;
+    private final Set<Integer> relevantItems;
+
+    /**
+     * Creates a case.
+     *
+     * @param userId The user id.
+     * @param selectedFeatures The features selected by the user.
+     * @param relevantItems The ids of the held out items.
+     */
+    public HeldOutCase(String userId, Set<String> selectedFeatures,
+        Set<Integer> relevantItems)
+    {
+        this.userId = userId;
+        this.selectedFeatures = Collections.unmodifiableSet(selectedFeatures);
+        this.relevantItems = Collections.unmodifiableSet(relevantItems);
+    }
+
+    public String getUserId()
+    {
+        return this.userId;
+    }
+
+    public Set<String> getSelectedFeatures()
+    {
+        return this.selectedFeatures;
+    }
+
+    public Set<Integer> getRelevantItems()
+    {
+        return this.relevantItems;
+    }
+
+    /**
+     * Returns a string representation of the object.
+     *
+     * @return A string representation of the object.
+     */
+    @Override
+    public String toString()
+    {
+        return String.format("%s: %s -> %s", this.userId,
+            this.selectedFeatures, this.relevantItems);
+    }
+}
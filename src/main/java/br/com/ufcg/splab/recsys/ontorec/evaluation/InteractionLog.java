@@ -0,0 +1,121 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.ontorec.evaluation;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The held out interactions replayed by a {@link GridEvaluator}. A log file
+ * has a user per line, with the user id, the selected features and the ids
+ * of the held out items separated by tabs, and the features and items
+ * separated by commas. Empty lines and lines starting with '#' are ignored:
+ *
+ * <pre>
+ * # user	selected features	held out items
+ * u1	Camera,GPS	12,40,41
+ * </pre>
+ *
+ * @author Saulo Toledo
+ */
+public class InteractionLog
+{
+    private final List<HeldOutCase> cases = new ArrayList<HeldOutCase>();
+
+    /**
+     * Reads a log file.
+     *
+     * @param file The log file, in UTF-8.
+     * @return The log.
+     * @throws IOException If the file cannot be read or a line is invalid.
+     */
+    public static InteractionLog read(File file) throws IOException
+    {
+        InteractionLog log = new InteractionLog();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+            new FileInputStream(file), "UTF-8"));
+        try {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.trim().isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                String[] columns = line.split("\t", -1);
+                if (columns.length != 3) {
+                    throw new IOException(String.format(
+                        "The line %d of '%s' does not have 3 columns",
+                        lineNumber, file));
+                }
+
+                Set<Integer> items = new LinkedHashSet<Integer>();
+                try {
+                    for (String item : split(columns[2])) {
+                        items.add(Integer.valueOf(item));
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IOException(String.format(
+                        "The line %d of '%s' has an invalid item id",
+                        lineNumber, file), e);
+                }
+
+                log.add(new HeldOutCase(columns[0].trim(), split(columns[1]),
+                    items));
+            }
+        } finally {
+            reader.close();
+        }
+        return log;
+    }
+
+    private static Set<String> split(String column)
+    {
+        Set<String> result = new LinkedHashSet<String>();
+        for (String value : column.split(",")) {
+            if ( !value.trim().isEmpty()) {
+                result.add(value.trim());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds a case to the log.
+     *
+     * @param heldOutCase The case.
+     * @return This log.
+     */
+    public InteractionLog add(HeldOutCase heldOutCase)
+    {
+        this.cases.add(heldOutCase);
+        return this;
+    }
+
+    public List<HeldOutCase> getCases()
+    {
+        return Collections.unmodifiableList(this.cases);
+    }
+
+    /**
+     * Returns the number of cases.
+     *
+     * @return The number of cases.
+     */
+    public int size()
+    {
+        return this.cases.size();
+    }
+}
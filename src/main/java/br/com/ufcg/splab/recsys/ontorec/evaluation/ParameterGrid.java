@@ -0,0 +1,165 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.ontorec.evaluation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import br.com.ufcg.splab.recsys.ontorec.weighting.NodeWeightingApproach;
+
+/**
+ * The configurations evaluated by a {@link GridEvaluator}: every combination
+ * of the added node weighting approaches and τ, λ and υ values. λ and υ are
+ * only false unless they are defined.
+ *
+ * <pre>
+ * ParameterGrid grid = new ParameterGrid()
+ *     .addApproach(&quot;BFS&quot;, new BFSPathNodeWeightingApproach&lt;String&gt;())
+ *     .addApproach(&quot;TAU&quot;, new TaunthAncestorNodeWeightingApproach&lt;String&gt;())
+ *     .setTaus(1, 2, 3, 4).setLambdas(false, true).setUpsilons(false, true);
+ * </pre>
+ *
+ * @author Saulo Toledo
+ */
+public class ParameterGrid
+{
+    private final Map<String, NodeWeightingApproach<String>> approaches = new LinkedHashMap<String, NodeWeightingApproach<String>>();
+    private final SortedSet<Integer> taus = new TreeSet<Integer>();
+    private final List<Boolean> lambdas = new ArrayList<Boolean>();
+    private final List<Boolean> upsilons = new ArrayList<Boolean>();
+
+    /**
+     * Creates a grid without approaches and τ values.
+     */
+    public ParameterGrid()
+    {
+        this.lambdas.add(false);
+        this.upsilons.add(false);
+    }
+
+    /**
+     * Adds a node weighting approach. The approaches must not keep state
+     * between calls, since the same instance is used by many threads.
+     *
+     * @param name The approach name at the evaluated configurations.
+     * @param approach The approach.
+     * @return This grid.
+     */
+    public ParameterGrid addApproach(String name,
+        NodeWeightingApproach<String> approach)
+    {
+        if (this.approaches.containsKey(name)) {
+            throw new IllegalArgumentException(String.format(
+                "The approach '%s' was already added", name));
+        }
+        this.approaches.put(name, approach);
+        return this;
+    }
+
+    /**
+     * Defines the τ values.
+     *
+     * @param taus The τ values. They must be positive.
+     * @return This grid.
+     */
+    public ParameterGrid setTaus(int... taus)
+    {
+        this.taus.clear();
+        for (int tau : taus) {
+            if (tau < 1) {
+                throw new IllegalArgumentException(
+                    "The τ values must be positive");
+            }
+            this.taus.add(tau);
+        }
+        return this;
+    }
+
+    /**
+     * Defines the λ values.
+     *
+     * @param lambdas The λ values.
+     * @return This grid.
+     */
+    public ParameterGrid setLambdas(boolean... lambdas)
+    {
+        setValues(this.lambdas, lambdas);
+        return this;
+    }
+
+    /**
+     * Defines the υ values.
+     *
+     * @param upsilons The υ values.
+     * @return This grid.
+     */
+    public ParameterGrid setUpsilons(boolean... upsilons)
+    {
+        setValues(this.upsilons, upsilons);
+        return this;
+    }
+
+    private static void setValues(List<Boolean> list, boolean[] values)
+    {
+        list.clear();
+        for (boolean value : values) {
+            if ( !list.contains(value)) {
+                list.add(value);
+            }
+        }
+    }
+
+    public Map<String, NodeWeightingApproach<String>> getApproaches()
+    {
+        return Collections.unmodifiableMap(this.approaches);
+    }
+
+    /**
+     * Returns the τ values, in ascending order.
+     *
+     * @return The τ values.
+     */
+    public SortedSet<Integer> getTaus()
+    {
+        return Collections.unmodifiableSortedSet(this.taus);
+    }
+
+    public List<Boolean> getLambdas()
+    {
+        return Collections.unmodifiableList(this.lambdas);
+    }
+
+    public List<Boolean> getUpsilons()
+    {
+        return Collections.unmodifiableList(this.upsilons);
+    }
+
+    /**
+     * Returns all the configurations of this grid.
+     *
+     * @return The configurations, ordered by approach, λ, υ and τ.
+     */
+    public List<EvaluationConfiguration> getConfigurations()
+    {
+        List<EvaluationConfiguration> result = new ArrayList<EvaluationConfiguration>();
+        for (String approachName : this.approaches.keySet()) {
+            for (boolean lambda : this.lambdas) {
+                for (boolean upsilon : this.upsilons) {
+                    for (int tau : this.taus) {
+                        result.add(new EvaluationConfiguration(approachName,
+                            tau, lambda, upsilon));
+                    }
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.ontorec.evaluation;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Accumulates the precision@k, recall@k and nDCG@k (with binary relevance) of
+ * the recommendations made to many users. Only the sums are kept, so the
+ * memory does not grow with the number of users, and the metrics of the
+ * users evaluated by different threads are joined by
+ * {@link #merge(RankingMetrics)}. The users without relevant items are
+ * counted apart and do not change the means.
+ *
+ * @author Saulo Toledo
+ */
+public class RankingMetrics
+{
+    private final int k;
+
+    private long users;
+    private long usersWithoutRelevantItems;
+    private double precisionSum;
+    private double recallSum;
+    private double ndcgSum;
+
+    /**
+     * Creates an empty accumulator.
+     *
+     * @param k The cutoff of the ranked lists.
+     */
+    public RankingMetrics(int k)
+    {
+        if (k <= 0) {
+            throw new IllegalArgumentException("The cutoff must be positive");
+        }
+        this.k = k;
+    }
+
+    /**
+     * Adds the recommendations made to a user.
+     *
+     * @param rankedItems The ids of the recommended items, from the best to
+     *        the worst one. Only the first k ones are evaluated.
+     * @param relevantItems The ids of the items relevant to the user.
+     */
+    public void record(List<Integer> rankedItems, Set<Integer> relevantItems)
+    {
+        if (relevantItems.isEmpty()) {
+            this.usersWithoutRelevantItems++;
+            return;
+        }
+
+        int hits = 0;
+        double dcg = 0;
+        int cutoff = Math.min(this.k, rankedItems.size());
+        for (int i = 0; i < cutoff; i++) {
+            if (relevantItems.contains(rankedItems.get(i))) {
+                hits++;
+                dcg += discount(i);
+            }
+        }
+
+        double idealDcg = 0;
+        int idealHits = Math.min(this.k, relevantItems.size());
+        for (int i = 0; i < idealHits; i++) {
+            idealDcg += discount(i);
+        }
+
+        this.users++;
+        this.precisionSum += hits / (double) this.k;
+        this.recallSum += hits / (double) relevantItems.size();
+        this.ndcgSum += dcg / idealDcg;
+    }
+
+    private static double discount(int position)
+    {
+        return 1 / (Math.log(position + 2) / Math.log(2));
+    }
+
+    /**
+     * Adds the users of another accumulator with the same cutoff.
+     *
+     * @param other The other accumulator.
+     */
+    public void merge(RankingMetrics other)
+    {
+        if (other.k != this.k) {
+            throw new IllegalArgumentException(String.format(
+                "Cannot merge the metrics at %d with the ones at %d", other.k,
+                this.k));
+        }
+        this.users += other.users;
+        this.usersWithoutRelevantItems += other.usersWithoutRelevantItems;
+        this.precisionSum += other.precisionSum;
+        this.recallSum += other.recallSum;
+        this.ndcgSum += other.ndcgSum;
+    }
+
+    public int getK()
+    {
+        return this.k;
+    }
+
+    /**
+     * Returns the number of evaluated users.
+     *
+     * @return The users with relevant items.
+     */
+    public long getUsers()
+    {
+        return this.users;
+    }
+
+    /**
+     * Returns the number of users that were not evaluated.
+     *
+     * @return The users without relevant items.
+     */
+    public long getUsersWithoutRelevantItems()
+    {
+        return this.usersWithoutRelevantItems;
+    }
+
+    /**
+     * Returns the mean precision@k.
+     *
+     * @return The mean, or 0 if no user was evaluated.
+     */
+    public double getPrecision()
+    {
+        return this.mean(this.precisionSum);
+    }
+
+    /**
+     * Returns the mean recall@k.
+     *
+     * @return The mean, or 0 if no user was evaluated.
+     */
+    public double getRecall()
+    {
+        return this.mean(this.recallSum);
+    }
+
+    /**
+     * Returns the mean nDCG@k.
+     *
+     * @return The mean, or 0 if no user was evaluated.
+     */
+    public double getNdcg()
+    {
+        return this.mean(this.ndcgSum);
+    }
+
+    private double mean(double sum)
+    {
+        return (this.users == 0) ? 0 : sum / this.users;
+    }
+
+    /**
+     * Returns a string representation of the object.
+     *
+     * @return A string representation of the object.
+     */
+    @Override
+    public String toString()
+    {
+        return String.format(
+            "users=%d, precision@%d=%.4f, recall@%d=%.4f, nDCG@%d=%.4f",
+            this.users, this.k, this.getPrecision(), this.k,
+            this.getRecall(), this.k, this.getNdcg());
+    }
+}
@@ -4,8 +4,12 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
+import br.com.ufcg.splab.recsys.metrics.jfr.FlightRecorderEvents;
+import br.com.ufcg.splab.recsys.ontorec.FeaturesWeightResult;
+import br.com.ufcg.splab.recsys.ontorec.MappedGraphStore;
 import br.com.ufcg.splab.recsys.ontorec.NodeManager;
 import br.com.ufcg.splab.recsys.ontorec.OWLReader;
+import br.com.ufcg.splab.recsys.ontorec.WorkBudget;
 import br.com.ufcg.splab.recsys.ontorec.weighting.NodeWeightingApproach;
 import br.com.ufcg.splab.recsys.recommender.Approach;
 import br.com.ufcg.splab.recsys.recommender.SimilarityMethod;
@@ -14,21 +18,86 @@ public class OntoRecApproach extends Approach
 {
     // private Set<String> selectedFeatures;
     private NodeManager<String> nm;
+    private MappedGraphStore store;
+    private boolean lambda;
+    private boolean upsilon;
     private Integer maxHeight;
+    private WorkBudget expansionBudget;
+    private FeaturesWeightResult lastExpansion;
 
     public OntoRecApproach(String ontologyFile,
         NodeWeightingApproach<String> nodeWeightingApproach,
         Boolean lambda, Boolean upsilon,
         MappingsProcessor mp, SimilarityMethod similarityMethod)
         throws Exception
+    {
+        this(new OWLReader(ontologyFile, nodeWeightingApproach, lambda,
+            upsilon).getNodeManager(), similarityMethod);
+
+        Object event = FlightRecorderEvents.beginMapping();
+        try {
+            mp.mapAt(this.nm);
+        } finally {
+            FlightRecorderEvents.endMapping(event, mp.getClass().getName(),
+                this.nm.getMappedFeatures().size());
+        }
+    }
+
+    /**
+     * Creates the approach for an already loaded and mapped node manager (a
+     * manager loaded from a snapshot, for example).
+     *
+     * @param nm The node manager.
+     * @param similarityMethod The similarity method.
+     */
+    public OntoRecApproach(NodeManager<String> nm,
+        SimilarityMethod similarityMethod)
     {
         super(similarityMethod);
 
-        OWLReader reader = new OWLReader(ontologyFile, nodeWeightingApproach,
-            lambda, upsilon);
+        this.nm = nm;
+    }
 
-        this.nm = reader.getNodeManager();
-        mp.mapAt(this.nm);
+    /**
+     * Creates the approach for an ontology kept outside the heap, at a
+     * mapped graph store. The features' weight is calculated over the store
+     * as the BFS path approach does (see
+     * {@link MappedGraphStore#getFeaturesWeight(Set, int, boolean, boolean)}).
+     *
+     * @param store The graph store, with the features mapping.
+     * @param lambda If only begotten fathers are ignored.
+     * @param upsilon If the selected features also achieve the other
+     *        selected features.
+     * @param similarityMethod The similarity method.
+     */
+    public OntoRecApproach(MappedGraphStore store, boolean lambda,
+        boolean upsilon, SimilarityMethod similarityMethod)
+    {
+        super(similarityMethod);
+
+        this.store = store;
+        this.lambda = lambda;
+        this.upsilon = upsilon;
+    }
+
+    /**
+     * Returns the node manager used by this approach.
+     *
+     * @return The node manager, or null if the approach uses a graph store.
+     */
+    public NodeManager<String> getNodeManager()
+    {
+        return this.nm;
+    }
+
+    /**
+     * Returns the graph store used by this approach.
+     *
+     * @return The graph store, or null if the approach uses a node manager.
+     */
+    public MappedGraphStore getStore()
+    {
+        return this.store;
     }
 
     public Integer getMaxHeight()
@@ -41,6 +110,37 @@ public class OntoRecApproach extends Approach
         this.maxHeight = maxHeight;
     }
 
+    public WorkBudget getExpansionBudget()
+    {
+        return this.expansionBudget;
+    }
+
+    /**
+     * Defines a work budget for the profile expansion, usually a latency
+     * deadline. With a budget, the profile is expanded a τ level at a time up
+     * to the max height, and the deepest level completed within the budget is
+     * used (see {@link NodeManager#getFeaturesWeightAnytime}). The budget is
+     * only used with a node manager.
+     *
+     * @param expansionBudget The budget, or null to always expand the profile
+     *        up to the max height.
+     */
+    public void setExpansionBudget(WorkBudget expansionBudget)
+    {
+        this.expansionBudget = expansionBudget;
+    }
+
+    /**
+     * Returns the last profile expansion done with the expansion budget.
+     *
+     * @return The expansion and the τ value it reached, or null if the
+     *         profile was not expanded with a budget.
+     */
+    public FeaturesWeightResult getLastExpansion()
+    {
+        return this.lastExpansion;
+    }
+
     @Override
     public void setUserProfile(Map<String, Double> userProfile) throws Exception
     {
@@ -50,10 +150,15 @@ public class OntoRecApproach extends Approach
     }
 
     public Set<String> getSelectedFeatures()
+    {
+        return this.getSelectedFeatures(this.userProfile);
+    }
+
+    private Set<String> getSelectedFeatures(Map<String, Double> userProfile)
     {
         Set<String> result = new HashSet<String>();
-        for (String key : this.userProfile.keySet()) {
-            if (this.userProfile.get(key).equals(1d)) {
+        for (String key : userProfile.keySet()) {
+            if (userProfile.get(key).equals(1d)) {
                 result.add(key);
             }
         }
@@ -67,7 +172,50 @@ public class OntoRecApproach extends Approach
     @Override
     public Map<String, Double> getUserProfile() throws Exception
     {
-        if (this.getSelectedFeatures() == null) {
+        // TODO: This behavior should not be rewritten (it should be at setter
+        // method):
+        if (this.store == null && this.expansionBudget != null) {
+            this.lastExpansion = this.expandWithBudget(this.userProfile);
+            this.userProfile = this.lastExpansion.getWeights();
+        } else {
+            this.userProfile = this.resolveUserProfile(this.userProfile);
+        }
+
+        return this.userProfile;
+    }
+
+    /**
+     * Returns the expansion of the features selected at a user profile. The
+     * last expansion done with the expansion budget is not changed.
+     */
+    @Override
+    protected Map<String, Double> resolveUserProfile(
+        Map<String, Double> userProfile) throws Exception
+    {
+        if (this.store == null && this.expansionBudget != null) {
+            return this.expandWithBudget(userProfile).getWeights();
+        }
+
+        Set<String> selectedFeatures = this.checkSelectedFeatures(userProfile);
+        if (this.store != null) {
+            return this.store.getFeaturesWeight(selectedFeatures,
+                this.getMaxHeight(), this.lambda, this.upsilon);
+        }
+        return this.nm.getFeaturesWeight(selectedFeatures, this.getMaxHeight());
+    }
+
+    private FeaturesWeightResult expandWithBudget(
+        Map<String, Double> userProfile) throws Exception
+    {
+        return this.nm.getFeaturesWeightAnytime(
+            this.checkSelectedFeatures(userProfile), this.getMaxHeight(),
+            this.expansionBudget);
+    }
+
+    private Set<String> checkSelectedFeatures(Map<String, Double> userProfile)
+        throws Exception
+    {
+        if (userProfile == null) {
             throw new Exception("Invalid selected features set");
         }
 
@@ -75,11 +223,6 @@ public class OntoRecApproach extends Approach
             throw new Exception("Invalid max height");
         }
 
-        // TODO: This behavior should not be rewritten (it should be at setter
-        // method):
-        this.userProfile = this.nm.getFeaturesWeight(this.getSelectedFeatures(),
-            this.getMaxHeight());
-
-        return this.userProfile;
+        return this.getSelectedFeatures(userProfile);
     }
 }
@@ -0,0 +1,264 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.ontorec.synthetic;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import br.com.ufcg.splab.recsys.ontorec.Node;
+import br.com.ufcg.splab.recsys.ontorec.NodeManager;
+import br.com.ufcg.splab.recsys.ontorec.NodeManagerBuilder;
+import br.com.ufcg.splab.recsys.ontorec.recommender.MappingsProcessor;
+import br.com.ufcg.splab.recsys.ontorec.weighting.NodeWeightingApproach;
+
+/**
+ * An ontology built by a {@link SyntheticOntologyGenerator}. The class
+ * <code>i</code> is named <code>C&lt;i&gt;</code>, the property
+ * <code>i</code> is named <code>p&lt;i&gt;</code>, and the features are
+ * named after what they are mapped to (<code>fC&lt;i&gt;</code> and
+ * <code>fp&lt;i&gt;</code>). The ontology can be built as a node manager or
+ * written as an RDF/XML file; {@link br.com.ufcg.splab.recsys.ontorec.OWLReader}
+ * reads the file into the same graph.
+ *
+ * @author Saulo Toledo
+ */
+public class SyntheticOntology
+{
+    private final List<List<Integer>> parents;
+    private final int[] depths;
+    private final List<int[]> domains;
+    private final List<Integer> mappedClasses;
+    private final List<Integer> mappedProperties;
+
+    SyntheticOntology(List<List<Integer>> parents, int[] depths,
+        List<int[]> domains, List<Integer> mappedClasses,
+        List<Integer> mappedProperties)
+    {
+        this.parents = parents;
+        this.depths = depths;
+        this.domains = domains;
+        this.mappedClasses = mappedClasses;
+        this.mappedProperties = mappedProperties;
+    }
+
+    /**
+     * Returns the name of a class.
+     *
+     * @param index The class index.
+     * @return The class name.
+     */
+    public static String className(int index)
+    {
+        return "C" + index;
+    }
+
+    /**
+     * Returns the name of a property.
+     *
+     * @param index The property index.
+     * @return The property name.
+     */
+    public static String propertyName(int index)
+    {
+        return "p" + index;
+    }
+
+    public int getClassCount()
+    {
+        return this.parents.size();
+    }
+
+    public int getPropertyCount()
+    {
+        return this.domains.size();
+    }
+
+    /**
+     * Returns the parents of a class.
+     *
+     * @param index The class index.
+     * @return An unmodifiable list with the parents indexes.
+     */
+    public List<Integer> getParents(int index)
+    {
+        return Collections.unmodifiableList(this.parents.get(index));
+    }
+
+    /**
+     * Returns the depth of a class at the hierarchy built before the extra
+     * parents were added (the root has depth 0).
+     *
+     * @param index The class index.
+     * @return The class depth.
+     */
+    public int getDepth(int index)
+    {
+        return this.depths[index];
+    }
+
+    /**
+     * Returns the max depth of the classes.
+     *
+     * @return The max depth.
+     */
+    public int getMaxDepth()
+    {
+        int result = 0;
+        for (int depth : this.depths) {
+            result = Math.max(result, depth);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the names of all the mapped features, the classes' features
+     * first.
+     *
+     * @return The features names.
+     */
+    public List<String> getFeatures()
+    {
+        List<String> result = new ArrayList<String>(this.mappedClasses.size()
+            + this.mappedProperties.size());
+        for (Integer c : this.mappedClasses) {
+            result.add("f" + className(c));
+        }
+        for (Integer p : this.mappedProperties) {
+            result.add("f" + propertyName(p));
+        }
+        return result;
+    }
+
+    /**
+     * Builds the ontology as a node manager, with its features mapped.
+     *
+     * @param nodeWeightingApproach The approach used by the manager.
+     * @param lambda If the manager should ignore only begotten fathers.
+     * @param upsilon If the manager should achieve all the other mapped nodes.
+     * @return The node manager.
+     * @throws Exception If a feature cannot be mapped.
+     */
+    public NodeManager<String> toNodeManager(
+        NodeWeightingApproach<String> nodeWeightingApproach, Boolean lambda,
+        Boolean upsilon) throws Exception
+    {
+        NodeManagerBuilder<String> builder = new NodeManagerBuilder<String>(
+            nodeWeightingApproach, lambda, upsilon);
+
+        // The same declarations OWLReader collects from the written file:
+        for (int c = 0; c < this.parents.size(); c++) {
+            builder.addNode(className(c));
+            for (Integer parent : this.parents.get(c)) {
+                builder.addEdge(className(parent), className(c));
+            }
+        }
+        for (int p = 0; p < this.domains.size(); p++) {
+            for (int domain : this.domains.get(p)) {
+                builder.addAttribute(className(domain), propertyName(p));
+            }
+        }
+
+        NodeManager<String> nm = builder.build();
+        this.getMappingsProcessor().mapAt(nm);
+        return nm;
+    }
+
+    /**
+     * Returns a processor that maps the features to a manager that holds
+     * this ontology (one read from the written file, for example). A
+     * property's feature is mapped at its first domain, and is skipped if
+     * the domain did not accept the property.
+     *
+     * @return The mappings processor.
+     */
+    public MappingsProcessor getMappingsProcessor()
+    {
+        return new MappingsProcessor() {
+            @Override
+            public void mapAt(NodeManager<String> nm) throws Exception
+            {
+                SyntheticOntology.this.mapFeaturesAt(nm);
+            }
+        };
+    }
+
+    private void mapFeaturesAt(NodeManager<String> nm) throws Exception
+    {
+        for (Integer c : this.mappedClasses) {
+            nm.addFeatureMapping("f" + className(c),
+                nm.getNode(className(c)));
+        }
+
+        for (Integer p : this.mappedProperties) {
+            Node<String> domain = nm.getNode(className(this.domains.get(p)[0]));
+            if (nm.getAttributeDeclaringNodes(propertyName(p)).contains(domain)) {
+                nm.addFeatureMapping("f" + propertyName(p), domain,
+                    domain.getOwnOrInheritedAttributeByName(propertyName(p)));
+            }
+        }
+    }
+
+    /**
+     * Writes the ontology in the RDF/XML format.
+     *
+     * @param out The writer. It is not closed.
+     * @throws IOException If the ontology cannot be written.
+     */
+    public void writeRdfXml(Writer out) throws IOException
+    {
+        out.write("<?xml version=\"1.0\"?>\n");
+        out.write("<rdf:RDF xmlns=\"http://example.org/synthetic#\"\n");
+        out.write("    xml:base=\"http://example.org/synthetic\"\n");
+        out.write("    xmlns:rdf=\"http://www.w3.org/1999/02/22-rdf-syntax-ns#\"\n");
+        out.write("    xmlns:rdfs=\"http://www.w3.org/2000/01/rdf-schema#\"\n");
+        out.write("    xmlns:owl=\"http://www.w3.org/2002/07/owl#\">\n");
+
+        for (int c = 0; c < this.parents.size(); c++) {
+            out.write("  <owl:Class rdf:about=\"#" + className(c) + "\">\n");
+            for (Integer parent : this.parents.get(c)) {
+                out.write("    <rdfs:subClassOf rdf:resource=\"#"
+                    + className(parent) + "\"/>\n");
+            }
+            out.write("  </owl:Class>\n");
+        }
+
+        for (int p = 0; p < this.domains.size(); p++) {
+            out.write("  <owl:ObjectProperty rdf:about=\"#" + propertyName(p)
+                + "\">\n");
+            for (int domain : this.domains.get(p)) {
+                out.write("    <rdfs:domain rdf:resource=\"#"
+                    + className(domain) + "\"/>\n");
+            }
+            out.write("  </owl:ObjectProperty>\n");
+        }
+
+        out.write("</rdf:RDF>\n");
+    }
+
+    /**
+     * Writes the ontology in the RDF/XML format.
+     *
+     * @param file The file to write.
+     * @throws IOException If the file cannot be written.
+     */
+    public void writeRdfXml(File file) throws IOException
+    {
+        Writer out = new BufferedWriter(new OutputStreamWriter(
+            new FileOutputStream(file), "UTF-8"));
+        try {
+            this.writeRdfXml(out);
+        } finally {
+            out.close();
+        }
+    }
+}
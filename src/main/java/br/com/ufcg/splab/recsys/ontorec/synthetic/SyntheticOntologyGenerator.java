@@ -0,0 +1,339 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.ontorec.synthetic;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Generates synthetic ontologies for benchmarks and load tests. The classes
+ * are created level by level from a single root: each expanded class gets
+ * between 1 and <code>2 * branching - 1</code> children, or exactly one
+ * child (an only begotten father) with the configured rate, until the class
+ * count is reached. Then each class gets extra parents from the shallower
+ * levels with the multiple inheritance rate, the properties are declared at
+ * random domains and the features are mapped to a sample of the classes and
+ * properties. The result only depends on the settings and the seed:
+ *
+ * <pre>
+ * SyntheticOntology ontology = new SyntheticOntologyGenerator()
+ *     .setClasses(10000).setMaxDepth(12).setBranching(4)
+ *     .setMultipleInheritanceRate(0.1).setSeed(42).generate();
+ * </pre>
+ *
+ * @author Saulo Toledo
+ */
+public class SyntheticOntologyGenerator
+{
+    private int classes = 1000;
+    private int maxDepth = 10;
+    private int branching = 3;
+    private double multipleInheritanceRate = 0.1d;
+    private double onlyBegottenFatherRate = 0.05d;
+    private int properties = 100;
+    private int maxDomainsPerProperty = 2;
+    private double classMappingDensity = 0.5d;
+    private double propertyMappingDensity = 0.5d;
+    private long seed = 42L;
+
+    /**
+     * Defines the number of classes.
+     *
+     * @param classes The number of classes (at least 1).
+     * @return This generator.
+     */
+    public SyntheticOntologyGenerator setClasses(int classes)
+    {
+        if (classes < 1) {
+            throw new IllegalArgumentException(
+                "The ontology must have at least one class");
+        }
+        this.classes = classes;
+        return this;
+    }
+
+    /**
+     * Defines the max depth of the classes hierarchy. When the levels up to
+     * this depth cannot hold all the classes with the configured branching,
+     * the remaining classes are added as extra children of the classes above
+     * the last level.
+     *
+     * @param maxDepth The max depth (at least 1).
+     * @return This generator.
+     */
+    public SyntheticOntologyGenerator setMaxDepth(int maxDepth)
+    {
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException(
+                "The max depth must be at least 1");
+        }
+        this.maxDepth = maxDepth;
+        return this;
+    }
+
+    /**
+     * Defines the mean number of children of the expanded classes.
+     *
+     * @param branching The mean number of children (at least 1).
+     * @return This generator.
+     */
+    public SyntheticOntologyGenerator setBranching(int branching)
+    {
+        if (branching < 1) {
+            throw new IllegalArgumentException(
+                "The branching must be at least 1");
+        }
+        this.branching = branching;
+        return this;
+    }
+
+    /**
+     * Defines the probability of a class to get one extra parent.
+     *
+     * @param multipleInheritanceRate A probability between 0 and 1.
+     * @return This generator.
+     */
+    public SyntheticOntologyGenerator setMultipleInheritanceRate(
+        double multipleInheritanceRate)
+    {
+        this.multipleInheritanceRate = checkRate(multipleInheritanceRate);
+        return this;
+    }
+
+    /**
+     * Defines the probability of an expanded class to get exactly one child.
+     * Consecutive only begotten fathers form the chains ignored by λ.
+     *
+     * @param onlyBegottenFatherRate A probability between 0 and 1.
+     * @return This generator.
+     */
+    public SyntheticOntologyGenerator setOnlyBegottenFatherRate(
+        double onlyBegottenFatherRate)
+    {
+        this.onlyBegottenFatherRate = checkRate(onlyBegottenFatherRate);
+        return this;
+    }
+
+    /**
+     * Defines the number of properties.
+     *
+     * @param properties The number of properties.
+     * @return This generator.
+     */
+    public SyntheticOntologyGenerator setProperties(int properties)
+    {
+        if (properties < 0) {
+            throw new IllegalArgumentException(
+                "The number of properties cannot be negative");
+        }
+        this.properties = properties;
+        return this;
+    }
+
+    /**
+     * Defines the max number of domains of a property.
+     *
+     * @param maxDomainsPerProperty The max number of domains (at least 1).
+     * @return This generator.
+     */
+    public SyntheticOntologyGenerator setMaxDomainsPerProperty(
+        int maxDomainsPerProperty)
+    {
+        if (maxDomainsPerProperty < 1) {
+            throw new IllegalArgumentException(
+                "A property must have at least one domain");
+        }
+        this.maxDomainsPerProperty = maxDomainsPerProperty;
+        return this;
+    }
+
+    /**
+     * Defines the fraction of the classes directly mapped to a feature.
+     *
+     * @param classMappingDensity A fraction between 0 and 1.
+     * @return This generator.
+     */
+    public SyntheticOntologyGenerator setClassMappingDensity(
+        double classMappingDensity)
+    {
+        this.classMappingDensity = checkRate(classMappingDensity);
+        return this;
+    }
+
+    /**
+     * Defines the fraction of the properties mapped to a feature. A property
+     * is mapped at its first domain, if the domain accepted it.
+     *
+     * @param propertyMappingDensity A fraction between 0 and 1.
+     * @return This generator.
+     */
+    public SyntheticOntologyGenerator setPropertyMappingDensity(
+        double propertyMappingDensity)
+    {
+        this.propertyMappingDensity = checkRate(propertyMappingDensity);
+        return this;
+    }
+
+    /**
+     * Defines the seed of the generation.
+     *
+     * @param seed The seed.
+     * @return This generator.
+     */
+    public SyntheticOntologyGenerator setSeed(long seed)
+    {
+        this.seed = seed;
+        return this;
+    }
+
+    private static double checkRate(double rate)
+    {
+        if (rate < 0 || rate > 1) {
+            throw new IllegalArgumentException(
+                "The rate must be between 0 and 1");
+        }
+        return rate;
+    }
+
+    /**
+     * Generates an ontology.
+     *
+     * @return The generated ontology.
+     */
+    public SyntheticOntology generate()
+    {
+        Random random = new Random(this.seed);
+
+        List<List<Integer>> parents = new ArrayList<List<Integer>>(
+            this.classes);
+        int[] depths = new int[this.classes];
+        // The classes at each depth, to choose the extra parents from:
+        List<List<Integer>> levels = new ArrayList<List<Integer>>();
+
+        this.addClass(parents, depths, levels, -1);
+        this.buildHierarchy(random, parents, depths, levels);
+        this.addExtraParents(random, parents, depths, levels);
+
+        List<int[]> domains = this.buildDomains(random);
+
+        List<Integer> mappedClasses = new ArrayList<Integer>();
+        for (int c = 0; c < this.classes; c++) {
+            if (random.nextDouble() < this.classMappingDensity) {
+                mappedClasses.add(c);
+            }
+        }
+        List<Integer> mappedProperties = new ArrayList<Integer>();
+        for (int p = 0; p < this.properties; p++) {
+            if (random.nextDouble() < this.propertyMappingDensity) {
+                mappedProperties.add(p);
+            }
+        }
+
+        return new SyntheticOntology(parents, depths, domains, mappedClasses,
+            mappedProperties);
+    }
+
+    private int addClass(List<List<Integer>> parents, int[] depths,
+        List<List<Integer>> levels, int parent)
+    {
+        int index = parents.size();
+        List<Integer> classParents = new ArrayList<Integer>(2);
+        int depth = 0;
+        if (parent >= 0) {
+            classParents.add(parent);
+            depth = depths[parent] + 1;
+        }
+
+        parents.add(classParents);
+        depths[index] = depth;
+        while (levels.size() <= depth) {
+            levels.add(new ArrayList<Integer>());
+        }
+        levels.get(depth).add(index);
+        return index;
+    }
+
+    private void buildHierarchy(Random random, List<List<Integer>> parents,
+        int[] depths, List<List<Integer>> levels)
+    {
+        LinkedList<Integer> toExpand = new LinkedList<Integer>();
+        toExpand.add(0);
+
+        while (parents.size() < this.classes) {
+            int parent;
+            if ( !toExpand.isEmpty()) {
+                parent = toExpand.removeFirst();
+                if (depths[parent] >= this.maxDepth) {
+                    continue;
+                }
+            } else {
+                // The levels are full; the remaining classes are spread
+                // over the classes above the last level:
+                int level = random.nextInt(Math.min(this.maxDepth,
+                    levels.size()));
+                List<Integer> candidates = levels.get(level);
+                parent = candidates.get(random.nextInt(candidates.size()));
+            }
+
+            int children;
+            if (random.nextDouble() < this.onlyBegottenFatherRate) {
+                children = 1;
+            } else {
+                children = 1 + random.nextInt(2 * this.branching - 1);
+            }
+
+            for (int i = 0; i < children && parents.size() < this.classes; i++) {
+                toExpand.add(this.addClass(parents, depths, levels, parent));
+            }
+        }
+    }
+
+    /**
+     * Adds the extra parents. They are always chosen from a shallower level,
+     * so the hierarchy stays acyclic.
+     */
+    private void addExtraParents(Random random, List<List<Integer>> parents,
+        int[] depths, List<List<Integer>> levels)
+    {
+        for (int c = 1; c < this.classes; c++) {
+            if (depths[c] < 2
+                || random.nextDouble() >= this.multipleInheritanceRate) {
+                continue;
+            }
+
+            List<Integer> candidates = levels.get(random.nextInt(depths[c]));
+            int extraParent = candidates.get(random.nextInt(candidates
+                .size()));
+            if ( !parents.get(c).contains(extraParent)) {
+                parents.get(c).add(extraParent);
+            }
+        }
+    }
+
+    private List<int[]> buildDomains(Random random)
+    {
+        List<int[]> domains = new ArrayList<int[]>(this.properties);
+        for (int p = 0; p < this.properties; p++) {
+            int count = 1 + random.nextInt(this.maxDomainsPerProperty);
+            Set<Integer> propertyDomains = new LinkedHashSet<Integer>();
+            for (int d = 0; d < count; d++) {
+                propertyDomains.add(random.nextInt(this.classes));
+            }
+
+            int[] result = new int[propertyDomains.size()];
+            int d = 0;
+            for (Integer domain : propertyDomains) {
+                result[d++] = domain;
+            }
+            domains.add(result);
+        }
+        return domains;
+    }
+}
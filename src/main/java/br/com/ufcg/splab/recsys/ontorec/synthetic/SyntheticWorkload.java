@@ -0,0 +1,152 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.ontorec.synthetic;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Generates the user selections and the items catalogs that match a set of
+ * features. The popularity of the features follows a Zipf distribution:
+ * the features are ranked in a random order (from the seed) and the feature
+ * at rank <code>k</code> is drawn with a probability proportional to
+ * <code>1 / (k + 1)^exponent</code>, so a few features are at most of the
+ * selections and items. The generated values only depend on the features,
+ * the exponent, the seed and the order of the calls.
+ *
+ * @author Saulo Toledo
+ */
+public class SyntheticWorkload
+{
+    /**
+     * The key of the item id at the generated items profiles.
+     */
+    public static final String ITEM_ID_KEY = "ITEM:ID";
+
+    /**
+     * The default Zipf exponent.
+     */
+    public static final double DEFAULT_EXPONENT = 1d;
+
+    private final List<String> rankedFeatures;
+    private final ZipfSampler sampler;
+    private final Random random;
+
+    /**
+     * Creates a workload for the features of an ontology, with the default
+     * exponent.
+     *
+     * @param ontology The ontology.
+     * @param seed The seed.
+     */
+    public SyntheticWorkload(SyntheticOntology ontology, long seed)
+    {
+        this(ontology.getFeatures(), DEFAULT_EXPONENT, seed);
+    }
+
+    /**
+     * Creates a workload.
+     *
+     * @param features The features.
+     * @param exponent The Zipf exponent of the features popularity.
+     * @param seed The seed.
+     */
+    public SyntheticWorkload(List<String> features, double exponent,
+        long seed)
+    {
+        if (features.isEmpty()) {
+            throw new IllegalArgumentException(
+                "The workload needs at least one feature");
+        }
+
+        this.random = new Random(seed);
+        this.rankedFeatures = new ArrayList<String>(features);
+        Collections.shuffle(this.rankedFeatures, this.random);
+        this.sampler = new ZipfSampler(this.rankedFeatures.size(), exponent);
+    }
+
+    /**
+     * Returns the features from the most to the less popular.
+     *
+     * @return An unmodifiable list with the ranked features.
+     */
+    public List<String> getRankedFeatures()
+    {
+        return Collections.unmodifiableList(this.rankedFeatures);
+    }
+
+    /**
+     * Draws a distinct set of features. If the size is greater than the
+     * number of features, all the features are returned.
+     *
+     * @param size The number of features.
+     * @return The features, in the order they were drawn.
+     */
+    public Set<String> nextSelection(int size)
+    {
+        int target = Math.min(size, this.rankedFeatures.size());
+        Set<String> result = new LinkedHashSet<String>();
+
+        // The popular features are drawn again and again for large sizes,
+        // so the draws are bounded and the less popular features complete
+        // the set:
+        int draws = 0;
+        while (result.size() < target && draws < 16 * target) {
+            result.add(this.rankedFeatures.get(this.sampler.next(this.random)));
+            draws++;
+        }
+        for (int k = 0; result.size() < target; k++) {
+            result.add(this.rankedFeatures.get(k));
+        }
+        return result;
+    }
+
+    /**
+     * Draws a user profile for {@link br.com.ufcg.splab.recsys.ontorec.recommender.OntoRecApproach}:
+     * the selected features have the value 1.
+     *
+     * @param selectedFeatures The number of selected features.
+     * @return The user profile.
+     */
+    public Map<String, Double> nextUserProfile(int selectedFeatures)
+    {
+        Map<String, Double> result = new HashMap<String, Double>();
+        for (String feature : this.nextSelection(selectedFeatures)) {
+            result.put(feature, 1d);
+        }
+        return result;
+    }
+
+    /**
+     * Draws an items catalog. Each item has an id, under
+     * {@link #ITEM_ID_KEY}, and its features with the value 1.
+     *
+     * @param items The number of items.
+     * @param featuresPerItem The number of features of each item.
+     * @return The items profiles.
+     */
+    public List<Map<String, Double>> nextCatalog(int items,
+        int featuresPerItem)
+    {
+        List<Map<String, Double>> result = new ArrayList<Map<String, Double>>(
+            items);
+        for (int i = 0; i < items; i++) {
+            Map<String, Double> item = new HashMap<String, Double>();
+            item.put(ITEM_ID_KEY, (double) i);
+            for (String feature : this.nextSelection(featuresPerItem)) {
+                item.put(feature, 1d);
+            }
+            result.add(item);
+        }
+        return result;
+    }
+}
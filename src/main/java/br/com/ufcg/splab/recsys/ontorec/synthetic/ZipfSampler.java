@@ -0,0 +1,61 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.ontorec.synthetic;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Samples ranks from a Zipf distribution: the rank <code>k</code> (from 0)
+ * is drawn with a probability proportional to
+ * <code>1 / (k + 1)^exponent</code>.
+ *
+ * @author Saulo Toledo
+ */
+class ZipfSampler
+{
+    private final double[] cumulative;
+
+    /**
+     * Creates a sampler.
+     *
+     * @param size The number of ranks.
+     * @param exponent The distribution exponent. 0 gives a uniform
+     *        distribution.
+     */
+    ZipfSampler(int size, double exponent)
+    {
+        if (size < 1) {
+            throw new IllegalArgumentException(
+                "The distribution must have at least one rank");
+        }
+
+        this.cumulative = new double[size];
+        double sum = 0;
+        for (int k = 0; k < size; k++) {
+            sum += 1d / Math.pow(k + 1, exponent);
+            this.cumulative[k] = sum;
+        }
+        for (int k = 0; k < size; k++) {
+            this.cumulative[k] /= sum;
+        }
+    }
+
+    /**
+     * Draws a rank.
+     *
+     * @param random The random source.
+     * @return A rank between 0 and the size - 1.
+     */
+    int next(Random random)
+    {
+        int index = Arrays.binarySearch(this.cumulative, random.nextDouble());
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return Math.min(index, this.cumulative.length - 1);
+    }
+}
@@ -13,8 +13,15 @@ import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import br.com.ufcg.splab.recsys.metrics.ExecutionProfile;
+import br.com.ufcg.splab.recsys.metrics.ExecutionProfile.Phase;
+import br.com.ufcg.splab.recsys.metrics.Trace;
+import br.com.ufcg.splab.recsys.metrics.Trace.EventType;
+import br.com.ufcg.splab.recsys.metrics.jfr.FlightRecorderEvents;
 import br.com.ufcg.splab.recsys.ontorec.Node;
 import br.com.ufcg.splab.recsys.ontorec.NodeFeatureMappingStructure;
+import br.com.ufcg.splab.recsys.ontorec.WorkBudgetExceededException;
+import br.com.ufcg.splab.recsys.ontorec.WorkBudgetTracker;
 
 public abstract class AbstractNodeWeightingApproach<T>
     implements NodeWeightingApproach<T>
@@ -30,6 +37,146 @@ public abstract class AbstractNodeWeightingApproach<T>
         super();
     }
 
+    /**
+     * Calculates the features' weight. For each selected feature, the
+     * distances from its node to the other mapped nodes are found by
+     * {@link #getAffectedNodesDistances}, then they are mapped to features
+     * distances, normalized to weights and merged with the weights of the
+     * previous selected features. If the current {@link WorkBudgetTracker
+     * work budget} is exceeded and its policy allows it, the features
+     * expanded so far are returned.
+     */
+    @Override
+    public Map<String, Double> getFeaturesWeight(Set<String> selectedFeatures,
+        Set<Node<T>> directMappedNodes, Set<Node<T>> attributeNodes,
+        Map<String, NodeFeatureMappingStructure<T>> featureMapping, Integer tau,
+        Boolean lambda, Boolean upsilon)
+    {
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug(
+                "Starting the calculation of weights by using the {} approach for τ={} and the selected features set '{}'",
+                this.getClass().getSimpleName(), tau, selectedFeatures);
+        }
+
+        Map<String, Double> result = new HashMap<String, Double>();
+
+        // TODO: Possible error: map an attribute for a node, and the own node
+        // (the node will appear 2 times in allMappedNodes:
+        Set<Node<T>> allMappedRelatedNodes = new HashSet<Node<T>>();
+        allMappedRelatedNodes.addAll(directMappedNodes);
+        allMappedRelatedNodes.addAll(attributeNodes);
+
+        ExecutionProfile profile = ExecutionProfile.current();
+        Trace trace = Trace.current();
+        WorkBudgetTracker budget = WorkBudgetTracker.current();
+
+        for (String referenceFeature : selectedFeatures) {
+            Integer pathsSum = 0;
+            Map<String, Double> partialResult = new HashMap<String, Double>();
+            NodeFeatureMappingStructure<T> featureMappingStructure = featureMapping
+                .get(referenceFeature);
+
+            Object event = FlightRecorderEvents.beginFeatureTraversal();
+
+            Map<Node<T>, Integer> affectedNodesDistances = null;
+            try {
+                if (budget != null) {
+                    budget.checkDeadline();
+                }
+                affectedNodesDistances = this.getAffectedNodesDistances(
+                    featureMappingStructure, allMappedRelatedNodes, tau,
+                    lambda);
+            } catch (WorkBudgetExceededException e) {
+                if (budget == null || !budget.degrade(e)) {
+                    throw e;
+                }
+                LOGGER.debug(
+                    "The expansion was stopped at the feature '{}': {}",
+                    referenceFeature, e.getMessage());
+                break;
+            } finally {
+                // An interrupted traversal is closed with no reached nodes:
+                FlightRecorderEvents.endFeatureTraversal(event,
+                    referenceFeature, tau, (affectedNodesDistances == null) ? 0
+                        : affectedNodesDistances.size());
+            }
+
+            if (profile != null) {
+                profile.begin();
+            }
+
+            Map<String, Integer> distancesToFeatures = this
+                .computeDistancesToFeatures(selectedFeatures, referenceFeature,
+                    featureMappingStructure, featureMapping,
+                    affectedNodesDistances, upsilon);
+
+            if (profile != null) {
+                profile.end(Phase.FEATURE_DISTANCES);
+            }
+
+            for (String feature : distancesToFeatures.keySet()) {
+                Integer distance = distancesToFeatures.get(feature);
+                pathsSum += distance;
+
+                partialResult.put(feature, distance.doubleValue());
+            }
+
+            if (profile != null) {
+                profile.begin();
+            }
+
+            partialResult = this.updateFeaturesWeightMap(partialResult,
+                selectedFeatures, pathsSum);
+
+            if (profile != null) {
+                profile.end(Phase.NORMALIZATION);
+            }
+
+            if (trace != null) {
+                trace.record(EventType.FEATURE_WEIGHTS_COMPUTED,
+                    referenceFeature, partialResult, pathsSum);
+            }
+
+            if (profile != null) {
+                profile.begin();
+            }
+
+            result = this.mergeResultMaps(result, partialResult);
+
+            if (profile != null) {
+                profile.end(Phase.MERGE);
+            }
+        }
+
+        if (budget != null && budget.isDegraded()) {
+            // The selected features that were not expanded keep their own
+            // weight:
+            for (String feature : selectedFeatures) {
+                result.put(feature, 1d);
+            }
+        }
+
+        LOGGER.debug("The final calculated result is {}", result);
+
+        return result;
+    }
+
+    /**
+     * Returns the distances from the node of a selected feature to the mapped
+     * nodes reachable for the given τ.
+     *
+     * @param featureMappingStructure The mapping of the selected feature.
+     * @param allMappedRelatedNodes The nodes mapped to features, directly or
+     *        by their attributes.
+     * @param tau The τ value.
+     * @param lambda If only begotten fathers are ignored.
+     * @return A map from each reachable mapped node to its distance. The
+     *         unreachable nodes are not in the map.
+     */
+    protected abstract Map<Node<T>, Integer> getAffectedNodesDistances(
+        NodeFeatureMappingStructure<T> featureMappingStructure,
+        Set<Node<T>> allMappedRelatedNodes, Integer tau, Boolean lambda);
+
     protected Map<String, Double> updateFeaturesWeightMap(
         Map<String, Double> map, Set<String> selectedFeatures, Integer pathsSum)
     {
@@ -6,14 +6,20 @@
 package br.com.ufcg.splab.recsys.ontorec.weighting;
 
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import br.com.ufcg.splab.recsys.metrics.ExecutionProfile;
+import br.com.ufcg.splab.recsys.metrics.ExecutionProfile.Phase;
+import br.com.ufcg.splab.recsys.metrics.Trace;
+import br.com.ufcg.splab.recsys.metrics.Trace.EventType;
 import br.com.ufcg.splab.recsys.ontorec.Node;
 import br.com.ufcg.splab.recsys.ontorec.NodeFeatureMappingStructure;
+import br.com.ufcg.splab.recsys.ontorec.OntoRecMetrics;
+import br.com.ufcg.splab.recsys.ontorec.TraversalMemo;
+import br.com.ufcg.splab.recsys.ontorec.WorkBudgetTracker;
 
 /**
  * Calculates the distances from the current node to each reference node
@@ -31,135 +37,66 @@ public class TaunthAncestorNodeWeightingApproach<T>
     extends AbstractNodeWeightingApproach<T>
 {
     @Override
-    public Map<String, Double> getFeaturesWeight(Set<String> selectedFeatures,
-        Set<Node<T>> directMappedNodes, Set<Node<T>> attributeNodes,
-        Map<String, NodeFeatureMappingStructure<T>> featureMapping, Integer tau,
-        Boolean lambda, Boolean upsilon)
+    protected Map<Node<T>, Integer> getAffectedNodesDistances(
+        NodeFeatureMappingStructure<T> featureMappingStructure,
+        Set<Node<T>> allMappedRelatedNodes, Integer tau, Boolean lambda)
     {
-        LOGGER.debug(String.format(
-            "Starting the calculation of weights by using the %s approach for τ=%d and the selected features set '%s'",
-            this.getClass().getSimpleName(), tau, selectedFeatures));
+        Node<T> currentNode = featureMappingStructure.getNode();
 
-        Map<String, Double> result = new HashMap<String, Double>();
+        // TODO: (tau - 1) if is mapped to attr (now at BFS approach)
 
-        Set<Node<T>> allMappedRelatedNodes = new HashSet<Node<T>>();
-        allMappedRelatedNodes.addAll(directMappedNodes);
-        allMappedRelatedNodes.addAll(attributeNodes);
-
-        NodeFeatureMappingStructure<T> featureMappingStructure;
-
-        for (String referenceFeature : selectedFeatures) {
-            Integer pathsSum = 0;
-            Map<String, Double> partialResult = new HashMap<String, Double>();
-
-            featureMappingStructure = featureMapping.get(referenceFeature);
+        Set<Node<T>> maxNodesFromTau;
+        if (featureMappingStructure.isMappingToAttribute()) {
+            maxNodesFromTau = currentNode.extractMaxNodesFromTau(tau - 1,
+                lambda);
+        } else {
+            maxNodesFromTau = currentNode.extractMaxNodesFromTau(tau,
+                lambda);
+        }
 
-            LOGGER.debug(String.format(
-                "The currently observed feature is '%s'. It is currently mapped as '%s'",
-                referenceFeature, featureMappingStructure));
+        Map<Node<T>, Integer> affectedNodesDistances = new HashMap<Node<T>, Integer>();
+        Trace trace = Trace.current();
 
-            Node<T> currentNode = featureMappingStructure.getNode();
+        for (Node<T> currentMaxNode : maxNodesFromTau) {
 
-            // TODO: (tau - 1) if is mapped to attr (now at BFS approach)
+            Map<Node<T>, Integer> distancesToMappedNodes = this
+                .getBFSDistancesAtDescendantsTo(currentMaxNode,
+                    allMappedRelatedNodes, lambda);
 
-            Set<Node<T>> maxNodesFromTau;
-            if (featureMappingStructure.isMappingToAttribute()) {
-                maxNodesFromTau = currentNode.extractMaxNodesFromTau(tau - 1,
-                    lambda);
-            } else {
-                maxNodesFromTau = currentNode.extractMaxNodesFromTau(tau,
-                    lambda);
-            }
+            for (Node<T> node : distancesToMappedNodes.keySet()) {
 
-            Map<Node<T>, Integer> affectedNodesDistances = new HashMap<Node<T>, Integer>();
-
-            for (Node<T> currentMaxNode : maxNodesFromTau) {
-
-                Map<Node<T>, Integer> distancesToMappedNodes = this
-                    .getBFSDistancesAtDescendantsTo(currentMaxNode,
-                        allMappedRelatedNodes, lambda);
-
-                LOGGER.debug(String.format(
-                    "-> Going from '%s' to '%s' we have the following distances: %s",
-                    featureMappingStructure.getNode(), currentMaxNode,
-                    distancesToMappedNodes));
+                Integer distance;
+                if (node.equals(currentNode)) {
+                    distance = 0;
+                } else {
+                    distance = tau + distancesToMappedNodes.get(node);
+                }
 
-                for (Node<T> node : distancesToMappedNodes.keySet()) {
+                if (trace != null) {
+                    trace.record(EventType.DISTANCE_FOUND, currentNode, node,
+                        distance);
+                }
 
-                    Integer distance;
-                    if (node.equals(currentNode)) {
-                        distance = 0;
-                        LOGGER.debug(
-                            "-> The destiny node is the same of the origin node and the distance is 0");
-                    } else {
-                        distance = tau + distancesToMappedNodes.get(node);
-                        LOGGER.debug(String.format(
-                            "-> The final distance is τ (%s) + the distance (%s), that is %s",
-                            tau, distancesToMappedNodes.get(node), distance));
+                if ( !affectedNodesDistances.containsKey(node)) {
+                    if (distance > 0) {
+                        affectedNodesDistances.put(node, distance);
                     }
-
-                    if ( !affectedNodesDistances.containsKey(node)) {
-                        if (distance > 0) {
-                            affectedNodesDistances.put(node, distance);
-                            LOGGER.debug(String.format(
-                                "-> We are adding the distance for the node '%s' (%s) in the final result",
-                                node, distance));
-                        }
-                    } else {
-                        Integer currentValue = affectedNodesDistances.get(node);
-                        if (distance > 0 && distance < currentValue) {
-                            affectedNodesDistances.remove(node);
-                            affectedNodesDistances.put(node, distance);
-
-                            LOGGER.debug(String.format(
-                                "-> We are updating the distance for the node '%s' (%s) in the final result (the old value was %s)",
-                                node, distance, currentValue));
-                        }
+                } else {
+                    Integer currentValue = affectedNodesDistances.get(node);
+                    if (distance > 0 && distance < currentValue) {
+                        affectedNodesDistances.remove(node);
+                        affectedNodesDistances.put(node, distance);
                     }
                 }
             }
-
-            LOGGER.debug(
-                String.format("The final distances to the nodes are '%s'",
-                    affectedNodesDistances));
-
-            Map<String, Integer> distancesToFeatures = this
-                .computeDistancesToFeatures(selectedFeatures, referenceFeature,
-                    featureMappingStructure, featureMapping,
-                    affectedNodesDistances, upsilon);
-
-            LOGGER.debug(String.format(
-                "The calculated distances from the feature '%s' to the other features are '%s'",
-                referenceFeature, distancesToFeatures));
-
-            for (String feature : distancesToFeatures.keySet()) {
-                Integer distance = distancesToFeatures.get(feature);
-                pathsSum += distance;
-
-                partialResult.put(feature, distance.doubleValue());
-            }
-
-            LOGGER.debug(String.format("The total of covered distances is %d",
-                pathsSum));
-
-            partialResult = this.updateFeaturesWeightMap(partialResult,
-                selectedFeatures, pathsSum);
-
-            LOGGER.debug(String.format(
-                "The result for the current feature calculations is %s",
-                partialResult));
-
-            result = this.mergeResultMaps(result, partialResult);
-
-            LOGGER.debug(String.format(
-                "Updating the final result for the calculations, we have %s",
-                partialResult));
         }
 
-        LOGGER
-            .debug(String.format("The final calculated result is %s", result));
+        if (trace != null) {
+            trace.record(EventType.DISTANCES_COMPUTED, currentNode,
+                affectedNodesDistances, 0);
+        }
 
-        return result;
+        return affectedNodesDistances;
     }
 
     /**
@@ -178,21 +115,28 @@ public class TaunthAncestorNodeWeightingApproach<T>
         Node<T> currentNode, Set<Node<T>> referenceNodes,
         boolean lambda)
     {
-        Map<Node<T>, LinkedList<Node<T>>> paths = this
-            .getBFSPathsAtDescendantsTo(currentNode, referenceNodes,
-                lambda);
+        ExecutionProfile profile = ExecutionProfile.current();
+        if (profile != null) {
+            profile.begin();
+        }
 
-        Map<Node<T>, Integer> result = new HashMap<Node<T>, Integer>();
+        try {
+            Map<Node<T>, LinkedList<Node<T>>> paths = this
+                .getBFSPathsAtDescendantsTo(currentNode, referenceNodes,
+                    lambda);
 
-        for (Node<T> referenceNode : paths.keySet()) {
-            result.put(referenceNode, paths.get(referenceNode).size() - 1);
-        }
+            Map<Node<T>, Integer> result = new HashMap<Node<T>, Integer>();
 
-        LOGGER.debug(String.format(
-            "The BFS distances from the node '%s' to its descendants are %s",
-            currentNode.getData(), result));
+            for (Node<T> referenceNode : paths.keySet()) {
+                result.put(referenceNode, paths.get(referenceNode).size() - 1);
+            }
 
-        return result;
+            return result;
+        } finally {
+            if (profile != null) {
+                profile.end(Phase.BFS);
+            }
+        }
     }
 
     /**
@@ -213,6 +157,43 @@ public class TaunthAncestorNodeWeightingApproach<T>
     private Map<Node<T>, LinkedList<Node<T>>> getBFSPathsAtDescendantsTo(
         Node<T> currentNode, Set<Node<T>> referenceNodes,
         boolean lambda)
+    {
+        // The search tree does not depend on τ or λ, so a memo can keep it:
+        TraversalMemo memo = TraversalMemo.current();
+        Map<Node<T>, Node<T>> cameFrom = (memo != null) ? memo
+            .getDescendantTree(currentNode) : null;
+        if (cameFrom == null) {
+            cameFrom = this.bfsDiscoverDescendantTree(currentNode);
+            if (memo != null) {
+                memo.putDescendantTree(currentNode, cameFrom);
+            }
+        }
+
+        // Paths construction:
+        Map<Node<T>, LinkedList<Node<T>>> result = new HashMap<Node<T>, LinkedList<Node<T>>>();
+
+        for (Node<T> node : referenceNodes) {
+            // Unreachable nodes are not at cameFrom map:
+            if (cameFrom.keySet().contains(node)) {
+                LinkedList<Node<T>> path = this.bfsReconstructPath(cameFrom,
+                    node, lambda);
+                result.put(node, path);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the Breadth First Search (BFS) tree of the descendants of a
+     * node.
+     *
+     * @param currentNode The root of the search.
+     * @return A map from the node and each of its descendants to the node it
+     *         was reached from (null for the root).
+     */
+    private Map<Node<T>, Node<T>> bfsDiscoverDescendantTree(
+        Node<T> currentNode)
     {
         // Breadth First Search algorithm:
         List<Node<T>> nodesQueue = new LinkedList<Node<T>>();
@@ -221,10 +202,18 @@ public class TaunthAncestorNodeWeightingApproach<T>
         nodesQueue.add(currentNode);
         cameFrom.put(currentNode, null);
 
+        long visitedEdges = 0;
+
+        WorkBudgetTracker budget = WorkBudgetTracker.current();
+
         Node<T> current;
         while (nodesQueue.size() != 0) {
             current = nodesQueue.remove(0);
 
+            visitedEdges += current.getChildren().size();
+            if (budget != null) {
+                budget.check(cameFrom.size(), visitedEdges, 0);
+            }
             for (Node<T> child : current.getChildren()) {
                 if ( !cameFrom.keySet().contains(child)) {
                     nodesQueue.add(child);
@@ -233,23 +222,9 @@ public class TaunthAncestorNodeWeightingApproach<T>
             }
         }
 
-        // Paths construction:
-        Map<Node<T>, LinkedList<Node<T>>> result = new HashMap<Node<T>, LinkedList<Node<T>>>();
-
-        for (Node<T> node : referenceNodes) {
-            // Unreachable nodes are not at cameFrom map:
-            if (cameFrom.keySet().contains(node)) {
-                LinkedList<Node<T>> path = this.bfsReconstructPath(cameFrom,
-                    node, lambda);
-                result.put(node, path);
-            }
-        }
-
-        LOGGER
-            .debug(String.format("The BFS descendants for the node '%s' are %s",
-                currentNode.getData(), result));
+        OntoRecMetrics.recordWork(cameFrom.size(), visitedEdges, 0);
 
-        return result;
+        return cameFrom;
     }
 
     /**
@@ -1,14 +1,24 @@
 package br.com.ufcg.splab.recsys.recommender;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import br.com.ufcg.splab.recsys.metrics.ExecutionProfile;
+import br.com.ufcg.splab.recsys.metrics.ExecutionProfile.Phase;
+import br.com.ufcg.splab.recsys.metrics.Trace;
+import br.com.ufcg.splab.recsys.metrics.Trace.EventType;
+
 public abstract class Approach
 {
     /**
@@ -17,52 +27,317 @@ public abstract class Approach
     protected static final Logger LOGGER = LoggerFactory
         .getLogger(Approach.class);
 
+    /**
+     * The default number of items scored by each worker at once. It keeps the
+     * scored partition small enough to stay at the processor cache.
+     */
+    public static final int DEFAULT_PARTITION_SIZE = 4096;
+
+    /**
+     * The default number of users scored together against each items
+     * partition by the batch recommendation.
+     */
+    public static final int DEFAULT_USER_BLOCK_SIZE = 64;
+
+    /**
+     * The items profiles. They are changed only by this class methods, so the
+     * prepared items follow them.
+     */
     protected List<Map<String, Double>> itemsProfiles;
     protected Map<String, Double> userProfile;
     protected SimilarityMethod similarityMethod;
 
+    /**
+     * The items ready to be scored (their ids and features only profiles),
+     * in the same order of the items profiles.
+     */
+    private List<PreparedItem> preparedItems;
+
+    /**
+     * The number of changes done to the items, incremented each time an item
+     * is added or replaced.
+     */
+    private int modificationCount;
+
+    /**
+     * The value of the modification count when the prepared items were last
+     * brought up to date with the items profiles.
+     */
+    private int preparedModificationCount;
+
+    /**
+     * The executor used to score the items partitions, or null to score all
+     * of them at the calling thread.
+     */
+    private ExecutorService executor;
+
+    /**
+     * The number of items at each scored partition.
+     */
+    private int partitionSize = DEFAULT_PARTITION_SIZE;
+
+    /**
+     * The number of users at each block scored by the batch recommendation.
+     */
+    private int userBlockSize = DEFAULT_USER_BLOCK_SIZE;
+
     public Approach(SimilarityMethod similarityMethod)
     {
-        this.itemsProfiles = new LinkedList<Map<String, Double>>();
+        this.itemsProfiles = new ArrayList<Map<String, Double>>();
+        this.preparedItems = new ArrayList<PreparedItem>();
         this.similarityMethod = similarityMethod;
     }
 
     // TODO: This should not be here. Rethink the system architecture:
     public void clearItems()
     {
-        LOGGER.debug(
-            String.format("%s approach: Removing all items for this approach",
-                this.getClass().getSimpleName()));
+        LOGGER.debug("{} approach: Removing all items for this approach",
+            this.getClass().getSimpleName());
 
-        this.itemsProfiles = new LinkedList<Map<String, Double>>();
+        this.itemsProfiles = new ArrayList<Map<String, Double>>();
+        this.preparedItems = new ArrayList<PreparedItem>();
+        this.itemsChanged(true);
     }
 
     public void addItem(Map<String, Double> itemProfile)
     {
-        LOGGER.debug(String.format(
-            "%s approach: Adding the following item for this approach: %s",
-            this.getClass().getSimpleName(), itemProfile));
+        LOGGER.debug(
+            "{} approach: Adding the following item for this approach: {}",
+            this.getClass().getSimpleName(), itemProfile);
 
+        boolean prepared = this.arePreparedItemsUpToDate();
         this.itemsProfiles.add(itemProfile);
+        if (prepared) {
+            this.preparedItems.add(this.prepareItem(itemProfile));
+        }
+        this.itemsChanged(prepared);
     }
 
+    /**
+     * Replaces an item. It must also be used to inform that an item profile
+     * was edited in place, so the item is prepared again.
+     *
+     * @param position The item position.
+     * @param itemProfile The new item profile.
+     */
+    public void setItem(int position, Map<String, Double> itemProfile)
+    {
+        LOGGER.debug(
+            "{} approach: Replacing the item at the position {} by: {}",
+            this.getClass().getSimpleName(), position, itemProfile);
+
+        boolean prepared = this.arePreparedItemsUpToDate();
+        this.itemsProfiles.set(position, itemProfile);
+        if (prepared) {
+            this.preparedItems.set(position, this.prepareItem(itemProfile));
+        }
+        this.itemsChanged(prepared);
+    }
+
+    /**
+     * Replaces all the items.
+     *
+     * @param itemsProfiles The new items profiles.
+     */
+    public void setItems(List<Map<String, Double>> itemsProfiles)
+    {
+        LOGGER.debug("{} approach: Replacing all items by {} items",
+            this.getClass().getSimpleName(), itemsProfiles.size());
+
+        this.itemsProfiles = new ArrayList<Map<String, Double>>(itemsProfiles);
+        this.preparedItems = new ArrayList<PreparedItem>(itemsProfiles.size());
+        for (Map<String, Double> itemProfile : this.itemsProfiles) {
+            this.preparedItems.add(this.prepareItem(itemProfile));
+        }
+        this.itemsChanged(true);
+    }
+
+    /**
+     * Returns the items profiles.
+     *
+     * @return An unmodifiable view of the items profiles. The items are
+     *         changed by {@link #addItem(Map)}, {@link #setItem(int, Map)} and
+     *         {@link #setItems(List)}.
+     */
     public List<Map<String, Double>> getItemsProfiles()
     {
-        return this.itemsProfiles;
+        return Collections.unmodifiableList(this.itemsProfiles);
+    }
+
+    /**
+     * Records a change to the items.
+     *
+     * @param prepared If the prepared items were brought up to date with the
+     *        change.
+     */
+    private void itemsChanged(boolean prepared)
+    {
+        this.modificationCount++;
+        if (prepared) {
+            this.preparedModificationCount = this.modificationCount;
+        }
+    }
+
+    private boolean arePreparedItemsUpToDate()
+    {
+        return this.preparedModificationCount == this.modificationCount;
+    }
+
+    /**
+     * Returns the items ready to be scored. They are rebuilt if some change
+     * to the items was not applied to them.
+     *
+     * @return The items ready to be scored.
+     */
+    private List<PreparedItem> getPreparedItems()
+    {
+        if ( !this.arePreparedItemsUpToDate()) {
+            List<PreparedItem> items = new ArrayList<PreparedItem>(
+                this.itemsProfiles.size());
+            for (Map<String, Double> itemProfile : this.itemsProfiles) {
+                items.add(this.prepareItem(itemProfile));
+            }
+            this.preparedItems = items;
+            this.preparedModificationCount = this.modificationCount;
+        }
+        return this.preparedItems;
+    }
+
+    /**
+     * Extracts the id and the features only profile of an item, so this is
+     * not repeated each time the item is scored.
+     *
+     * @param itemProfile The item profile.
+     * @return The item ready to be scored.
+     */
+    private PreparedItem prepareItem(Map<String, Double> itemProfile)
+    {
+        String diaramInfoKeyName = this.getDiaramInfoKeyName(itemProfile);
+
+        return new PreparedItem(itemProfile.get(diaramInfoKeyName).intValue(),
+            itemProfile,
+            this.getProfileFeaturesOnly(diaramInfoKeyName, itemProfile));
+    }
+
+    /**
+     * Returns the executor used to score the items partitions.
+     *
+     * @return The executor, or null if the items are scored at the calling
+     *         thread.
+     */
+    public ExecutorService getExecutor()
+    {
+        return this.executor;
+    }
+
+    /**
+     * Defines the executor used to score the items partitions. Each partition
+     * is scored by a worker that keeps its own bounded top-N heap, and the
+     * heaps are merged at the end. The similarity method must be thread safe
+     * when an executor is informed.
+     *
+     * @param executor The executor (a ForkJoinPool, for example), or null to
+     *        score all the items at the calling thread.
+     */
+    public void setExecutor(ExecutorService executor)
+    {
+        this.executor = executor;
+    }
+
+    /**
+     * Returns the number of items at each scored partition.
+     *
+     * @return The number of items at each scored partition.
+     */
+    public int getPartitionSize()
+    {
+        return this.partitionSize;
+    }
+
+    /**
+     * Defines the number of items at each scored partition.
+     *
+     * @param partitionSize The number of items at each scored partition.
+     */
+    public void setPartitionSize(int partitionSize)
+    {
+        if (partitionSize <= 0) {
+            throw new IllegalArgumentException(
+                "The partition size must be positive");
+        }
+        this.partitionSize = partitionSize;
+    }
+
+    /**
+     * Returns the number of users at each block scored by the batch
+     * recommendation.
+     *
+     * @return The number of users at each block.
+     */
+    public int getUserBlockSize()
+    {
+        return this.userBlockSize;
+    }
+
+    /**
+     * Defines the number of users at each block scored by the batch
+     * recommendation. Each items partition is scored against all the users of
+     * a block while it is still at the processor cache.
+     *
+     * @param userBlockSize The number of users at each block.
+     */
+    public void setUserBlockSize(int userBlockSize)
+    {
+        if (userBlockSize <= 0) {
+            throw new IllegalArgumentException(
+                "The user block size must be positive");
+        }
+        this.userBlockSize = userBlockSize;
     }
 
     public abstract Map<String, Double> getUserProfile() throws Exception;
 
     public void setUserProfile(Map<String, Double> userProfile) throws Exception
     {
-        LOGGER
-            .debug(String.format("%s approach: Setting the user profile to %s",
-                this.getClass().getSimpleName(), userProfile));
+        LOGGER.debug("{} approach: Setting the user profile to {}",
+            this.getClass().getSimpleName(), userProfile);
 
         this.userProfile = userProfile;
     }
 
+    /**
+     * Returns the profile scored for a user profile, without changing the
+     * approach's current user profile. By default, it is the informed
+     * profile itself.
+     *
+     * @param userProfile The user profile, as it is informed to
+     *        {@link #setUserProfile(Map)}.
+     * @return The profile to score, or null if the user profile is invalid.
+     * @throws Exception If the user profile can not be processed.
+     */
+    protected Map<String, Double> resolveUserProfile(
+        Map<String, Double> userProfile) throws Exception
+    {
+        return userProfile;
+    }
+
     public List<SimilarityMapper> getOrderedItems() throws Exception
+    {
+        return this.getOrderedItems(null);
+    }
+
+    /**
+     * Returns the most similar items to the user profile, from the most to
+     * the less similar one.
+     *
+     * @param numItems The max number of items to return, or null to return
+     *        all of them.
+     * @return The most similar items to the user profile.
+     * @throws Exception If the user profile is invalid or the similarity
+     *         method fails.
+     */
+    public List<SimilarityMapper> getOrderedItems(Integer numItems)
+        throws Exception
     {
         // TODO: Using this.getUserProfile() here breaks OntoRecApproach. Fix
         // it!
@@ -70,32 +345,278 @@ public abstract class Approach
             throw new Exception("Invalid user profile");
         }
 
-        List<SimilarityMapper> values = new LinkedList<SimilarityMapper>();
-        for (Map<String, Double> itemProfile : this.getItemsProfiles()) {
+        final Map<String, Double> currentUserProfile = this.userProfile;
+        final List<PreparedItem> items = this.getPreparedItems();
+        final Integer limit = numItems;
 
-            String diaramInfoKeyName = this.getDiaramInfoKeyName(itemProfile);
+        ExecutionProfile profile = ExecutionProfile.current();
+        if (profile != null) {
+            profile.begin();
+        }
 
-            Integer profileId = itemProfile.get(diaramInfoKeyName).intValue();
-            Map<String, Double> itemProfileFeaturesOnly = this
-                .getProfileFeaturesOnly(diaramInfoKeyName, itemProfile);
+        TopNCollector collector;
+        if (this.executor == null || items.size() <= this.partitionSize) {
+            collector = this.scorePartition(currentUserProfile, items, 0,
+                items.size(), limit);
+        } else {
+            List<Future<TopNCollector>> partitions = new LinkedList<Future<TopNCollector>>();
+            for (int start = 0; start < items.size(); start += this.partitionSize) {
+                final int from = start;
+                final int to = Math.min(start + this.partitionSize,
+                    items.size());
 
-            Double similarity = this.similarityMethod
-                .calculate(this.userProfile, itemProfileFeaturesOnly);
+                partitions.add(this.executor.submit(
+                    new Callable<TopNCollector>()
+                    {
+                        @Override
+                        public TopNCollector call() throws Exception
+                        {
+                            return Approach.this.scorePartition(
+                                currentUserProfile, items, from, to, limit);
+                        }
+                    }));
+            }
 
-            values
-                .add(new SimilarityMapper(profileId, itemProfile, similarity));
+            collector = new TopNCollector(limit);
+            boolean merged = false;
+            try {
+                for (Future<TopNCollector> partition : partitions) {
+                    collector.merge(this.awaitPartition(partition));
+                }
+                merged = true;
+            } finally {
+                if ( !merged) {
+                    cancelAll(partitions);
+                }
+            }
+        }
 
+        if (profile != null) {
+            profile.end(Phase.ITEM_SCORING);
+            profile.begin();
         }
 
-        Collections.sort(values);
-        Collections.reverse(values);
+        List<SimilarityMapper> values = collector.toOrderedList();
 
-        LOGGER.debug(String.format("%s approach: The ordered result is '%s'",
-            this.getClass().getSimpleName(), values));
+        if (profile != null) {
+            profile.end(Phase.SORT);
+        }
+
+        Trace trace = Trace.current();
+        if (trace != null) {
+            trace.record(EventType.ITEMS_SCORED,
+                this.getClass().getSimpleName(), values, items.size());
+        }
 
         return values;
     }
 
+    /**
+     * Scores a range of items and keeps the best ones.
+     *
+     * @param currentUserProfile The user profile.
+     * @param items The items.
+     * @param from The first item position (inclusive).
+     * @param to The last item position (exclusive).
+     * @param limit The max number of items to keep, or null to keep all of
+     *        them.
+     * @return A collector with the best items at the range.
+     * @throws Exception If the similarity method fails.
+     */
+    private TopNCollector scorePartition(
+        Map<String, Double> currentUserProfile, List<PreparedItem> items,
+        int from, int to, Integer limit) throws Exception
+    {
+        TopNCollector collector = new TopNCollector(limit);
+
+        for (int position = from; position < to; position++) {
+            PreparedItem item = items.get(position);
+
+            Double similarity = this.similarityMethod
+                .calculate(currentUserProfile, item.featuresOnly);
+
+            if (collector.accepts(position, similarity)) {
+                collector.offer(position, new SimilarityMapper(
+                    item.profileId, item.profile, similarity));
+            }
+        }
+
+        return collector;
+    }
+
+    /**
+     * Returns the most similar items for each one of the informed user
+     * profiles. The approach's current user profile is neither read nor
+     * changed. The users are split in blocks and each items partition is
+     * scored against all the users of a block before moving to the next one,
+     * so the catalog is read once per block instead of once per user. When an
+     * executor is defined, the blocks are scored in parallel.
+     *
+     * @param userProfiles The user profiles, as they are informed to
+     *        {@link #setUserProfile(Map)}.
+     * @param numItems The max number of items to return for each user, or
+     *        null to return all of them.
+     * @return A list with the ordered items for each user, in the same order
+     *         of the user profiles.
+     * @throws Exception If some user profile is invalid or the similarity
+     *         method fails.
+     */
+    public List<List<SimilarityMapper>> getOrderedItems(
+        List<Map<String, Double>> userProfiles, Integer numItems)
+        throws Exception
+    {
+        // The user profiles are processed by the approach (OntoRec expands
+        // the selected features, for example) before being scored:
+        final List<Map<String, Double>> resolvedProfiles = new ArrayList<Map<String, Double>>(
+            userProfiles.size());
+        for (Map<String, Double> profile : userProfiles) {
+            Map<String, Double> resolved = this.resolveUserProfile(profile);
+            if (resolved == null) {
+                throw new Exception("Invalid user profile");
+            }
+            resolvedProfiles.add(resolved);
+        }
+
+        final List<PreparedItem> items = this.getPreparedItems();
+        final Integer limit = numItems;
+
+        List<TopNCollector[]> blocks = new ArrayList<TopNCollector[]>();
+        if (this.executor == null) {
+            for (int start = 0; start < resolvedProfiles.size(); start += this.userBlockSize) {
+                blocks.add(this.scoreUserBlock(resolvedProfiles.subList(start,
+                    Math.min(start + this.userBlockSize,
+                        resolvedProfiles.size())),
+                    items, limit));
+            }
+        } else {
+            List<Future<TopNCollector[]>> futures = new LinkedList<Future<TopNCollector[]>>();
+            for (int start = 0; start < resolvedProfiles.size(); start += this.userBlockSize) {
+                final List<Map<String, Double>> block = resolvedProfiles
+                    .subList(start, Math.min(start + this.userBlockSize,
+                        resolvedProfiles.size()));
+
+                futures.add(this.executor.submit(
+                    new Callable<TopNCollector[]>()
+                    {
+                        @Override
+                        public TopNCollector[] call() throws Exception
+                        {
+                            return Approach.this.scoreUserBlock(block, items,
+                                limit);
+                        }
+                    }));
+            }
+            boolean merged = false;
+            try {
+                for (Future<TopNCollector[]> future : futures) {
+                    blocks.add(this.awaitPartition(future));
+                }
+                merged = true;
+            } finally {
+                if ( !merged) {
+                    cancelAll(futures);
+                }
+            }
+        }
+
+        List<List<SimilarityMapper>> result = new ArrayList<List<SimilarityMapper>>(
+            resolvedProfiles.size());
+        for (TopNCollector[] block : blocks) {
+            for (TopNCollector collector : block) {
+                result.add(collector.toOrderedList());
+            }
+        }
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("{} approach: {} users were scored against {} items",
+                this.getClass().getSimpleName(), resolvedProfiles.size(),
+                items.size());
+        }
+
+        return result;
+    }
+
+    /**
+     * Scores a block of users against all the items, one items partition at
+     * a time.
+     *
+     * @param block The user profiles at the block.
+     * @param items The items.
+     * @param limit The max number of items to keep for each user, or null to
+     *        keep all of them.
+     * @return A collector for each user at the block.
+     * @throws Exception If the similarity method fails or the thread is
+     *         interrupted.
+     */
+    private TopNCollector[] scoreUserBlock(List<Map<String, Double>> block,
+        List<PreparedItem> items, Integer limit) throws Exception
+    {
+        TopNCollector[] collectors = new TopNCollector[block.size()];
+        for (int user = 0; user < collectors.length; user++) {
+            collectors[user] = new TopNCollector(limit);
+        }
+
+        for (int start = 0; start < items.size(); start += this.partitionSize) {
+            // A cancelled block stops at the next items partition:
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException(
+                    "The users block scoring was interrupted");
+            }
+            int end = Math.min(start + this.partitionSize, items.size());
+
+            for (int user = 0; user < collectors.length; user++) {
+                Map<String, Double> profile = block.get(user);
+
+                for (int position = start; position < end; position++) {
+                    PreparedItem item = items.get(position);
+
+                    Double similarity = this.similarityMethod
+                        .calculate(profile, item.featuresOnly);
+
+                    if (collectors[user].accepts(position, similarity)) {
+                        collectors[user].offer(position, new SimilarityMapper(
+                            item.profileId, item.profile, similarity));
+                    }
+                }
+            }
+        }
+
+        return collectors;
+    }
+
+    /**
+     * Waits for a partition to be scored.
+     *
+     * @param partition The partition future.
+     * @return The partition result.
+     * @throws Exception The exception thrown while scoring the partition.
+     */
+    private <R> R awaitPartition(Future<R> partition) throws Exception
+    {
+        try {
+            return partition.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Cancels the partitions that are still waiting or being scored, so a
+     * failed or interrupted recommendation does not keep the executor busy
+     * with a result that is thrown away.
+     *
+     * @param partitions The partitions futures.
+     */
+    private static void cancelAll(List<? extends Future<?>> partitions)
+    {
+        for (Future<?> partition : partitions) {
+            partition.cancel(true);
+        }
+    }
+
     // TODO: This should not be needed. Refactor!
     protected String getDiaramInfoKeyName(Map<String, Double> itemProfile)
     {
@@ -117,4 +638,22 @@ public abstract class Approach
 
         return itemProfileFeaturesOnly;
     }
+
+    /**
+     * An item ready to be scored.
+     */
+    private static class PreparedItem
+    {
+        private final Integer profileId;
+        private final Map<String, Double> profile;
+        private final Map<String, Double> featuresOnly;
+
+        PreparedItem(Integer profileId, Map<String, Double> profile,
+            Map<String, Double> featuresOnly)
+        {
+            this.profileId = profileId;
+            this.profile = profile;
+            this.featuresOnly = featuresOnly;
+        }
+    }
 }
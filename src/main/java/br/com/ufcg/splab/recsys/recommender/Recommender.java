@@ -1,11 +1,26 @@
 package br.com.ufcg.splab.recsys.recommender;
 
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
+import br.com.ufcg.splab.recsys.metrics.Counter;
+import br.com.ufcg.splab.recsys.metrics.ExecutionProfile;
+import br.com.ufcg.splab.recsys.metrics.Histogram;
+import br.com.ufcg.splab.recsys.metrics.MetricsRegistry;
+import br.com.ufcg.splab.recsys.metrics.Timer;
+import br.com.ufcg.splab.recsys.metrics.jfr.FlightRecorderEvents;
+
 public class Recommender
 {
+    private static final Timer RECOMMEND_TIMER = MetricsRegistry.getDefault()
+            .timer("recommender.recommendTo");
+    private static final Timer BATCH_RECOMMEND_TIMER = MetricsRegistry
+            .getDefault().timer("recommender.recommendTo.batch");
+    private static final Counter ITEMS_SCORED = MetricsRegistry.getDefault()
+            .counter("recommender.itemsScored");
+    private static final Histogram TOP_N_SIZE = MetricsRegistry.getDefault()
+            .histogram("recommender.topNSize");
+
     private Approach approach;
 
     public Recommender(Approach approach)
@@ -22,23 +37,96 @@ public class Recommender
     public List<SimilarityMapper> recommendTo(Map<String, Double> userProfile,
             Integer numItems) throws Exception
     {
-        this.approach.setUserProfile(userProfile);
-        List<SimilarityMapper> values = this.approach.getOrderedItems();
-        List<SimilarityMapper> result = this.filterTopNFrom(values, numItems);
+        long start = RECOMMEND_TIMER.start();
+        Object event = FlightRecorderEvents.beginRecommendation();
+        // The event is closed even if the recommendation fails, with what
+        // was done so far, so the failed requests are not missing from the
+        // recording:
+        long itemsScored = 0;
+        int recommendedItems = 0;
+        try {
+            this.approach.setUserProfile(userProfile);
+
+            // Only the top-N items are kept while scoring, so there is no
+            // need to sort the whole catalog:
+            List<SimilarityMapper> result = this.approach
+                    .getOrderedItems(numItems);
+
+            itemsScored = this.approach.getItemsProfiles().size();
+            recommendedItems = result.size();
+            ITEMS_SCORED.add(itemsScored);
+            TOP_N_SIZE.record(recommendedItems);
+
+            return result;
+        } finally {
+            FlightRecorderEvents.endRecommendation(event, this.approach
+                    .getClass().getSimpleName(), itemsScored,
+                    (numItems == null) ? -1 : numItems, recommendedItems);
+            RECOMMEND_TIMER.stop(start);
+        }
+    }
 
-        return result;
+    /**
+     * Recommends the top-N items to a user and records how the time was spent
+     * at a profile. For the ontology based approaches, the profile includes
+     * the expansion of the user profile.
+     *
+     * @param userProfile The user profile.
+     * @param numItems The max number of items to recommend.
+     * @param profile The profile that receives the measurements. It is active
+     *        at the current thread during the call.
+     * @return The recommended items.
+     * @throws Exception If the user profile is invalid or the similarity
+     *         method fails.
+     */
+    public List<SimilarityMapper> recommendTo(Map<String, Double> userProfile,
+            Integer numItems, ExecutionProfile profile) throws Exception
+    {
+        profile.start();
+        try {
+            return this.recommendTo(userProfile, numItems);
+        } finally {
+            profile.stop();
+        }
     }
 
-    private List<SimilarityMapper> filterTopNFrom(
-            List<SimilarityMapper> values, Integer numItems)
+    /**
+     * Recommends the top-N items for a batch of users at once. The items
+     * catalog is read once per users block instead of once per user, which
+     * is much faster than calling {@link #recommendTo(Map, Integer)} for each
+     * user in offline runs.
+     *
+     * @param userProfiles The user profiles.
+     * @param numItems The max number of items to recommend to each user.
+     * @return The recommended items for each user, in the same order of the
+     *         user profiles.
+     * @throws Exception If some user profile is invalid or the similarity
+     *         method fails.
+     */
+    public List<List<SimilarityMapper>> recommendTo(
+            List<Map<String, Double>> userProfiles, Integer numItems)
+            throws Exception
     {
-        List<SimilarityMapper> result = new LinkedList<SimilarityMapper>();
-        numItems = Math.max(numItems, values.size());
+        long start = BATCH_RECOMMEND_TIMER.start();
+        Object event = FlightRecorderEvents.beginBatchRecommendation();
+        long itemsScored = 0;
+        try {
+            List<List<SimilarityMapper>> result = this.approach
+                    .getOrderedItems(userProfiles, numItems);
 
-        for (int i = 0; i < numItems; i++) {
-            result.add(values.get(i));
-        }
+            itemsScored = (long) this.approach.getItemsProfiles().size()
+                    * userProfiles.size();
+            ITEMS_SCORED.add(itemsScored);
+            for (List<SimilarityMapper> userResult : result) {
+                TOP_N_SIZE.record(userResult.size());
+            }
 
-        return result;
+            return result;
+        } finally {
+            FlightRecorderEvents.endBatchRecommendation(event, this.approach
+                    .getClass().getSimpleName(), userProfiles.size(),
+                    itemsScored, (numItems == null) ? -1 : numItems);
+            BATCH_RECOMMEND_TIMER.stop(start);
+        }
     }
 }
@@ -0,0 +1,151 @@
+package br.com.ufcg.splab.recsys.recommender;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the best scored items seen so far in a bounded min-heap. Items with
+ * the same similarity are ranked by their position at the catalog, the later
+ * ones first, which is the order produced by a stable ascending sort followed
+ * by a reversal.
+ *
+ * @author Saulo Toledo
+ */
+class TopNCollector
+{
+    /**
+     * Orders the scored items from the worst to the best one.
+     */
+    private static final Comparator<ScoredItem> WORST_FIRST = new Comparator<ScoredItem>()
+    {
+        @Override
+        public int compare(ScoredItem item1, ScoredItem item2)
+        {
+            int result = item1.mapper.getSimilarity().compareTo(
+                item2.mapper.getSimilarity());
+            if (result == 0) {
+                result = (item1.position < item2.position) ? -1
+                    : ((item1.position == item2.position) ? 0 : 1);
+            }
+            return result;
+        }
+    };
+
+    /**
+     * The max number of items to keep, or null to keep all of them.
+     */
+    private final Integer limit;
+
+    /**
+     * The heap where the root is the worst kept item.
+     */
+    private final PriorityQueue<ScoredItem> heap;
+
+    /**
+     * Creates a collector.
+     *
+     * @param limit The max number of items to keep, or null to keep all of
+     *        them.
+     */
+    TopNCollector(Integer limit)
+    {
+        this.limit = limit;
+        this.heap = new PriorityQueue<ScoredItem>(11, WORST_FIRST);
+    }
+
+    /**
+     * Returns if a scored item would be kept by {@link #offer}. It allows the
+     * scoring loops to create the item only when it is kept, so the items
+     * that are not among the best ones do not allocate anything.
+     *
+     * @param position The item position at the catalog.
+     * @param similarity The item similarity.
+     * @return true if the item would be kept, false otherwise.
+     */
+    boolean accepts(int position, Double similarity)
+    {
+        if (this.limit == null || this.heap.size() < this.limit) {
+            return true;
+        }
+        if (this.limit <= 0) {
+            return false;
+        }
+
+        ScoredItem worst = this.heap.peek();
+        int result = similarity.compareTo(worst.mapper.getSimilarity());
+        if (result == 0) {
+            return position > worst.position;
+        }
+        return result > 0;
+    }
+
+    /**
+     * Offers a scored item to the collector.
+     *
+     * @param position The item position at the catalog.
+     * @param mapper The scored item.
+     */
+    void offer(int position, SimilarityMapper mapper)
+    {
+        this.offer(new ScoredItem(position, mapper));
+    }
+
+    /**
+     * Moves all the items kept by another collector to this one.
+     *
+     * @param other The collector to merge.
+     */
+    void merge(TopNCollector other)
+    {
+        for (ScoredItem item : other.heap) {
+            this.offer(item);
+        }
+    }
+
+    /**
+     * Returns the kept items ordered from the best to the worst one.
+     *
+     * @return The kept items ordered from the best to the worst one.
+     */
+    List<SimilarityMapper> toOrderedList()
+    {
+        List<ScoredItem> items = new ArrayList<ScoredItem>(this.heap);
+        Collections.sort(items, Collections.reverseOrder(WORST_FIRST));
+
+        List<SimilarityMapper> result = new ArrayList<SimilarityMapper>(
+            items.size());
+        for (ScoredItem item : items) {
+            result.add(item.mapper);
+        }
+        return result;
+    }
+
+    private void offer(ScoredItem item)
+    {
+        if (this.limit == null || this.heap.size() < this.limit) {
+            this.heap.add(item);
+        } else if (this.limit > 0
+            && WORST_FIRST.compare(item, this.heap.peek()) > 0) {
+            this.heap.poll();
+            this.heap.add(item);
+        }
+    }
+
+    /**
+     * A scored item and its position at the catalog.
+     */
+    private static class ScoredItem
+    {
+        private final int position;
+        private final SimilarityMapper mapper;
+
+        ScoredItem(int position, SimilarityMapper mapper)
+        {
+            this.position = position;
+            this.mapper = mapper;
+        }
+    }
+}
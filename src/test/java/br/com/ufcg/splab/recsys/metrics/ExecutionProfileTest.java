@@ -0,0 +1,60 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import br.com.ufcg.splab.recsys.metrics.ExecutionProfile.Phase;
+
+public class ExecutionProfileTest
+{
+    @Test
+    public void testThatProfilesAreActiveOnlyWhileStarted()
+    {
+        assertTrue(ExecutionProfile.current() == null);
+
+        ExecutionProfile outer = new ExecutionProfile().start();
+        ExecutionProfile inner = new ExecutionProfile().start();
+        assertTrue(ExecutionProfile.current() == inner);
+
+        inner.stop();
+        assertTrue(ExecutionProfile.current() == outer);
+
+        outer.stop();
+        assertTrue(ExecutionProfile.current() == null);
+    }
+
+    @Test
+    public void testThatNestedPhasesAreMeasuredSeparately()
+    {
+        ExecutionProfile profile = new ExecutionProfile().start();
+        try {
+            profile.begin();
+            profile.begin();
+            profile.end(Phase.BFS);
+            profile.begin();
+            profile.end(Phase.BFS);
+            profile.end(Phase.MERGE);
+            profile.addWork(3, 4, 5);
+        } finally {
+            profile.stop();
+        }
+
+        assertEquals(2, profile.getCalls(Phase.BFS));
+        assertEquals(1, profile.getCalls(Phase.MERGE));
+        assertEquals(0, profile.getCalls(Phase.SORT));
+        assertTrue(profile.getWallTime(Phase.MERGE) >= profile
+            .getWallTime(Phase.BFS));
+        assertTrue(profile.getTotalWallTime() >= profile
+            .getWallTime(Phase.MERGE));
+        assertEquals(3, profile.getNodesVisited());
+        assertEquals(4, profile.getEdgesVisited());
+        assertEquals(5, profile.getPathsBuilt());
+    }
+}
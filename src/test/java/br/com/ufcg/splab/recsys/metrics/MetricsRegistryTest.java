@@ -0,0 +1,133 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+public class MetricsRegistryTest
+{
+    @Test
+    public void testThatMetricsAreCreatedOncePerName()
+    {
+        MetricsRegistry registry = new MetricsRegistry();
+
+        assertTrue(registry.counter("a") == registry.counter("a"));
+        assertTrue(registry.timer("a") == registry.timer("a"));
+        assertTrue(registry.histogram("a") == registry.histogram("a"));
+
+        registry.counter("a").add(5);
+        registry.counter("a").increment();
+        assertEquals(6, registry.getCounters().get("a").getValue());
+
+        registry.reset();
+        assertEquals(0, registry.counter("a").getValue());
+    }
+
+    @Test
+    public void testThatHistogramPercentilesHaveABoundedError()
+    {
+        Histogram histogram = new MetricsRegistry().histogram("latency");
+        for (long value = 1; value <= 100000; value++) {
+            histogram.record(value);
+        }
+
+        assertEquals(100000, histogram.getCount());
+        assertEquals(100000, histogram.getMax());
+        assertEquals(50000.5d, histogram.getMean(), 0.001d);
+
+        long p50 = histogram.getValueAtPercentile(50);
+        long p99 = histogram.getValueAtPercentile(99);
+        assertTrue(Math.abs(p50 - 50000) <= 50000 / Histogram.SUB_BUCKETS);
+        assertTrue(Math.abs(p99 - 99000) <= 99000 / Histogram.SUB_BUCKETS);
+        assertEquals(100000, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testThatTheCorrectedRecordingBackfillsTheMissedRequests()
+    {
+        Histogram histogram = new MetricsRegistry().histogram("latency");
+        histogram.recordCorrected(10, 100);
+        histogram.recordCorrected(1000, 100);
+
+        // 1000, 900, ..., 100:
+        assertEquals(11, histogram.getCount());
+        assertEquals(10 + 5500, histogram.getSum());
+
+        histogram.recordCorrected(1000, 0);
+        assertEquals(12, histogram.getCount());
+    }
+
+    @Test
+    public void testThatBucketsCoverTheWholeRange()
+    {
+        long previousUpperBound = -1;
+        for (int i = 0; i <= Histogram.bucketIndex(Long.MAX_VALUE); i++) {
+            long upperBound = Histogram.bucketUpperBound(i);
+            assertTrue(upperBound > previousUpperBound);
+            assertEquals(i, Histogram.bucketIndex(upperBound));
+            previousUpperBound = upperBound;
+        }
+        assertEquals(Long.MAX_VALUE, previousUpperBound);
+    }
+
+    @Test
+    public void testThatAFailingExporterDoesNotStopTheOthers()
+    {
+        MetricsRegistry registry = new MetricsRegistry();
+        final long[] exports = new long[1];
+
+        registry.addExporter(new MetricsExporter() {
+            @Override
+            public void export(MetricsRegistry registry) throws Exception
+            {
+                throw new Exception("Unavailable");
+            }
+        });
+        registry.addExporter(new MetricsExporter() {
+            @Override
+            public void export(MetricsRegistry registry)
+            {
+                exports[0]++;
+            }
+        });
+
+        registry.export();
+        assertEquals(1, exports[0]);
+    }
+
+    @Test
+    public void testThatTheMetricsAreReadableByJmx() throws Exception
+    {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("items").add(3);
+        registry.timer("latency").getHistogram().record(42);
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(
+            "br.com.ufcg.splab.recsys:type=Metrics,name=test");
+        JmxMetricsExporter exporter = new JmxMetricsExporter(server, name);
+
+        registry.addExporter(exporter);
+        registry.export();
+        try {
+            assertEquals(3L, server.getAttribute(name, "items"));
+            assertEquals(1L, server.getAttribute(name, "latency.count"));
+
+            registry.counter("items").increment();
+            assertEquals(4L, server.getAttribute(name, "items"));
+        } finally {
+            exporter.unregister();
+        }
+    }
+}
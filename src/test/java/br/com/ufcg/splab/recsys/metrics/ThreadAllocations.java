@@ -0,0 +1,48 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Reads the memory allocated by the current thread, for the tests that guard
+ * the allocations of the hot paths.
+ */
+public final class ThreadAllocations
+{
+    private ThreadAllocations()
+    {
+    }
+
+    /**
+     * Returns if the JVM measures the memory allocated by each thread. The
+     * tests that depend on it should be skipped otherwise.
+     *
+     * @return true if {@link #getAllocatedBytes()} can be used.
+     */
+    public static boolean isMeasured()
+    {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        return threads instanceof com.sun.management.ThreadMXBean
+            && ((com.sun.management.ThreadMXBean) threads)
+                .isThreadAllocatedMemorySupported()
+            && ((com.sun.management.ThreadMXBean) threads)
+                .isThreadAllocatedMemoryEnabled();
+    }
+
+    /**
+     * Returns the bytes allocated so far by the current thread.
+     *
+     * @return The allocated bytes.
+     */
+    public static long getAllocatedBytes()
+    {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory
+            .getThreadMXBean()).getThreadAllocatedBytes(Thread
+            .currentThread().getId());
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import br.com.ufcg.splab.recsys.metrics.Trace.Event;
+import br.com.ufcg.splab.recsys.metrics.Trace.EventType;
+
+public class TraceTest
+{
+    @Test
+    public void testThatTheOldestEventsAreDiscarded()
+    {
+        Trace trace = new Trace(3);
+        for (int i = 0; i < 5; i++) {
+            trace.record(EventType.DISTANCE_FOUND, "a", "b", i);
+        }
+
+        List<Event> events = trace.getEvents();
+        assertEquals(5, trace.getRecordedCount());
+        assertEquals(2, trace.getDroppedCount());
+        assertEquals(3, events.size());
+        assertEquals(2, events.get(0).getValue());
+        assertEquals(4, events.get(2).getValue());
+    }
+
+    @Test
+    public void testThatTheEventsAreRenderedOnlyWhenRead()
+    {
+        final int[] renders = new int[1];
+        Object subject = new Object() {
+            @Override
+            public String toString()
+            {
+                renders[0]++;
+                return "Property";
+            }
+        };
+
+        Trace trace = new Trace();
+        trace.record(EventType.DISTANCE_FOUND, subject, "Port", 3);
+        assertEquals(0, renders[0]);
+
+        assertTrue(trace.render().contains(
+            "The distance from 'Property' to 'Port' is 3"));
+        assertEquals(1, renders[0]);
+    }
+
+    @Test
+    public void testThatStoppingRestoresThePreviousTrace()
+    {
+        Trace outer = new Trace().start();
+        Trace inner = new Trace().start();
+        assertTrue(Trace.current() == inner);
+
+        inner.stop();
+        assertTrue(Trace.current() == outer);
+
+        outer.stop();
+        assertEquals(null, Trace.current());
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.metrics.jfr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.Test;
+
+import br.com.ufcg.splab.recsys.metrics.ThreadWork;
+
+public class FlightRecorderEventsTest
+{
+    @Test
+    public void testThatTheEventsCarryTheStageValuesAndWork() throws Exception
+    {
+        assertTrue(FlightRecorderEvents.isAvailable());
+
+        File file = File.createTempFile("ontorec", ".jfr");
+        Recording recording = new Recording();
+        try {
+            recording.enable("br.com.ufcg.splab.recsys.FeaturesWeight");
+            recording.enable("br.com.ufcg.splab.recsys.Recommendation");
+            recording.enable("br.com.ufcg.splab.recsys.BatchRecommendation");
+            recording.start();
+
+            Object event = FlightRecorderEvents.beginFeaturesWeight();
+            ThreadWork.add(5, 7, 2);
+            FlightRecorderEvents.endFeaturesWeight(event, "BFS", 3, true,
+                false, 4);
+
+            event = FlightRecorderEvents.beginRecommendation();
+            FlightRecorderEvents.endRecommendation(event, "Cosine", 1000, 10,
+                10);
+
+            event = FlightRecorderEvents.beginBatchRecommendation();
+            FlightRecorderEvents.endBatchRecommendation(event, "Cosine", 50,
+                50000, 10);
+
+            recording.stop();
+            recording.dump(file.toPath());
+
+            Map<String, RecordedEvent> events = new HashMap<String, RecordedEvent>();
+            List<RecordedEvent> recorded = RecordingFile.readAllEvents(file
+                .toPath());
+            for (RecordedEvent recordedEvent : recorded) {
+                events.put(recordedEvent.getEventType().getName(),
+                    recordedEvent);
+            }
+
+            RecordedEvent weights = events
+                .get("br.com.ufcg.splab.recsys.FeaturesWeight");
+            assertEquals("BFS", weights.getString("approach"));
+            assertEquals(3, weights.getInt("tau"));
+            assertEquals(4, weights.getInt("selectedFeatures"));
+            assertEquals(5, weights.getLong("nodesVisited"));
+            assertEquals(7, weights.getLong("edgesVisited"));
+            assertEquals(2, weights.getLong("pathsBuilt"));
+
+            RecordedEvent recommendation = events
+                .get("br.com.ufcg.splab.recsys.Recommendation");
+            assertEquals(1000, recommendation.getLong("itemsScored"));
+            assertEquals(10, recommendation.getInt("requestedItems"));
+
+            RecordedEvent batch = events
+                .get("br.com.ufcg.splab.recsys.BatchRecommendation");
+            assertEquals(50, batch.getInt("users"));
+            assertEquals(50000, batch.getLong("itemsScored"));
+            assertEquals(10, batch.getInt("requestedItems"));
+        } finally {
+            recording.close();
+            file.delete();
+        }
+    }
+}
@@ -6,6 +6,8 @@
  */
 package br.com.ufcg.splab.recsys.ontorec;
 
+import br.com.ufcg.splab.recsys.ontorec.weighting.BFSPathNodeWeightingApproach;
+
 public abstract class AbstractNodeManagerTest {
 
     protected void buildComplexGraphAt(NodeManager<String> nm) {
@@ -58,4 +60,42 @@ public abstract class AbstractNodeManagerTest {
         port.addParent(property);
     }
 
+    /**
+     * Builds a ladder of diamonds: each level has two nodes ("a" and "b"
+     * followed by the level) whose parents are both nodes of the level above,
+     * so the paths double at each level. The ladder starts at a "root" node
+     * and ends at a "leaf" node, child of both nodes of the last level.
+     *
+     * @param levels The number of levels.
+     * @param mapFeatures If a feature ("fa" followed by the level) should be
+     *        mapped to each node of the left side.
+     * @return The manager of the ladder.
+     */
+    protected NodeManager<String> buildLadder(int levels, boolean mapFeatures)
+        throws Exception {
+
+        NodeManager<String> nm = new NodeManager<String>(
+            new BFSPathNodeWeightingApproach<String>(), false, false);
+
+        Node<String> left = nm.getNode("root");
+        Node<String> right = left;
+        for (int level = 1; level <= levels; level++) {
+            Node<String> newLeft = nm.getNode("a" + level);
+            Node<String> newRight = nm.getNode("b" + level);
+            newLeft.addParent(left);
+            newLeft.addParent(right);
+            newRight.addParent(left);
+            newRight.addParent(right);
+            if (mapFeatures) {
+                nm.addFeatureMapping("fa" + level, newLeft);
+            }
+            left = newLeft;
+            right = newRight;
+        }
+        Node<String> leaf = nm.getNode("leaf");
+        leaf.addParent(left);
+        leaf.addParent(right);
+        return nm;
+    }
+
 }
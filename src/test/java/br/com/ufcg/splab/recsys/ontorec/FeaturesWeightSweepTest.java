@@ -0,0 +1,169 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.ontorec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import br.com.ufcg.splab.recsys.metrics.ThreadWork;
+import br.com.ufcg.splab.recsys.ontorec.synthetic.SyntheticOntology;
+import br.com.ufcg.splab.recsys.ontorec.synthetic.SyntheticOntologyGenerator;
+import br.com.ufcg.splab.recsys.ontorec.weighting.BFSPathNodeWeightingApproach;
+import br.com.ufcg.splab.recsys.ontorec.weighting.NodeWeightingApproach;
+import br.com.ufcg.splab.recsys.ontorec.weighting.TaunthAncestorNodeWeightingApproach;
+
+public class FeaturesWeightSweepTest
+{
+    private static final int MAX_TAU = 5;
+
+    private SyntheticOntology generate()
+    {
+        return new SyntheticOntologyGenerator().setClasses(400)
+            .setMaxDepth(7).setBranching(3).setMultipleInheritanceRate(0.2)
+            .setOnlyBegottenFatherRate(0.2).setClassMappingDensity(0.3)
+            .setSeed(7).generate();
+    }
+
+    private Set<String> select(NodeManager<String> nm, int count)
+    {
+        List<String> features = new ArrayList<String>(nm.getMappedFeatures());
+        Collections.sort(features);
+        return new HashSet<String>(features.subList(0, count));
+    }
+
+    private void assertSweepIsTheSameOfSeparateCalls(
+        NodeWeightingApproach<String> approach) throws Exception
+    {
+        SyntheticOntology ontology = this.generate();
+        NodeManager<String> nm = ontology.toNodeManager(approach, false,
+            false);
+        Set<String> selection = this.select(nm, 3);
+
+        FeaturesWeightSweep sweep = nm.getFeaturesWeightSweep(selection, 1,
+            MAX_TAU, true);
+        assertEquals(2, sweep.getLambdas().size());
+        assertNull(TraversalMemo.current());
+
+        for (boolean lambda : new boolean[] { false, true }) {
+            NodeManager<String> expected = ontology.toNodeManager(approach,
+                lambda, false);
+            for (int tau = 1; tau <= MAX_TAU; tau++) {
+                assertEquals(expected.getFeaturesWeight(selection, tau),
+                    sweep.getWeights(tau, lambda));
+            }
+        }
+    }
+
+    @Test
+    public void testThatTheSweepIsTheSameOfSeparateCalls() throws Exception
+    {
+        this.assertSweepIsTheSameOfSeparateCalls(
+            new BFSPathNodeWeightingApproach<String>());
+        this.assertSweepIsTheSameOfSeparateCalls(
+            new TaunthAncestorNodeWeightingApproach<String>());
+    }
+
+    @Test
+    public void testThatTheSweepSharesTheTraversals() throws Exception
+    {
+        SyntheticOntology ontology = this.generate();
+        NodeManager<String> nm = ontology.toNodeManager(
+            new BFSPathNodeWeightingApproach<String>(), false, false);
+        Set<String> selection = this.select(nm, 3);
+
+        long before = ThreadWork.current()[ThreadWork.EDGES];
+        for (int tau = 1; tau <= MAX_TAU; tau++) {
+            ontology.toNodeManager(new BFSPathNodeWeightingApproach<String>(),
+                false, false).getFeaturesWeight(selection, tau);
+        }
+        long separateEdges = ThreadWork.current()[ThreadWork.EDGES] - before;
+
+        before = ThreadWork.current()[ThreadWork.EDGES];
+        nm.getFeaturesWeightSweep(selection, 1, MAX_TAU, false);
+        long sweepEdges = ThreadWork.current()[ThreadWork.EDGES] - before;
+
+        assertTrue(sweepEdges < separateEdges);
+    }
+
+    @Test
+    public void testThatTheFeaturesAreLabelledWithTheirMinReachingTau()
+        throws Exception
+    {
+        // root -> a -> b, root -> c:
+        NodeManager<String> nm = new NodeManager<String>(
+            new BFSPathNodeWeightingApproach<String>(), false, false);
+        Node<String> root = nm.getNode("root");
+        Node<String> a = nm.getNode("a");
+        Node<String> b = nm.getNode("b");
+        Node<String> c = nm.getNode("c");
+        a.addParent(root);
+        b.addParent(a);
+        c.addParent(root);
+        nm.addFeatureMapping("fa", a);
+        nm.addFeatureMapping("fb", b);
+        nm.addFeatureMapping("fc", c);
+
+        FeaturesWeightSweep sweep = nm.getFeaturesWeightSweep(
+            Collections.singleton("fb"), 1, 3, false);
+        Map<String, Integer> taus = sweep.getMinReachingTaus(false);
+
+        assertEquals(Integer.valueOf(1), taus.get("fb"));
+        assertEquals(Integer.valueOf(1), taus.get("fa"));
+        assertEquals(Integer.valueOf(2), taus.get("fc"));
+        assertEquals(0d, sweep.getWeights(1, false).get("fc"), 0d);
+        assertFalse(sweep.getLambdas().contains(true));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testThatAnEmptyRangeIsRejected()
+    {
+        new NodeManager<String>(new BFSPathNodeWeightingApproach<String>(),
+            false, false).getFeaturesWeightSweep(
+            Collections.<String> emptySet(), 3, 2, false);
+    }
+
+    @Test
+    public void testThatASparseSweepOnlyCalculatesItsTaus() throws Exception
+    {
+        SyntheticOntology ontology = this.generate();
+        NodeManager<String> nm = ontology.toNodeManager(
+            new TaunthAncestorNodeWeightingApproach<String>(), true, false);
+        Set<String> selection = this.select(nm, 3);
+
+        SortedSet<Integer> taus = new TreeSet<Integer>();
+        taus.add(1);
+        taus.add(MAX_TAU);
+        FeaturesWeightSweep sweep = nm.getFeaturesWeightSweep(selection,
+            taus, false);
+
+        NodeManager<String> expected = ontology.toNodeManager(
+            new TaunthAncestorNodeWeightingApproach<String>(), true, false);
+        for (int tau : taus) {
+            assertEquals(expected.getFeaturesWeight(selection, tau),
+                sweep.getWeights(tau, true));
+        }
+        try {
+            sweep.getWeights(2, true);
+            fail("A τ value out of the sweep was calculated");
+        } catch (IllegalArgumentException e) {
+            // Only the informed τ values are calculated.
+        }
+    }
+}
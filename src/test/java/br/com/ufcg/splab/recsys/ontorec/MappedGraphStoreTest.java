@@ -0,0 +1,291 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.ontorec;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import br.com.ufcg.splab.recsys.ontorec.MappedGraphStore.NodeView;
+import br.com.ufcg.splab.recsys.ontorec.recommender.OntoRecApproach;
+import br.com.ufcg.splab.recsys.ontorec.weighting.BFSPathNodeWeightingApproach;
+import br.com.ufcg.splab.recsys.recommender.SimilarityMethod;
+
+public class MappedGraphStoreTest extends AbstractNodeManagerTest
+{
+    private NodeManager<String> nm;
+    private File snapshot;
+    private MappedGraphStore store;
+
+    @Before
+    public void setupStore() throws IOException
+    {
+        this.nm = new NodeManager<String>(
+            new BFSPathNodeWeightingApproach<String>(), false, false);
+        this.buildComplexGraphAt(this.nm);
+
+        this.snapshot = File.createTempFile("ontorec", ".snapshot");
+        NodeManagerSnapshot.save(this.nm, this.snapshot);
+        this.store = new MappedGraphStore(this.snapshot);
+    }
+
+    @After
+    public void closeStore() throws IOException
+    {
+        this.store.close();
+        this.snapshot.delete();
+    }
+
+    private Set<String> namesOf(Iterable<NodeView> views)
+    {
+        Set<String> result = new HashSet<String>();
+        for (NodeView view : views) {
+            result.add(view.getData());
+        }
+        return result;
+    }
+
+    private Set<String> namesOfNodes(Iterable<Node<String>> nodes)
+    {
+        Set<String> result = new HashSet<String>();
+        for (Node<String> node : nodes) {
+            result.add(node.getData());
+        }
+        return result;
+    }
+
+    @Test
+    public void testThatTheStoreMatchesTheManager()
+    {
+        assertTrue(this.store.getNodeCount() == this.nm.getNodes().size());
+        assertTrue(this.store.getNodeId("Unknown") == -1);
+
+        for (Node<String> node : this.nm.getNodes()) {
+            NodeView view = this.store.getNode(node.getData());
+
+            assertTrue(view.getData().equals(node.getData()));
+            assertTrue(this.namesOf(view.getChildren()).equals(
+                this.namesOfNodes(node.getChildren())));
+            assertTrue(this.namesOf(view.getParents()).equals(
+                this.namesOfNodes(node.getParents())));
+
+            Set<String> attributes = new HashSet<String>();
+            for (NodeAttribute attribute : node.getAttributes()) {
+                attributes.add(attribute.getName());
+            }
+            assertTrue(new HashSet<String>(view.getAttributeNames())
+                .equals(attributes));
+        }
+    }
+
+    @Test
+    public void testTraversalsOverTheStore()
+    {
+        int namedElement = this.store.getNodeId("NamedElement");
+        BitSet descendants = this.store.getDescendants(namedElement);
+
+        assertTrue(descendants.cardinality() == 9);
+        assertTrue( !descendants.get(this.store.getNodeId("Element")));
+        assertTrue( !descendants.get(this.store
+            .getNodeId("MultiplicityElement")));
+
+        int property = this.store.getNodeId("Property");
+        int element = this.store.getNodeId("Element");
+        int port = this.store.getNodeId("Port");
+
+        Map<Integer, Integer> distances = this.store.getDistancesTo(property,
+            null, new int[] { element, port });
+        assertTrue(distances.get(element) == 3);
+        assertTrue(distances.get(port) == 1);
+
+        // Element is not reachable inside the NamedElement subgraph:
+        distances = this.store.getDistancesTo(property, descendants,
+            new int[] { element, port });
+        assertTrue( !distances.containsKey(element));
+        assertTrue(distances.get(port) == 1);
+    }
+
+    @Test
+    public void testThatTheTauAncestorsAreTheSameOfTheManager()
+    {
+        // τ = 64 is above the τ values kept at the per-thread buffers:
+        int[] taus = new int[] { 0, 1, 2, 3, 4, 64 };
+        for (boolean lambda : new boolean[] { false, true }) {
+            for (Node<String> node : this.nm.getNodes()) {
+                for (int tau : taus) {
+                    Set<String> names = new HashSet<String>();
+                    for (int ancestor : this.store.getTauAncestors(
+                        this.store.getNodeId(node.getData()), tau, lambda)) {
+                        names.add(this.store.getName(ancestor));
+                    }
+                    assertTrue(names.equals(this.namesOfNodes(node
+                        .extractMaxNodesFromTau(tau, lambda))));
+                }
+            }
+        }
+    }
+
+    private NodeManager<String> buildMappedManager(boolean lambda,
+        boolean upsilon) throws Exception
+    {
+        NodeManager<String> result = new NodeManager<String>(
+            new BFSPathNodeWeightingApproach<String>(), lambda, upsilon);
+        this.buildComplexGraphAt(result);
+
+        Node<String> property = result.getNode("Property");
+        result.addFeatureMapping("PSA", property,
+            property.getOwnOrInheritedAttributeByName("isStatic"));
+        result.addFeatureMapping("POP", result.getNode("Port"));
+        result.addFeatureMapping("TE", result.getNode("TypedElement"));
+        result.addFeatureMapping("EL", result.getNode("Element"));
+        result.addFeatureMapping("CL", result.getNode("Class"));
+        return result;
+    }
+
+    @Test
+    public void testThatTheFeaturesWeightIsTheSameOfTheManager()
+        throws Exception
+    {
+        Set<String> selectedFeatures = new HashSet<String>(Arrays.asList(
+            "PSA", "TE"));
+
+        for (int combination = 0; combination < 4; combination++) {
+            boolean lambda = (combination & 1) != 0;
+            boolean upsilon = (combination & 2) != 0;
+
+            NodeManager<String> mapped = this.buildMappedManager(lambda,
+                upsilon);
+            NodeManagerSnapshot.save(mapped, this.snapshot);
+            MappedGraphStore mappedStore = new MappedGraphStore(this.snapshot);
+            try {
+                assertTrue(mappedStore.getMappedFeatures().equals(
+                    mapped.getMappedFeatures()));
+
+                for (int tau = 1; tau <= 4; tau++) {
+                    assertTrue(mappedStore.getFeaturesWeight(
+                        selectedFeatures, tau, lambda, upsilon).equals(
+                        mapped.getFeaturesWeight(selectedFeatures, tau)));
+                }
+            } finally {
+                mappedStore.close();
+            }
+        }
+    }
+
+    @Test
+    public void testThatTheApproachUsesTheStore() throws Exception
+    {
+        NodeManager<String> mapped = this.buildMappedManager(false, false);
+        NodeManagerSnapshot.save(mapped, this.snapshot);
+        MappedGraphStore mappedStore = new MappedGraphStore(this.snapshot);
+        try {
+            OntoRecApproach approach = new OntoRecApproach(mappedStore, false,
+                false, new SimilarityMethod()
+                {
+                    @Override
+                    public Double calculate(Map<String, Double> v1,
+                        Map<String, Double> v2)
+                    {
+                        return 0d;
+                    }
+                });
+            approach.setMaxHeight(2);
+
+            Map<String, Double> selection = mapped.getFeaturesWeight(
+                new HashSet<String>(Arrays.asList("POP")), 0);
+            approach.setUserProfile(selection);
+
+            assertTrue(approach.getUserProfile().equals(
+                mapped.getFeaturesWeight(
+                    new HashSet<String>(Arrays.asList("POP")), 2)));
+        } finally {
+            mappedStore.close();
+        }
+    }
+
+    @Test
+    public void testThatTheWriterDoesNotNeedAManager() throws IOException
+    {
+        SnapshotWriter writer = new SnapshotWriter(this.snapshot);
+        writer.addEdge("Root", "Left");
+        writer.addEdge("Root", "Right");
+        writer.addEdge("Left", "Leaf");
+        writer.addEdge("Right", "Leaf");
+        writer.addEdge("Root", "Left");
+        writer.addAttribute("Left", "name");
+        writer.addFeatureMapping("F1", "Leaf", "Left", "name");
+        writer.addFeatureMapping("F2", "Right");
+        writer.close();
+
+        MappedGraphStore written = new MappedGraphStore(this.snapshot);
+        try {
+            assertTrue(written.getNodeCount() == 4);
+            assertTrue(this.namesOf(written.getNode("Root").getChildren())
+                .equals(new HashSet<String>(Arrays.asList("Left", "Right"))));
+            assertTrue(this.namesOf(written.getNode("Leaf").getParents())
+                .equals(new HashSet<String>(Arrays.asList("Left", "Right"))));
+            assertTrue(written.getNode("Left").getAttributeNames()
+                .equals(Arrays.asList("name")));
+            assertTrue(written.getMappedFeatures().equals(
+                new HashSet<String>(Arrays.asList("F1", "F2"))));
+        } finally {
+            written.close();
+        }
+
+        NodeManager<String> loaded = NodeManagerSnapshot.load(this.snapshot,
+            new BFSPathNodeWeightingApproach<String>(), false, false);
+        assertTrue(loaded.getNode("Leaf").hasMappedAttributes());
+        assertTrue(loaded.getFeatureMapping().get("F1")
+            .isMappingToAttribute());
+    }
+
+    @Test
+    public void testThatCorruptedSnapshotsAreRejected() throws IOException
+    {
+        RandomAccessFile raf = new RandomAccessFile(this.snapshot, "rw");
+        try {
+            raf.seek(raf.length() - 1);
+            int lastByte = raf.read();
+            raf.seek(raf.length() - 1);
+            raf.write(lastByte ^ 0xFF);
+        } finally {
+            raf.close();
+        }
+
+        try {
+            new MappedGraphStore(this.snapshot).close();
+            fail("A corrupted snapshot was opened");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("corrupted"));
+        }
+
+        raf = new RandomAccessFile(this.snapshot, "rw");
+        try {
+            raf.setLength(raf.length() - 4);
+        } finally {
+            raf.close();
+        }
+
+        try {
+            new MappedGraphStore(this.snapshot).close();
+            fail("A truncated snapshot was opened");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("truncated"));
+        }
+    }
+}
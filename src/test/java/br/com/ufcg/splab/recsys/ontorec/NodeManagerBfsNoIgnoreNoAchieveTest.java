@@ -123,7 +123,6 @@ public class NodeManagerBfsNoIgnoreNoAchieveTest extends AbstractNodeManagerTest
         invalidPath.add(xNode);
         invalidPath.add(structuralFeature);
         invalidPath.add(multiplicityElement);
-        invalidPath.add(element);
 
         // Testing (see the "false" parameter for "No Ignore"):
         Set<LinkedList<Node<String>>> paths = xNode.getSubgraphMaxHeightPaths(3, false);
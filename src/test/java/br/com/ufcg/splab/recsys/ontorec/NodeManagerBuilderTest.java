@@ -0,0 +1,147 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.ontorec;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import br.com.ufcg.splab.recsys.ontorec.weighting.BFSPathNodeWeightingApproach;
+
+public class NodeManagerBuilderTest extends AbstractNodeManagerTest
+{
+    private NodeManagerBuilder<String> newBuilder()
+    {
+        return new NodeManagerBuilder<String>(
+            new BFSPathNodeWeightingApproach<String>(), false, false);
+    }
+
+    @Test
+    public void testThatTheBuiltGraphIsTheSameOfTheIncrementalOne()
+    {
+        NodeManager<String> expected = new NodeManager<String>(
+            new BFSPathNodeWeightingApproach<String>(), false, false);
+        this.buildComplexGraphAt(expected);
+
+        // The same graph, with the attributes informed before the edges:
+        NodeManager<String> nm = this.newBuilder()
+            .addAttribute("Property", "isDerived")
+            .addAttribute("Property", "qualifier")
+            .addAttribute("Element", "owner")
+            .addAttribute("Element", "ownedElement")
+            .addAttribute("Element", "ownedComment")
+            .addAttribute("NamedElement", "name")
+            .addAttribute("NamedElement", "visibility")
+            .addAttribute("Feature", "isStatic")
+            .addEdge("Property", "Port")
+            .addEdge("StructuralFeature", "Property")
+            .addEdge("ConnectableElement", "Property")
+            .addEdge("DeploymentTarget", "Property")
+            .addEdge("TypedElement", "StructuralFeature")
+            .addEdge("TypedElement", "ConnectableElement")
+            .addEdge("MultiplicityElement", "StructuralFeature")
+            .addEdge("Feature", "StructuralFeature")
+            .addEdge("RedefinableElement", "Feature")
+            .addEdge("NamedElement", "RedefinableElement")
+            .addEdge("NamedElement", "TypedElement")
+            .addEdge("NamedElement", "DeploymentTarget")
+            .addEdge("Element", "MultiplicityElement")
+            .addEdge("Element", "NamedElement")
+            .build();
+
+        assertTrue(nm.getNodes().size() == expected.getNodes().size());
+        for (Node<String> node : expected.getNodes()) {
+            Node<String> builtNode = nm.getNode(node.getData());
+
+            assertTrue(builtNode.getParents().equals(node.getParents()));
+            assertTrue(builtNode.getChildren().equals(node.getChildren()));
+            assertTrue(builtNode.getAttributes()
+                .equals(node.getAttributes()));
+        }
+    }
+
+    @Test
+    public void testThatConflictingAttributesAreRejectedInOrder()
+    {
+        NodeManager<String> nm = this.newBuilder()
+            .addEdge("Element", "NamedElement")
+            .addEdge("NamedElement", "Feature")
+            .addEdge("Element", "Comment")
+            .addAttribute("NamedElement", "name")
+            .addAttribute("Feature", "name")
+            .addAttribute("Element", "name")
+            .addAttribute("NamedElement", "name")
+            .addAttribute("Comment", "name")
+            .build();
+
+        assertTrue(nm.getNode("NamedElement").getAttributes().size() == 1);
+        assertTrue(nm.getNode("Feature").getAttributes().isEmpty());
+        assertTrue(nm.getNode("Element").getAttributes().isEmpty());
+
+        // Comment is not an ancestor or descendant of NamedElement:
+        assertTrue(nm.getNode("Comment").getAttributes()
+            .contains(new NodeAttribute("name")));
+
+        assertFalse(nm.getNode("Feature").addAttribute(
+            new NodeAttribute("name")));
+    }
+
+    @Test
+    public void testThatCyclesAreBrokenBeforeTheAttributesAreAttached()
+    {
+        NodeManager<String> nm = this.newBuilder()
+            .addEdge("Element", "NamedElement")
+            .addEdge("NamedElement", "Feature")
+            .addEdge("Feature", "Element")
+            .addAttribute("Element", "name")
+            .addAttribute("Feature", "name")
+            .build();
+
+        // Element is created first, so the search starts there and the edge
+        // that goes back to it is removed:
+        assertFalse(nm.getNode("Feature").isParentOf(nm.getNode("Element")));
+        assertTrue(nm.getNode("Element").isRoot());
+        assertTrue(nm.getNode("Feature").getAllPathsToRoot().size() == 1);
+        assertTrue(nm.getNode("Feature").getAttributes().isEmpty());
+
+        assertTrue(nm.breakCycles() == 0);
+    }
+
+    @Test
+    public void testThatRepeatedAttributesMatchTheIncrementalValidation()
+    {
+        NodeManager<String> expected = new NodeManager<String>(
+            new BFSPathNodeWeightingApproach<String>(), false, false);
+        NodeManagerBuilder<String> builder = this.newBuilder();
+        Random random = new Random(42);
+
+        // A graph with several parents per node and a few attribute names
+        // declared many times:
+        for (int child = 1; child < 80; child++) {
+            for (int i = 0; i < 1 + random.nextInt(3); i++) {
+                int parent = random.nextInt(child);
+                expected.getNode("N" + child).addParent(
+                    expected.getNode("N" + parent));
+                builder.addEdge("N" + parent, "N" + child);
+            }
+        }
+        for (int i = 0; i < 200; i++) {
+            String node = "N" + random.nextInt(80);
+            String name = "attr" + random.nextInt(12);
+            expected.getNode(node).addAttribute(new NodeAttribute(name));
+            builder.addAttribute(node, name);
+        }
+
+        NodeManager<String> nm = builder.build();
+        for (Node<String> node : expected.getNodes()) {
+            assertTrue(nm.getNode(node.getData()).getAttributes()
+                .equals(node.getAttributes()));
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.ontorec;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import br.com.ufcg.splab.recsys.metrics.ExecutionProfile;
+import br.com.ufcg.splab.recsys.metrics.ThreadAllocations;
+import br.com.ufcg.splab.recsys.ontorec.synthetic.SyntheticOntology;
+import br.com.ufcg.splab.recsys.ontorec.synthetic.SyntheticOntologyGenerator;
+import br.com.ufcg.splab.recsys.ontorec.synthetic.SyntheticWorkload;
+import br.com.ufcg.splab.recsys.ontorec.weighting.BFSPathNodeWeightingApproach;
+import br.com.ufcg.splab.recsys.ontorec.weighting.NodeWeightingApproach;
+import br.com.ufcg.splab.recsys.ontorec.weighting.TaunthAncestorNodeWeightingApproach;
+
+/**
+ * Guards the cost of the features' weight calculation on generated graphs of
+ * increasing size. The work (visited nodes plus followed edges) must grow
+ * well below the square of the classes count, each call must allocate a
+ * bounded amount of memory per unit of work, and the τ-nth ancestor searches
+ * must build a bounded number of paths.
+ */
+public class NodeManagerComplexityTest
+{
+    private static final int SMALL_CLASSES = 1000;
+    private static final int LARGE_CLASSES = 8 * SMALL_CLASSES;
+
+    /**
+     * The max work ratio between the large and the small graphs. The ratio is
+     * close to 8 when the work is linear at the classes count, and would be
+     * 64 if it was quadratic.
+     */
+    private static final double MAX_WORK_RATIO = 24d;
+
+    /**
+     * The max bytes allocated per visited node or followed edge. It is
+     * around 200 bytes today.
+     */
+    private static final double MAX_BYTES_PER_WORK = 512d;
+
+    /**
+     * The max paths built per selection while the τ-nth ancestors are
+     * searched. It is around 3 today, at both graph sizes.
+     */
+    private static final double MAX_PATHS_PER_SELECTION = 10d;
+
+    private static final int SELECTIONS = 20;
+    private static final int TAU = 2;
+
+    @Test
+    public void testThatTheBfsApproachScalesSubQuadratically() throws Exception
+    {
+        this.assertScaling(new BFSPathNodeWeightingApproach<String>());
+    }
+
+    @Test
+    public void testThatTheTaunthAncestorApproachScalesSubQuadratically()
+        throws Exception
+    {
+        this.assertScaling(new TaunthAncestorNodeWeightingApproach<String>());
+    }
+
+    private void assertScaling(NodeWeightingApproach<String> approach)
+        throws Exception
+    {
+        Assume.assumeTrue(ThreadAllocations.isMeasured());
+
+        Cost small = this.measure(SMALL_CLASSES, approach);
+        Cost large = this.measure(LARGE_CLASSES, approach);
+
+        double ratio = (double) large.work / small.work;
+        assertTrue(String.format("The work grew %.1f times", ratio),
+            ratio < MAX_WORK_RATIO);
+
+        for (Cost cost : new Cost[] { small, large }) {
+            double bytesPerWork = (double) cost.allocatedBytes / cost.work;
+            assertTrue(String.format("%.1f bytes were allocated per work unit",
+                bytesPerWork), bytesPerWork < MAX_BYTES_PER_WORK);
+
+            // The planner enumerates paths only for the searches it estimates
+            // as cheap:
+            double pathsPerSelection = (double) cost.paths / SELECTIONS;
+            assertTrue(String.format("%.1f paths were built per selection",
+                pathsPerSelection),
+                pathsPerSelection < MAX_PATHS_PER_SELECTION);
+            assertTrue(String.format(
+                "%d paths were built by %d path enumerations", cost.paths,
+                cost.pathEnumerations), cost.paths == 0
+                || cost.pathEnumerations > 0);
+        }
+    }
+
+    private Cost measure(int classes, NodeWeightingApproach<String> approach)
+        throws Exception
+    {
+        SyntheticOntology ontology = new SyntheticOntologyGenerator()
+            .setClasses(classes).setMaxDepth(8).setBranching(4)
+            .setMultipleInheritanceRate(0.1).setClassMappingDensity(0.2)
+            .setSeed(11).generate();
+        NodeManager<String> nm = ontology.toNodeManager(approach, false,
+            false);
+
+        SyntheticWorkload workload = new SyntheticWorkload(ontology, 5);
+        List<Set<String>> selections = new ArrayList<Set<String>>();
+        for (int i = 0; i < SELECTIONS; i++) {
+            selections.add(workload.nextSelection(3));
+        }
+
+        // Warms up the code and the manager's caches. The τ-nth ancestors are
+        // searched only here, before they are kept by the planner:
+        long enumerationsBefore = OntoRecMetrics.PLANS_PATH_ENUMERATION
+            .getValue();
+        ExecutionProfile coldProfile = new ExecutionProfile().start();
+        try {
+            for (Set<String> selection : selections) {
+                nm.getFeaturesWeight(selection, TAU);
+            }
+        } finally {
+            coldProfile.stop();
+        }
+
+        ExecutionProfile profile = new ExecutionProfile().start();
+        long allocatedBefore = ThreadAllocations.getAllocatedBytes();
+        try {
+            for (Set<String> selection : selections) {
+                nm.getFeaturesWeight(selection, TAU);
+            }
+        } finally {
+            profile.stop();
+        }
+
+        Cost cost = new Cost();
+        cost.paths = coldProfile.getPathsBuilt();
+        cost.pathEnumerations = OntoRecMetrics.PLANS_PATH_ENUMERATION
+            .getValue() - enumerationsBefore;
+        cost.allocatedBytes = ThreadAllocations.getAllocatedBytes()
+            - allocatedBefore;
+        cost.work = Math.max(1,
+            profile.getNodesVisited() + profile.getEdgesVisited());
+        return cost;
+    }
+
+    private static class Cost
+    {
+        private long work;
+        private long allocatedBytes;
+        private long paths;
+        private long pathEnumerations;
+    }
+}
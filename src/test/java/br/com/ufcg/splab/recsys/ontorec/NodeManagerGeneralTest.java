@@ -6,15 +6,22 @@
  */
 package br.com.ufcg.splab.recsys.ontorec;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.Map;
 import java.util.Set;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import br.com.ufcg.splab.recsys.metrics.ExecutionProfile;
+import br.com.ufcg.splab.recsys.metrics.ExecutionProfile.Phase;
+import br.com.ufcg.splab.recsys.metrics.Trace;
+import br.com.ufcg.splab.recsys.metrics.Trace.EventType;
 import br.com.ufcg.splab.recsys.ontorec.weighting.BFSPathNodeWeightingApproach;
 
 public class NodeManagerGeneralTest extends AbstractNodeManagerTest {
@@ -104,6 +111,92 @@ public class NodeManagerGeneralTest extends AbstractNodeManagerTest {
         assertTrue(typedElement.getAllAttributes().contains(new NodeAttribute("owner")));
     }
 
+    @Test
+    public void testAttributeDeclaringNodesIndex() {
+        Node<String> element = this.nm.getNode("Element");
+
+        assertEquals(1, this.nm.getAttributeDeclaringNodes("owner").size());
+        assertTrue(this.nm.getAttributeDeclaringNodes("owner").contains(element));
+        assertTrue(this.nm.getAttributeDeclaringNodes("invalidAttr").isEmpty());
+
+        element.removeAttribute(new NodeAttribute("owner"));
+        assertTrue(this.nm.getAttributeDeclaringNodes("owner").isEmpty());
+        assertEquals(null, element.getOwnOrInheritedAttributeByName("owner"));
+
+        element.addAttribute(new NodeAttribute("owner"));
+        assertTrue(this.nm.getAttributeDeclaringNodes("owner").contains(element));
+        assertEquals(element, this.nm.getNode("Property")
+                .getOwnOrInheritedAttributeByName("owner").getAttachedNode());
+    }
+
+    @Test
+    public void testNodeIdsAndMappedNodesCache() throws Exception {
+        Integer elementId = this.nm.getNodeId(this.nm.getNode("Element"));
+        assertEquals(elementId, this.nm.getNodeId(new Node<String>("Element")));
+        assertEquals(null, this.nm.getNodeId(new Node<String>("Unknown")));
+
+        assertTrue(this.nm.getNodeById(elementId) == this.nm.getNode("Element"));
+        assertEquals(null, this.nm.getNodeById(-1));
+
+        Node<String> property = this.nm.getNode("Property");
+        assertFalse(this.nm.getMappedNodes().contains(property));
+
+        this.nm.addFeatureMapping("propertyFeature", property);
+        assertTrue(this.nm.getMappedNodes().contains(property));
+
+        this.nm.removeFeatureMapping("propertyFeature");
+        assertFalse(this.nm.getMappedNodes().contains(property));
+    }
+
+    @Test
+    public void testHashCodeIsNotTheDataLength() {
+        assertEquals(new Node<String>("Element").hashCode(), this.nm.getNode("Element").hashCode());
+        assertFalse(new Node<String>("ABC").hashCode() == new Node<String>("XYZ").hashCode());
+        assertFalse(new NodeAttribute("abc").hashCode() == new NodeAttribute("xyz").hashCode());
+    }
+
+    @Test
+    public void testThatTheExecutionProfileReceivesTheExpansionWork() throws Exception {
+        this.nm.addFeatureMapping("propertyFeature", this.nm.getNode("Property"));
+        this.nm.addFeatureMapping("portFeature", this.nm.getNode("Port"));
+
+        Set<String> selectedFeatures = new HashSet<String>();
+        selectedFeatures.add("portFeature");
+
+        ExecutionProfile profile = new ExecutionProfile();
+        Map<String, Double> weights = this.nm.getFeaturesWeight(selectedFeatures, 2, profile);
+
+        assertEquals(this.nm.getFeaturesWeight(selectedFeatures, 2), weights);
+        assertEquals(null, ExecutionProfile.current());
+        assertEquals(1, profile.getCalls(Phase.TAU_ANCESTORS));
+        assertEquals(1, profile.getCalls(Phase.BFS));
+        assertEquals(1, profile.getCalls(Phase.MERGE));
+        assertTrue(profile.getNodesVisited() > 0);
+        assertTrue(profile.getPathsBuilt() > 0);
+    }
+
+    @Test
+    public void testThatTheActiveTraceRecordsTheExpansionEvents() throws Exception {
+        this.nm.addFeatureMapping("propertyFeature", this.nm.getNode("Property"));
+        this.nm.addFeatureMapping("portFeature", this.nm.getNode("Port"));
+
+        Set<String> selectedFeatures = new HashSet<String>();
+        selectedFeatures.add("portFeature");
+
+        Trace trace = new Trace().start();
+        try {
+            this.nm.getFeaturesWeight(selectedFeatures, 2);
+        } finally {
+            trace.stop();
+        }
+
+        assertEquals(EventType.TAU_ANCESTORS_COMPUTED, trace.getEvents().get(0).getType());
+        assertEquals(this.nm.getNode("Port"), trace.getEvents().get(0).getSubject());
+        assertEquals(2, trace.getEvents().get(0).getValue());
+        assertEquals(EventType.FEATURE_WEIGHTS_COMPUTED,
+                trace.getEvents().get(trace.getEvents().size() - 1).getType());
+    }
+
     @Test
     public void testIfFirstElementAtPathsIsTheOriginNode() {
         Node<String> xNode = this.nm.getNode("X");
@@ -130,4 +223,30 @@ public class NodeManagerGeneralTest extends AbstractNodeManagerTest {
             assertTrue(list.get(0).equals(property));
         }
     }
+
+    @Test
+    public void testThatEachMappingCacheHasItsOwnCounters() {
+        this.nm.getMappedNodes();
+        this.nm.getAttributeNodes();
+
+        long mappedHits = OntoRecMetrics.MAPPED_NODES_CACHE_HITS.getValue();
+        long attributeHits = OntoRecMetrics.ATTRIBUTE_NODES_CACHE_HITS
+                .getValue();
+
+        this.nm.getAttributeNodes();
+        assertEquals(mappedHits,
+                OntoRecMetrics.MAPPED_NODES_CACHE_HITS.getValue());
+        assertEquals(attributeHits + 1,
+                OntoRecMetrics.ATTRIBUTE_NODES_CACHE_HITS.getValue());
+    }
+
+    @Test
+    public void testThatTheFeaturesWeightTimersAreReused() {
+        assertTrue(OntoRecMetrics.featuresWeightTimer("Approach", 2, true,
+                false) == OntoRecMetrics.featuresWeightTimer("Approach", 2,
+                true, false));
+        assertFalse(OntoRecMetrics.featuresWeightTimer("Approach", 2, true,
+                false) == OntoRecMetrics.featuresWeightTimer("Approach", 2,
+                false, false));
+    }
 }
@@ -0,0 +1,125 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.ontorec;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import br.com.ufcg.splab.recsys.ontorec.weighting.BFSPathNodeWeightingApproach;
+
+public class NodeManagerSnapshotTest extends AbstractNodeManagerTest
+{
+    private NodeManager<String> nm;
+    private File snapshot;
+
+    @Before
+    public void setupMappedComplexGraph() throws Exception
+    {
+        this.nm = new NodeManager<String>(
+            new BFSPathNodeWeightingApproach<String>(), true, false);
+        this.buildComplexGraphAt(this.nm);
+
+        Node<String> property = this.nm.getNode("Property");
+        this.nm.addFeatureMapping("PSA", property,
+            property.getOwnOrInheritedAttributeByName("isStatic"));
+        this.nm.addFeatureMapping("PDA", property,
+            property.getOwnOrInheritedAttributeByName("isDerived"));
+        this.nm.addFeatureMapping("POP", this.nm.getNode("Port"));
+        this.nm.addFeatureMapping("TE", this.nm.getNode("TypedElement"));
+
+        this.snapshot = File.createTempFile("ontorec", ".snapshot");
+    }
+
+    @After
+    public void removeSnapshot()
+    {
+        this.snapshot.delete();
+    }
+
+    private NodeManager<String> saveAndLoad() throws IOException
+    {
+        NodeManagerSnapshot.save(this.nm, this.snapshot);
+        return NodeManagerSnapshot.load(this.snapshot,
+            new BFSPathNodeWeightingApproach<String>(), true, false);
+    }
+
+    @Test
+    public void testThatTheGraphIsRestored() throws IOException
+    {
+        NodeManager<String> loaded = this.saveAndLoad();
+
+        assertTrue(loaded.getNodes().size() == this.nm.getNodes().size());
+        for (Node<String> node : this.nm.getNodes()) {
+            Node<String> loadedNode = loaded.getNode(node.getData());
+
+            assertTrue(loadedNode.getParents().equals(node.getParents()));
+            assertTrue(loadedNode.getChildren().equals(node.getChildren()));
+            assertTrue(loadedNode.getAttributes()
+                .equals(node.getAttributes()));
+            assertTrue(loadedNode.hasMappedAttributes()
+                .equals(node.hasMappedAttributes()));
+        }
+
+        assertTrue(loaded.getMappedFeatures()
+            .equals(this.nm.getMappedFeatures()));
+        assertTrue(loaded.getMappedNodes().equals(this.nm.getMappedNodes()));
+        assertTrue(loaded.getAttributeNodes()
+            .equals(this.nm.getAttributeNodes()));
+    }
+
+    @Test
+    public void testThatTheWeightsAreTheSameAfterLoading() throws IOException
+    {
+        NodeManager<String> loaded = this.saveAndLoad();
+
+        Set<String> selectedFeatures = new HashSet<String>();
+        selectedFeatures.add("TE");
+
+        for (int tau = 1; tau <= 3; tau++) {
+            Map<String, Double> expected = this.nm.getFeaturesWeight(
+                selectedFeatures, tau);
+            Map<String, Double> result = loaded.getFeaturesWeight(
+                selectedFeatures, tau);
+
+            assertTrue(expected.equals(result));
+        }
+    }
+
+    @Test
+    public void testThatCorruptedSnapshotsAreRejected() throws IOException
+    {
+        NodeManagerSnapshot.save(this.nm, this.snapshot);
+
+        RandomAccessFile raf = new RandomAccessFile(this.snapshot, "rw");
+        try {
+            raf.seek(raf.length() - 1);
+            int lastByte = raf.read();
+            raf.seek(raf.length() - 1);
+            raf.write(lastByte ^ 0xFF);
+        } finally {
+            raf.close();
+        }
+
+        try {
+            NodeManagerSnapshot.load(this.snapshot,
+                new BFSPathNodeWeightingApproach<String>(), true, false);
+            fail("A corrupted snapshot was loaded");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("corrupted"));
+        }
+    }
+}
@@ -6,11 +6,17 @@
  */
 package br.com.ufcg.splab.recsys.ontorec;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.LinkedList;
+import java.util.Set;
+
 import org.junit.Test;
 
+import br.com.ufcg.splab.recsys.ontorec.weighting.BFSPathNodeWeightingApproach;
+
 public class NodeTest {
 
     @Test
@@ -165,4 +171,132 @@ public class NodeTest {
         assertFalse(grandfather.addAttribute(attr3));
     }
 
+    @Test
+    public void testThatTraversalsAreStackSafeAtDeepHierarchies() {
+        Node<String> root = new Node<String>("node0");
+        Node<String> leaf = root;
+        for (int i = 1; i < 20000; i++) {
+            Node<String> next = new Node<String>("node" + i);
+            next.addParent(leaf);
+            leaf = next;
+        }
+        root.addAttribute(new NodeAttribute("rootAttr"));
+
+        Set<LinkedList<Node<String>>> paths = leaf.getAllPathsToRoot();
+        assertEquals(1, paths.size());
+        assertEquals(20000, paths.iterator().next().size());
+
+        assertEquals(1, leaf.getSubgraphMaxHeightPaths(19999, false).size());
+        assertTrue(leaf.getAllAttributes().contains(new NodeAttribute("rootAttr")));
+        assertFalse(leaf.addAttribute(new NodeAttribute("rootAttr")));
+    }
+
+    @Test
+    public void testThatTraversalsStopAtCycles() {
+        Node<String> a = new Node<String>("a");
+        Node<String> b = new Node<String>("b");
+        Node<String> c = new Node<String>("c");
+
+        b.addParent(a);
+        c.addParent(b);
+        a.addParent(c);
+        a.addAttribute(new NodeAttribute("aAttr"));
+
+        assertTrue(c.getAllPathsToRoot().isEmpty());
+        assertEquals(1, c.getSubgraphMaxHeightPaths(2, false).size());
+        assertTrue(c.getSubgraphMaxHeightPaths(5, false).isEmpty());
+        assertTrue(c.getAllAttributes().contains(new NodeAttribute("aAttr")));
+        assertFalse(b.addAttribute(new NodeAttribute("aAttr")));
+    }
+
+    @Test
+    public void testThatDescendantAttributesAreTrackedAfterChanges() {
+        Node<String> father = new Node<String>("father");
+        Node<String> child = new Node<String>("child");
+        child.addParent(father);
+
+        // Computes the father's descendant attributes:
+        assertTrue(father.addAttribute(new NodeAttribute("fatherAttr")));
+
+        assertTrue(child.addAttribute(new NodeAttribute("childAttr")));
+        assertFalse(father.addAttribute(new NodeAttribute("childAttr")));
+
+        child.removeAttribute(new NodeAttribute("childAttr"));
+        assertTrue(father.addAttribute(new NodeAttribute("childAttr")));
+
+        Node<String> grandchild = new Node<String>("grandchild");
+        grandchild.addAttribute(new NodeAttribute("grandchildAttr"));
+        grandchild.addParent(child);
+        assertFalse(father.addAttribute(new NodeAttribute("grandchildAttr")));
+
+        grandchild.removeParent(child);
+        assertTrue(father.addAttribute(new NodeAttribute("grandchildAttr")));
+    }
+
+    @Test
+    public void testThatOtherManagersEditsKeepTheDescendantAttributes()
+        throws Exception {
+        NodeManager<String> nm = new NodeManager<String>(
+            new BFSPathNodeWeightingApproach<String>(), false, false);
+        Node<String> father = nm.getNode("father");
+        nm.getNode("child").addParent(father);
+        assertTrue(father.addAttribute(new NodeAttribute("fatherAttr")));
+
+        long version = nm.getStructure().getVersion();
+        long misses = OntoRecMetrics.DESCENDANT_ATTRIBUTES_CACHE_MISSES
+            .getValue();
+
+        NodeManager<String> other = new NodeManager<String>(
+            new BFSPathNodeWeightingApproach<String>(), false, false);
+        other.getNode("b").addParent(other.getNode("a"));
+        new Node<String>("c").addParent(new Node<String>("d"));
+
+        assertEquals(version, nm.getStructure().getVersion());
+        assertTrue(father.addAttribute(new NodeAttribute("otherAttr")));
+        assertEquals(misses,
+            OntoRecMetrics.DESCENDANT_ATTRIBUTES_CACHE_MISSES.getValue());
+    }
+
+    @Test
+    public void testThatTheInheritedAttributesFollowTheEdits() {
+        Node<String> grandfather = new Node<String>("grandfather");
+        Node<String> father = new Node<String>("father");
+        Node<String> child = new Node<String>("child");
+        father.addParent(grandfather);
+        child.addParent(father);
+
+        NodeAttribute name = new NodeAttribute("name");
+        assertTrue(grandfather.addAttribute(name));
+        assertEquals(name, child.getOwnOrInheritedAttributeByName("name"));
+        assertEquals(null, child.getOwnOrInheritedAttributeByName("age"));
+
+        NodeAttribute age = new NodeAttribute("age");
+        assertTrue(father.addAttribute(age));
+        assertEquals(age, child.getOwnOrInheritedAttributeByName("age"));
+
+        assertTrue(grandfather.removeAttribute(name));
+        assertEquals(null, child.getOwnOrInheritedAttributeByName("name"));
+
+        child.removeParent(father);
+        assertEquals(null, child.getOwnOrInheritedAttributeByName("age"));
+    }
+
+    @Test
+    public void testThatTheMappedFeaturesAreASnapshot() throws Exception {
+        NodeManager<String> nm = new NodeManager<String>(
+            new BFSPathNodeWeightingApproach<String>(), false, false);
+        nm.addFeatureMapping("first", nm.getNode("a"));
+
+        Set<String> features = nm.getMappedFeatures();
+        assertTrue(features == nm.getMappedFeatures());
+
+        nm.addFeatureMapping("second", nm.getNode("b"));
+        assertEquals(1, features.size());
+        assertEquals(2, nm.getMappedFeatures().size());
+
+        for (String feature : nm.getMappedFeatures()) {
+            nm.removeFeatureMapping(feature);
+        }
+        assertTrue(nm.getMappedFeatures().isEmpty());
+    }
 }
@@ -0,0 +1,85 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.ontorec;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import br.com.ufcg.splab.recsys.ontorec.weighting.BFSPathNodeWeightingApproach;
+
+public class OWLReaderTest
+{
+    private NodeManager<String> nm;
+
+    @Before
+    public void readSampleOntology() throws Exception
+    {
+        File ontology = new File(this.getClass()
+            .getResource("/uml-sample.owl").toURI());
+
+        OWLReader reader = new OWLReader(ontology.getPath(),
+            new BFSPathNodeWeightingApproach<String>(), false, false);
+        this.nm = reader.getNodeManager();
+    }
+
+    @Test
+    public void testThatClassesAndSubclassesAreRead()
+    {
+        Node<String> element = this.nm.getNode("Element");
+        Node<String> structuralFeature = this.nm.getNode("StructuralFeature");
+        Node<String> property = this.nm.getNode("Property");
+
+        assertTrue(element.isRoot());
+        assertTrue(structuralFeature.getParents().size() == 3);
+        assertTrue(structuralFeature.isChildOf(this.nm.getNode("Feature")));
+        assertTrue(property.isChildOf(structuralFeature));
+        assertTrue(property.isLeaf());
+    }
+
+    @Test
+    public void testThatPropertiesBecomeAttributes()
+    {
+        Node<String> element = this.nm.getNode("Element");
+        Node<String> namedElement = this.nm.getNode("NamedElement");
+        Node<String> feature = this.nm.getNode("Feature");
+        Node<String> property = this.nm.getNode("Property");
+
+        assertTrue(element.getAttributes()
+            .contains(new NodeAttribute("owner")));
+        assertTrue(feature.getAttributes()
+            .contains(new NodeAttribute("isStatic")));
+
+        // The object property is processed first, so the datatype property
+        // with the same name cannot be declared at a descendant node:
+        assertTrue(namedElement.getAttributes()
+            .contains(new NodeAttribute("name")));
+        assertFalse(property.getAttributes()
+            .contains(new NodeAttribute("name")));
+    }
+
+    @Test
+    public void testThatSubPropertiesReplaceTheirSuperProperty()
+    {
+        Node<String> namedElement = this.nm.getNode("NamedElement");
+
+        assertTrue(namedElement.getAttributes()
+            .contains(new NodeAttribute("public")));
+        assertTrue(namedElement.getAttributes()
+            .contains(new NodeAttribute("private")));
+        assertFalse(namedElement.getAttributes()
+            .contains(new NodeAttribute("visibility")));
+        assertTrue(namedElement.getAttributes().size() == 3);
+
+        // The super property also becomes a node holding its sub properties:
+        assertTrue(this.nm.nodeExists("visibility"));
+        assertTrue(this.nm.getNode("visibility").getAttributes().size() == 2);
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.ontorec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Set;
+
+import org.junit.Test;
+
+import br.com.ufcg.splab.recsys.metrics.ThreadWork;
+import br.com.ufcg.splab.recsys.ontorec.TraversalPlanner.Strategy;
+import br.com.ufcg.splab.recsys.ontorec.synthetic.SyntheticOntologyGenerator;
+import br.com.ufcg.splab.recsys.ontorec.weighting.BFSPathNodeWeightingApproach;
+
+public class TraversalPlannerTest extends AbstractNodeManagerTest
+{
+    private static final int LADDER_LEVELS = 10;
+
+    private long followedEdges(Node<String> node, int tau, boolean lambda,
+        boolean traversal)
+    {
+        long before = ThreadWork.current()[ThreadWork.EDGES];
+        if (traversal) {
+            node.traverseMaxNodesFromTau(tau, lambda);
+        } else {
+            node.enumerateMaxNodesFromTau(tau, lambda);
+        }
+        return ThreadWork.current()[ThreadWork.EDGES] - before;
+    }
+
+    @Test
+    public void testThatTheStatisticsDescribeTheHierarchy()
+        throws Exception
+    {
+        NodeManager<String> nm = this.buildLadder(LADDER_LEVELS, false);
+        GraphStatistics<String> statistics = nm.getTraversalPlanner()
+            .getStatistics();
+
+        assertEquals(2 * LADDER_LEVELS + 2, statistics.getNodeCount());
+        assertEquals(4 * LADDER_LEVELS, statistics.getEdgeCount());
+        assertEquals(1, statistics.getRootCount());
+        assertEquals(LADDER_LEVELS + 1, statistics.getMaxDepth());
+        assertEquals(LADDER_LEVELS + 1,
+            statistics.getDepth(nm.getNode("leaf")));
+        assertEquals(2 * LADDER_LEVELS - 1,
+            statistics.getMultipleInheritanceNodes());
+        assertEquals(4 * LADDER_LEVELS - (2 * LADDER_LEVELS + 1),
+            statistics.getDiamondCount());
+        assertTrue(statistics.isAcyclic());
+    }
+
+    @Test
+    public void testThatTheEnumerationCostEstimateIsExact() throws Exception
+    {
+        NodeManager<String> nm = new SyntheticOntologyGenerator()
+            .setClasses(300).setMaxDepth(6).setBranching(3)
+            .setMultipleInheritanceRate(0.3).setOnlyBegottenFatherRate(0.2)
+            .setClassMappingDensity(0.3).setSeed(3).generate()
+            .toNodeManager(new BFSPathNodeWeightingApproach<String>(), true,
+                false);
+        GraphStatistics<String> statistics = nm.getTraversalPlanner()
+            .getStatistics();
+
+        for (Node<String> node : nm.getNodes()) {
+            for (int tau = 1; tau <= 4; tau++) {
+                for (boolean lambda : new boolean[] { false, true }) {
+                    assertEquals(
+                        statistics.estimatePathEnumerationCost(node, tau,
+                            lambda), this.followedEdges(node, tau, lambda,
+                            false));
+                    assertTrue(statistics.estimateStateTraversalCost(node,
+                        tau, lambda) <= statistics.estimatePathEnumerationCost(
+                        node, tau, lambda));
+                    assertEquals(node.enumerateMaxNodesFromTau(tau, lambda),
+                        node.traverseMaxNodesFromTau(tau, lambda));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testThatTheCheapestStrategyIsChosen()
+        throws Exception
+    {
+        NodeManager<String> nm = this.buildLadder(LADDER_LEVELS, false);
+        TraversalPlanner<String> planner = nm.getTraversalPlanner();
+        Node<String> leaf = nm.getNode("leaf");
+
+        // A shallow search has few paths:
+        assertEquals(Strategy.PATH_ENUMERATION,
+            planner.plan(leaf, 2, false).getStrategy());
+
+        // A deep one has 2^τ paths, but only two nodes per level:
+        TraversalPlanner.Plan plan = planner.plan(leaf, 8, false);
+        assertEquals(Strategy.STATE_TRAVERSAL, plan.getStrategy());
+        assertTrue(this.followedEdges(leaf, 8, false, true) <= plan
+            .getEstimatedCost());
+        assertTrue(this.followedEdges(leaf, 8, false, false) > plan
+            .getEstimatedCost());
+
+        Set<Node<String>> ancestors = leaf.extractMaxNodesFromTau(8, false);
+        assertEquals(leaf.enumerateMaxNodesFromTau(8, false), ancestors);
+        assertEquals(Strategy.ANCESTOR_TABLE,
+            planner.plan(leaf, 8, false).getStrategy());
+        assertTrue(ancestors == leaf.extractMaxNodesFromTau(8, false));
+    }
+
+    @Test
+    public void testThatADeepenedSearchMovesUpFromThePreviousLevel()
+        throws Exception
+    {
+        for (boolean lambda : new boolean[] { false, true }) {
+            NodeManager<String> nm = new SyntheticOntologyGenerator()
+                .setClasses(300).setMaxDepth(6).setBranching(3)
+                .setMultipleInheritanceRate(0.3)
+                .setOnlyBegottenFatherRate(0.2).setClassMappingDensity(0.3)
+                .setSeed(5).generate()
+                .toNodeManager(new BFSPathNodeWeightingApproach<String>(),
+                    lambda, false);
+            TraversalPlanner<String> planner = nm.getTraversalPlanner();
+
+            for (Node<String> node : nm.getNodes()) {
+                node.extractMaxNodesFromTau(1, lambda);
+                for (int tau = 2; tau <= 6; tau++) {
+                    assertEquals(Strategy.FRONTIER_EXTENSION,
+                        planner.plan(node, tau, lambda).getStrategy());
+                    assertEquals(node.enumerateMaxNodesFromTau(tau, lambda),
+                        node.extractMaxNodesFromTau(tau, lambda));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testThatTheAncestorTableIsDiscardedWhenTheGraphChanges()
+        throws Exception
+    {
+        NodeManager<String> nm = this.buildLadder(LADDER_LEVELS, false);
+        TraversalPlanner<String> planner = nm.getTraversalPlanner();
+        Node<String> leaf = nm.getNode("leaf");
+
+        leaf.extractMaxNodesFromTau(3, true);
+        assertEquals(Strategy.ANCESTOR_TABLE,
+            planner.plan(leaf, 3, true).getStrategy());
+
+        nm.addFeatureMapping("leafFeature", leaf);
+        assertFalse(Strategy.ANCESTOR_TABLE == planner.plan(leaf, 3, true)
+            .getStrategy());
+
+        leaf.extractMaxNodesFromTau(3, true);
+        nm.getNode("other").addParent(nm.getNode("root"));
+        assertFalse(Strategy.ANCESTOR_TABLE == planner.plan(leaf, 3, true)
+            .getStrategy());
+        assertEquals(2 * LADDER_LEVELS + 3, planner.getStatistics()
+            .getNodeCount());
+    }
+
+    @Test
+    public void testThatOtherGraphsEditsKeepTheAncestorTable()
+        throws Exception
+    {
+        NodeManager<String> nm = this.buildLadder(LADDER_LEVELS, false);
+        TraversalPlanner<String> planner = nm.getTraversalPlanner();
+        Node<String> leaf = nm.getNode("leaf");
+
+        leaf.extractMaxNodesFromTau(3, true);
+        GraphStatistics<String> statistics = planner.getStatistics();
+
+        this.buildLadder(LADDER_LEVELS, false).getNode("other").addParent(
+            this.buildLadder(LADDER_LEVELS, false).getNode("root"));
+        new Node<String>("child").addParent(new Node<String>("parent"));
+
+        assertEquals(Strategy.ANCESTOR_TABLE,
+            planner.plan(leaf, 3, true).getStrategy());
+        assertTrue(statistics == planner.getStatistics());
+    }
+
+    @Test
+    public void testThatOnlyThePathEnumerationIsUsedAtCycles()
+    {
+        NodeManager<String> nm = new NodeManager<String>(
+            new BFSPathNodeWeightingApproach<String>(), false, false);
+        Node<String> a = nm.getNode("a");
+        Node<String> b = nm.getNode("b");
+        Node<String> c = nm.getNode("c");
+        b.addParent(a);
+        c.addParent(b);
+        a.addParent(c);
+
+        GraphStatistics<String> statistics = nm.getTraversalPlanner()
+            .getStatistics();
+        assertFalse(statistics.isAcyclic());
+        assertEquals(-1, statistics.getDepth(c));
+
+        TraversalPlanner.Plan plan = nm.getTraversalPlanner().plan(c, 2,
+            false);
+        assertEquals(Strategy.PATH_ENUMERATION, plan.getStrategy());
+        assertEquals(GraphStatistics.UNKNOWN_COST, plan.getEstimatedCost());
+        assertEquals(1, c.extractMaxNodesFromTau(2, false).size());
+        assertTrue(c.extractMaxNodesFromTau(5, false).isEmpty());
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.ontorec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import br.com.ufcg.splab.recsys.ontorec.TraversalPlanner.Strategy;
+import br.com.ufcg.splab.recsys.ontorec.synthetic.SyntheticOntology;
+import br.com.ufcg.splab.recsys.ontorec.synthetic.SyntheticOntologyGenerator;
+import br.com.ufcg.splab.recsys.ontorec.weighting.BFSPathNodeWeightingApproach;
+import br.com.ufcg.splab.recsys.ontorec.weighting.TaunthAncestorNodeWeightingApproach;
+
+public class WarmUpTest
+{
+    private SyntheticOntology generate()
+    {
+        return new SyntheticOntologyGenerator().setClasses(300)
+            .setMaxDepth(6).setBranching(3).setMultipleInheritanceRate(0.3)
+            .setOnlyBegottenFatherRate(0.2).setClassMappingDensity(0.3)
+            .setSeed(19).generate();
+    }
+
+    @Test
+    public void testThatTheWarmedUpAncestorsAreReadFromTheTable()
+        throws Exception
+    {
+        SyntheticOntology ontology = this.generate();
+        NodeManager<String> nm = ontology.toNodeManager(
+            new TaunthAncestorNodeWeightingApproach<String>(), true, false);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        WarmUp warmUp;
+        try {
+            warmUp = nm.warmUp(Arrays.asList(2, 3), executor);
+            assertTrue(warmUp.awaitReady(1, TimeUnit.MINUTES));
+        } finally {
+            executor.shutdown();
+        }
+
+        assertTrue(warmUp == nm.getWarmUp());
+        assertNull(warmUp.getFailure());
+        assertEquals(1d, warmUp.getProgress(), 0d);
+        Set<Node<String>> warmedNodes = new HashSet<Node<String>>(
+            nm.getMappedNodes());
+        warmedNodes.addAll(nm.getAttributeNodes());
+        assertEquals(warmedNodes.size(), warmUp.getTotal());
+        assertEquals(warmUp.getTotal(), warmUp.getDone());
+        assertTrue(warmUp.getElapsedNanos() >= 0);
+
+        TraversalPlanner<String> planner = nm.getTraversalPlanner();
+        for (Node<String> node : nm.getMappedNodes()) {
+            for (int tau = 2; tau <= 3; tau++) {
+                assertEquals(Strategy.ANCESTOR_TABLE,
+                    planner.plan(node, tau, true).getStrategy());
+            }
+        }
+
+        // The warmed up manager gives the same weights of a cold one:
+        List<String> features = new ArrayList<String>(nm.getMappedFeatures());
+        Collections.sort(features);
+        Set<String> selection = new HashSet<String>(features.subList(0, 3));
+        assertEquals(
+            ontology.toNodeManager(
+                new TaunthAncestorNodeWeightingApproach<String>(), true,
+                false).getFeaturesWeight(selection, 3),
+            nm.getFeaturesWeight(selection, 3));
+    }
+
+    @Test
+    public void testThatAManagerWithoutMappingsIsReadyAtOnce()
+        throws Exception
+    {
+        NodeManager<String> nm = new NodeManager<String>(
+            new TaunthAncestorNodeWeightingApproach<String>(), false, false);
+        nm.getNode("root");
+
+        WarmUp warmUp = nm.warmUp(Arrays.asList(1), null);
+
+        assertTrue(warmUp.isReady());
+        assertTrue(warmUp.awaitReady(0, TimeUnit.SECONDS));
+        assertEquals(0, warmUp.getTotal());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testThatANegativeTauIsRejected() throws Exception
+    {
+        NodeManager<String> nm = this.generate().toNodeManager(
+            new TaunthAncestorNodeWeightingApproach<String>(), false, false);
+        assertFalse(nm.getMappedFeatures().isEmpty());
+        nm.warmUp(Arrays.asList(-1), null);
+    }
+
+    @Test
+    public void testThatRejectedNodesFailTheWarmUp() throws Exception
+    {
+        NodeManager<String> nm = this.generate().toNodeManager(
+            new TaunthAncestorNodeWeightingApproach<String>(), false, false);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        executor.shutdown();
+        WarmUp warmUp = nm.warmUp(Arrays.asList(2), executor);
+
+        assertTrue(warmUp.isDone());
+        assertFalse(warmUp.isReady());
+        assertFalse(warmUp.awaitReady(0, TimeUnit.SECONDS));
+        assertEquals(warmUp.getTotal(), warmUp.getDone());
+        assertTrue(warmUp.getFailure() instanceof RejectedExecutionException);
+    }
+
+    @Test
+    public void testThatErrorsFailTheWarmUp() throws Exception
+    {
+        NodeManager<FailingData> nm = new NodeManager<FailingData>(
+            new BFSPathNodeWeightingApproach<FailingData>(), false, false);
+        Node<FailingData> root = nm.getNode(new FailingData("root"));
+        Node<FailingData> middle = nm.getNode(new FailingData("middle"));
+        Node<FailingData> leaf = nm.getNode(new FailingData("leaf"));
+        middle.addParent(root);
+        leaf.addParent(middle);
+        nm.addFeatureMapping("leafFeature", leaf);
+
+        ExecutorService executor = Executors
+            .newSingleThreadExecutor(new ThreadFactory()
+            {
+                @Override
+                public Thread newThread(Runnable task)
+                {
+                    return new Thread(task, FailingData.FAILING_THREAD);
+                }
+            });
+        WarmUp warmUp;
+        try {
+            warmUp = nm.warmUp(Arrays.asList(2), executor);
+            assertFalse(warmUp.awaitReady(1, TimeUnit.MINUTES));
+        } finally {
+            executor.shutdown();
+        }
+
+        assertTrue(warmUp.isDone());
+        assertTrue(warmUp.getFailure() instanceof StackOverflowError);
+    }
+
+    /**
+     * Node data that can not be hashed nor compared at the warm-up threads,
+     * so the warm-up fails with an error.
+     */
+    private static class FailingData
+    {
+        private static final String FAILING_THREAD = "failing-warm-up";
+
+        private final String name;
+
+        FailingData(String name)
+        {
+            this.name = name;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            this.checkThread();
+            // Never cached by the nodes, so it is called at each lookup:
+            return 0;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            this.checkThread();
+            return (obj instanceof FailingData)
+                && this.name.equals( ((FailingData) obj).name);
+        }
+
+        private void checkThread()
+        {
+            if (FAILING_THREAD.equals(Thread.currentThread().getName())) {
+                throw new StackOverflowError();
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            return this.name;
+        }
+    }
+}
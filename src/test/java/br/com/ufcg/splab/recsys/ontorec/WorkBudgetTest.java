@@ -0,0 +1,302 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.ontorec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import br.com.ufcg.splab.recsys.metrics.ExecutionProfile;
+import br.com.ufcg.splab.recsys.metrics.ExecutionProfile.Phase;
+import br.com.ufcg.splab.recsys.metrics.ThreadWork;
+import br.com.ufcg.splab.recsys.ontorec.WorkBudget.Limit;
+import br.com.ufcg.splab.recsys.ontorec.WorkBudget.Policy;
+import br.com.ufcg.splab.recsys.ontorec.weighting.BFSPathNodeWeightingApproach;
+
+public class WorkBudgetTest extends AbstractNodeManagerTest
+{
+    private static final int LADDER_LEVELS = 12;
+    private static final int TAU = 3;
+
+    private Set<String> select(String... features)
+    {
+        return new LinkedHashSet<String>(Arrays.asList(features));
+    }
+
+    @Test
+    public void testThatACallWithinTheBudgetIsComplete() throws Exception
+    {
+        Map<String, Double> expected = this.buildLadder(LADDER_LEVELS, true)
+            .getFeaturesWeight(this.select("fa12"), TAU);
+
+        FeaturesWeightResult result = this.buildLadder(LADDER_LEVELS, true)
+            .getFeaturesWeight(this.select("fa12"), TAU,
+            new WorkBudget().setMaxEdges(100000).setMaxPaths(100000)
+                .setTimeout(1, TimeUnit.MINUTES));
+
+        assertFalse(result.isDegraded());
+        assertNull(result.getExceeded());
+        assertEquals(expected, result.getWeights());
+    }
+
+    @Test
+    public void testThatTheFailFastPolicyThrowsATypedException()
+        throws Exception
+    {
+        long exceeded = OntoRecMetrics.budgetExceededCounter(Limit.EDGES)
+            .getValue();
+
+        try {
+            this.buildLadder(LADDER_LEVELS, true).getFeaturesWeight(
+                this.select("fa12"), TAU, new WorkBudget().setMaxEdges(10));
+            fail("The budget should be exceeded");
+        } catch (WorkBudgetExceededException e) {
+            assertEquals(Limit.EDGES, e.getLimit());
+            assertEquals(10, e.getAllowed());
+            assertTrue(e.getUsed() > 10);
+        }
+
+        assertEquals(exceeded + 1,
+            OntoRecMetrics.budgetExceededCounter(Limit.EDGES).getValue());
+        assertNull(WorkBudgetTracker.current());
+    }
+
+    @Test
+    public void testThatThePathsOfARunningEnumerationAreLimited()
+    {
+        NodeManager<String> nm = new NodeManager<String>(
+            new BFSPathNodeWeightingApproach<String>(), false, false);
+        Node<String> left = nm.getNode("root");
+        Node<String> right = left;
+        for (int level = 1; level <= 20; level++) {
+            Node<String> newLeft = nm.getNode("a" + level);
+            Node<String> newRight = nm.getNode("b" + level);
+            newLeft.addParent(left);
+            newLeft.addParent(right);
+            newRight.addParent(left);
+            newRight.addParent(right);
+            left = newLeft;
+            right = newRight;
+        }
+
+        // 2^19 paths reach the first level:
+        WorkBudgetTracker tracker = new WorkBudgetTracker(
+            new WorkBudget().setMaxPaths(1000)).start();
+        try {
+            left.getSubgraphMaxHeightPaths(19, false);
+            fail("The budget should be exceeded");
+        } catch (WorkBudgetExceededException e) {
+            assertEquals(Limit.PATHS, e.getLimit());
+            assertEquals(1001, e.getUsed());
+        } finally {
+            tracker.stop();
+        }
+    }
+
+    @Test
+    public void testThatTheDegradePolicyReturnsThePartialExpansion()
+        throws Exception
+    {
+        // The cost of the first selected feature alone:
+        long before = ThreadWork.current()[ThreadWork.EDGES];
+        this.buildLadder(LADDER_LEVELS, true).getFeaturesWeight(
+            this.select("fa6"), TAU);
+        long firstFeatureEdges = ThreadWork.current()[ThreadWork.EDGES]
+            - before;
+
+        long degraded = OntoRecMetrics.DEGRADED_EXPANSIONS.getValue();
+        NodeManager<String> nm = this.buildLadder(LADDER_LEVELS, true);
+        FeaturesWeightResult result = nm.getFeaturesWeight(
+            this.select("fa6", "fa12"), TAU,
+            new WorkBudget().setMaxEdges(firstFeatureEdges + 1).setPolicy(
+                Policy.DEGRADE));
+
+        assertTrue(result.isDegraded());
+        assertEquals(Limit.EDGES, result.getExceeded().getLimit());
+        assertEquals(degraded + 1,
+            OntoRecMetrics.DEGRADED_EXPANSIONS.getValue());
+
+        Map<String, Double> weights = result.getWeights();
+        assertEquals(nm.getMappedFeatures(), weights.keySet());
+        assertEquals(1d, weights.get("fa6"), 0d);
+        assertEquals(1d, weights.get("fa12"), 0d);
+
+        // The features near the first one were reached:
+        assertTrue(weights.get("fa5") > 0);
+        assertTrue(weights.get("fa7") > 0);
+    }
+
+    @Test
+    public void testThatExceededBudgetsKeepTheProfileBalanced()
+        throws Exception
+    {
+        // The cost of the whole call:
+        long before = ThreadWork.current()[ThreadWork.EDGES];
+        this.buildLadder(LADDER_LEVELS, true).getFeaturesWeight(
+            this.select("fa6", "fa12"), TAU);
+        long callEdges = ThreadWork.current()[ThreadWork.EDGES] - before;
+
+        ExecutionProfile profile = new ExecutionProfile().start();
+        try {
+            // The budgets are exceeded at different phases of the calls:
+            int failures = 0;
+            for (int i = 0; i < 20; i++) {
+                try {
+                    this.buildLadder(LADDER_LEVELS, true).getFeaturesWeight(
+                        this.select("fa6", "fa12"), TAU,
+                        new WorkBudget().setMaxEdges(1 + i * callEdges / 20));
+                } catch (WorkBudgetExceededException e) {
+                    failures++;
+                }
+            }
+            assertEquals(20, failures);
+
+            // A phase is only recorded while the profile is not deeper than
+            // its max depth:
+            long merges = profile.getCalls(Phase.MERGE);
+            profile.begin();
+            profile.end(Phase.MERGE);
+            assertEquals(merges + 1, profile.getCalls(Phase.MERGE));
+        } finally {
+            profile.stop();
+        }
+    }
+
+    @Test
+    public void testThatTheDeadlineStopsTheCall() throws Exception
+    {
+        FeaturesWeightResult result = this.buildLadder(LADDER_LEVELS, true)
+            .getFeaturesWeight(this.select("fa12"), TAU,
+            new WorkBudget().setTimeout(1, TimeUnit.NANOSECONDS).setPolicy(
+                Policy.DEGRADE));
+
+        assertTrue(result.isDegraded());
+        assertEquals(Limit.DEADLINE, result.getExceeded().getLimit());
+        assertEquals(1d, result.getWeights().get("fa12"), 0d);
+        assertEquals(0d, result.getWeights().get("fa11"), 0d);
+    }
+
+    @Test
+    public void testThatTheDefaultBudgetLimitsTheCallsWithoutOne()
+        throws Exception
+    {
+        NodeManager<String> nm = this.buildLadder(LADDER_LEVELS, true);
+        nm.setWorkBudget(new WorkBudget().setMaxEdges(10));
+
+        try {
+            nm.getFeaturesWeight(Collections.singleton("fa12"), TAU);
+            fail("The budget should be exceeded");
+        } catch (WorkBudgetExceededException e) {
+            assertEquals(Limit.EDGES, e.getLimit());
+        }
+
+        nm.setWorkBudget(null);
+        assertEquals(nm.getMappedFeatures(),
+            nm.getFeaturesWeight(Collections.singleton("fa12"), TAU)
+                .keySet());
+    }
+
+    @Test
+    public void testThatAnAnytimeCallWithinTheBudgetReachesTheMaxTau()
+        throws Exception
+    {
+        // The cost of each level calculated on its own:
+        long before = ThreadWork.current()[ThreadWork.EDGES];
+        for (int tau = 1; tau <= TAU; tau++) {
+            this.buildLadder(LADDER_LEVELS, true).getFeaturesWeight(
+                this.select("fa6", "fa12"), tau);
+        }
+        long separateLevelsEdges = ThreadWork.current()[ThreadWork.EDGES]
+            - before;
+
+        long extensions = OntoRecMetrics.PLANS_FRONTIER_EXTENSION.getValue();
+
+        before = ThreadWork.current()[ThreadWork.EDGES];
+        FeaturesWeightResult result = this.buildLadder(LADDER_LEVELS, true)
+            .getFeaturesWeightAnytime(this.select("fa6", "fa12"), TAU,
+                new WorkBudget().setTimeout(1, TimeUnit.MINUTES));
+        long anytimeEdges = ThreadWork.current()[ThreadWork.EDGES] - before;
+
+        assertFalse(result.isDegraded());
+        assertEquals(TAU, result.getTau());
+        assertEquals(
+            this.buildLadder(LADDER_LEVELS, true).getFeaturesWeight(
+                this.select("fa6", "fa12"), TAU), result.getWeights());
+
+        // The deeper levels moved up from the previous ones and reused
+        // their subgraphs:
+        assertTrue(OntoRecMetrics.PLANS_FRONTIER_EXTENSION.getValue()
+            > extensions);
+        assertTrue(anytimeEdges < separateLevelsEdges);
+    }
+
+    @Test
+    public void testThatAnAnytimeCallReturnsTheDeepestCompleteLevel()
+        throws Exception
+    {
+        // The cost of the first two levels:
+        long before = ThreadWork.current()[ThreadWork.EDGES];
+        this.buildLadder(LADDER_LEVELS, true).getFeaturesWeightAnytime(
+            this.select("fa12"), 2, new WorkBudget());
+        long twoLevelsEdges = ThreadWork.current()[ThreadWork.EDGES] - before;
+
+        long interrupted = OntoRecMetrics.ANYTIME_INTERRUPTED.getValue();
+        long degraded = OntoRecMetrics.DEGRADED_EXPANSIONS.getValue();
+        FeaturesWeightResult result = this.buildLadder(LADDER_LEVELS, true)
+            .getFeaturesWeightAnytime(this.select("fa12"), LADDER_LEVELS,
+                new WorkBudget().setMaxEdges(twoLevelsEdges + 1).setPolicy(
+                    Policy.DEGRADE));
+
+        assertTrue(result.isDegraded());
+        assertEquals(Limit.EDGES, result.getExceeded().getLimit());
+        assertEquals(2, result.getTau());
+        assertEquals(
+            this.buildLadder(LADDER_LEVELS, true).getFeaturesWeight(
+                this.select("fa12"), 2),
+            result.getWeights());
+        assertEquals(interrupted + 1,
+            OntoRecMetrics.ANYTIME_INTERRUPTED.getValue());
+        // A complete level is not a degraded expansion:
+        assertEquals(degraded, OntoRecMetrics.DEGRADED_EXPANSIONS.getValue());
+    }
+
+    @Test
+    public void testThatAnAnytimeCallWithoutCompleteLevelsFollowsThePolicy()
+        throws Exception
+    {
+        try {
+            this.buildLadder(LADDER_LEVELS, true).getFeaturesWeightAnytime(
+                this.select("fa12"), TAU,
+                new WorkBudget().setTimeout(1, TimeUnit.NANOSECONDS));
+            fail("The budget should be exceeded");
+        } catch (WorkBudgetExceededException e) {
+            assertEquals(Limit.DEADLINE, e.getLimit());
+        }
+
+        long degraded = OntoRecMetrics.DEGRADED_EXPANSIONS.getValue();
+        FeaturesWeightResult result = this.buildLadder(LADDER_LEVELS, true)
+            .getFeaturesWeightAnytime(this.select("fa12"), TAU,
+                new WorkBudget().setTimeout(1, TimeUnit.NANOSECONDS)
+                    .setPolicy(Policy.DEGRADE));
+        assertTrue(result.isDegraded());
+        assertEquals(degraded + 1,
+            OntoRecMetrics.DEGRADED_EXPANSIONS.getValue());
+        assertEquals(0, result.getTau());
+        assertEquals(1d, result.getWeights().get("fa12"), 0d);
+        assertEquals(0d, result.getWeights().get("fa11"), 0d);
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.ontorec.evaluation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+import br.com.ufcg.splab.recsys.ontorec.NodeManager;
+import br.com.ufcg.splab.recsys.ontorec.recommender.OntoRecApproach;
+import br.com.ufcg.splab.recsys.ontorec.synthetic.SyntheticOntology;
+import br.com.ufcg.splab.recsys.ontorec.synthetic.SyntheticOntologyGenerator;
+import br.com.ufcg.splab.recsys.ontorec.synthetic.SyntheticWorkload;
+import br.com.ufcg.splab.recsys.ontorec.weighting.BFSPathNodeWeightingApproach;
+import br.com.ufcg.splab.recsys.ontorec.weighting.TaunthAncestorNodeWeightingApproach;
+import br.com.ufcg.splab.recsys.recommender.Recommender;
+import br.com.ufcg.splab.recsys.recommender.SimilarityMapper;
+import br.com.ufcg.splab.recsys.recommender.SimilarityMethod;
+
+public class GridEvaluatorTest
+{
+    private static final int CUTOFF = 5;
+
+    private final SimilarityMethod dotProduct = new SimilarityMethod()
+    {
+        @Override
+        public Double calculate(Map<String, Double> v1, Map<String, Double> v2)
+        {
+            double result = 0;
+            for (String feature : v2.keySet()) {
+                Double weight = v1.get(feature);
+                if (weight != null) {
+                    result += weight * v2.get(feature);
+                }
+            }
+            return result;
+        }
+    };
+
+    private SyntheticOntology generate()
+    {
+        return new SyntheticOntologyGenerator().setClasses(200)
+            .setMaxDepth(5).setBranching(3).setMultipleInheritanceRate(0.2)
+            .setOnlyBegottenFatherRate(0.2).setClassMappingDensity(0.4)
+            .setSeed(13).generate();
+    }
+
+    private InteractionLog buildLog(SyntheticWorkload workload,
+        List<Map<String, Double>> items)
+    {
+        InteractionLog log = new InteractionLog();
+        for (int user = 0; user < 30; user++) {
+            Set<String> selection = workload.nextSelection(2);
+            Set<Integer> relevant = new LinkedHashSet<Integer>();
+            for (Map<String, Double> item : items) {
+                for (String feature : selection) {
+                    if (item.containsKey(feature) && relevant.size() < 4) {
+                        relevant.add(item.get(SyntheticWorkload.ITEM_ID_KEY)
+                            .intValue());
+                    }
+                }
+            }
+            log.add(new HeldOutCase("u" + user, selection, relevant));
+        }
+        return log;
+    }
+
+    private RankingMetrics evaluateOne(SyntheticOntology ontology,
+        List<Map<String, Double>> items, InteractionLog log,
+        EvaluationConfiguration configuration) throws Exception
+    {
+        NodeManager<String> nm = ontology.toNodeManager(configuration
+            .getApproachName().equals("BFS")
+            ? new BFSPathNodeWeightingApproach<String>()
+            : new TaunthAncestorNodeWeightingApproach<String>(),
+            configuration.getLambda(), configuration.getUpsilon());
+        OntoRecApproach approach = new OntoRecApproach(nm, this.dotProduct);
+        approach.setMaxHeight(configuration.getTau());
+        Recommender recommender = new Recommender(approach);
+        for (Map<String, Double> item : items) {
+            recommender.addItem(item);
+        }
+
+        RankingMetrics result = new RankingMetrics(CUTOFF);
+        for (HeldOutCase heldOutCase : log.getCases()) {
+            Map<String, Double> profile = new HashMap<String, Double>();
+            for (String feature : heldOutCase.getSelectedFeatures()) {
+                profile.put(feature, 1d);
+            }
+            List<Integer> ranking = new ArrayList<Integer>();
+            for (SimilarityMapper item : recommender.recommendTo(profile,
+                CUTOFF)) {
+                ranking.add(item.getProfileId());
+            }
+            result.record(ranking, heldOutCase.getRelevantItems());
+        }
+        return result;
+    }
+
+    @Test
+    public void testThatTheGridMatchesSeparateEvaluations() throws Exception
+    {
+        SyntheticOntology ontology = this.generate();
+        SyntheticWorkload workload = new SyntheticWorkload(ontology, 17);
+        List<Map<String, Double>> items = workload.nextCatalog(150, 3);
+        InteractionLog log = this.buildLog(workload, items);
+
+        ParameterGrid grid = new ParameterGrid()
+            .addApproach("BFS", new BFSPathNodeWeightingApproach<String>())
+            .addApproach("TAU",
+                new TaunthAncestorNodeWeightingApproach<String>())
+            .setTaus(1, 3).setLambdas(false, true).setUpsilons(false, true);
+
+        GridEvaluator evaluator = new GridEvaluator(ontology.toNodeManager(
+            new BFSPathNodeWeightingApproach<String>(), false, false), items,
+            this.dotProduct);
+        evaluator.setCutoff(CUTOFF);
+        evaluator.setUserBlockSize(7);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        evaluator.setExecutor(executor);
+
+        Map<EvaluationConfiguration, RankingMetrics> results;
+        try {
+            results = evaluator.evaluate(grid, log);
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(grid.getConfigurations(),
+            new ArrayList<EvaluationConfiguration>(results.keySet()));
+        assertEquals(16, results.size());
+
+        Set<Double> distinctNdcgs = new HashSet<Double>();
+        for (EvaluationConfiguration configuration : results.keySet()) {
+            RankingMetrics expected = this.evaluateOne(ontology, items, log,
+                configuration);
+            RankingMetrics actual = results.get(configuration);
+            assertEquals(expected.getUsers(), actual.getUsers());
+            assertEquals(expected.getPrecision(), actual.getPrecision(), 1e-9);
+            assertEquals(expected.getRecall(), actual.getRecall(), 1e-9);
+            assertEquals(expected.getNdcg(), actual.getNdcg(), 1e-9);
+            distinctNdcgs.add(actual.getNdcg());
+        }
+        // The configurations are not all the same:
+        assertTrue(distinctNdcgs.size() > 1);
+    }
+
+    @Test
+    public void testThatALogFileIsRead() throws Exception
+    {
+        File file = File.createTempFile("ontorec-log", ".tsv");
+        try {
+            Writer writer = new OutputStreamWriter(new FileOutputStream(file),
+                "UTF-8");
+            try {
+                writer.write("# user\tfeatures\titems\n");
+                writer.write("u1\tCamera, GPS\t12,40\n\n");
+                writer.write("u2\t\t7\n");
+            } finally {
+                writer.close();
+            }
+
+            InteractionLog log = InteractionLog.read(file);
+            assertEquals(2, log.size());
+            HeldOutCase first = log.getCases().get(0);
+            assertEquals("u1", first.getUserId());
+            assertEquals(new LinkedHashSet<String>(Arrays.asList(
+                "Camera", "GPS")), first.getSelectedFeatures());
+            assertEquals(2, first.getRelevantItems().size());
+            assertTrue(log.getCases().get(1).getSelectedFeatures().isEmpty());
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.ontorec.evaluation;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class RankingMetricsTest
+{
+    private static final double DELTA = 1e-12;
+
+    private Set<Integer> items(Integer... ids)
+    {
+        return new HashSet<Integer>(Arrays.asList(ids));
+    }
+
+    @Test
+    public void testTheMetricsOfASingleUser()
+    {
+        RankingMetrics metrics = new RankingMetrics(3);
+        metrics.record(Arrays.asList(1, 2, 3, 4), this.items(1, 3, 9, 10));
+
+        double log2Of4 = 2;
+        assertEquals(1, metrics.getUsers());
+        assertEquals(2 / 3d, metrics.getPrecision(), DELTA);
+        assertEquals(2 / 4d, metrics.getRecall(), DELTA);
+        assertEquals((1 + 1 / log2Of4)
+            / (1 + 1 / (Math.log(3) / Math.log(2)) + 1 / log2Of4),
+            metrics.getNdcg(), DELTA);
+    }
+
+    @Test
+    public void testThatTheMergedMetricsAreTheMeansOfAllUsers()
+    {
+        RankingMetrics first = new RankingMetrics(2);
+        first.record(Arrays.asList(1, 2), this.items(1, 2));
+        RankingMetrics second = new RankingMetrics(2);
+        second.record(Arrays.asList(3, 4), this.items(5));
+        second.record(Arrays.asList(3, 4), Collections.<Integer> emptySet());
+
+        first.merge(second);
+
+        assertEquals(2, first.getUsers());
+        assertEquals(1, first.getUsersWithoutRelevantItems());
+        assertEquals(0.5, first.getPrecision(), DELTA);
+        assertEquals(0.5, first.getRecall(), DELTA);
+        assertEquals(0.5, first.getNdcg(), DELTA);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testThatOnlyTheSameCutoffIsMerged()
+    {
+        new RankingMetrics(2).merge(new RankingMetrics(3));
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.ontorec.synthetic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import br.com.ufcg.splab.recsys.ontorec.Node;
+import br.com.ufcg.splab.recsys.ontorec.NodeManager;
+import br.com.ufcg.splab.recsys.ontorec.OWLReader;
+import br.com.ufcg.splab.recsys.ontorec.weighting.BFSPathNodeWeightingApproach;
+
+public class SyntheticOntologyGeneratorTest
+{
+    private SyntheticOntologyGenerator generator()
+    {
+        return new SyntheticOntologyGenerator().setClasses(2000)
+            .setMaxDepth(6).setBranching(3).setMultipleInheritanceRate(0.2)
+            .setOnlyBegottenFatherRate(0.1).setProperties(200)
+            .setClassMappingDensity(0.3).setSeed(7);
+    }
+
+    @Test
+    public void testThatTheGenerationIsDeterministic()
+    {
+        SyntheticOntology first = this.generator().generate();
+        SyntheticOntology second = this.generator().generate();
+
+        assertEquals(first.getFeatures(), second.getFeatures());
+        for (int c = 0; c < first.getClassCount(); c++) {
+            assertEquals(first.getParents(c), second.getParents(c));
+        }
+
+        SyntheticWorkload firstWorkload = new SyntheticWorkload(first, 3);
+        SyntheticWorkload secondWorkload = new SyntheticWorkload(second, 3);
+        assertEquals(firstWorkload.nextCatalog(50, 4),
+            secondWorkload.nextCatalog(50, 4));
+        assertEquals(firstWorkload.nextSelection(5),
+            secondWorkload.nextSelection(5));
+    }
+
+    @Test
+    public void testThatTheHierarchyFollowsTheSettings()
+    {
+        SyntheticOntology ontology = this.generator().generate();
+
+        assertEquals(2000, ontology.getClassCount());
+        assertTrue(ontology.getMaxDepth() <= 6);
+        assertTrue(ontology.getParents(0).isEmpty());
+
+        int multipleParents = 0;
+        for (int c = 1; c < ontology.getClassCount(); c++) {
+            assertTrue(ontology.getParents(c).size() >= 1);
+            for (Integer parent : ontology.getParents(c)) {
+                assertTrue(ontology.getDepth(parent) < ontology.getDepth(c));
+            }
+            if (ontology.getParents(c).size() > 1) {
+                multipleParents++;
+            }
+        }
+        assertTrue(multipleParents > 0);
+    }
+
+    @Test
+    public void testThatTheWrittenFileIsReadIntoTheSameGraph() throws Exception
+    {
+        SyntheticOntology ontology = this.generator().generate();
+        NodeManager<String> built = ontology.toNodeManager(
+            new BFSPathNodeWeightingApproach<String>(), false, false);
+
+        File file = File.createTempFile("synthetic", ".owl");
+        try {
+            ontology.writeRdfXml(file);
+            NodeManager<String> read = new OWLReader(file.getPath(),
+                new BFSPathNodeWeightingApproach<String>(), false, false)
+                .getNodeManager();
+            ontology.getMappingsProcessor().mapAt(read);
+
+            assertEquals(built.getNodes().size(), read.getNodes().size());
+            for (Node<String> node : built.getNodes()) {
+                Node<String> readNode = read.getNode(node.getData());
+                assertEquals(node.getParents(), readNode.getParents());
+                assertEquals(node.getAttributes(), readNode.getAttributes());
+            }
+            assertEquals(built.getMappedFeatures(), read.getMappedFeatures());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testThatThePopularityIsSkewed()
+    {
+        SyntheticOntology ontology = this.generator().generate();
+        SyntheticWorkload workload = new SyntheticWorkload(ontology, 11);
+        List<String> ranked = workload.getRankedFeatures();
+
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        for (Map<String, Double> item : workload.nextCatalog(2000, 3)) {
+            assertTrue(item.containsKey(SyntheticWorkload.ITEM_ID_KEY));
+            for (String feature : item.keySet()) {
+                Integer count = counts.get(feature);
+                counts.put(feature, (count == null) ? 1 : count + 1);
+            }
+        }
+
+        Integer top = counts.get(ranked.get(0));
+        Integer middle = counts.get(ranked.get(ranked.size() / 2));
+        assertTrue(top > 10 * ((middle == null) ? 1 : middle));
+
+        Set<String> selection = workload.nextSelection(10);
+        assertEquals(10, selection.size());
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.recommender;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import br.com.ufcg.splab.recsys.metrics.ThreadAllocations;
+
+/**
+ * Guards the memory allocated by the top-N recommendation. The similarity
+ * method used here allocates nothing, so everything allocated while scoring
+ * the catalog comes from the recommender itself, and it must not grow with
+ * the catalog size.
+ */
+public class RecommenderAllocationTest
+{
+    private static final int SMALL_CATALOG = 10000;
+    private static final int LARGE_CATALOG = 100000;
+    private static final int NUM_ITEMS = 10;
+    private static final int RUNS = 5;
+
+    /**
+     * The max bytes allocated per scored item. Only the few items that enter
+     * the top-N are allocated, so it is close to zero.
+     */
+    private static final double MAX_BYTES_PER_ITEM = 1d;
+
+    private Recommender buildRecommender(int items)
+    {
+        Approach approach = new Approach(new SimilarityMethod()
+        {
+            @Override
+            public Double calculate(Map<String, Double> v1,
+                Map<String, Double> v2)
+            {
+                // Returns the boxed score kept at the item:
+                return v2.get("SCORE");
+            }
+        })
+        {
+            @Override
+            public Map<String, Double> getUserProfile()
+            {
+                return this.userProfile;
+            }
+        };
+
+        Recommender recommender = new Recommender(approach);
+        Random random = new Random(17);
+        for (int i = 0; i < items; i++) {
+            Map<String, Double> item = new HashMap<String, Double>();
+            item.put("ITEM:ID", (double) i);
+            item.put("SCORE", random.nextDouble());
+            recommender.addItem(item);
+        }
+        return recommender;
+    }
+
+    private long measure(Recommender recommender,
+        Map<String, Double> userProfile) throws Exception
+    {
+        long min = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            long before = ThreadAllocations.getAllocatedBytes();
+            List<SimilarityMapper> result = recommender.recommendTo(
+                userProfile, NUM_ITEMS);
+            min = Math.min(min, ThreadAllocations.getAllocatedBytes() - before);
+            assertEquals(NUM_ITEMS, result.size());
+        }
+        return min;
+    }
+
+    @Test
+    public void testThatTheTopNDoesNotAllocatePerItem() throws Exception
+    {
+        Assume.assumeTrue(ThreadAllocations.isMeasured());
+
+        Map<String, Double> userProfile = new HashMap<String, Double>();
+        userProfile.put("SCORE", 1d);
+
+        Recommender small = this.buildRecommender(SMALL_CATALOG);
+        Recommender large = this.buildRecommender(LARGE_CATALOG);
+
+        // Warms up the scoring loop:
+        this.measure(large, userProfile);
+
+        long smallBytes = this.measure(small, userProfile);
+        long largeBytes = this.measure(large, userProfile);
+
+        double bytesPerItem = (double) (largeBytes - smallBytes)
+            / (LARGE_CATALOG - SMALL_CATALOG);
+        assertTrue(String.format("%.2f bytes were allocated per item",
+            bytesPerItem), bytesPerItem < MAX_BYTES_PER_ITEM);
+    }
+}
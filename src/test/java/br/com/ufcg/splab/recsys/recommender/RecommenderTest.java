@@ -0,0 +1,266 @@
+/*
+ * OntoRec, Ontology Based Recommender Systems Algorithm License: GNU Lesser
+ * General Public License (LGPL), version 3. See the LICENSE file in the root
+ * directory or <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package br.com.ufcg.splab.recsys.recommender;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class RecommenderTest
+{
+    private Approach approach;
+
+    @Before
+    public void setupCatalog()
+    {
+        this.approach = new Approach(new SimilarityMethod()
+        {
+            @Override
+            public Double calculate(Map<String, Double> v1,
+                Map<String, Double> v2)
+            {
+                Double result = 0d;
+                for (String feature : v1.keySet()) {
+                    if (v2.containsKey(feature)) {
+                        result += v1.get(feature) * v2.get(feature);
+                    }
+                }
+                return result;
+            }
+        })
+        {
+            @Override
+            public Map<String, Double> getUserProfile()
+            {
+                return this.userProfile;
+            }
+        };
+
+        for (int i = 0; i < 100; i++) {
+            Map<String, Double> item = new HashMap<String, Double>();
+            item.put("ITEM:ID", (double) i);
+            item.put("A", (double) (i % 10));
+            item.put("B", 1d);
+            this.approach.addItem(item);
+        }
+    }
+
+    private Map<String, Double> buildUserProfile()
+    {
+        Map<String, Double> userProfile = new HashMap<String, Double>();
+        userProfile.put("A", 1d);
+        return userProfile;
+    }
+
+    @Test
+    public void testThatOnlyTheTopNItemsAreReturned() throws Exception
+    {
+        Recommender recommender = new Recommender(this.approach);
+        for (int i = 0; i < 20; i++) {
+            Map<String, Double> item = new HashMap<String, Double>();
+            item.put("ITEM:ID", (double) i);
+            item.put("A", (double) i);
+            recommender.addItem(item);
+        }
+
+        List<SimilarityMapper> result = recommender
+            .recommendTo(this.buildUserProfile(), 3);
+
+        assertTrue(result.size() == 3);
+        assertTrue(result.get(0).getProfileId() == 19);
+        assertTrue(result.get(1).getProfileId() == 18);
+        assertTrue(result.get(2).getProfileId() == 17);
+    }
+
+    @Test
+    public void testThatPartitionedScoringKeepsTheSequentialOrder()
+        throws Exception
+    {
+        this.approach.setUserProfile(this.buildUserProfile());
+        List<SimilarityMapper> sequential = this.approach.getOrderedItems();
+
+        ExecutorService executor = new ForkJoinPool(4);
+        try {
+            this.approach.setExecutor(executor);
+            this.approach.setPartitionSize(7);
+
+            List<SimilarityMapper> parallel = this.approach.getOrderedItems();
+            List<SimilarityMapper> parallelTopN = this.approach
+                .getOrderedItems(15);
+
+            assertTrue(sequential.size() == 100);
+            assertTrue(parallel.size() == 100);
+            assertTrue(parallelTopN.size() == 15);
+            for (int i = 0; i < sequential.size(); i++) {
+                assertTrue(sequential.get(i).getProfileId()
+                    .equals(parallel.get(i).getProfileId()));
+                if (i < parallelTopN.size()) {
+                    assertTrue(sequential.get(i).getProfileId()
+                        .equals(parallelTopN.get(i).getProfileId()));
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testThatTiesAreOrderedFromTheLastInsertedItem()
+        throws Exception
+    {
+        this.approach.setUserProfile(this.buildUserProfile());
+        List<SimilarityMapper> result = this.approach.getOrderedItems(3);
+
+        // Items 99, 89 and 79 have the highest similarity (9):
+        assertTrue(result.get(0).getProfileId() == 99);
+        assertTrue(result.get(1).getProfileId() == 89);
+        assertTrue(result.get(2).getProfileId() == 79);
+    }
+
+    @Test
+    public void testThatBatchRecommendationMatchesSingleUserRecommendation()
+        throws Exception
+    {
+        Recommender recommender = new Recommender(this.approach);
+        for (int i = 0; i < 50; i++) {
+            Map<String, Double> item = new HashMap<String, Double>();
+            item.put("ITEM:ID", (double) i);
+            item.put("A", (double) (i % 7));
+            item.put("B", (double) (i % 5));
+            recommender.addItem(item);
+        }
+        this.approach.setPartitionSize(8);
+        this.approach.setUserBlockSize(3);
+
+        List<Map<String, Double>> userProfiles = new ArrayList<Map<String, Double>>();
+        for (int i = 0; i < 10; i++) {
+            Map<String, Double> userProfile = new HashMap<String, Double>();
+            userProfile.put("A", (double) i);
+            userProfile.put("B", (double) (10 - i));
+            userProfiles.add(userProfile);
+        }
+
+        List<List<SimilarityMapper>> batch = recommender
+            .recommendTo(userProfiles, 5);
+
+        assertTrue(batch.size() == userProfiles.size());
+        for (int user = 0; user < userProfiles.size(); user++) {
+            List<SimilarityMapper> single = recommender
+                .recommendTo(userProfiles.get(user), 5);
+
+            assertTrue(batch.get(user).size() == 5);
+            for (int i = 0; i < single.size(); i++) {
+                assertTrue(single.get(i).getProfileId()
+                    .equals(batch.get(user).get(i).getProfileId()));
+            }
+        }
+    }
+
+    @Test
+    public void testThatReplacedItemsAreScoredAgain() throws Exception
+    {
+        this.approach.setUserProfile(this.buildUserProfile());
+        assertTrue(this.approach.getOrderedItems(1).get(0).getProfileId() == 99);
+
+        Map<String, Double> item = new HashMap<String, Double>();
+        item.put("ITEM:ID", (double) 5);
+        item.put("A", 100d);
+        this.approach.setItem(5, item);
+        assertTrue(this.approach.getOrderedItems(1).get(0).getProfileId() == 5);
+
+        item.put("A", 0d);
+        this.approach.setItem(5, item);
+        assertTrue(this.approach.getOrderedItems(1).get(0).getProfileId() == 99);
+
+        List<Map<String, Double>> items = new ArrayList<Map<String, Double>>(
+            this.approach.getItemsProfiles());
+        items.remove(99);
+        this.approach.setItems(items);
+        assertTrue(this.approach.getItemsProfiles().size() == 99);
+        assertTrue(this.approach.getOrderedItems(1).get(0).getProfileId() == 89);
+    }
+
+    @Test
+    public void testThatBatchRecommendationKeepsTheCurrentUserProfile()
+        throws Exception
+    {
+        Map<String, Double> current = this.buildUserProfile();
+        this.approach.setUserProfile(current);
+
+        List<Map<String, Double>> userProfiles = new ArrayList<Map<String, Double>>();
+        Map<String, Double> other = new HashMap<String, Double>();
+        other.put("B", 1d);
+        userProfiles.add(other);
+        this.approach.getOrderedItems(userProfiles, 3);
+
+        assertTrue(this.approach.getUserProfile() == current);
+    }
+
+    @Test
+    public void testThatAFailedPartitionCancelsTheOthers() throws Exception
+    {
+        final AtomicInteger calls = new AtomicInteger();
+        Approach failing = new Approach(new SimilarityMethod()
+        {
+            @Override
+            public Double calculate(Map<String, Double> v1,
+                Map<String, Double> v2)
+            {
+                calls.incrementAndGet();
+                if (v2.get("A") == 0d) {
+                    throw new IllegalStateException("The similarity failed");
+                }
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return 1d;
+            }
+        })
+        {
+            @Override
+            public Map<String, Double> getUserProfile()
+            {
+                return this.userProfile;
+            }
+        };
+        for (Map<String, Double> item : this.approach.getItemsProfiles()) {
+            failing.addItem(item);
+        }
+        failing.setUserProfile(this.buildUserProfile());
+        failing.setPartitionSize(1);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            failing.setExecutor(executor);
+            try {
+                failing.getOrderedItems(3);
+                fail("The failed partition was not reported");
+            } catch (IllegalStateException e) {
+                // The first item fails.
+            }
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertTrue(calls.get() < failing.getItemsProfiles().size());
+    }
+}